@@ -0,0 +1,195 @@
+package src.zeo.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import src.com.myzeo.decoder.Crc16;
+import src.com.myzeo.decoder.DecodeOptions;
+import src.com.myzeo.decoder.DisplayHypnogram;
+import src.com.myzeo.decoder.PackedHypnogram;
+import src.com.myzeo.decoder.ZeoData;
+import src.com.myzeo.decoder.ZeoDataDecoder;
+
+/**
+ * DecoderBenchmark class,
+ * measures decoding a zeosleep.dat file with ZeoDataDecoder, 
+ * reducing and labeling its records, building the display 
+ * hypnograms of the records, writing their human readable 
+ * report and the CRC16 of the file
+ * 
+ * Decoders report to no listener, so the warnings about the 
+ * corrupt spans of the file are not printed.
+ * 
+ * @author evsc
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DecoderBenchmark {
+	
+	@Param({ "1000" })
+	public int nights;
+	
+	private File file;
+	private byte bytes[];
+	private List<ZeoData> records;
+	private List<ZeoData> reduced;
+	
+	// the base hypnograms of the records, packed and unpacked
+	private PackedHypnogram packed[];
+	private byte unpacked[][];
+	private int counts[];
+	private byte display[] = new byte[ZeoData.HYP_DISPLAY_LENGTH];
+	
+	@Setup
+	public void setup() throws IOException {
+		file = SyntheticData.datFile(nights);
+		
+		bytes = new byte[(int) file.length()];
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int n = 0;
+			while (n < bytes.length) n += in.read(bytes, n, bytes.length - n);
+		} finally {
+			in.close();
+		}
+		
+		records = new ArrayList<ZeoData>(decodeBuffer().get_records());
+		reduced = drain(ZeoDataDecoder.reduce_records(records.iterator(), null));
+		
+		packed = new PackedHypnogram[records.size()];
+		unpacked = new byte[records.size()][];
+		counts = new int[records.size()];
+		for (int i = 0; i < records.size(); i++) {
+			packed[i] = records.get(i).get_packed_base_hypnogram();
+			unpacked[i] = packed[i].unpack();
+			counts[i] = records.get(i).get_base_hypnogram_count();
+		}
+		
+		for (ZeoData r : reduced) {
+			if (!HumanReportReference.toHuman(r).equals(r.toHuman())) {
+				throw new IllegalStateException("toHuman() differs from the reference");
+			}
+		}
+	}
+	
+	@Benchmark
+	public ZeoDataDecoder decodeBuffer() throws IOException {
+		return new ZeoDataDecoder(ByteBuffer.wrap(bytes), SILENT);
+	}
+	
+	@Benchmark
+	public ZeoDataDecoder decodeFile() throws IOException {
+		return new ZeoDataDecoder(file, SILENT);
+	}
+	
+	@Benchmark
+	public List<ZeoData> reduceRecords() {
+		return drain(ZeoDataDecoder.reduce_records(records.iterator(), null));
+	}
+	
+	@Benchmark
+	public List<ZeoData> labelNaps() {
+		return drain(ZeoDataDecoder.label_naps(reduced.iterator()));
+	}
+	
+	/**
+	 * The display hypnograms of all the records, as ZeoData built them 
+	 * before DisplayHypnogram
+	 */
+	@Benchmark
+	public int displayHypnogramReference() {
+		int bins = 0;
+		for (int i = 0; i < packed.length; i++) {
+			bins += DisplayHypnogramReference.make_display_hypnogram_from_base(packed[i], counts[i], display);
+		}
+		return bins;
+	}
+	
+	@Benchmark
+	public int downsamplePacked() {
+		int bins = 0;
+		for (int i = 0; i < packed.length; i++) {
+			bins += DisplayHypnogram.downsample(packed[i], counts[i], display);
+		}
+		return bins;
+	}
+	
+	@Benchmark
+	public int downsampleUnpacked() {
+		int bins = 0;
+		for (int i = 0; i < unpacked.length; i++) {
+			bins += DisplayHypnogram.downsample(unpacked[i], counts[i], display);
+		}
+		return bins;
+	}
+	
+	/**
+	 * The human readable report of the reduced records, as 
+	 * ZeoData wrote it before ZeoReportWriter
+	 */
+	@Benchmark
+	public long toHumanReference() {
+		long chars = 0;
+		for (ZeoData r : reduced) chars += HumanReportReference.toHuman(r).length();
+		return chars;
+	}
+	
+	@Benchmark
+	public long toHuman() {
+		long chars = 0;
+		for (ZeoData r : reduced) chars += r.toHuman().length();
+		return chars;
+	}
+	
+	@Benchmark
+	public void writeHuman() throws IOException {
+		ZeoDataDecoder.write_human(reduced.iterator(), DISCARD);
+	}
+	
+	@Benchmark
+	public int crc16() {
+		return Crc16.crc16(bytes, 0, bytes.length);
+	}
+	
+	@Benchmark
+	public int crc16Bytewise() {
+		return Crc16.crc16_bytewise(bytes, 0, bytes.length);
+	}
+	
+	// decode with the defaults, reporting to no listener
+	private static final DecodeOptions SILENT = new DecodeOptions().set_listener(null);
+	
+	// a writer that drops the report, so only writing it is measured
+	private static final Writer DISCARD = new Writer() {
+		public void write(char cbuf[], int off, int len) {}
+		public void write(int c) {}
+		public void write(String str, int off, int len) {}
+		public void flush() {}
+		public void close() {}
+	};
+	
+	private static List<ZeoData> drain(Iterator<ZeoData> records) {
+		List<ZeoData> list = new ArrayList<ZeoData>();
+		while (records.hasNext()) list.add(records.next());
+		return list;
+	}
+}
@@ -0,0 +1,98 @@
+package src.zeo.benchmark;
+
+import src.com.myzeo.decoder.PackedHypnogram;
+import src.com.myzeo.decoder.SleepStage;
+import src.com.myzeo.decoder.ZeoData;
+
+/**
+ * DisplayHypnogramReference class,
+ * builds display hypnograms the way ZeoData did up to decoder 
+ * version 23, to measure DisplayHypnogram.downsample against
+ * 
+ * Each record collects the stages of a bin as SleepStage values 
+ * and counts them in a new array for every bin, and each stage 
+ * is converted with a fresh copy of SleepStage.values().
+ * 
+ * @author evsc
+ *
+ */
+
+class DisplayHypnogramReference {
+
+	/**
+	 * Fill in a display hypnogram from a base hypnogram, 
+	 * as make_display_hypnogram_from_base() did
+	 * 
+	 * @param base
+	 * @param base_count
+	 * 				number of values in the base hypnogram
+	 * @param display
+	 * @return the number of display hypnogram bins filled in
+	 */
+	static int make_display_hypnogram_from_base(PackedHypnogram base, int base_count, byte display[]) {
+		SleepStage display_value = SleepStage.UNDEFINED;
+		int i;
+		int i_base;
+		int i_display;
+		int n_display;
+		SleepStage stage;
+		SleepStage[] stages = new SleepStage[ZeoData.HYP_BASE_PER_DISPLAY];
+
+		// only fill in bins for which all base values are filled in
+		n_display = base_count / ZeoData.HYP_BASE_PER_DISPLAY;
+
+		for (i_display = 0; i_display < n_display; i_display++) {
+			// collect the base hypnogram values
+			i_base = i_display * ZeoData.HYP_BASE_PER_DISPLAY;
+			for (i = 0; i < ZeoData.HYP_BASE_PER_DISPLAY; i++, i_base++) {
+				stage = SleepStage.values()[base.get(i_base)];
+
+				// convert all types of Deep sleep to the standard value
+				if (stage == SleepStage.DEEP_2) {
+					stage = SleepStage.DEEP;
+				}
+				stages[i] = stage;
+			}
+
+			display_value = determine_bin_value(stages, ZeoData.HYP_BASE_PER_DISPLAY);
+			display[i_display] = (byte) display_value.ordinal();
+		}
+		return i_display;
+	}
+
+	/**
+	 * Determine display hypnogram bin value from a set of sleep stage values: 
+	 * undefined if all are, Wake if any is, else the most common stage, 
+	 * the first of REM, Light and Deep on a tie
+	 */
+	private static SleepStage determine_bin_value(SleepStage[] values, int num_values) {
+		// counts of values by stage
+		int[] counts = new int[SleepStage.values().length];
+		int i;
+		int max_count;
+		SleepStage result;
+
+		for (i = 0; i < num_values; i++) {
+			counts[values[i].ordinal()]++;
+		}
+
+		if (counts[SleepStage.UNDEFINED.ordinal()] == num_values) {
+			return SleepStage.UNDEFINED;
+		}
+
+		if (counts[SleepStage.WAKE.ordinal()] != 0) {
+			return SleepStage.WAKE;
+		}
+
+		max_count = counts[SleepStage.REM.ordinal()];
+		result = SleepStage.REM;
+
+		for (i = SleepStage.LIGHT.ordinal(); i < SleepStage.values().length; i++) {
+			if (max_count < counts[i]) {
+				max_count = counts[i];
+				result = SleepStage.values()[i];
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,340 @@
+package src.zeo.benchmark;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Calendar;
+
+import src.com.myzeo.decoder.SleepRating;
+import src.com.myzeo.decoder.TimeChange;
+import src.com.myzeo.decoder.ZeoData;
+
+/**
+ * HumanReportReference class,
+ * writes the human readable report of a record the way 
+ * ZeoData.toHuman() did up to decoder version 20, to measure 
+ * ZeoReportWriter against
+ * 
+ * Every field is printed with printf into a PrintWriter, every 
+ * epoch value and timestamp through a StringWriter of its own, 
+ * and every timestamp is made into a Calendar first.
+ * 
+ * @author evsc
+ *
+ */
+
+class HumanReportReference {
+
+	private static final long MSEC_PER_SECOND = 1000;
+
+	/**
+	 * @param record
+	 * @return the report of the record, as toHuman() returned it
+	 */
+	static String toHuman(ZeoData record) {
+		SleepRating sleep_rating_enum;
+
+		StringWriter txt = new StringWriter();
+		PrintWriter out = new PrintWriter(txt);
+
+		/* The fields that are arrays, as the record returns them. */
+		TimeChange[] alarm_change = record.get_alarm_change();
+		TimeChange[] rtc_change = record.get_rtc_change();
+		Calendar[] ring = record.get_alarm_ring();
+		Calendar[] snooze = record.get_alarm_snooze();
+		char[] assert_function_name = record.get_assert_function_name();
+		short[] headband_impedance = record.get_headband_impedance();
+		short[] headband_packets = record.get_headband_packets();
+		byte[] headband_rssi = record.get_headband_rssi();
+		short[] headband_status = record.get_headband_status();
+		byte[] base_hypnogram = record.get_base_hypnogram();
+		byte[] display_hypnogram = record.get_display_hypnogram();
+
+		/*
+		 * Define an array used to convert sleep stage values to displayed sleep
+		 * stages. We want to show a single letter for each of the sleep stages
+		 * instead of just the numeric values.
+		 */
+		char[] hypnogram_chars = { '.', 'w', 'r', 'l', 'd', '?', 'L' };
+
+		/* Convert numeric sleep rating to enumerated value */
+		sleep_rating_enum = SleepRating.convert(record.get_sleep_rating());
+
+		out.printf("record version= %d", record.get_format_version());
+		out.println();
+		out.printf("current_time  = %s", calendar_to_human_string(record.get_current_time()));
+		out.println();
+		out.printf("crc           = %s", record.get_crc());
+		out.println();
+		out.printf("is_nap        = %s", record.is_nap);
+		out.println();
+		out.printf("sleep_date    = %s", calendar_to_human_string(record.get_sleep_date()));
+		out.println();
+		out.printf("airplane_mode = %s", record.get_airplane_mode());
+		out.println();
+		out.printf("alarm_reason  = %s", record.get_alarm_reason());
+		out.println();
+		out.printf("backlight     = %s", record.get_backlight());
+		out.println();
+		out.printf("clock_mode    = %s", record.get_clock_mode());
+		out.println();
+		out.printf("sleep_valid   = %s", record.get_sleep_valid());
+		out.println();
+		out.printf("snooze_time   = %s", record.get_snooze_time());
+		out.println();
+		out.printf("wake_tone     = %s", record.get_wake_tone().ordinal());
+		out.println();
+		out.printf("wake_window   = %s", record.get_wake_window());
+		out.println();
+		out.printf("write_reason  = %s", record.get_write_reason());
+		out.println();
+		out.printf("zeo_wake_on   = %s", record.get_zeo_wake_on());
+		out.println();
+		out.printf("wdt_reset     = %s", record.get_wdt_reset());
+		out.println();
+
+		out.printf("airplane_off  = %s", calendar_to_human_string(record.get_airplane_off()));
+		out.println();
+		out.printf("airplane_on   = %s", calendar_to_human_string(record.get_airplane_on()));
+		out.println();
+		for (int i = 0; i < alarm_change.length; i++) {
+			out.printf("alarm_change  = %s", time_change(alarm_change[i]));
+			out.println();
+		}
+		out.printf("assert_function_name = ");
+		for (int i = 0; i < assert_function_name.length; i++) {
+			if (assert_function_name[i] == 0) {
+				break;
+			}
+			out.printf("%c", assert_function_name[i]);
+		}
+		out.println();
+		out.printf("assert_line_number   = %d", record.get_assert_line_number());
+		out.println();
+		out.printf("factory_reset = %s",
+				calendar_to_human_string(record.get_factory_reset()));
+		out.println();
+		out.printf("headband_id   = %s", record.get_headband_id());
+		out.println();
+		out.printf("headband_impedance = ");
+		for (int i = 0; i < headband_impedance.length; i++) {
+			out.printf("%3d ", headband_impedance[i]);
+		}
+		out.println();
+		out.printf("headband_packets   = ");
+		for (int i = 0; i < headband_packets.length; i++) {
+			out.printf("%3d ", headband_packets[i]);
+		}
+		out.println();
+		out.printf("headband_rssi      = ");
+		for (int i = 0; i < headband_rssi.length; i++) {
+			out.printf("%3d ", headband_rssi[i]);
+		}
+		out.println();
+		out.printf("headband_status    = ");
+		for (int i = 0; i < headband_status.length; i++) {
+			/*
+			 * Print the four values packed into each byte of status data. The
+			 * packing order is defined in the fs_save_scalar function in the
+			 * fs_save_data.c base source file.
+			 */
+			out.printf("%3d ", (headband_status[i] >> 0) & 0x3);
+			out.printf("%3d ", (headband_status[i] >> 2) & 0x3);
+			out.printf("%3d ", (headband_status[i] >> 4) & 0x3);
+			out.printf("%3d ", (headband_status[i] >> 6) & 0x3);
+		}
+		out.println();
+
+		out.printf("id_hw                 = %s", record.get_id_hw());
+		out.println();
+		out.printf("id_sw                 = %s", record.get_id_sw());
+		out.println();
+		for (int i = 0; i < rtc_change.length; i++) {
+			out.printf("rtc_change            = %s", time_change(rtc_change[i]));
+			out.println();
+		}
+		out.printf("sensor_life_reset     = %s",
+				calendar_to_human_string(record.get_sensor_life_reset()));
+		out.println();
+		out.printf("sleep_stat_reset      = %s",
+				calendar_to_human_string(record.get_sleep_stat_reset()));
+		out.println();
+
+		/* Sleep Information */
+		for (int i = 0; i < ring.length; i++) {
+			out.printf("alarm_ring            = %s",
+					calendar_to_human_string(ring[i]));
+			out.println();
+		}
+		for (int i = 0; i < snooze.length; i++) {
+			out.printf("alarm_snooze          = %s",
+					calendar_to_human_string(snooze[i]));
+			out.println();
+		}
+		out.printf("alarm_off             = %s",
+				calendar_to_human_string(record.get_alarm_off()));
+		out.println();
+		out.printf("alarm_set_time        = %s",
+				calendar_to_human_string(record.get_alarm_set_time()));
+		out.println();
+		out.printf("awakenings            = %s", record.get_awakenings());
+		out.println();
+		out.printf("awakenings_average    = %s", record.get_awakenings_average());
+		out.println();
+		out.printf("start_of_night        = %s",
+				calendar_to_human_string(record.get_start_of_night()));
+		out.println();
+		out.printf("end_of_night          = %s",
+				calendar_to_human_string(record.get_end_of_night()));
+		out.println();
+		out.printf("rise_time             = %s",
+				calendar_to_human_string(record.get_rise_time()));
+		out.println();
+		out.printf("sleep_rating          = %s (%s)", record.get_sleep_rating(),
+				sleep_rating_enum);
+		out.println();
+		out.printf("time_in_deep          = %s",
+				epochs_to_human_string(record.get_time_in_deep()));
+		out.println();
+		out.printf("time_in_deep_average  = %s",
+				epochs_to_human_string(record.get_time_in_deep_average()));
+		out.println();
+		out.printf("time_in_deep_best     = %s",
+				epochs_to_human_string(record.get_time_in_deep_best()));
+		out.println();
+		out.printf("time_in_light         = %s",
+				epochs_to_human_string(record.get_time_in_light()));
+		out.println();
+		out.printf("time_in_light_average = %s",
+				epochs_to_human_string(record.get_time_in_light_average()));
+		out.println();
+		out.printf("time_in_rem           = %s",
+				epochs_to_human_string(record.get_time_in_rem()));
+		out.println();
+		out.printf("time_in_rem_average   = %s",
+				epochs_to_human_string(record.get_time_in_rem_average()));
+		out.println();
+		out.printf("time_in_rem_best      = %s",
+				epochs_to_human_string(record.get_time_in_rem_best()));
+		out.println();
+		out.printf("time_in_wake          = %s",
+				epochs_to_human_string(record.get_time_in_wake()));
+		out.println();
+		out.printf("time_in_wake_average  = %s",
+				epochs_to_human_string(record.get_time_in_wake_average()));
+		out.println();
+		out.printf("time_to_z             = %s",
+				epochs_to_human_string(record.get_time_to_z()));
+		out.println();
+		out.printf("time_to_z_average     = %s",
+				epochs_to_human_string(record.get_time_to_z_average()));
+		out.println();
+		out.printf("total_z               = %s",
+				epochs_to_human_string(record.get_total_z()));
+		out.println();
+		out.printf("total_z_average       = %s",
+				epochs_to_human_string(record.get_total_z_average()));
+		out.println();
+		out.printf("total_z_best          = %s",
+				epochs_to_human_string(record.get_total_z_best()));
+		out.println();
+		out.printf("zq_score              = %s", record.get_zq_score());
+		out.println();
+		out.printf("zq_score_average      = %s", record.get_zq_score_average());
+		out.println();
+		out.printf("zq_score_best         = %s", record.get_zq_score_best());
+		out.println();
+
+		/*
+		 * Print display hypnogram forced stage and the index in the hypnogram
+		 * where the stage is forced.
+		 */
+		out.printf("display_hypnogram_forced_index = %s",
+				record.get_display_hypnogram_forced_index());
+		out.println();
+		out.printf("display_hypnogram_forced_stage = %s",
+				record.get_display_hypnogram_forced_stage());
+		out.println();
+
+		/* Print the starting timestamp for the hypnograms. */
+		out.printf("hypnogram_start_time  = %s",
+				calendar_to_human_string(record.get_hypnogram_start_time()));
+		out.println();
+
+		out.printf("base_hypnogram_count  = %s", record.get_base_hypnogram_count());
+		out.println();
+		out.write("base_hypnogram = ");
+		for (int i = 0; i < record.get_base_hypnogram_count(); i++) {
+			out.printf("%c", hypnogram_chars[base_hypnogram[i]]);
+		}
+		out.println();
+
+		out.printf("display_hypnogram_count = %s", record.get_display_hypnogram_count());
+		out.println();
+		out.write("display hypnogram = ");
+		for (int i = 0; i < record.get_display_hypnogram_count(); i++) {
+			out.printf("%c", hypnogram_chars[display_hypnogram[i]]);
+		}
+		out.println();
+
+		/* Add an extra blank line between records */
+		out.println();
+		out.flush();
+
+		return txt.toString();
+	}
+
+	/**
+	 * @return the time change, as TimeChange.toString() returned it
+	 */
+	private static String time_change(TimeChange change) {
+		return "value: " + calendar_to_human_string(change.getValueAsCalendar())
+				+ " changed: "
+				+ calendar_to_human_string(change.getTimeAsCalendar());
+	}
+
+	private static String calendar_to_human_string(Calendar calendar) {
+		if (calendar == null) {
+			return null;
+		} else {
+			StringWriter txt = new StringWriter();
+			PrintWriter out = new PrintWriter(txt);
+
+			int day = calendar.get(Calendar.DAY_OF_MONTH);
+			int month = calendar.get(Calendar.MONTH) + 1;
+			int year = calendar.get(Calendar.YEAR);
+
+			/* If the date isn't the start of the epoch then print it */
+			if (year != 1970 || month != 1 || day != 1) {
+				out.printf("%04d-%02d-%02d T ", year, month, day);
+			}
+			out.printf("%02d:%02d:%02d", calendar.get(Calendar.HOUR_OF_DAY),
+					calendar.get(Calendar.MINUTE),
+					calendar.get(Calendar.SECOND));
+
+			/* Print the UNIX timestamp value. */
+			out.printf(" (%d)", calendar.getTimeInMillis() / MSEC_PER_SECOND);
+
+			return txt.toString();
+		}
+	}
+
+	private static String epochs_to_human_string(int epochs) {
+		StringWriter txt = new StringWriter();
+		PrintWriter out = new PrintWriter(txt);
+
+		int hours;
+		int minutes;
+
+		/*
+		 * Use rounding to convert epochs to minutes to match the conversion the
+		 * Zeo code uses.
+		 */
+		minutes = (epochs + 1) / 2;
+
+		hours = minutes / 60;
+		minutes = minutes % 60;
+
+		out.printf("%2d:%02d (%4d epochs)", hours, minutes, epochs);
+		return txt.toString();
+	}
+}
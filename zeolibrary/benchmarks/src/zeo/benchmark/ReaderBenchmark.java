@@ -0,0 +1,116 @@
+package src.zeo.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import src.zeo.library.ZeoNight;
+import src.zeo.library.ZeoReader;
+
+/**
+ * ReaderBenchmark class,
+ * measures ZeoReader reading a zeodata.csv file, 
+ * ZeoNight parsing the sleep graphs of a night 
+ * and the getAverage functions of ZeoReader
+ * 
+ * ZeoReader is used without a sketch, and its progress messages
+ * are dropped while the benchmark runs.
+ * 
+ * @author evsc
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReaderBenchmark {
+	
+	@Param({ "1000" })
+	public int nights;
+	
+	private String csvFile;
+	private ZeoReader reader;
+	private String sleepGraph5min;
+	private String sleepGraph30sec;
+	private PrintStream out;
+	
+	@Setup
+	public void setup() throws IOException {
+		File csv = SyntheticData.csvFile(nights);
+		csvFile = csv.getPath();
+		
+		// graphs of the first night, as they are in the file
+		String row;
+		BufferedReader in = new BufferedReader(new FileReader(csv));
+		try {
+			in.readLine();
+			row = in.readLine();
+		} finally {
+			in.close();
+		}
+		String columns[] = row.split(",", -1);
+		sleepGraph5min = columns[columns.length - 4];
+		sleepGraph30sec = columns[columns.length - 3];
+		
+		out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {
+			}
+		}));
+		
+		reader = new ZeoReader(null);
+		reader.readFile(csvFile);
+	}
+	
+	@TearDown
+	public void tearDown() {
+		System.setOut(out);
+	}
+	
+	@Benchmark
+	public ZeoReader readFile() {
+		ZeoReader r = new ZeoReader(null);
+		r.readFile(csvFile);
+		return r;
+	}
+	
+	@Benchmark
+	public ZeoNight setSleepGraphs() {
+		ZeoNight night = new ZeoNight(reader);
+		night.setSleepGraph5min(sleepGraph5min, true);
+		night.setSleepGraph30sec(sleepGraph30sec, true);
+		return night;
+	}
+	
+	@Benchmark
+	public void getAverages(Blackhole bh) {
+		bh.consume(reader.getAverageZq());
+		bh.consume(reader.getAverageTotalZ());
+		bh.consume(reader.getAverageTimeToZ());
+		bh.consume(reader.getAverageTimeInWake());
+		bh.consume(reader.getAverageTimeInRem());
+		bh.consume(reader.getAverageTimeInLight());
+		bh.consume(reader.getAverageTimeInDeep());
+		bh.consume(reader.getAverageDuration());
+		bh.consume(reader.getAverageStart());
+		bh.consume(reader.getAverageEnd());
+		bh.consume(reader.getAverageOnset());
+		bh.consume(reader.getAverageRise());
+		bh.consume(reader.getAverageAwakenings());
+	}
+}
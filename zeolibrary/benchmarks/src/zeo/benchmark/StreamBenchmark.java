@@ -0,0 +1,75 @@
+package src.zeo.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import src.zeo.library.ZeoSlice;
+import src.zeo.library.ZeoStream;
+
+/**
+ * StreamBenchmark class,
+ * measures ZeoStream parsing a record of the serial data stream,
+ * passed on in reads of the size readSerial() makes
+ * 
+ * No serial port is opened, and the welcome message of each 
+ * ZeoStream is dropped while the benchmark runs.
+ * 
+ * @author evsc
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StreamBenchmark {
+	
+	// bytes passed on at a time, as read from the serial port
+	private static final int READ_SIZE = 512;
+	
+	@Param({ "120" })
+	public int slices;
+	
+	private byte record[];
+	private PrintStream out;
+	
+	@Setup
+	public void setup() {
+		record = SyntheticData.streamRecord(slices);
+		
+		out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {
+			}
+		}));
+	}
+	
+	@TearDown
+	public void tearDown() {
+		System.setOut(out);
+	}
+	
+	@Benchmark
+	public ZeoSlice parseStream() {
+		ZeoStream stream = new ZeoStream(null);
+		stream.debug = false;
+		
+		byte read[] = new byte[READ_SIZE];
+		for (int i = 0; i < record.length; i += READ_SIZE) {
+			int n = Math.min(READ_SIZE, record.length - i);
+			System.arraycopy(record, i, read, 0, n);
+			stream.readBytes(read, n);
+		}
+		return stream.slice;
+	}
+}
@@ -0,0 +1,169 @@
+package src.zeo.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+import src.com.myzeo.decoder.ZeoDataGenerator;
+
+/**
+ * SyntheticData class,
+ * writes the zeosleep.dat and zeodata.csv files the benchmarks read, 
+ * with ZeoDataGenerator, and records of the raw serial data stream
+ * 
+ * Files are written once for each number of nights and seed, 
+ * to a temporary folder deleted when the benchmark JVM exits.
+ * 
+ * @author evsc
+ *
+ */
+
+class SyntheticData {
+	
+	// seed of all generated data, so every run measures the same input
+	static final long SEED = 2013;
+	
+	private static File folder;
+	
+	/**
+	 * @param nights
+	 * @return the zeosleep.dat file of the given number of nights
+	 */
+	static synchronized File datFile(int nights) throws IOException {
+		File dat = new File(folder(), "zeosleep-" + nights + ".dat");
+		if (!dat.isFile()) write(nights);
+		return dat;
+	}
+	
+	/**
+	 * @param nights
+	 * @return the zeodata.csv file of the same nights as datFile()
+	 */
+	static synchronized File csvFile(int nights) throws IOException {
+		File csv = new File(folder(), "zeodata-" + nights + ".csv");
+		if (!csv.isFile()) write(nights);
+		return csv;
+	}
+	
+	private static void write(int nights) throws IOException {
+		File dat = new File(folder(), "zeosleep-" + nights + ".dat");
+		File csv = new File(folder(), "zeodata-" + nights + ".csv");
+		
+		ZeoDataGenerator generator = new ZeoDataGenerator(SEED);
+		OutputStream datOut = new BufferedOutputStream(new FileOutputStream(dat));
+		Writer csvOut = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(csv), "UTF-8"));
+		try {
+			generator.write(nights, datOut, csvOut);
+		} finally {
+			datOut.close();
+			csvOut.close();
+		}
+		dat.deleteOnExit();
+		csv.deleteOnExit();
+	}
+	
+	private static File folder() throws IOException {
+		if (folder == null) {
+			folder = File.createTempFile("zeo-benchmark", "");
+			folder.delete();
+			folder.mkdir();
+			folder.deleteOnExit();
+		}
+		return folder;
+	}
+	
+	/**
+	 * Record of the serial stream of the Zeo, as ZeoStream reads it:
+	 * the version and time, then for each 30 second slice 
+	 * a waveform and frequency bins every second, 
+	 * the signal quality, impedance and sleep stage, 
+	 * and the end of the slice.
+	 * 
+	 * @param slices
+	 * 			number of 30 second slices to record
+	 * @return the bytes of the stream
+	 */
+	static byte[] streamRecord(int slices) {
+		Random random = new Random(SEED);
+		PacketWriter out = new PacketWriter();
+		long time = 1262383200L;
+		
+		out.time = time;
+		out.value(0x03, 3);			// Version
+		out.value(0x8A, time);		// ZeoTimestamp
+		for (int s = 0; s < slices; s++) {
+			for (int second = 0; second < 30; second++) {
+				time++;
+				out.time = time;
+				out.value(0x8A, time);
+				
+				byte waveform[] = new byte[1 + 256];
+				waveform[0] = (byte) 0x80;
+				for (int i = 1; i < waveform.length; i++) {
+					waveform[i] = (byte) (random.nextInt(40) - 20);
+				}
+				out.packet(waveform);
+				
+				byte bins[] = new byte[1 + 14];
+				bins[0] = (byte) 0x83;
+				for (int i = 1; i < bins.length; i++) {
+					bins[i] = (byte) random.nextInt(64);
+				}
+				out.packet(bins);
+			}
+			out.value(0x84, 20 + random.nextInt(10));		// SQI
+			out.value(0x97, 300 + random.nextInt(200));		// Impedance
+			out.value(0x9C, 0);								// BadSignal
+			out.value(0x9D, 1 + random.nextInt(4));			// SleepStage
+			out.value(0x02, 0);								// SliceEnd
+		}
+		return out.toByteArray();
+	}
+	
+	/**
+	 * Writes packets of the serial protocol: "A4", checksum, 
+	 * data length and its inverse, time, sequence number, data
+	 */
+	private static class PacketWriter extends java.io.ByteArrayOutputStream {
+		
+		long time;
+		int sequence;
+		
+		/**
+		 * write a packet of one 32 bit value
+		 */
+		void value(int type, long value) {
+			packet(new byte[] { (byte) type, (byte) value, (byte) (value >> 8),
+					(byte) (value >> 16), (byte) (value >> 24) });
+		}
+		
+		void packet(byte data[]) {
+			int sum = 0;
+			for (int i = 0; i < data.length; i++) {
+				// keep the packet start "A4" out of the data
+				if (data[i] == 'A') data[i] = 'B';
+				sum += data[i] & 0xff;
+			}
+			
+			write('A');
+			write('4');
+			write(sum);
+			write(data.length);
+			write(data.length >> 8);
+			write(~data.length);
+			write(~data.length >> 8);
+			write((int) time);
+			write(0);
+			write(0);
+			write(sequence++);
+			write(data, 0, data.length);
+		}
+	}
+}
@@ -0,0 +1,264 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * CRC16 (CCITT polynomial 0x1021, initial value 0) as used by the Zeo base
+ * station to protect its data records.
+ * <p>
+ * The CRC is computed eight bytes at a time using the slice-by-8 method:
+ * table k holds the CRC of a byte followed by k zero bytes, so the CRC of
+ * eight bytes is the exclusive or of eight independent table lookups instead
+ * of a chain of eight dependent ones. The results are bit for bit the same as
+ * the byte at a time method, which is kept as crc16_bytewise() for reference.
+ */
+public class Crc16 {
+
+	/*************************************************************************
+	 * constants
+	 */
+
+	/* Number of bytes processed per step. */
+	private static final int SLICES = 8;
+
+	/*
+	 * Slice tables. TABLES[0] is ZeoDataDecoder.CRC16_TABLE and TABLES[k]
+	 * advances the CRC of each byte by another k zero bytes.
+	 */
+	private static final int[][] TABLES = new int[SLICES][256];
+
+	static {
+		TABLES[0] = ZeoDataDecoder.CRC16_TABLE.clone();
+		for (int k = 1; k < SLICES; k++) {
+			for (int b = 0; b < 256; b++) {
+				int crc = TABLES[k - 1][b];
+
+				TABLES[k][b] = ((crc << 8) & 0xffff) ^ TABLES[0][crc >> 8];
+			}
+		}
+	}
+
+	/*************************************************************************
+	 * methods
+	 */
+
+	/**
+	 * Compute the CRC16 value for a chunk of a byte array.
+	 * 
+	 * @param buffer
+	 *            Byte array with data to calculate CRC for.
+	 * @param offset
+	 *            Starting offset for chunk of data to calculate CRC for.
+	 * @param length
+	 *            Number of bytes in buffer to use in CRC calculation.
+	 * 
+	 * @return CRC value.
+	 */
+	public static int crc16(byte[] buffer, int offset, int length) {
+		return update(0, buffer, offset, length);
+	}
+
+	/**
+	 * Compute the CRC16 value for a chunk of a byte buffer. The buffer's
+	 * position and limit are ignored and left unchanged.
+	 * 
+	 * @param buffer
+	 *            Byte buffer with data to calculate CRC for.
+	 * @param offset
+	 *            Starting offset for chunk of data to calculate CRC for.
+	 * @param length
+	 *            Number of bytes in buffer to use in CRC calculation.
+	 * 
+	 * @return CRC value.
+	 */
+	public static int crc16(ByteBuffer buffer, int offset, int length) {
+		return update(0, buffer, offset, length);
+	}
+
+	/**
+	 * Compute the CRC16 value for a chunk of a byte array one byte at a time.
+	 * This is the original ZeoDataDecoder implementation, kept as the
+	 * reference the sliced implementation is checked and measured against.
+	 * 
+	 * @param buffer
+	 *            Byte array with data to calculate CRC for.
+	 * @param offset
+	 *            Starting offset for chunk of data to calculate CRC for.
+	 * @param length
+	 *            Number of bytes in buffer to use in CRC calculation.
+	 * 
+	 * @return CRC value.
+	 */
+	public static int crc16_bytewise(byte[] buffer, int offset, int length) {
+		int crc = 0; // the CRC
+		int t;
+		int value;
+
+		for (int i = 0; i < length; ++i, ++offset) {
+			value = buffer[offset] & 0xff;
+			t = (crc >> 8) ^ value;
+			crc = ((crc << 8) & 0xffff) ^ ZeoDataDecoder.CRC16_TABLE[t];
+		}
+		return crc;
+	}
+
+	/**
+	 * Compute the CRC16 value of a complete record the same way the base
+	 * station does, which is with the record's own CRC value taken as zero.
+	 * The buffer is not modified.
+	 * 
+	 * @param in
+	 *            Byte buffer holding the record.
+	 * @param record_offset
+	 *            Offset of the start of the record in the buffer.
+	 * @param record_size
+	 *            Size of the record in bytes.
+	 * 
+	 * @return CRC value.
+	 */
+	public static int record_crc16(ByteBuffer in, int record_offset,
+			int record_size) {
+		int crc_end = ZeoData.CRC_OFFSET + ZeoData.CRC_SIZE;
+		int crc;
+
+		crc = update(0, in, record_offset, ZeoData.CRC_OFFSET);
+		crc = update_zeros(crc, ZeoData.CRC_SIZE);
+		crc = update(crc, in, record_offset + crc_end, record_size - crc_end);
+		return crc;
+	}
+
+	/**
+	 * Continue a CRC16 calculation over a chunk of a byte array.
+	 * 
+	 * @param crc
+	 *            The CRC value computed so far.
+	 * @param buffer
+	 *            Byte array with data to calculate CRC for.
+	 * @param offset
+	 *            Starting offset for chunk of data to calculate CRC for.
+	 * @param length
+	 *            Number of bytes in buffer to use in CRC calculation.
+	 * 
+	 * @return CRC value.
+	 */
+	public static int update(int crc, byte[] buffer, int offset, int length) {
+		int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+		int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+		int end = offset + length;
+
+		for (; offset + SLICES <= end; offset += SLICES) {
+			crc = t7[((crc >> 8) ^ buffer[offset]) & 0xff]
+					^ t6[(crc ^ buffer[offset + 1]) & 0xff]
+					^ t5[buffer[offset + 2] & 0xff]
+					^ t4[buffer[offset + 3] & 0xff]
+					^ t3[buffer[offset + 4] & 0xff]
+					^ t2[buffer[offset + 5] & 0xff]
+					^ t1[buffer[offset + 6] & 0xff]
+					^ t0[buffer[offset + 7] & 0xff];
+		}
+		for (; offset < end; offset++) {
+			crc = ((crc << 8) & 0xffff)
+					^ t0[((crc >> 8) ^ buffer[offset]) & 0xff];
+		}
+		return crc;
+	}
+
+	/**
+	 * Continue a CRC16 calculation over a chunk of a byte buffer. Heap buffers
+	 * are processed from their backing array, other buffers (such as memory
+	 * mapped ones) eight bytes at a time with absolute getLong() calls. The
+	 * buffer's position and limit are ignored and left unchanged.
+	 * 
+	 * @param crc
+	 *            The CRC value computed so far.
+	 * @param buffer
+	 *            Byte buffer with data to calculate CRC for.
+	 * @param offset
+	 *            Starting offset for chunk of data to calculate CRC for.
+	 * @param length
+	 *            Number of bytes in buffer to use in CRC calculation.
+	 * 
+	 * @return CRC value.
+	 */
+	public static int update(int crc, ByteBuffer buffer, int offset, int length) {
+		if (buffer.hasArray()) {
+			return update(crc, buffer.array(), buffer.arrayOffset() + offset,
+					length);
+		}
+
+		int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+		int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+		boolean swap = buffer.order() == ByteOrder.LITTLE_ENDIAN;
+		int end = offset + length;
+
+		for (; offset + SLICES <= end; offset += SLICES) {
+			/* Read the bytes with the first one in the top of the value. */
+			long value = buffer.getLong(offset);
+
+			if (swap) {
+				value = Long.reverseBytes(value);
+			}
+			crc = t7[(int) ((crc >> 8) ^ (value >>> 56)) & 0xff]
+					^ t6[(int) (crc ^ (value >>> 48)) & 0xff]
+					^ t5[(int) (value >>> 40) & 0xff]
+					^ t4[(int) (value >>> 32) & 0xff]
+					^ t3[(int) (value >>> 24) & 0xff]
+					^ t2[(int) (value >>> 16) & 0xff]
+					^ t1[(int) (value >>> 8) & 0xff] ^ t0[(int) value & 0xff];
+		}
+		for (; offset < end; offset++) {
+			crc = ((crc << 8) & 0xffff)
+					^ t0[((crc >> 8) ^ buffer.get(offset)) & 0xff];
+		}
+		return crc;
+	}
+
+	/**
+	 * Continue a CRC16 calculation over a run of zero bytes.
+	 * 
+	 * @param crc
+	 *            The CRC value computed so far.
+	 * @param count
+	 *            Number of zero bytes.
+	 * 
+	 * @return CRC value.
+	 */
+	public static int update_zeros(int crc, int count) {
+		for (int i = 0; i < count; i++) {
+			crc = ((crc << 8) & 0xffff) ^ TABLES[0][crc >> 8];
+		}
+		return crc;
+	}
+}
@@ -0,0 +1,48 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+/**
+ * Indicates when the CRC16 of a record is verified. EAGER records are checked
+ * as they are decoded (in parallel when decoding on an executor) and those
+ * with a bad CRC are skipped. LAZY records are checked the first time
+ * ZeoData.is_crc_valid() is called, which reduce_records() and
+ * ZeoDataDecoder.verify_records() do for every record.
+ * <p>
+ * As a LAZY record is accepted before its CRC is known, decoding carries on
+ * after it rather than searching for the next record from within it. On
+ * corrupt data LAZY decoding can therefore recover records that EAGER
+ * decoding gives up on.
+ */
+public enum CrcCheck {
+	EAGER, LAZY
+}
@@ -0,0 +1,214 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Where decoding of a growing zeosleep.dat file got to. The Zeo unit only
+ * ever appends records to the file, so a decoder resuming from a checkpoint
+ * (see ZeoDataDecoder) only has to decode the bytes past it.
+ * <p>
+ * A checkpoint holds the offset just past the last record decoded along with
+ * that record's CRC and start_of_night values. Before resuming, matches()
+ * makes sure the record ending at the offset is still the same record, so a
+ * file that was replaced or truncated is decoded again from the start.
+ */
+public class DecodeCheckpoint {
+
+	/*************************************************************************
+	 * constants
+	 */
+
+	/* Version of the format written by save(). */
+	private static final int FORMAT_VERSION = 1;
+
+	/*************************************************************************
+	 * variables
+	 */
+
+	private long offset; // Offset just past the last record decoded
+	private long last_crc; // CRC16 value of the last record decoded
+	private long last_start_of_night; // Its start_of_night (or 0)
+
+	/*************************************************************************
+	 * methods
+	 */
+
+	/**
+	 * Construct a checkpoint at the start of a file.
+	 */
+	public DecodeCheckpoint() {
+	}
+
+	/**
+	 * Construct a checkpoint just past the given record.
+	 * 
+	 * @param offset
+	 *            Offset in the file just past the record.
+	 * @param record
+	 *            The last record decoded.
+	 */
+	public DecodeCheckpoint(long offset, ZeoData record) {
+		this.offset = offset;
+		last_crc = record.get_crc();
+		last_start_of_night = record.get_start_of_night_timestamp();
+	}
+
+	/**
+	 * @return the CRC16 value of the last record decoded.
+	 */
+	public long get_last_crc() {
+		return last_crc;
+	}
+
+	/**
+	 * @return the start_of_night of the last record decoded (in seconds), or
+	 *         0 if it was not set.
+	 */
+	public long get_last_start_of_night() {
+		return last_start_of_night;
+	}
+
+	/**
+	 * @return the offset in the file just past the last record decoded, which
+	 *         is where decoding resumes.
+	 */
+	public long get_offset() {
+		return offset;
+	}
+
+	/**
+	 * Read a checkpoint written by save().
+	 * 
+	 * @param file
+	 *            The file holding the checkpoint.
+	 * 
+	 * @return the checkpoint.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be read or is not a checkpoint.
+	 */
+	public static DecodeCheckpoint load(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+
+		try {
+			DecodeCheckpoint checkpoint = new DecodeCheckpoint();
+
+			if (in.readInt() != FORMAT_VERSION) {
+				throw new IOException("Unknown checkpoint format in " + file);
+			}
+			checkpoint.offset = in.readLong();
+			checkpoint.last_crc = in.readLong();
+			checkpoint.last_start_of_night = in.readLong();
+			return checkpoint;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Check that decoding of the given zeosleep.dat file can resume from this
+	 * checkpoint. That is the case if the file still holds a V22 record with
+	 * the checkpoint's CRC and start_of_night values ending at the
+	 * checkpoint's offset. A checkpoint at the start of a file matches every
+	 * file.
+	 * 
+	 * @param file
+	 *            The zeosleep.dat file.
+	 * 
+	 * @return true if decoding can resume from this checkpoint.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 */
+	public boolean matches(File file) throws IOException {
+		if (offset == 0) {
+			return true;
+		}
+		if (offset < ZeoData.V22_SIZE || file.length() < offset) {
+			return false;
+		}
+
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		byte[] record = new byte[ZeoData.V22_SIZE];
+
+		try {
+			in.seek(offset - ZeoData.V22_SIZE);
+			in.readFully(record);
+		} finally {
+			in.close();
+		}
+
+		if (!Arrays.equals(Arrays.copyOf(record, ZeoData.IDENTIFIER_SIZE),
+				ZeoData.IDENTIFIER)
+				|| record[ZeoData.IDENTIFIER_SIZE] != ZeoData.V22[0]
+				|| record[ZeoData.IDENTIFIER_SIZE + 1] != ZeoData.V22[1]) {
+			return false;
+		}
+
+		ZeoRecordView view = new ZeoRecordView(ByteBuffer.wrap(record), 0);
+
+		return view.get_crc() == last_crc
+				&& view.get_start_of_night_timestamp() == last_start_of_night;
+	}
+
+	/**
+	 * Write the checkpoint so a later run can resume from it with load().
+	 * 
+	 * @param file
+	 *            The file to write the checkpoint to.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	public void save(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+
+		try {
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(offset);
+			out.writeLong(last_crc);
+			out.writeLong(last_start_of_night);
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,67 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+/**
+ * Events counted while decoding Zeo data, see DecodeListener.
+ */
+public enum DecodeCounter {
+	/* Records skipped because their CRC did not match their contents. */
+	BAD_CRCS,
+
+	/* Bytes passed over while searching for the next record. */
+	BYTES_SKIPPED,
+
+	/* Records skipped because decoding them threw an exception. */
+	DECODE_ERRORS,
+
+	/* Headers skipped because they did not start with the identifier. */
+	INVALID_IDENTIFIERS,
+
+	/* Records labeled as naps by label_naps(). */
+	NAPS_LABELED,
+
+	/* Records decoded successfully. */
+	RECORDS_DECODED,
+
+	/* Records discarded by reduce_records() as incomplete or duplicates. */
+	RECORDS_DROPPED,
+
+	/* Searches for the next record after one that could not be decoded. */
+	RESYNCS,
+
+	/* Records cut short by the end of the data. */
+	TRUNCATED_RECORDS,
+
+	/* Records skipped because their version cannot be decoded. */
+	UNSUPPORTED_VERSIONS
+}
@@ -0,0 +1,99 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+/**
+ * Receives what happens while Zeo data is decoded: the warnings about data
+ * that had to be skipped, counts of events (see DecodeCounter) and the time
+ * spent in each phase (see DecodePhase). Implement it to feed a metrics
+ * registry or a log, or use DecodeStats to read the totals after decoding.
+ * <p>
+ * A listener is called on the thread consuming the records. When records are
+ * decoded in parallel the DECODE and CRC times reported are those of the
+ * worker threads, so they can add up to more than the time taken.
+ */
+public interface DecodeListener {
+
+	/*************************************************************************
+	 * constants
+	 */
+
+	/**
+	 * Listener that prints warnings on standard error, as the decoder always
+	 * did, and ignores counts and times.
+	 */
+	DecodeListener STANDARD_ERROR = new DecodeListener() {
+		public void count(DecodeCounter counter, long amount) {
+		}
+
+		public void time(DecodePhase phase, long nanos) {
+		}
+
+		public void warning(String message) {
+			System.err.println(message);
+		}
+	};
+
+	/*************************************************************************
+	 * methods
+	 */
+
+	/**
+	 * Called when an event is counted.
+	 * 
+	 * @param counter
+	 *            The event counted.
+	 * @param amount
+	 *            How many times it happened (or how many bytes for
+	 *            BYTES_SKIPPED).
+	 */
+	void count(DecodeCounter counter, long amount);
+
+	/**
+	 * Called with the time spent in a phase of decoding. A phase is reported
+	 * many times, once for each record or pass.
+	 * 
+	 * @param phase
+	 *            The phase timed.
+	 * @param nanos
+	 *            The time spent in nanoseconds.
+	 */
+	void time(DecodePhase phase, long nanos);
+
+	/**
+	 * Called with a warning about data that could not be decoded.
+	 * 
+	 * @param message
+	 *            The warning, as printed on standard error by STANDARD_ERROR.
+	 */
+	void warning(String message);
+}
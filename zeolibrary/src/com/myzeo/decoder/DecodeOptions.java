@@ -0,0 +1,177 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+import java.util.EnumSet;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * How Zeo data is decoded by a ZeoDataDecoder or ZeoRecordIterator: the
+ * executor records are decoded on, when their CRCs are verified (see
+ * CrcCheck), which field groups of each record are decoded (see FieldGroup)
+ * and the listener warnings, counts and times are reported to (see
+ * DecodeListener). Only the options that differ from the defaults need to be
+ * set, for example:
+ * 
+ * <pre>
+ * new ZeoDataDecoder(file, new DecodeOptions().set_check(CrcCheck.LAZY));
+ * </pre>
+ * 
+ * By default records are decoded sequentially, every record's CRC is
+ * verified as it is decoded, all field groups are decoded and warnings are
+ * printed on standard error. The options are read when a decoder or iterator
+ * is constructed, so changing them afterwards has no effect on it.
+ */
+public class DecodeOptions {
+
+	/*************************************************************************
+	 * variables
+	 */
+
+	/* Executor to decode records on, or null to decode them sequentially. */
+	private ExecutorService executor;
+
+	/* When record CRCs are verified. */
+	private CrcCheck check = CrcCheck.EAGER;
+
+	/* Field groups decoded for each record. */
+	private EnumSet<FieldGroup> fields = FieldGroup.all();
+
+	/* Receives warnings, counts and times, or null. */
+	private DecodeListener listener = DecodeListener.STANDARD_ERROR;
+
+	/*************************************************************************
+	 * methods
+	 */
+
+	/**
+	 * Construct the default options.
+	 */
+	public DecodeOptions() {
+	}
+
+	/**
+	 * Construct a copy of other options.
+	 * 
+	 * @param other
+	 *            The options to copy.
+	 */
+	public DecodeOptions(DecodeOptions other) {
+		executor = other.executor;
+		check = other.check;
+		fields = EnumSet.copyOf(other.fields);
+		listener = other.listener;
+	}
+
+	/**
+	 * @return the executor records are decoded on, or null.
+	 */
+	public ExecutorService get_executor() {
+		return executor;
+	}
+
+	/**
+	 * @return when record CRCs are verified.
+	 */
+	public CrcCheck get_check() {
+		return check;
+	}
+
+	/**
+	 * @return the field groups decoded for each record.
+	 */
+	public EnumSet<FieldGroup> get_fields() {
+		return EnumSet.copyOf(fields);
+	}
+
+	/**
+	 * @return the listener reported to, or null.
+	 */
+	public DecodeListener get_listener() {
+		return listener;
+	}
+
+	/**
+	 * Decode and CRC check records in parallel on the given executor. The
+	 * records and warnings are the same as when decoding sequentially.
+	 * 
+	 * @param executor
+	 *            The executor to decode records on, or null to decode them
+	 *            sequentially. The executor is not shut down.
+	 * 
+	 * @return these options.
+	 */
+	public DecodeOptions set_executor(ExecutorService executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * Verify record CRCs as given.
+	 * 
+	 * @param check
+	 *            When to verify the CRC of each record.
+	 * 
+	 * @return these options.
+	 */
+	public DecodeOptions set_check(CrcCheck check) {
+		this.check = check;
+		return this;
+	}
+
+	/**
+	 * Decode only the given field groups of each record.
+	 * 
+	 * @param fields
+	 *            The field groups to decode.
+	 * 
+	 * @return these options.
+	 */
+	public DecodeOptions set_fields(EnumSet<FieldGroup> fields) {
+		this.fields = EnumSet.copyOf(fields);
+		return this;
+	}
+
+	/**
+	 * Report warnings, counts and times to the given listener. A decoder
+	 * also collects them in its get_stats().
+	 * 
+	 * @param listener
+	 *            The listener to report to, or null to report nothing.
+	 * 
+	 * @return these options.
+	 */
+	public DecodeOptions set_listener(DecodeListener listener) {
+		this.listener = listener;
+		return this;
+	}
+}
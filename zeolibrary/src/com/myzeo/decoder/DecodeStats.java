@@ -0,0 +1,169 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+/**
+ * Totals of the counts and times reported while decoding Zeo data (see
+ * DecodeListener), readable once decoding is done. Everything reported is
+ * passed on to another listener as well, STANDARD_ERROR by default so
+ * warnings are still printed. The totals are not safe for use by several
+ * threads at once.
+ */
+public class DecodeStats implements DecodeListener {
+
+	/*************************************************************************
+	 * variables
+	 */
+
+	/* The listener everything is passed on to, or null. */
+	private DecodeListener listener;
+
+	/* Totals indexed by DecodeCounter and DecodePhase ordinals. */
+	private long[] counts = new long[DecodeCounter.values().length];
+	private long[] nanos = new long[DecodePhase.values().length];
+
+	/* Number of warnings reported. */
+	private long warnings;
+
+	/*************************************************************************
+	 * methods
+	 */
+
+	/**
+	 * Construct statistics that pass warnings on to standard error.
+	 */
+	public DecodeStats() {
+		this(STANDARD_ERROR);
+	}
+
+	/**
+	 * Construct statistics that pass everything on to the given listener.
+	 * 
+	 * @param listener
+	 *            The listener to pass everything on to, or null for none.
+	 */
+	public DecodeStats(DecodeListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Add the totals of other statistics (such as those of a decoder being
+	 * merged) to these. Nothing is passed on to the listener.
+	 * 
+	 * @param other
+	 *            The statistics to add.
+	 */
+	public void add(DecodeStats other) {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+		for (int i = 0; i < nanos.length; i++) {
+			nanos[i] += other.nanos[i];
+		}
+		warnings += other.warnings;
+	}
+
+	public void count(DecodeCounter counter, long amount) {
+		counts[counter.ordinal()] += amount;
+		if (listener != null) {
+			listener.count(counter, amount);
+		}
+	}
+
+	/**
+	 * @param counter
+	 *            The event to return the count of.
+	 * 
+	 * @return the number of times the event was reported.
+	 */
+	public long get_count(DecodeCounter counter) {
+		return counts[counter.ordinal()];
+	}
+
+	/**
+	 * @return the listener everything is passed on to, or null.
+	 */
+	public DecodeListener get_listener() {
+		return listener;
+	}
+
+	/**
+	 * @param phase
+	 *            The phase to return the time of.
+	 * 
+	 * @return the total time spent in the phase in nanoseconds.
+	 */
+	public long get_nanos(DecodePhase phase) {
+		return nanos[phase.ordinal()];
+	}
+
+	/**
+	 * @return the number of warnings reported.
+	 */
+	public long get_warnings() {
+		return warnings;
+	}
+
+	public void time(DecodePhase phase, long nanos) {
+		this.nanos[phase.ordinal()] += nanos;
+		if (listener != null) {
+			listener.time(phase, nanos);
+		}
+	}
+
+	/**
+	 * Generate a one line summary of the statistics, for logging.
+	 * 
+	 * @return every count followed by every time in milliseconds.
+	 */
+	public String toString() {
+		StringBuilder txt = new StringBuilder();
+
+		for (DecodeCounter counter : DecodeCounter.values()) {
+			txt.append(counter.name().toLowerCase()).append('=')
+					.append(counts[counter.ordinal()]).append(' ');
+		}
+		txt.append("warnings=").append(warnings);
+		for (DecodePhase phase : DecodePhase.values()) {
+			txt.append(' ').append(phase.name().toLowerCase()).append('=')
+					.append(String.format("%.3fms", nanos[phase.ordinal()] / 1e6));
+		}
+		return txt.toString();
+	}
+
+	public void warning(String message) {
+		warnings++;
+		if (listener != null) {
+			listener.warning(message);
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+/**
+ * Builds display hypnograms (one value per HYP_DISPLAY_STEP) from base
+ * hypnograms (one value per HYP_BASE_STEP) the way the Zeo unit does, see
+ * downsample(), and finds the last sleep in them for the rise time.
+ * <p>
+ * The stages in each bin are tallied in the bytes of a single long rather
+ * than in arrays or SleepStage values, so nothing is allocated while a
+ * hypnogram is built. Values that are not SleepStage ordinals throw
+ * ArrayIndexOutOfBoundsException, as SleepStage.convert() does.
+ */
+public class DisplayHypnogram {
+
+	/*************************************************************************
+	 * constants
+	 */
+
+	/* Tally byte each stage value is counted in: DEEP_2 counts as DEEP. */
+	private static final byte[] TALLIED_AS = { 0, 1, 2, 3, 4, 5, 4 };
+
+	/* True for the stage values that are sleep (see SleepStage.is_sleep()). */
+	private static final boolean[] IS_SLEEP = { false, false, true, true,
+			true, false, true };
+
+	/*************************************************************************
+	 * methods
+	 */
+
+	/**
+	 * Determine display hypnogram bin value from a tally of sleep stage
+	 * values.
+	 * 
+	 * The value is typically based on the "mode" of a number of sleep stage
+	 * values. Mode is defined as the most common value from a set of values.
+	 * However, the result is undefined only if all the input values are
+	 * undefined. If a single Wake value is present in the input, it overrides
+	 * the mode and the output is Wake.
+	 * 
+	 * In determining the "mode", if more than one value is the most common, the
+	 * first one is taken, in this order: Wake, REM, Light, Deep.
+	 * 
+	 * @param tally
+	 *            Count of each stage value in the byte of the tally given by
+	 *            TALLIED_AS.
+	 * @param num_values
+	 *            How many values were tallied.
+	 * 
+	 * @return the SleepStage ordinal for the display hypnogram bin.
+	 */
+	private static int bin_value(long tally, int num_values) {
+		int result;
+		int max_count;
+
+		/* If all the values are undefined then the result is undefined. */
+		if ((tally & 0xff) == num_values) {
+			return SleepStage.UNDEFINED.ordinal();
+		}
+
+		/* If any of the values is Wake, the the result is Wake. */
+		if (((tally >> 8) & 0xff) != 0) {
+			return SleepStage.WAKE.ordinal();
+		}
+
+		/* Find first max count, starting by assuming the result is REM. */
+		result = SleepStage.REM.ordinal();
+		max_count = (int) ((tally >> 16) & 0xff);
+		for (int i = SleepStage.LIGHT.ordinal(); i <= SleepStage.UNUSED
+				.ordinal(); i++) {
+			int count = (int) ((tally >> (8 * i)) & 0xff);
+
+			if (max_count < count) {
+				max_count = count;
+				result = i;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Fill in a display hypnogram from an unpacked base hypnogram. Only bins
+	 * for which all HYP_BASE_PER_DISPLAY base values are filled in are
+	 * computed, ignoring the remaining base values.
+	 * 
+	 * @param base
+	 *            The base hypnogram, one SleepStage ordinal per byte.
+	 * @param base_count
+	 *            Number of values in the base hypnogram.
+	 * @param display
+	 *            Array to store the display hypnogram in.
+	 * 
+	 * @return the number of display hypnogram bins filled in.
+	 */
+	public static int downsample(byte[] base, int base_count, byte[] display) {
+		int n_display = base_count / ZeoData.HYP_BASE_PER_DISPLAY;
+		int i_base = 0;
+
+		for (int i_display = 0; i_display < n_display; i_display++) {
+			long tally = 0;
+
+			for (int i = 0; i < ZeoData.HYP_BASE_PER_DISPLAY; i++) {
+				tally += 1L << (8 * TALLIED_AS[base[i_base++]]);
+			}
+			display[i_display] = (byte) bin_value(tally,
+					ZeoData.HYP_BASE_PER_DISPLAY);
+		}
+		return n_display;
+	}
+
+	/**
+	 * Fill in a display hypnogram from a packed base hypnogram, as above,
+	 * working on the packed bytes without unpacking them.
+	 * 
+	 * @param base
+	 *            The packed base hypnogram.
+	 * @param base_count
+	 *            Number of values in the base hypnogram.
+	 * @param display
+	 *            Array to store the display hypnogram in.
+	 * 
+	 * @return the number of display hypnogram bins filled in.
+	 */
+	public static int downsample(PackedHypnogram base, int base_count,
+			byte[] display) {
+		byte[] packed = base.get_packed();
+		int n_display = base_count / ZeoData.HYP_BASE_PER_DISPLAY;
+		int i_packed = 0;
+
+		/* Each bin is an even number of values so starts on a packed byte. */
+		for (int i_display = 0; i_display < n_display; i_display++) {
+			long tally = 0;
+
+			for (int i = 0; i < ZeoData.HYP_BASE_PER_DISPLAY; i += 2) {
+				int pair = packed[i_packed++] & 0xff;
+
+				tally += 1L << (8 * TALLIED_AS[pair & 0xf]);
+				tally += 1L << (8 * TALLIED_AS[pair >> 4]);
+			}
+			display[i_display] = (byte) bin_value(tally,
+					ZeoData.HYP_BASE_PER_DISPLAY);
+		}
+		return n_display;
+	}
+
+	/**
+	 * Find the last bin of sleep in a display hypnogram.
+	 * 
+	 * @param display
+	 *            The display hypnogram, one SleepStage ordinal per byte.
+	 * @param display_count
+	 *            Number of bins in the display hypnogram.
+	 * 
+	 * @return the index of the last bin of sleep, or -1 if there is no sleep.
+	 */
+	public static int last_sleep_index(byte[] display, int display_count) {
+		for (int index = display_count - 1; index >= 0; index--) {
+			if (IS_SLEEP[display[index]]) {
+				return index;
+			}
+		}
+		return -1;
+	}
+}
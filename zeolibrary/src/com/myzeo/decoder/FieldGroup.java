@@ -0,0 +1,76 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+import java.util.EnumSet;
+
+/**
+ * Groups of ZeoData fields that can be decoded independently. A decoder given
+ * a set of groups skips the regions of each record holding the other groups
+ * and never allocates their arrays; the getters for fields of a group that
+ * was not decoded throw IllegalStateException.
+ * <p>
+ * The current time, CRC, packed device settings (including write_reason and
+ * wdt_reset), start and end of night, base hypnogram count and startup RTC
+ * entry are always decoded, as the decoder needs them to reduce records and
+ * assign sleep dates.
+ */
+public enum FieldGroup {
+	/* Alarm ring, snooze, off and change times, and the alarm set time. */
+	ALARM,
+
+	/*
+	 * Airplane mode times, assert information, factory, sensor life and
+	 * sleep statistic resets, headband id, hardware and software versions and
+	 * RTC changes.
+	 */
+	DEVICE_HISTORY,
+
+	/* Headband impedance, packet loss, signal strength and docking status. */
+	HEADBAND,
+
+	/*
+	 * Base and display hypnograms, the hypnogram start time and forced stage,
+	 * and the rise time.
+	 */
+	HYPNOGRAM,
+
+	/* Sleep summary values: ZQ, totals, averages, bests and sleep rating. */
+	SLEEP_SUMMARY;
+
+	/**
+	 * @return a new set of all the field groups.
+	 */
+	public static EnumSet<FieldGroup> all() {
+		return EnumSet.allOf(FieldGroup.class);
+	}
+}
@@ -0,0 +1,64 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+/**
+ * The headband telemetry kept by the Zeo unit for each 10 minute period of
+ * the last 24 hours, see HeadbandTelemetry.
+ */
+public enum HeadbandMetric {
+	/* Average headband impedance; rising impedance means worn sensors. */
+	IMPEDANCE(true),
+
+	/* Packets lost divided by 5, capped at 255. */
+	PACKETS(true),
+
+	/* Received signal strength (signed). */
+	RSSI(false),
+
+	/* Docking status, the HeadbandStatus ordinal. */
+	STATUS(false);
+
+	/* True if a higher value means a worse signal. */
+	private boolean higher_is_worse;
+
+	private HeadbandMetric(boolean higher_is_worse) {
+		this.higher_is_worse = higher_is_worse;
+	}
+
+	/**
+	 * @return true if a higher value of the metric means a worse signal.
+	 */
+	public boolean is_higher_worse() {
+		return higher_is_worse;
+	}
+}
@@ -0,0 +1,476 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Headband telemetry of many records held column by column: one primitive
+ * array per metric (see HeadbandMetric) laid out record by record, SAMPLES
+ * values per record, alongside columns of each record's current time and
+ * start of night. Rows are kept in order of their current time, so the rows
+ * written in a range of time are found with a binary search.
+ * <p>
+ * Add the records of distinct nights (as reduce_records() leaves them) to
+ * follow the headband from night to night. Only the HEADBAND field group is
+ * needed, so decode with the fields of DecodeOptions set to
+ * EnumSet.of(FieldGroup.HEADBAND) or add records straight from a
+ * ZeoRecordView to avoid decoding the rest of each record.
+ * <p>
+ * Per night minimum, mean and maximum values can be limited to the periods
+ * the headband was in a given docking state; impedance, packet loss and
+ * signal strength say most about the headband when it was off the base
+ * (HeadbandStatus.OFF_BASE), ie. being worn.
+ */
+public class HeadbandTelemetry {
+
+	/*************************************************************************
+	 * constants
+	 */
+
+	/** Number of values of each metric per record (24 hours). */
+	public static final int SAMPLES = 144;
+
+	/** Number of seconds each value covers. */
+	public static final int SAMPLE_SECONDS = 10 * ZeoData.SECONDS_PER_MINUTE;
+
+	/* Number of packed status bytes per record (four values per byte). */
+	private static final int STATUS_BYTES = SAMPLES / 4;
+
+	/*************************************************************************
+	 * variables
+	 */
+
+	/* Number of rows held. */
+	private int rows;
+
+	/* Columns with a value per row. */
+	private long[] current_times = new long[16];
+	private long[] start_of_nights = new long[16];
+
+	/* Columns with SAMPLES values per row. */
+	private short[] impedance = new short[16 * SAMPLES];
+	private short[] packets = new short[16 * SAMPLES];
+	private byte[] rssi = new byte[16 * SAMPLES];
+	private byte[] status = new byte[16 * SAMPLES];
+
+	/* Space for the values copied out of a ZeoRecordView. */
+	private short[] view_impedance;
+	private short[] view_packets;
+	private byte[] view_rssi;
+	private short[] view_status;
+
+	/*************************************************************************
+	 * methods
+	 */
+
+	/**
+	 * Add the telemetry of a decoded record.
+	 * 
+	 * @param record
+	 *            A record decoded with the HEADBAND field group.
+	 */
+	public void add(ZeoData record) {
+		add(record.get_current_timestamp(), record
+				.get_start_of_night_timestamp(), record
+				.get_headband_impedance(), record.get_headband_packets(),
+				record.get_headband_rssi(), record.get_headband_status());
+	}
+
+	/**
+	 * Add the telemetry of a record in place in a buffer, without decoding
+	 * the rest of the record.
+	 * 
+	 * @param view
+	 *            A view over a V22 record.
+	 */
+	public void add(ZeoRecordView view) {
+		if (view_impedance == null) {
+			view_impedance = new short[SAMPLES];
+			view_packets = new short[SAMPLES];
+			view_rssi = new byte[SAMPLES];
+			view_status = new short[STATUS_BYTES];
+		}
+		add(view.get_current_timestamp(), view.get_start_of_night_timestamp(),
+				view.get_headband_impedance(view_impedance), view
+						.get_headband_packets(view_packets), view
+						.get_headband_rssi(view_rssi), view
+						.get_headband_status(view_status));
+	}
+
+	/**
+	 * Add a row, keeping the rows in order of their current time.
+	 */
+	private void add(long current_time, long start_of_night,
+			short[] impedance_values, short[] packets_values,
+			byte[] rssi_values, short[] status_values) {
+		int row = rows;
+
+		if (rows == current_times.length) {
+			grow();
+		}
+
+		/* Records are normally in order, so this rarely moves anything. */
+		while (row > 0 && current_times[row - 1] > current_time) {
+			row--;
+		}
+		if (row < rows) {
+			move_rows(row, row + 1, rows - row);
+		}
+
+		current_times[row] = current_time;
+		start_of_nights[row] = start_of_night;
+		System.arraycopy(impedance_values, 0, impedance, row * SAMPLES,
+				SAMPLES);
+		System.arraycopy(packets_values, 0, packets, row * SAMPLES, SAMPLES);
+		System.arraycopy(rssi_values, 0, rssi, row * SAMPLES, SAMPLES);
+		for (int i = 0; i < STATUS_BYTES; i++) {
+			/*
+			 * Unpack the four values packed into each byte of status data,
+			 * the earliest in the least significant bits.
+			 */
+			int packed = status_values[i];
+			int sample = row * SAMPLES + 4 * i;
+
+			status[sample] = (byte) (packed & 0x3);
+			status[sample + 1] = (byte) ((packed >> 2) & 0x3);
+			status[sample + 2] = (byte) ((packed >> 4) & 0x3);
+			status[sample + 3] = (byte) ((packed >> 6) & 0x3);
+		}
+		rows++;
+	}
+
+	/**
+	 * Returns an iterator that adds the telemetry of the given records as
+	 * they are pulled through it, so the store is built while decoding (see
+	 * ZeoDataDecoder.reduce_records(Iterator)).
+	 * 
+	 * @param records
+	 *            The source of records, decoded with the HEADBAND field
+	 *            group.
+	 * 
+	 * @return an iterator over the same records.
+	 */
+	public Iterator<ZeoData> collect(final Iterator<ZeoData> records) {
+		return new Iterator<ZeoData>() {
+			public boolean hasNext() {
+				return records.hasNext();
+			}
+
+			public ZeoData next() {
+				ZeoData record = records.next();
+
+				add(record);
+				return record;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Find the first row whose values are worse than those of the first
+	 * window rows by more than the given amount, comparing the mean of the
+	 * per night means (see get_mean()) over the window rows up to each row.
+	 * The amount is in the metric's own units, as RSSI values hover around 0
+	 * so a relative change would mean little.
+	 * Nights without any values in the given docking state are passed over.
+	 * 
+	 * @param metric
+	 *            The metric to follow (whether higher or lower is worse is
+	 *            given by HeadbandMetric.is_higher_worse()).
+	 * @param state
+	 *            The docking state to take values from, or null for all.
+	 * @param window
+	 *            Number of nights averaged (at least 1), both for the
+	 *            baseline and for each later comparison.
+	 * @param amount
+	 *            How much worse than the baseline the mean has to be.
+	 * 
+	 * @return the row at which the metric has degraded, or -1 if it has not.
+	 */
+	public int find_degradation(HeadbandMetric metric, HeadbandStatus state,
+			int window, double amount) {
+		double[] means = new double[window];
+		double baseline = 0;
+		double sum = 0;
+		int nights = 0;
+
+		for (int row = 0; row < rows; row++) {
+			double mean = get_mean(metric, row, state);
+
+			if (Double.isNaN(mean)) {
+				continue;
+			}
+
+			/* Keep a running sum over the last window nights. */
+			sum += mean - means[nights % window];
+			means[nights % window] = mean;
+			nights++;
+
+			if (nights == window) {
+				baseline = sum / window;
+			} else if (nights > window) {
+				double change = sum / window - baseline;
+
+				if (!metric.is_higher_worse()) {
+					change = -change;
+				}
+				if (change > amount) {
+					return row;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Find the first row whose current time is at or after the given time.
+	 * The rows from find_row(from) up to find_row(to) are those written in
+	 * the range of time [from, to).
+	 * 
+	 * @param unix_timestamp
+	 *            The time to look for.
+	 * 
+	 * @return the index of the row, or size() if there is none.
+	 */
+	public int find_row(long unix_timestamp) {
+		int low = 0;
+		int high = rows;
+
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+
+			if (current_times[middle] < unix_timestamp) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns a single value.
+	 * 
+	 * @param metric
+	 *            The metric to return.
+	 * @param row
+	 *            Index of the row.
+	 * @param sample
+	 *            Index of the 10 minute period in the row (0 to SAMPLES - 1).
+	 * 
+	 * @return the value.
+	 */
+	public int get(HeadbandMetric metric, int row, int sample) {
+		return value(metric, row * SAMPLES + sample);
+	}
+
+	/**
+	 * Returns the record's current time of a row.
+	 * 
+	 * @param row
+	 *            Index of the row.
+	 * 
+	 * @return the current time (as a UNIX timestamp).
+	 */
+	public long get_current_timestamp(int row) {
+		return current_times[row];
+	}
+
+	/**
+	 * Returns the largest value of a row.
+	 * 
+	 * @param metric
+	 *            The metric to return.
+	 * @param row
+	 *            Index of the row.
+	 * @param state
+	 *            The docking state to take values from, or null for all.
+	 * 
+	 * @return the largest value, or Integer.MIN_VALUE if there is none in the
+	 *         docking state.
+	 */
+	public int get_max(HeadbandMetric metric, int row, HeadbandStatus state) {
+		int max = Integer.MIN_VALUE;
+
+		for (int i = row * SAMPLES; i < (row + 1) * SAMPLES; i++) {
+			if (state == null || status[i] == state.ordinal()) {
+				max = Math.max(max, value(metric, i));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the mean value of a row.
+	 * 
+	 * @param metric
+	 *            The metric to return.
+	 * @param row
+	 *            Index of the row.
+	 * @param state
+	 *            The docking state to take values from, or null for all.
+	 * 
+	 * @return the mean value, or NaN if there is none in the docking state.
+	 */
+	public double get_mean(HeadbandMetric metric, int row,
+			HeadbandStatus state) {
+		long sum = 0;
+		int count = 0;
+
+		for (int i = row * SAMPLES; i < (row + 1) * SAMPLES; i++) {
+			if (state == null || status[i] == state.ordinal()) {
+				sum += value(metric, i);
+				count++;
+			}
+		}
+		return count == 0 ? Double.NaN : (double) sum / count;
+	}
+
+	/**
+	 * Returns the smallest value of a row.
+	 * 
+	 * @param metric
+	 *            The metric to return.
+	 * @param row
+	 *            Index of the row.
+	 * @param state
+	 *            The docking state to take values from, or null for all.
+	 * 
+	 * @return the smallest value, or Integer.MAX_VALUE if there is none in
+	 *         the docking state.
+	 */
+	public int get_min(HeadbandMetric metric, int row, HeadbandStatus state) {
+		int min = Integer.MAX_VALUE;
+
+		for (int i = row * SAMPLES; i < (row + 1) * SAMPLES; i++) {
+			if (state == null || status[i] == state.ordinal()) {
+				min = Math.min(min, value(metric, i));
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Returns the start of night of a row.
+	 * 
+	 * @param row
+	 *            Index of the row.
+	 * 
+	 * @return the start of night (as a UNIX timestamp), or 0 if not set.
+	 */
+	public long get_start_of_night_timestamp(int row) {
+		return start_of_nights[row];
+	}
+
+	/**
+	 * Copy the values of a range of rows into the given array, SAMPLES
+	 * values per row.
+	 * 
+	 * @param metric
+	 *            The metric to copy.
+	 * @param from_row
+	 *            Index of the first row.
+	 * @param to_row
+	 *            Index just past the last row.
+	 * @param values
+	 *            Array of at least (to_row - from_row) * SAMPLES entries.
+	 * 
+	 * @return the given array.
+	 */
+	public int[] get_values(HeadbandMetric metric, int from_row, int to_row,
+			int[] values) {
+		int first = from_row * SAMPLES;
+
+		for (int i = first; i < to_row * SAMPLES; i++) {
+			values[i - first] = value(metric, i);
+		}
+		return values;
+	}
+
+	/**
+	 * Double the space for rows.
+	 */
+	private void grow() {
+		int capacity = 2 * current_times.length;
+
+		current_times = Arrays.copyOf(current_times, capacity);
+		start_of_nights = Arrays.copyOf(start_of_nights, capacity);
+		impedance = Arrays.copyOf(impedance, capacity * SAMPLES);
+		packets = Arrays.copyOf(packets, capacity * SAMPLES);
+		rssi = Arrays.copyOf(rssi, capacity * SAMPLES);
+		status = Arrays.copyOf(status, capacity * SAMPLES);
+	}
+
+	/**
+	 * Move rows within the columns.
+	 */
+	private void move_rows(int from, int to, int count) {
+		System.arraycopy(current_times, from, current_times, to, count);
+		System.arraycopy(start_of_nights, from, start_of_nights, to, count);
+		System.arraycopy(impedance, from * SAMPLES, impedance, to * SAMPLES,
+				count * SAMPLES);
+		System.arraycopy(packets, from * SAMPLES, packets, to * SAMPLES,
+				count * SAMPLES);
+		System.arraycopy(rssi, from * SAMPLES, rssi, to * SAMPLES, count
+				* SAMPLES);
+		System.arraycopy(status, from * SAMPLES, status, to * SAMPLES, count
+				* SAMPLES);
+	}
+
+	/**
+	 * @return the number of rows (records) held.
+	 */
+	public int size() {
+		return rows;
+	}
+
+	/**
+	 * Returns the value at an index of a metric's column.
+	 */
+	private int value(HeadbandMetric metric, int index) {
+		switch (metric) {
+		case IMPEDANCE:
+			return impedance[index];
+		case PACKETS:
+			return packets[index];
+		case RSSI:
+			return rssi[index];
+		default:
+			return status[index];
+		}
+	}
+}
@@ -0,0 +1,185 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+/**
+ * A base hypnogram kept the way the Zeo unit stores it: two 4 bit sleep stage
+ * values packed into each byte, the first value in the low nibble. This takes
+ * half the memory of one byte per value. Values are unpacked only when they
+ * are read, a byte at a time through a 256 entry lookup table, either one at
+ * a time with get() or in bulk into a caller's array with unpack().
+ * <p>
+ * The stage values are those of SleepStage (0 to 6), though any 4 bit value
+ * is kept as it was stored.
+ */
+public class PackedHypnogram {
+
+	/*************************************************************************
+	 * constants
+	 */
+
+	/*
+	 * The two values packed into each possible byte, the first in the low 8
+	 * bits and the second in the high 8 bits.
+	 */
+	private static final char[] UNPACK = new char[256];
+
+	static {
+		for (int i = 0; i < UNPACK.length; i++) {
+			UNPACK[i] = (char) ((i & 0xf) | ((i >> 4) << 8));
+		}
+	}
+
+	/*************************************************************************
+	 * variables
+	 */
+
+	/* The packed values, two per byte. */
+	private byte[] packed;
+
+	/*************************************************************************
+	 * methods
+	 */
+
+	/**
+	 * Construct a hypnogram over the given packed values. The array is kept,
+	 * not copied.
+	 * 
+	 * @param packed
+	 *            The packed values, two per byte, the first in the low
+	 *            nibble.
+	 */
+	public PackedHypnogram(byte[] packed) {
+		this.packed = packed;
+	}
+
+	/**
+	 * Count how many times each stage value occurs in the first values of the
+	 * hypnogram, working on the packed bytes.
+	 * 
+	 * @param count
+	 *            Number of values to count, at most length().
+	 * @param counts
+	 *            Array of at least 16 entries, indexed by stage value, that
+	 *            the counts are added to.
+	 * 
+	 * @return the given array.
+	 */
+	public int[] count_stages(int count, int[] counts) {
+		int bytes = count / 2;
+
+		for (int i = 0; i < bytes; i++) {
+			char pair = UNPACK[packed[i] & 0xff];
+
+			counts[pair & 0xff]++;
+			counts[pair >> 8]++;
+		}
+		if ((count & 1) != 0) {
+			counts[packed[bytes] & 0xf]++;
+		}
+		return counts;
+	}
+
+	/**
+	 * Returns a single value of the hypnogram.
+	 * 
+	 * @param index
+	 *            Index of the value, less than length().
+	 * 
+	 * @return the stage value.
+	 */
+	public byte get(int index) {
+		char pair = UNPACK[packed[index >> 1] & 0xff];
+
+		return (byte) ((index & 1) == 0 ? pair & 0xff : pair >> 8);
+	}
+
+	/**
+	 * Returns the packed values, two per byte, as stored in the record. The
+	 * array is not copied so it must not be modified.
+	 * 
+	 * @return the packed values.
+	 */
+	public byte[] get_packed() {
+		return packed;
+	}
+
+	/**
+	 * @return the number of values in the hypnogram, which is twice the
+	 *         number of packed bytes.
+	 */
+	public int length() {
+		return 2 * packed.length;
+	}
+
+	/**
+	 * Unpack all the values of the hypnogram into a new array.
+	 * 
+	 * @return an array of length() stage values.
+	 */
+	public byte[] unpack() {
+		return unpack(new byte[length()], 0, length());
+	}
+
+	/**
+	 * Unpack values of the hypnogram into the given array, one value per
+	 * byte.
+	 * 
+	 * @param hypnogram
+	 *            Array to store the values in.
+	 * @param from
+	 *            Index of the first value to unpack.
+	 * @param count
+	 *            Number of values to unpack, at most length() - from.
+	 * 
+	 * @return the given array, with the values stored from index 0.
+	 */
+	public byte[] unpack(byte[] hypnogram, int from, int count) {
+		int i = 0;
+		int j = from >> 1;
+
+		/* Start with the high nibble when from is odd. */
+		if ((from & 1) != 0 && count > 0) {
+			hypnogram[i++] = (byte) ((packed[j++] & 0xff) >> 4);
+		}
+		for (; i + 1 < count; i += 2, j++) {
+			char pair = UNPACK[packed[j] & 0xff];
+
+			hypnogram[i] = (byte) pair;
+			hypnogram[i + 1] = (byte) (pair >> 8);
+		}
+		if (i < count) {
+			hypnogram[i] = (byte) (packed[j] & 0xf);
+		}
+		return hypnogram;
+	}
+}
@@ -38,8 +38,11 @@ package src.com.myzeo.decoder;
 public enum SleepStage {
 	UNDEFINED, WAKE, REM, LIGHT, DEEP, UNUSED, DEEP_2;
 
+	/* The values, kept since values() returns a new copy on every call. */
+	private static final SleepStage[] VALUES = values();
+
 	public static SleepStage convert(int i) {
-		return values()[i];
+		return VALUES[i];
 	}
 
 	public boolean is_sleep() {
@@ -31,7 +31,7 @@ THE POSSIBILITY OF SUCH DAMAGE.
 ------------------------------------------------------------------------------*/
 package src.com.myzeo.decoder;
 
-import java.io.PrintWriter;
+import java.io.IOException;
 import java.io.StringWriter;
 import java.util.Calendar;
 
@@ -44,9 +44,7 @@ import java.util.Calendar;
  * along with the new time value.
  */
 public class TimeChange {
-	private Calendar change_time; /* Time when value changed */
 	private long change_timestamp; /* Timestamp when value changed */
-	private Calendar value; /* New value time was set to */
 	private long value_timestamp; /* Timestamp time was set to */
 
 	/**
@@ -62,9 +60,6 @@ public class TimeChange {
 	public TimeChange(long change_parm, long value_parm) {
 		change_timestamp = change_parm;
 		value_timestamp = value_parm;
-
-		change_time = ZeoData.timestamp_to_calendar(change_timestamp);
-		value = ZeoData.timestamp_to_calendar(value_timestamp);
 	}
 
 	/**
@@ -82,11 +77,7 @@ public class TimeChange {
 	 * @return the time for when value was changed (as a Calendar), or null.
 	 */
 	public Calendar getTimeAsCalendar() {
-		if (change_time == null) {
-			return null;
-		} else {
-			return (Calendar) change_time.clone();
-		}
+		return ZeoData.timestamp_to_calendar(change_timestamp);
 	}
 
 	/**
@@ -104,11 +95,7 @@ public class TimeChange {
 	 * @return the value time was changed to (as a Calendar), or null.
 	 */
 	public Calendar getValueAsCalendar() {
-		if (value == null) {
-			return null;
-		} else {
-			return (Calendar) value.clone();
-		}
+		return ZeoData.timestamp_to_calendar(value_timestamp);
 	}
 
 	/**
@@ -117,8 +104,16 @@ public class TimeChange {
 	 * @return a string representation of the time change.
 	 */
 	public String toString() {
-		return "value: " + ZeoData.calendar_to_human_string(value)
-				+ " changed: " + ZeoData.calendar_to_human_string(change_time);
+		StringWriter txt = new StringWriter();
+
+		try {
+			new ZeoReportWriter(txt).time_change(change_timestamp,
+					value_timestamp);
+		} catch (IOException e) {
+			/* A StringWriter never throws. */
+			throw new IllegalStateException(e);
+		}
+		return txt.toString();
 	}
 
 	/**
@@ -128,16 +123,14 @@ public class TimeChange {
 	 */
 	public String toXML() {
 		StringWriter txt = new StringWriter();
-		PrintWriter out = new PrintWriter(txt);
-
-		out.println("<change_time>");
-		out.println("<new_value>");
-		out.write(ZeoData.calendar_to_xml(value));
-		out.println("</new_value>");
-		out.println("<time_changed>");
-		out.write(ZeoData.calendar_to_xml(change_time));
-		out.println("</time_changed>");
-		out.println("</change_time>");
+
+		try {
+			new ZeoXmlWriter(txt).time_change(change_timestamp,
+					value_timestamp);
+		} catch (IOException e) {
+			/* A StringWriter never throws. */
+			throw new IllegalStateException(e);
+		}
 		return txt.toString();
 	}
 }
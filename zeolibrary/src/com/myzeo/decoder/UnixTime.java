@@ -0,0 +1,119 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+/**
+ * Calendar arithmetic on UNIX timestamps for the writers that format many
+ * times, so they need not create a Calendar for each one. All times are UTC,
+ * as the Zeo unit keeps them, so every day is ZeoData.SECONDS_PER_DAY long.
+ */
+class UnixTime {
+
+	/*************************************************************************
+	 * constants
+	 */
+
+	/* Indexes of the values filled in by fields(). */
+	static final int YEAR = 0;
+	static final int MONTH = 1;
+	static final int DAY = 2;
+	static final int HOUR = 3;
+	static final int MINUTE = 4;
+	static final int SECOND = 5;
+
+	/* Number of values filled in by fields(). */
+	static final int FIELDS = 6;
+
+	/*************************************************************************
+	 * methods
+	 */
+
+	/**
+	 * Break a UNIX timestamp down into the UTC year, month (1 to 12), day of
+	 * month, hour, minute and second a GregorianCalendar set to it would
+	 * report. The Julian calendar changeover is ignored as 32 bit timestamps
+	 * cannot reach back to it.
+	 * 
+	 * @param unix_timestamp
+	 *            A UNIX timestamp which is seconds since the epoch (ie.
+	 *            January 1st 1970 UTC).
+	 * @param fields
+	 *            Array of at least FIELDS values to fill in, indexed by YEAR,
+	 *            MONTH, DAY, HOUR, MINUTE and SECOND.
+	 */
+	static void fields(long unix_timestamp, long[] fields) {
+		long days = floor_div(unix_timestamp, ZeoData.SECONDS_PER_DAY);
+		long seconds = unix_timestamp - days * ZeoData.SECONDS_PER_DAY;
+
+		/*
+		 * Convert the day count to a proleptic Gregorian date, counting in 400
+		 * year eras that start on March 1st so leap days come last.
+		 */
+		days += 719468;
+		long era = floor_div(days, 146097);
+		long day_of_era = days - era * 146097;
+		long year_of_era = (day_of_era - day_of_era / 1460 + day_of_era / 36524
+				- day_of_era / 146096) / 365;
+		long day_of_year = day_of_era
+				- (365 * year_of_era + year_of_era / 4 - year_of_era / 100);
+		long month_index = (5 * day_of_year + 2) / 153;
+		long month = month_index < 10 ? month_index + 3 : month_index - 9;
+
+		fields[YEAR] = year_of_era + era * 400 + (month <= 2 ? 1 : 0);
+		fields[MONTH] = month;
+		fields[DAY] = day_of_year - (153 * month_index + 2) / 5 + 1;
+		fields[HOUR] = seconds / ZeoData.SECONDS_PER_HOUR;
+		fields[MINUTE] = seconds / ZeoData.SECONDS_PER_MINUTE
+				% ZeoData.MINUTES_PER_HOUR;
+		fields[SECOND] = seconds % ZeoData.SECONDS_PER_MINUTE;
+	}
+
+	/**
+	 * Divide rounding towards negative infinity, so times before the epoch
+	 * fall on the right day.
+	 * 
+	 * @param value
+	 *            The value to divide.
+	 * @param divisor
+	 *            The value to divide by.
+	 * 
+	 * @return the quotient rounded down.
+	 */
+	private static long floor_div(long value, long divisor) {
+		long quotient = value / divisor;
+
+		if ((value % divisor != 0) && ((value < 0) != (divisor < 0))) {
+			quotient--;
+		}
+		return quotient;
+	}
+}
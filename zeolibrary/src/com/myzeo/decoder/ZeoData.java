@@ -31,11 +31,12 @@ THE POSSIBILITY OF SUCH DAMAGE.
 ------------------------------------------------------------------------------*/
 package src.com.myzeo.decoder;
 
-import java.io.PrintWriter;
+import java.io.IOException;
 import java.io.StringWriter;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Calendar;
+import java.util.EnumSet;
 import java.util.GregorianCalendar;
 import java.util.TimeZone;
 
@@ -74,6 +75,14 @@ public class ZeoData implements Comparable<ZeoData> {
 
 	public static final int HEADER_SIZE = IDENTIFIER_SIZE + VERSION_SIZE;
 
+	/**
+	 * The record's CRC16 value is stored as a 32 bit value following the
+	 * header and the 32 bit time the record was written. The CRC is computed
+	 * over the complete record with these bytes taken as zero.
+	 */
+	public static final int CRC_OFFSET = HEADER_SIZE + 4;
+	public static final int CRC_SIZE = 4;
+
 	/**
 	 * The version value is enumerated here. The value is a little endian
 	 * number.
@@ -194,6 +203,14 @@ public class ZeoData implements Comparable<ZeoData> {
 
 	public static final int HYP_DISPLAY_LENGTH = (HYP_SECONDS_MAX / HYP_DISPLAY_STEP);
 
+	/*
+	 * Array used to convert sleep stage values to displayed sleep stages. We
+	 * want to show a single letter for each of the sleep stages instead of
+	 * just the numeric values.
+	 */
+	private static final char[] HYPNOGRAM_CHARS = { '.', 'w', 'r', 'l', 'd',
+			'?', 'L' };
+
 	/*************************************************************************
 	 * variables
 	 */
@@ -201,13 +218,20 @@ public class ZeoData implements Comparable<ZeoData> {
 
 	private int base_hypnogram_count; // Count of hypnogram values
 	private long crc; // CRC16 value of record
-	private Calendar current_time; // Time the record was written.
-	private Calendar end_of_night; // End time for night (or null)
+	private ByteBuffer crc_record; // Record to verify CRC of (or null)
+	private boolean crc_valid = true; // Record matched its CRC
+	private long current_time; // Time the record was written.
+	private long end_of_night; // End time for night (or 0)
+	private EnumSet<FieldGroup> fields; // Field groups that were decoded
 
 	@SuppressWarnings("unused")
 	private boolean reset_record; // True for first reset record
-	private Calendar sleep_date; // Decoder assigned "day of sleep"
-	private Calendar start_of_night; // Start time for night (or null)
+	private long sleep_date; // Decoder assigned "day of sleep" (or 0)
+	private long start_of_night; // Start time for night (or 0)
+
+	/* First (startup) RTC change entry, kept for is_reset_record(). */
+	private long rtc_startup_time;
+	private long rtc_startup_value;
 
 	/* Bit fields from data record */
 	private boolean airplane_mode;
@@ -222,36 +246,42 @@ public class ZeoData implements Comparable<ZeoData> {
 	private WriteReason write_reason; // Reason record was saved to card
 	private boolean zeo_wake_on; // Is Zeo handling wake
 
-	/* Device History from data record */
-	private Calendar airplane_off; // Last time airplane mode disengaged
-	private Calendar airplane_on; // Last time airplane mode engaged
+	/*
+	 * Device History from data record. Times are all kept as UNIX timestamps
+	 * (0 when not set) and only converted to Calendar values by the getters.
+	 * Arrays are only allocated for the field groups that were decoded.
+	 */
+	private long airplane_off; // Last time airplane mode disengaged
+	private long airplane_on; // Last time airplane mode engaged
 
-	private TimeChange[] alarm_change = new TimeChange[EVENTS_SAVED];
+	private long[] alarm_change_time;
+	private long[] alarm_change_value;
 
-	private char[] assert_function_name = new char[ASSERT_NAME_MAX];
+	private char[] assert_function_name;
 	private int assert_line_number;
 
-	private Calendar factory_reset;
+	private long factory_reset;
 	private long headband_id;
 
-	private short[] headband_impedance = new short[HEADBAND_IMPEDANCE_SIZE];
-	private short[] headband_packets = new short[HEADBAND_PACKETS_SIZE];
-	private byte[] headband_rssi = new byte[HEADBAND_RSSI_SIZE];
-	private short[] headband_status = new short[HEADBAND_STATUS_SIZE];
+	private short[] headband_impedance;
+	private short[] headband_packets;
+	private byte[] headband_rssi;
+	private short[] headband_status;
 
 	private int id_hw; // HW revision value
 	private int id_sw; // SW revision value
 	private int format_version; // Data format version
 
-	private TimeChange[] rtc_change = new TimeChange[EVENTS_SAVED];
+	private long[] rtc_change_time;
+	private long[] rtc_change_value;
 
-	private Calendar sensor_life_reset;
-	private Calendar sleep_stat_reset;
+	private long sensor_life_reset;
+	private long sleep_stat_reset;
 
 	/* Sleep Information from data record */
-	private Calendar[] alarm_ring = new Calendar[ALARM_EVENTS_SAVED];
-	private Calendar[] alarm_snooze = new Calendar[SNOOZE_EVENTS_SAVED];
-	private Calendar alarm_off;
+	private long[] alarm_ring;
+	private long[] alarm_snooze;
+	private long alarm_off;
 	private int awakenings;
 	private int awakenings_average;
 	private int sleep_rating;
@@ -285,17 +315,17 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * The start time of the hypnograms which is not necessarily the same as the
 	 * start time for the night of sleep.
 	 */
-	private Calendar hypnogram_start_time;
+	private long hypnogram_start_time;
 
-	private byte[] base_hypnogram = new byte[HYP_BASE_LENGTH];
+	private PackedHypnogram base_hypnogram;
 
 	/* Generated display hypnogram. */
-	private byte[] display_hypnogram = new byte[HYP_DISPLAY_LENGTH];
+	private byte[] display_hypnogram;
 	private int display_hypnogram_count;
 
 	/* Derived sleep information. */
-	private Calendar alarm_set_time; // Time alarm was set for
-	private Calendar rise_time; // When user got up
+	private long alarm_set_time; // Time alarm was set for (or 0)
+	private long rise_time; // When user got up (or 0)
 
 	/*************************************************************************
 	 * methods
@@ -312,32 +342,49 @@ public class ZeoData implements Comparable<ZeoData> {
 	 *            The version number of the record to decode.
 	 */
 	public ZeoData(ByteBuffer in, int version) {
+		this(in, version, FieldGroup.all());
+	}
+
+	/**
+	 * Construct a Zeo data record given the input stream, data format version
+	 * identification and the field groups to decode. The regions of the
+	 * record holding other field groups are skipped over and their getters
+	 * throw IllegalStateException (see FieldGroup).
+	 * 
+	 * @param in
+	 *            The data input stream that will be read to construct the
+	 *            record.
+	 * @param version
+	 *            The version number of the record to decode.
+	 * @param fields
+	 *            The field groups to decode.
+	 */
+	public ZeoData(ByteBuffer in, int version, EnumSet<FieldGroup> fields) {
+		boolean alarm = fields.contains(FieldGroup.ALARM);
+		boolean device_history = fields.contains(FieldGroup.DEVICE_HISTORY);
+		boolean headband = fields.contains(FieldGroup.HEADBAND);
+		boolean hypnogram = fields.contains(FieldGroup.HYPNOGRAM);
+		boolean sleep_summary = fields.contains(FieldGroup.SLEEP_SUMMARY);
 		int alarm_ring_count;
-		Calendar alarm_ring_time;
 		long alarm_ring_value;
-		long change_time[] = new long[EVENTS_SAVED];
-		long change_value[] = new long[EVENTS_SAVED];
-		long current_timestamp;
 		int tmp;
 
-		/* Remember format version */
+		/* Remember format version and the decoded field groups */
 		format_version = version;
+		this.fields = EnumSet.copyOf(fields);
 
 		/* Set the byte order to little endian. */
 		in.order(ByteOrder.LITTLE_ENDIAN);
 
 		/* Grab the time the record was written. */
-		current_timestamp = read_uint32(in);
-		current_time = timestamp_to_calendar(current_timestamp);
+		current_time = read_uint32(in);
 
 		/*
-		 * Get the record's CRC16 value and overwrite the CRC value with zeroes
-		 * so we are ready to compute the CRC of the buffer in a way that
-		 * matches how the base station computed the CRC.
+		 * Get the record's CRC16 value. The decoder computes the CRC of the
+		 * record with these bytes taken as zero (see CRC_OFFSET) so the buffer
+		 * is never modified and may be a read-only or memory mapped buffer.
 		 */
-		int crc_index = in.position();
 		crc = read_uint32(in);
-		in.putInt(crc_index, 0);
 
 		/* Device History packed values (bit fields) */
 		tmp = (int) read_uint32(in);
@@ -356,217 +403,210 @@ public class ZeoData implements Comparable<ZeoData> {
 		wdt_reset = (((tmp >> 28) & 1) == 1) ? true : false;
 
 		/* Device history. */
-		airplane_off = timestamp_to_calendar(read_uint32(in));
-		airplane_on = timestamp_to_calendar(read_uint32(in));
-
-		for (int i = 0; i < EVENTS_SAVED; i++) {
-			change_time[i] = read_uint32(in);
-		}
-		for (int i = 0; i < EVENTS_SAVED; i++) {
-			change_value[i] = read_uint32(in);
-		}
-		for (int i = 0; i < EVENTS_SAVED; i++) {
-			alarm_change[i] = new TimeChange(change_time[i], change_value[i]);
+		if (device_history) {
+			airplane_off = read_uint32(in);
+			airplane_on = read_uint32(in);
+		} else {
+			skip(in, 2 * 4);
 		}
 
-		for (int i = 0; i < ASSERT_NAME_MAX; i++) {
-			assert_function_name[i] = (char) read_uint8(in);
+		if (alarm) {
+			alarm_change_time = new long[EVENTS_SAVED];
+			alarm_change_value = new long[EVENTS_SAVED];
+			for (int i = 0; i < EVENTS_SAVED; i++) {
+				alarm_change_time[i] = read_uint32(in);
+			}
+			for (int i = 0; i < EVENTS_SAVED; i++) {
+				alarm_change_value[i] = read_uint32(in);
+			}
+		} else {
+			skip(in, 2 * EVENTS_SAVED * 4);
 		}
-		assert_line_number = read_int32(in);
 
-		factory_reset = timestamp_to_calendar(read_uint32(in));
-		headband_id = read_uint32(in);
-		for (int i = 0; i < HEADBAND_IMPEDANCE_SIZE; i++) {
-			headband_impedance[i] = read_uint8(in);
-		}
-		for (int i = 0; i < HEADBAND_PACKETS_SIZE; i++) {
-			headband_packets[i] = read_uint8(in);
-		}
-		for (int i = 0; i < HEADBAND_RSSI_SIZE; i++) {
-			headband_rssi[i] = read_int8(in);
-		}
-		for (int i = 0; i < HEADBAND_STATUS_SIZE; i++) {
-			headband_status[i] = read_uint8(in);
-		}
-		id_hw = read_uint16(in);
-		id_sw = read_uint16(in);
+		if (device_history) {
+			assert_function_name = new char[ASSERT_NAME_MAX];
+			for (int i = 0; i < ASSERT_NAME_MAX; i++) {
+				assert_function_name[i] = (char) read_uint8(in);
+			}
+			assert_line_number = read_int32(in);
 
-		for (int i = 0; i < EVENTS_SAVED; i++) {
-			change_time[i] = read_uint32(in);
-		}
-		for (int i = 0; i < EVENTS_SAVED; i++) {
-			change_value[i] = read_uint32(in);
+			factory_reset = read_uint32(in);
+			headband_id = read_uint32(in);
+		} else {
+			skip(in, ASSERT_NAME_MAX + 3 * 4);
 		}
-		for (int i = 0; i < EVENTS_SAVED; i++) {
-			rtc_change[i] = new TimeChange(change_time[i], change_value[i]);
+
+		if (headband) {
+			headband_impedance = new short[HEADBAND_IMPEDANCE_SIZE];
+			headband_packets = new short[HEADBAND_PACKETS_SIZE];
+			headband_rssi = new byte[HEADBAND_RSSI_SIZE];
+			headband_status = new short[HEADBAND_STATUS_SIZE];
+			for (int i = 0; i < HEADBAND_IMPEDANCE_SIZE; i++) {
+				headband_impedance[i] = read_uint8(in);
+			}
+			for (int i = 0; i < HEADBAND_PACKETS_SIZE; i++) {
+				headband_packets[i] = read_uint8(in);
+			}
+			for (int i = 0; i < HEADBAND_RSSI_SIZE; i++) {
+				headband_rssi[i] = read_int8(in);
+			}
+			for (int i = 0; i < HEADBAND_STATUS_SIZE; i++) {
+				headband_status[i] = read_uint8(in);
+			}
+		} else {
+			skip(in, HEADBAND_IMPEDANCE_SIZE + HEADBAND_PACKETS_SIZE
+					+ HEADBAND_RSSI_SIZE + HEADBAND_STATUS_SIZE);
 		}
-		sensor_life_reset = timestamp_to_calendar(read_uint32(in));
-		sleep_stat_reset = timestamp_to_calendar(read_uint32(in));
 
-		/* Sleep Information */
+		if (device_history) {
+			id_hw = read_uint16(in);
+			id_sw = read_uint16(in);
 
-		/*
-		 * Read in the alarm ring information. Here we only store the first and
-		 * last alarm ring.
-		 */
-		alarm_ring_count = ALARM_EVENTS_SAVED;
+			rtc_change_time = new long[EVENTS_SAVED];
+			rtc_change_value = new long[EVENTS_SAVED];
+			for (int i = 0; i < EVENTS_SAVED; i++) {
+				rtc_change_time[i] = read_uint32(in);
+			}
+			for (int i = 0; i < EVENTS_SAVED; i++) {
+				rtc_change_value[i] = read_uint32(in);
+			}
+			rtc_startup_time = rtc_change_time[0];
+			rtc_startup_value = rtc_change_value[0];
 
-		/*
-		 * Make sure second alarm ring entry value defaults to being 0 since we
-		 * might not fill it in.
-		 */
-		alarm_ring[1] = timestamp_to_calendar(0);
+			sensor_life_reset = read_uint32(in);
+			sleep_stat_reset = read_uint32(in);
+		} else {
+			/* Only the startup RTC entry is needed to flag reset records. */
+			skip(in, 2 * 2);
+			rtc_startup_time = read_uint32(in);
+			skip(in, (EVENTS_SAVED - 1) * 4);
+			rtc_startup_value = read_uint32(in);
+			skip(in, (EVENTS_SAVED - 1) * 4 + 2 * 4);
+		}
 
-		for (int i = 0; i < alarm_ring_count; i++) {
-			alarm_ring_value = read_uint32(in);
-			alarm_ring_time = timestamp_to_calendar(alarm_ring_value);
+		/* Sleep Information */
 
+		if (alarm) {
 			/*
-			 * Store the first ring time value in the first entry and the last
-			 * non-zero value in the second entry.
+			 * Read in the alarm ring information. Here we only store the first
+			 * and last alarm ring.
 			 */
-			if (i == 0) {
-				alarm_ring[0] = alarm_ring_time;
-			} else if (alarm_ring_value != 0) {
-				alarm_ring[1] = alarm_ring_time;
+			alarm_ring_count = ALARM_EVENTS_SAVED;
+
+			/*
+			 * Make sure second alarm ring entry value defaults to being 0 since
+			 * we might not fill it in.
+			 */
+			alarm_ring = new long[ALARM_EVENTS_SAVED];
+			alarm_ring[1] = 0;
+
+			for (int i = 0; i < alarm_ring_count; i++) {
+				alarm_ring_value = read_uint32(in);
+
+				/*
+				 * Store the first ring time value in the first entry and the
+				 * last non-zero value in the second entry.
+				 */
+				if (i == 0) {
+					alarm_ring[0] = alarm_ring_value;
+				} else if (alarm_ring_value != 0) {
+					alarm_ring[1] = alarm_ring_value;
+				}
+			}
+
+			/* Read in array of snooze time values */
+			alarm_snooze = new long[SNOOZE_EVENTS_SAVED];
+			for (int i = 0; i < SNOOZE_EVENTS_SAVED; i++) {
+				alarm_snooze[i] = read_uint32(in);
 			}
+			alarm_off = read_uint32(in);
+		} else {
+			skip(in, (ALARM_EVENTS_SAVED + SNOOZE_EVENTS_SAVED + 1) * 4);
 		}
 
-		/* Read in array of snooze time values */
-		for (int i = 0; i < SNOOZE_EVENTS_SAVED; i++) {
-			alarm_snooze[i] = timestamp_to_calendar(read_uint32(in));
+		if (sleep_summary) {
+			awakenings = read_uint16(in);
+			awakenings_average = read_uint16(in);
+		} else {
+			skip(in, 2 * 2);
+		}
+		end_of_night = read_uint32(in);
+		start_of_night = read_uint32(in);
+		if (sleep_summary) {
+			time_in_deep = read_uint16(in);
+			time_in_deep_average = read_uint16(in);
+			time_in_deep_best = read_uint16(in);
+			time_in_light = read_uint16(in);
+			time_in_light_average = read_uint16(in);
+			time_in_rem = read_uint16(in);
+			time_in_rem_average = read_uint16(in);
+			time_in_rem_best = read_uint16(in);
+			time_in_wake = read_uint16(in);
+			time_in_wake_average = read_uint16(in);
+			time_to_z = read_uint16(in);
+			time_to_z_average = read_uint16(in);
+			total_z = read_uint16(in);
+			total_z_average = read_uint16(in);
+			total_z_best = read_uint16(in);
+			zq_score = read_uint16(in);
+			zq_score_average = read_uint16(in);
+			zq_score_best = read_uint16(in);
+		} else {
+			skip(in, 18 * 2);
+		}
+
+		if (hypnogram) {
+			/* Read in the display hypnogram forced stage and its index. */
+			display_hypnogram_forced_index = read_uint16(in);
+
+			/* Uses a forced stage value and no padding. */
+			display_hypnogram_forced_stage = read_uint16(in);
+
+			/* Read the start time for the hypnograms. */
+			hypnogram_start_time = read_uint32(in);
+		} else {
+			skip(in, 2 * 2 + 4);
 		}
-		alarm_off = timestamp_to_calendar(read_uint32(in));
-
-		awakenings = read_uint16(in);
-		awakenings_average = read_uint16(in);
-		end_of_night = timestamp_to_calendar(read_uint32(in));
-		start_of_night = timestamp_to_calendar(read_uint32(in));
-		time_in_deep = read_uint16(in);
-		time_in_deep_average = read_uint16(in);
-		time_in_deep_best = read_uint16(in);
-		time_in_light = read_uint16(in);
-		time_in_light_average = read_uint16(in);
-		time_in_rem = read_uint16(in);
-		time_in_rem_average = read_uint16(in);
-		time_in_rem_best = read_uint16(in);
-		time_in_wake = read_uint16(in);
-		time_in_wake_average = read_uint16(in);
-		time_to_z = read_uint16(in);
-		time_to_z_average = read_uint16(in);
-		total_z = read_uint16(in);
-		total_z_average = read_uint16(in);
-		total_z_best = read_uint16(in);
-		zq_score = read_uint16(in);
-		zq_score_average = read_uint16(in);
-		zq_score_best = read_uint16(in);
-
-		/* Read in the display hypnogram forced stage and its index. */
-		display_hypnogram_forced_index = read_uint16(in);
-
-		/* Uses a forced stage value and no padding. */
-		display_hypnogram_forced_stage = read_uint16(in);
-
-		/* Read the start time for the hypnograms. */
-		hypnogram_start_time = timestamp_to_calendar(read_uint32(in));
 
 		/* Read in sleep rating value, then 7 bytes of padding. */
 		sleep_rating = 0;
-		sleep_rating = read_uint8(in);
-		read_uint8(in);
-		read_uint8(in);
-		read_uint8(in);
-		read_uint32(in);
+		if (sleep_summary) {
+			sleep_rating = read_uint8(in);
+		} else {
+			skip(in, 1);
+		}
+		skip(in, 7);
 
 		/* Read in the base hypnogram. */
 		base_hypnogram_count = (int) read_uint32(in);
-		int hypnogram_data;
-		for (int i = 0; i < HYP_BASE_LENGTH; i += 2) {
+		if (hypnogram) {
 			/*
-			 * Read in a byte for the hypnogram data and convert it to two
-			 * values that are stored in the hypnogram.
+			 * Keep the hypnogram packed two values to a byte as stored; the
+			 * values are unpacked when they are read.
 			 */
-			hypnogram_data = read_uint8(in);
-			base_hypnogram[i] = (byte) (hypnogram_data & 0xf);
-			base_hypnogram[i + 1] = (byte) (hypnogram_data >> 4);
+			byte[] packed = new byte[HYP_BASE_LENGTH / 2];
+
+			in.get(packed);
+			base_hypnogram = new PackedHypnogram(packed);
+		} else {
+			skip(in, HYP_BASE_LENGTH / 2);
 		}
 
 		/* Make sure we processed the complete record */
 		assert (in.remaining() == 0);
 
-		/* Create the display hypnogram from the base hypnogram. */
-		make_display_hypnogram_from_base();
-
-		/* Compute the rise time from the display hypnogram. */
-		rise_time = compute_rise_time();
-
-		/* Compute the alarm set time from device history. */
-		alarm_set_time = compute_alarm_set_time();
-	}
-
-	/**
-	 * Generate a human readable string containing a calendar.
-	 * 
-	 * @param calendar
-	 *            The calendar that is to be converted to a human readable
-	 *            string
-	 * 
-	 * @return a String containing the calendar's value.
-	 */
-	static String calendar_to_human_string(Calendar calendar) {
-		if (calendar == null) {
-			return null;
-		} else {
-			StringWriter txt = new StringWriter();
-			PrintWriter out = new PrintWriter(txt);
-
-			int day = calendar.get(Calendar.DAY_OF_MONTH);
-			int month = calendar.get(Calendar.MONTH) + 1;
-			int year = calendar.get(Calendar.YEAR);
-
-			/* If the date isn't the start of the epoch then print it */
-			if (year != 1970 || month != 1 || day != 1) {
-				out.printf("%04d-%02d-%02d T ", year, month, day);
-			}
-			out.printf("%02d:%02d:%02d", calendar.get(Calendar.HOUR_OF_DAY),
-					calendar.get(Calendar.MINUTE),
-					calendar.get(Calendar.SECOND));
+		if (hypnogram) {
+			/* Create the display hypnogram from the base hypnogram. */
+			display_hypnogram = new byte[HYP_DISPLAY_LENGTH];
+			make_display_hypnogram_from_base();
 
-			/* Print the UNIX timestamp value. */
-			out.printf(" (%d)", calendar.getTimeInMillis() / MSEC_PER_SECOND);
-
-			return txt.toString();
+			/* Compute the rise time from the display hypnogram. */
+			rise_time = compute_rise_timestamp();
 		}
-	}
 
-	/**
-	 * Generates a string containing xml for the given calendar value.
-	 * 
-	 * @param calendar
-	 *            The calendar value that is to be converted to XML.
-	 * 
-	 * @return a String containing an xml representation of the calendar value.
-	 */
-	static String calendar_to_xml(Calendar calendar) {
-		if (calendar == null) {
-			return "";
-		} else {
-			StringWriter txt = new StringWriter();
-			PrintWriter out = new PrintWriter(txt);
-
-			out.printf("<year>%d</year>", calendar.get(Calendar.YEAR));
-			out.println();
-			out.printf("<month>%d</month>", calendar.get(Calendar.MONTH) + 1);
-			out.println();
-			out.printf("<day>%d</day>", calendar.get(Calendar.DAY_OF_MONTH));
-			out.println();
-			out.printf("<hour>%d</hour>", calendar.get(Calendar.HOUR_OF_DAY));
-			out.println();
-			out.printf("<minute>%d</minute>", calendar.get(Calendar.MINUTE));
-			out.println();
-			out.printf("<second>%d</second>", calendar.get(Calendar.SECOND));
-			out.println();
-			return txt.toString();
+		if (alarm) {
+			/* Compute the alarm set time from device history. */
+			alarm_set_time = compute_alarm_set_timestamp();
 		}
 	}
 
@@ -588,24 +628,24 @@ public class ZeoData implements Comparable<ZeoData> {
 	 *         the other record.
 	 */
 	public int compareTo(ZeoData other) {
-		Calendar other_start_of_night;
+		long other_start_of_night;
 
 		/* The comparison is based on the start_of_night values */
-		other_start_of_night = other.get_start_of_night();
+		other_start_of_night = other.start_of_night;
 
 		/* Handle cases where one or both nights are incomplete */
-		if (start_of_night == null && other_start_of_night == null) {
+		if (start_of_night == 0 && other_start_of_night == 0) {
 			return 0;
-		} else if (start_of_night == null) {
+		} else if (start_of_night == 0) {
 			return -1;
-		} else if (other_start_of_night == null) {
+		} else if (other_start_of_night == 0) {
 			return 1;
 		}
 
 		/* The result is primarily determined based on night start times. */
-		if (start_of_night.before(other_start_of_night)) {
+		if (start_of_night < other_start_of_night) {
 			return -1;
-		} else if (start_of_night.after(other_start_of_night)) {
+		} else if (start_of_night > other_start_of_night) {
 			return 1;
 		} else {
 			return 0;
@@ -641,37 +681,35 @@ public class ZeoData implements Comparable<ZeoData> {
 	 *         this record has longer sleep time than the other record.
 	 */
 	public int compareLength(ZeoData other) {
-		Calendar other_end_of_night;
+		long other_end_of_night;
 		int other_hypnogram_count;
 		long other_length;
-		Calendar other_start_of_night;
+		long other_start_of_night;
 
 		int this_hypnogram_count;
 		long this_length;
 
-		other_start_of_night = other.get_start_of_night();
-		other_end_of_night = other.get_end_of_night();
+		other_start_of_night = other.start_of_night;
+		other_end_of_night = other.end_of_night;
 
 		/*
 		 * Handle cases where one or both nights are incomplete. We only need to
 		 * check the end_of_night values since start_of_night will always be set
 		 * if end_of_night is.
 		 */
-		if (end_of_night == null && other_end_of_night == null) {
+		if (end_of_night == 0 && other_end_of_night == 0) {
 			return 0;
-		} else if (end_of_night == null) {
+		} else if (end_of_night == 0) {
 			return -1;
-		} else if (other_end_of_night == null) {
+		} else if (other_end_of_night == 0) {
 			return 1;
 		}
 
-		assert (start_of_night != null && other_start_of_night != null);
+		assert (start_of_night != 0 && other_start_of_night != 0);
 
 		/* Determine the length of time for each night */
-		other_length = other_end_of_night.getTimeInMillis()
-				- other_start_of_night.getTimeInMillis();
-		this_length = end_of_night.getTimeInMillis()
-				- start_of_night.getTimeInMillis();
+		other_length = other_end_of_night - other_start_of_night;
+		this_length = end_of_night - start_of_night;
 
 		/* The result is primarily determined based on night end times. */
 		if (this_length < other_length) {
@@ -695,29 +733,42 @@ public class ZeoData implements Comparable<ZeoData> {
 
 	/**
 	 * Compute the set alarm time that was in use for the night of sleep
-	 * represented by this record. If the alarm was turned on, the set alarm
-	 * time as a full date and time is returned. if the alarm was turned off,
-	 * null is returned. If the alarm rang, the most recent alarm change
-	 * preceding the alarm ring is used. If the alarm did not ring, the most
-	 * recent alarm change preceding the end of night is used. If no alarm
-	 * change matching the criteria can be found (due to later alarm changes
-	 * overwriting the alarm change we want), null is returned. Note that null
-	 * can be returned even if the alarm did ring.
+	 * represented by this record. See compute_alarm_set_timestamp().
 	 * 
 	 * @return a calendar object representing the set alarm time and date, or
 	 *         null.
 	 */
 	public Calendar compute_alarm_set_time() {
-		Calendar change_time; // When alarm was changed
-		Calendar cutoff; // Latest alarm change time valid for night
-		TimeChange latest_change; // Last alarm change that applies to night
+		require(FieldGroup.ALARM);
+		return timestamp_to_calendar(compute_alarm_set_timestamp());
+	}
+
+	/**
+	 * Compute the set alarm time that was in use for the night of sleep
+	 * represented by this record. If the alarm was turned on, the set alarm
+	 * time as a full date and time is returned. if the alarm was turned off,
+	 * 0 is returned. If the alarm rang, the most recent alarm change preceding
+	 * the alarm ring is used. If the alarm did not ring, the most recent alarm
+	 * change preceding the end of night is used. If no alarm change matching
+	 * the criteria can be found (due to later alarm changes overwriting the
+	 * alarm change we want), 0 is returned. Note that 0 can be returned even
+	 * if the alarm did ring.
+	 * 
+	 * @return a UNIX timestamp representing the set alarm time and date, or 0.
+	 */
+	public long compute_alarm_set_timestamp() {
+		require(FieldGroup.ALARM);
+		long change_time; // When alarm was changed
+		long cutoff; // Latest alarm change time valid for night
+		int latest_change; // Last alarm change that applies to night
+		long alarm; // Alarm time on the date of the night
 
 		/*
 		 * Don't try to compute an alarm set time for a record that doesn't have
 		 * a valid start_of_night and end_of_night.
 		 */
-		if (start_of_night == null || end_of_night == null) {
-			return null;
+		if (start_of_night == 0 || end_of_night == 0) {
+			return 0;
 		}
 
 		/*
@@ -725,7 +776,7 @@ public class ZeoData implements Comparable<ZeoData> {
 		 * applies to this night. We will return the latest alarm change
 		 * preceding this point.
 		 */
-		if (alarm_ring[0] == null) {
+		if (alarm_ring[0] == 0) {
 			/*
 			 * If the alarm did not ring, the end of night is the cutoff point.
 			 */
@@ -742,69 +793,63 @@ public class ZeoData implements Comparable<ZeoData> {
 		 * Find the most recent alarm change preceding the cutoff time computed
 		 * above.
 		 */
-		latest_change = null;
+		latest_change = -1;
 		for (int i = 0; i < EVENTS_SAVED; i++) {
 			/* Get time that alarm was changed for this alarm entry */
-			change_time = alarm_change[i].getTimeAsCalendar();
+			change_time = alarm_change_time[i];
 
 			/*
-			 * Any entry in the alarm_change list with a null change time, other
+			 * Any entry in the alarm_change list with a 0 change time, other
 			 * than the first entry, is empty and is to be ignored. Once one
 			 * empty entry is found we know the rest are empty too.
 			 */
-			if (change_time == null && i > 0) {
+			if (change_time == 0 && i > 0) {
 				break;
 			}
 
 			/*
 			 * We only check alarm records that occurred before the "cutoff"
-			 * time. The first alarm change startup record (which has a null
+			 * time. The first alarm change startup record (which has a 0
 			 * "change time" value) is considered too since it must have been
 			 * recorded before the start of the night.
 			 */
-			if (change_time == null || change_time.before(cutoff)) {
+			if (change_time == 0 || change_time < cutoff) {
 				/*
 				 * Remember the alarm change record with the latest change time
 				 * satisfying the cutoff time criteria. There are special cases
 				 * when we have not stored any other alarm change record or when
-				 * the alarm change we stored was the startup one with a null
+				 * the alarm change we stored was the startup one with a 0
 				 * "change time".
 				 */
-				if (latest_change == null
-						|| latest_change.getTimeAsCalendar() == null
-						|| change_time.after(latest_change.getTimeAsCalendar())) {
+				if (latest_change == -1
+						|| alarm_change_time[latest_change] == 0
+						|| change_time > alarm_change_time[latest_change]) {
 					/* Save this entry as the latest change */
-					latest_change = alarm_change[i];
+					latest_change = i;
 				}
 			}
 		}
 
-		if (latest_change == null) {
+		if (latest_change == -1) {
 			/*
-			 * Return null if we didn't find any alarm change preceding the
-			 * cutoff time.
+			 * Return 0 if we didn't find any alarm change preceding the cutoff
+			 * time.
 			 */
-			return null;
-		} else if (latest_change.getValueAsCalendar() == null) {
-			/* Return null if the alarm was turned off. */
-			return null;
+			return 0;
+		} else if (alarm_change_value[latest_change] == 0) {
+			/* Return 0 if the alarm was turned off. */
+			return 0;
 		} else {
 			/*
 			 * If the alarm was turned on, take the time of day and convert it
 			 * to a full date and time, using the date of this night of sleep.
 			 * This adjusts for the fact that alarm change values are stored as
-			 * relative times
+			 * relative times. All times are UTC so a day is always
+			 * SECONDS_PER_DAY long.
 			 */
-			Calendar calendar = latest_change.getValueAsCalendar();
-
-			/*
-			 * Start by setting the date of the alarm to the date of the night's
-			 * start time.
-			 */
-			calendar.set(Calendar.DAY_OF_MONTH,
-					start_of_night.get(Calendar.DAY_OF_MONTH));
-			calendar.set(Calendar.MONTH, start_of_night.get(Calendar.MONTH));
-			calendar.set(Calendar.YEAR, start_of_night.get(Calendar.YEAR));
+			alarm = start_of_night - floor_mod(start_of_night, SECONDS_PER_DAY)
+					+ floor_mod(alarm_change_value[latest_change],
+							SECONDS_PER_DAY);
 
 			/*
 			 * If this date/time precedes the start of night, advance it by 1
@@ -812,48 +857,54 @@ public class ZeoData implements Comparable<ZeoData> {
 			 * next day. Note that we make an assumption here that a night of
 			 * sleep is never longer than 24 hours.
 			 */
-			if (calendar.before(start_of_night)) {
-				calendar.add(Calendar.DAY_OF_MONTH, 1);
+			if (alarm < start_of_night) {
+				alarm += SECONDS_PER_DAY;
 			}
 
-			return calendar;
+			return alarm;
 		}
 	}
 
 	/**
-	 * Return the rise time as a Calendar object. The rise time indicates when
-	 * the user got up and is computed as "the time of day at the end of the
-	 * last 5 minute block of sleep in the display hypnogram." If no sleep is
-	 * present in the hypnogram, the result is null.
+	 * Return the rise time as a Calendar object. See compute_rise_timestamp().
 	 * 
 	 * @return a calendar object representing the rise time.
 	 */
 	public Calendar compute_rise_time() {
-		boolean found_sleep = false;
+		require(FieldGroup.HYPNOGRAM);
+		return timestamp_to_calendar(compute_rise_timestamp());
+	}
+
+	/**
+	 * Return the rise time as a UNIX timestamp. The rise time indicates when
+	 * the user got up and is computed as "the time of day at the end of the
+	 * last 5 minute block of sleep in the display hypnogram." If no sleep is
+	 * present in the hypnogram, the result is 0.
+	 * 
+	 * @return a UNIX timestamp representing the rise time.
+	 */
+	public long compute_rise_timestamp() {
+		require(FieldGroup.HYPNOGRAM);
 		int index;
 
 		/*
 		 * Don't try to compute a rise time for a record that doesn't have a
 		 * valid hypnogram_start_time.
 		 */
-		if (hypnogram_start_time == null) {
-			return null;
+		if (hypnogram_start_time == 0) {
+			return 0;
 		}
 
 		/*
 		 * Find the index of the last bin of sleep in the display hypnogram, if
 		 * any sleep is present.
 		 */
-		for (index = display_hypnogram_count - 1; index >= 0; index--) {
-			if (SleepStage.convert(display_hypnogram[index]).is_sleep()) {
-				found_sleep = true;
-				break;
-			}
-		}
+		index = DisplayHypnogram.last_sleep_index(display_hypnogram,
+				display_hypnogram_count);
 
-		/* If no sleep was present, return null. */
-		if (!found_sleep) {
-			return null;
+		/* If no sleep was present, return 0. */
+		if (index == -1) {
+			return 0;
 		}
 
 		/*
@@ -864,97 +915,35 @@ public class ZeoData implements Comparable<ZeoData> {
 		 * (which are each HYP_DISPLAY_STEP seconds long) to get the needed rise
 		 * time.
 		 */
-		Calendar calendar = (Calendar) hypnogram_start_time.clone();
-		calendar.add(Calendar.SECOND, HYP_DISPLAY_STEP * (index + 1));
-		return calendar;
+		return hypnogram_start_time + HYP_DISPLAY_STEP * (index + 1);
 	}
 
 	/**
-	 * Determine display hypnogram bin value from a set of sleep stage values.
-	 * 
-	 * The value is typically based on the "mode" of a number of sleep stage
-	 * values. Mode is defined as the most common value from a set of values.
-	 * However, the result is undefined (STAGE_UNDEF) only if all the input
-	 * values are undefined. If a single Wake value is present in the input, it
-	 * overrides the mode and the output is Wake.
-	 * 
-	 * In determining the "mode", if more than one value is the most common, the
-	 * first one is taken, in this order: Wake, REM, Light, Deep.
+	 * Defer verifying this record's CRC until is_crc_valid() is called.
 	 * 
-	 * @param values
-	 *            Array of sleep stage values to base the result on.
-	 * @param num_values
-	 *            How many values are in 'values' array.
-	 * 
-	 * @return the value for the display hypnogram bin.
+	 * @param record
+	 *            Buffer holding exactly the complete record (including its
+	 *            header) the CRC is verified against.
 	 */
-	private SleepStage determine_bin_value(SleepStage[] values, int num_values) {
-		/* Counts of values by stage */
-		int[] counts = new int[SleepStage.values().length];
-		int i;
-		int max_count; // Highest count
-		SleepStage result; // Mode value to return
-
-		/* Count how many occurrences there are of each sleep stage */
-		for (i = 0; i < num_values; i++) {
-			counts[values[i].ordinal()]++;
-		}
-
-		/* If all the values are undefined then the result is undefined. */
-		if (counts[SleepStage.UNDEFINED.ordinal()] == num_values) {
-			return SleepStage.UNDEFINED;
-		}
-
-		/* If any of the values is Wake, the the result is SleepStage.WAKE. */
-		if (counts[SleepStage.WAKE.ordinal()] != 0) {
-			return SleepStage.WAKE;
-		}
-
-		/*
-		 * Find first max count. We can skip STAGE_WAKE since it was already
-		 * handled. Start by assuming result is STAGE_REM.
-		 */
-		max_count = counts[SleepStage.REM.ordinal()];
-		result = SleepStage.REM;
-
-		for (i = SleepStage.LIGHT.ordinal(); i < SleepStage.values().length; i++) {
-			if (max_count < counts[i]) {
-				max_count = counts[i];
-				result = SleepStage.convert(i);
-			}
-		}
-		return result;
+	synchronized void defer_crc_check(ByteBuffer record) {
+		crc_record = record;
 	}
 
 	/**
-	 * Generate a human readable string containing an epoch value
-	 * 
-	 * Show the raw epochs and a translation to hour:minute.
+	 * Returns the remainder of a division rounded towards negative infinity,
+	 * which unlike % is never negative for a positive divisor.
 	 * 
-	 * @param epochs
-	 *            The epoch value that is to be converted to a human readable
-	 *            string
+	 * @param value
+	 *            The value to divide.
+	 * @param divisor
+	 *            The value to divide by.
 	 * 
-	 * @return a String containing the converted value.
+	 * @return the remainder, from 0 up to divisor - 1.
 	 */
-	private String epochs_to_human_string(int epochs) {
-		StringWriter txt = new StringWriter();
-		PrintWriter out = new PrintWriter(txt);
-
-		int hours;
-		int minutes;
+	private static long floor_mod(long value, long divisor) {
+		long remainder = value % divisor;
 
-		/*
-		 * Use rounding to convert epochs to minutes to match the conversion the
-		 * Zeo code uses.
-		 */
-		minutes = (epochs + 1) / 2;
-
-		hours = minutes / 60;
-		minutes = minutes % 60;
-
-		out.printf("%2d:%02d (%4d epochs)", hours, minutes, epochs);
-		return txt.toString();
+		return (remainder < 0) ? remainder + divisor : remainder;
 	}
 
 	/**
@@ -973,6 +962,17 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the last time airplane mode was disengaged
 	 */
 	public Calendar get_airplane_off() {
+		require(FieldGroup.DEVICE_HISTORY);
+		return timestamp_to_calendar(airplane_off);
+	}
+
+	/**
+	 * Returns get_airplane_off() as a UNIX timestamp, or 0 if it is not set.
+	 * 
+	 * @return the last time airplane mode was disengaged (in seconds).
+	 */
+	public long get_airplane_off_timestamp() {
+		require(FieldGroup.DEVICE_HISTORY);
 		return airplane_off;
 	}
 
@@ -983,6 +983,17 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the last time airplane mode was engaged
 	 */
 	public Calendar get_airplane_on() {
+		require(FieldGroup.DEVICE_HISTORY);
+		return timestamp_to_calendar(airplane_on);
+	}
+
+	/**
+	 * Returns get_airplane_on() as a UNIX timestamp, or 0 if it is not set.
+	 * 
+	 * @return the last time airplane mode was engaged (in seconds).
+	 */
+	public long get_airplane_on_timestamp() {
+		require(FieldGroup.DEVICE_HISTORY);
 		return airplane_on;
 	}
 
@@ -992,7 +1003,8 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the list of alarm changes
 	 */
 	public TimeChange[] get_alarm_change() {
-		return alarm_change;
+		require(FieldGroup.ALARM);
+		return time_changes(alarm_change_time, alarm_change_value);
 	}
 
 	/**
@@ -1002,6 +1014,17 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the time the alarm was turned off
 	 */
 	public Calendar get_alarm_off() {
+		require(FieldGroup.ALARM);
+		return timestamp_to_calendar(alarm_off);
+	}
+
+	/**
+	 * Returns get_alarm_off() as a UNIX timestamp, or 0 if it is not set.
+	 * 
+	 * @return the time the alarm was turned off (in seconds).
+	 */
+	public long get_alarm_off_timestamp() {
+		require(FieldGroup.ALARM);
 		return alarm_off;
 	}
 
@@ -1021,7 +1044,8 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the times the alarm rang
 	 */
 	public Calendar[] get_alarm_ring() {
-		return alarm_ring;
+		require(FieldGroup.ALARM);
+		return timestamps_to_calendars(alarm_ring);
 	}
 
 	/**
@@ -1030,6 +1054,17 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the time the alarm was set for
 	 */
 	public Calendar get_alarm_set_time() {
+		require(FieldGroup.ALARM);
+		return timestamp_to_calendar(alarm_set_time);
+	}
+
+	/**
+	 * Returns get_alarm_set_time() as a UNIX timestamp, or 0 if it is not set.
+	 * 
+	 * @return the time the alarm was set for (in seconds).
+	 */
+	public long get_alarm_set_timestamp() {
+		require(FieldGroup.ALARM);
 		return alarm_set_time;
 	}
 
@@ -1039,7 +1074,8 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the times the snooze button was pressed
 	 */
 	public Calendar[] get_alarm_snooze() {
-		return alarm_snooze;
+		require(FieldGroup.ALARM);
+		return timestamps_to_calendars(alarm_snooze);
 	}
 
 	/**
@@ -1049,6 +1085,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the name of the function where assert occurred
 	 */
 	public char[] get_assert_function_name() {
+		require(FieldGroup.DEVICE_HISTORY);
 		return assert_function_name;
 	}
 
@@ -1059,6 +1096,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the line number on which an assert occurred
 	 */
 	public int get_assert_line_number() {
+		require(FieldGroup.DEVICE_HISTORY);
 		return assert_line_number;
 	}
 
@@ -1068,6 +1106,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the number of awakenings for the current record
 	 */
 	public int get_awakenings() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return awakenings;
 	}
 
@@ -1077,6 +1116,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the average number of awakenings from sleep history.
 	 */
 	public int get_awakenings_average() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return awakenings_average;
 	}
 
@@ -1090,12 +1130,15 @@ public class ZeoData implements Comparable<ZeoData> {
 	}
 
 	/**
-	 * Returns the base hypnogram as an array of integers.
+	 * Returns the base hypnogram as an array of integers. The hypnogram is
+	 * unpacked into a new array on each call, see
+	 * get_packed_base_hypnogram().
 	 * 
 	 * @return the base hypnogram
 	 */
 	public byte[] get_base_hypnogram() {
-		return base_hypnogram;
+		require(FieldGroup.HYPNOGRAM);
+		return base_hypnogram.unpack();
 	}
 
 	/**
@@ -1131,6 +1174,15 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return a calendar value that is the time the record was output.
 	 */
 	public Calendar get_current_time() {
+		return timestamp_to_calendar(current_time);
+	}
+
+	/**
+	 * Returns get_current_time() as a UNIX timestamp, or 0 if it is not set.
+	 * 
+	 * @return the time the record was output (in seconds).
+	 */
+	public long get_current_timestamp() {
 		return current_time;
 	}
 
@@ -1140,6 +1192,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the display hypnogram
 	 */
 	public byte[] get_display_hypnogram() {
+		require(FieldGroup.HYPNOGRAM);
 		return display_hypnogram;
 	}
 
@@ -1149,6 +1202,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the count value.
 	 */
 	public int get_display_hypnogram_count() {
+		require(FieldGroup.HYPNOGRAM);
 		return display_hypnogram_count;
 	}
 
@@ -1159,6 +1213,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the index of the forced display hypnogram bin
 	 */
 	public int get_display_hypnogram_forced_index() {
+		require(FieldGroup.HYPNOGRAM);
 		return display_hypnogram_forced_index;
 	}
 
@@ -1169,6 +1224,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the stage of the forced display hypnogram bin
 	 */
 	public int get_display_hypnogram_forced_stage() {
+		require(FieldGroup.HYPNOGRAM);
 		return display_hypnogram_forced_stage;
 	}
 
@@ -1179,6 +1235,15 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return a calendar value that is the end of the record's night.
 	 */
 	public Calendar get_end_of_night() {
+		return timestamp_to_calendar(end_of_night);
+	}
+
+	/**
+	 * Returns get_end_of_night() as a UNIX timestamp, or 0 if it is not set.
+	 * 
+	 * @return the end of the record's night (in seconds).
+	 */
+	public long get_end_of_night_timestamp() {
 		return end_of_night;
 	}
 
@@ -1189,6 +1254,17 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the last time a factory reset was performed
 	 */
 	public Calendar get_factory_reset() {
+		require(FieldGroup.DEVICE_HISTORY);
+		return timestamp_to_calendar(factory_reset);
+	}
+
+	/**
+	 * Returns get_factory_reset() as a UNIX timestamp, or 0 if it is not set.
+	 * 
+	 * @return the last time a factory reset was performed (in seconds).
+	 */
+	public long get_factory_reset_timestamp() {
+		require(FieldGroup.DEVICE_HISTORY);
 		return factory_reset;
 	}
 
@@ -1207,6 +1283,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the serial number of the most recently docked headband
 	 */
 	public long get_headband_id() {
+		require(FieldGroup.DEVICE_HISTORY);
 		return headband_id;
 	}
 
@@ -1217,6 +1294,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return an array of headband impedance values
 	 */
 	public short[] get_headband_impedance() {
+		require(FieldGroup.HEADBAND);
 		return headband_impedance;
 	}
 
@@ -1227,6 +1305,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return an array of headband packet loss values
 	 */
 	public short[] get_headband_packets() {
+		require(FieldGroup.HEADBAND);
 		return headband_packets;
 	}
 
@@ -1237,6 +1316,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return an array of headband received signal strength values
 	 */
 	public byte[] get_headband_rssi() {
+		require(FieldGroup.HEADBAND);
 		return headband_rssi;
 	}
 
@@ -1247,6 +1327,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return an array of headband docking status values
 	 */
 	public short[] get_headband_status() {
+		require(FieldGroup.HEADBAND);
 		return headband_status;
 	}
 
@@ -1256,6 +1337,18 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the hypnogram start time
 	 */
 	public Calendar get_hypnogram_start_time() {
+		require(FieldGroup.HYPNOGRAM);
+		return timestamp_to_calendar(hypnogram_start_time);
+	}
+
+	/**
+	 * Returns get_hypnogram_start_time() as a UNIX timestamp, or 0 if it is not
+	 * set.
+	 * 
+	 * @return the hypnogram start time (in seconds).
+	 */
+	public long get_hypnogram_start_timestamp() {
+		require(FieldGroup.HYPNOGRAM);
 		return hypnogram_start_time;
 	}
 
@@ -1265,6 +1358,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the Zeo hardware version
 	 */
 	public int get_id_hw() {
+		require(FieldGroup.DEVICE_HISTORY);
 		return id_hw;
 	}
 
@@ -1274,15 +1368,38 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the Zeo software version
 	 */
 	public int get_id_sw() {
+		require(FieldGroup.DEVICE_HISTORY);
 		return id_sw;
 	}
 
+	/**
+	 * Returns the base hypnogram packed two values to a byte, as stored in
+	 * the record, without unpacking it.
+	 * 
+	 * @return the packed base hypnogram
+	 */
+	public PackedHypnogram get_packed_base_hypnogram() {
+		require(FieldGroup.HYPNOGRAM);
+		return base_hypnogram;
+	}
+
 	/**
 	 * Returns the time the user got up.
 	 * 
 	 * @return the time the user got up
 	 */
 	public Calendar get_rise_time() {
+		require(FieldGroup.HYPNOGRAM);
+		return timestamp_to_calendar(rise_time);
+	}
+
+	/**
+	 * Returns get_rise_time() as a UNIX timestamp, or 0 if it is not set.
+	 * 
+	 * @return the time the user got up (in seconds).
+	 */
+	public long get_rise_timestamp() {
+		require(FieldGroup.HYPNOGRAM);
 		return rise_time;
 	}
 
@@ -1293,7 +1410,8 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the list of real-time clock changes
 	 */
 	public TimeChange[] get_rtc_change() {
-		return rtc_change;
+		require(FieldGroup.DEVICE_HISTORY);
+		return time_changes(rtc_change_time, rtc_change_value);
 	}
 
 	/**
@@ -1303,6 +1421,18 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the last time the sensor life counter was reset
 	 */
 	public Calendar get_sensor_life_reset() {
+		require(FieldGroup.DEVICE_HISTORY);
+		return timestamp_to_calendar(sensor_life_reset);
+	}
+
+	/**
+	 * Returns get_sensor_life_reset() as a UNIX timestamp, or 0 if it is not
+	 * set.
+	 * 
+	 * @return the last time the sensor life counter was reset (in seconds).
+	 */
+	public long get_sensor_life_reset_timestamp() {
+		require(FieldGroup.DEVICE_HISTORY);
 		return sensor_life_reset;
 	}
 
@@ -1312,6 +1442,16 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return a calendar value indicating the sleep_date (see set_sleep_date).
 	 */
 	public Calendar get_sleep_date() {
+		return timestamp_to_calendar(sleep_date);
+	}
+
+	/**
+	 * Returns get_sleep_date() as a UNIX timestamp, or 0 if it is not set.
+	 * 
+	 * @return a calendar value indicating the sleep_date (see set_sleep_date)
+	 *         (in seconds).
+	 */
+	public long get_sleep_date_timestamp() {
 		return sleep_date;
 	}
 
@@ -1321,6 +1461,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the sleep rating for the current record
 	 */
 	public int get_sleep_rating() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return sleep_rating;
 	}
 
@@ -1331,6 +1472,18 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the last time the sleep history was reset
 	 */
 	public Calendar get_sleep_stat_reset() {
+		require(FieldGroup.DEVICE_HISTORY);
+		return timestamp_to_calendar(sleep_stat_reset);
+	}
+
+	/**
+	 * Returns get_sleep_stat_reset() as a UNIX timestamp, or 0 if it is not
+	 * set.
+	 * 
+	 * @return the last time the sleep history was reset (in seconds).
+	 */
+	public long get_sleep_stat_reset_timestamp() {
+		require(FieldGroup.DEVICE_HISTORY);
 		return sleep_stat_reset;
 	}
 
@@ -1359,6 +1512,15 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return a calendar value that is the start of the record's night.
 	 */
 	public Calendar get_start_of_night() {
+		return timestamp_to_calendar(start_of_night);
+	}
+
+	/**
+	 * Returns get_start_of_night() as a UNIX timestamp, or 0 if it is not set.
+	 * 
+	 * @return the start of the record's night (in seconds).
+	 */
+	public long get_start_of_night_timestamp() {
 		return start_of_night;
 	}
 
@@ -1368,6 +1530,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the time in deep for the current record
 	 */
 	public int get_time_in_deep() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return time_in_deep;
 	}
 
@@ -1377,6 +1540,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the average time in deep
 	 */
 	public int get_time_in_deep_average() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return time_in_deep_average;
 	}
 
@@ -1386,6 +1550,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the best time in deep
 	 */
 	public int get_time_in_deep_best() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return time_in_deep_best;
 	}
 
@@ -1395,6 +1560,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the time in light for the current record
 	 */
 	public int get_time_in_light() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return time_in_light;
 	}
 
@@ -1404,6 +1570,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the average time in light
 	 */
 	public int get_time_in_light_average() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return time_in_light_average;
 	}
 
@@ -1413,6 +1580,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the time in rem for the current record
 	 */
 	public int get_time_in_rem() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return time_in_rem;
 	}
 
@@ -1422,6 +1590,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the average time in rem
 	 */
 	public int get_time_in_rem_average() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return time_in_rem_average;
 	}
 
@@ -1431,6 +1600,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the best time in rem
 	 */
 	public int get_time_in_rem_best() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return time_in_rem_best;
 	}
 
@@ -1440,6 +1610,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the time in wake for the current record
 	 */
 	public int get_time_in_wake() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return time_in_wake;
 	}
 
@@ -1449,6 +1620,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the average time in wake
 	 */
 	public int get_time_in_wake_average() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return time_in_wake_average;
 	}
 
@@ -1458,6 +1630,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the time to sleep for the current record
 	 */
 	public int get_time_to_z() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return time_to_z;
 	}
 
@@ -1467,6 +1640,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the average time to sleep
 	 */
 	public int get_time_to_z_average() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return time_to_z_average;
 	}
 
@@ -1476,6 +1650,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the total sleep time for the current record
 	 */
 	public int get_total_z() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return total_z;
 	}
 
@@ -1485,6 +1660,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the average total sleep time
 	 */
 	public int get_total_z_average() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return total_z_average;
 	}
 
@@ -1494,6 +1670,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the best total sleep time
 	 */
 	public int get_total_z_best() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return total_z_best;
 	}
 
@@ -1548,6 +1725,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the ZQ score for the current record
 	 */
 	public int get_zq_score() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return zq_score;
 	}
 
@@ -1557,6 +1735,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the average ZQ score
 	 */
 	public int get_zq_score_average() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return zq_score_average;
 	}
 
@@ -1566,9 +1745,27 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return the best ZQ score
 	 */
 	public int get_zq_score_best() {
+		require(FieldGroup.SLEEP_SUMMARY);
 		return zq_score_best;
 	}
 
+	/**
+	 * Returns true unless the CRC16 value in the record does not match its
+	 * contents. Records decoded with CrcCheck.LAZY are verified on the first
+	 * call, other records have already been verified by the decoder.
+	 * 
+	 * @return true if the record's CRC is valid.
+	 */
+	public synchronized boolean is_crc_valid() {
+		if (crc_record != null) {
+			int computed = Crc16.record_crc16(crc_record, 0, crc_record.limit());
+
+			crc_valid = (computed == crc);
+			crc_record = null;
+		}
+		return crc_valid;
+	}
+
 	/*
 	 * Flag "reset" records. We require the record to signal a watchdog reset
 	 * and be recorded with the "Card Insert" reason (which is used to record
@@ -1584,9 +1781,9 @@ public class ZeoData implements Comparable<ZeoData> {
 		long change_value; /* First RTC value in seconds */
 		long current_timestamp; /* Current record time in seconds */
 
-		change_time = rtc_change[0].getTime();
-		change_value = rtc_change[0].getValue();
-		current_timestamp = current_time.getTimeInMillis() / MSEC_PER_SECOND;
+		change_time = rtc_startup_time;
+		change_value = rtc_startup_value;
+		current_timestamp = current_time;
 
 		if (wdt_reset && write_reason == WriteReason.FS_REASON_CARD_INSERT
 				&& change_time == 0 && current_timestamp > change_value
@@ -1622,40 +1819,12 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * to this function.
 	 */
 	private void make_display_hypnogram_from_base() {
-		SleepStage display_value = SleepStage.UNDEFINED;
-		int i;
-		int i_base;
-		int i_display;
-		int n_display;
-		SleepStage stage;
-		SleepStage[] stages = new SleepStage[HYP_BASE_PER_DISPLAY];
-
 		/*
-		 * Determine the number of display hypnogram bins to fill in. Only fill
-		 * in bins for which all 10 base hypnograms are filled in, ignoring
-		 * remaining base hypnogram elements.
+		 * Fill in the display hypnogram bins for which all 10 base hypnogram
+		 * values are filled in (see DisplayHypnogram).
 		 */
-		n_display = base_hypnogram_count / HYP_BASE_PER_DISPLAY;
-
-		/* Fill in each display hypnogram bin */
-		for (i_display = 0; i_display < n_display; i_display++) {
-			/* Collect the base hypnogram values */
-			i_base = i_display * HYP_BASE_PER_DISPLAY;
-			for (i = 0; i < HYP_BASE_PER_DISPLAY; i++, i_base++) {
-				stage = SleepStage.convert(base_hypnogram[i_base]);
-
-				/* Convert all types of Deep sleep to the standard value */
-				if (stage == SleepStage.DEEP_2) {
-					stage = SleepStage.DEEP;
-				}
-				/* Store value for use in mode calculation */
-				stages[i] = stage;
-			}
-
-			/* Store the next value in the Display hypnogram */
-			display_value = determine_bin_value(stages, HYP_BASE_PER_DISPLAY);
-			display_hypnogram[i_display] = (byte) display_value.ordinal();
-		}
+		int n_display = DisplayHypnogram.downsample(base_hypnogram,
+				base_hypnogram_count, display_hypnogram);
 
 		/*
 		 * If a display hypnogram bin was forced to a specific stage, set it
@@ -1666,9 +1835,10 @@ public class ZeoData implements Comparable<ZeoData> {
 		}
 
 		/* The hypnogram size reflects all the data stored in it */
-		display_hypnogram_count = i_display;
+		display_hypnogram_count = n_display;
 	}
 
+
 	/**
 	 * Read in an 8 bit signed integer and return the value as a char (which is
 	 * signed).
@@ -1753,6 +1923,22 @@ public class ZeoData implements Comparable<ZeoData> {
 		return value;
 	}
 
+	/**
+	 * Make sure the given field group was decoded for this record.
+	 * 
+	 * @param group
+	 *            The field group a getter belongs to.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the field group was not decoded.
+	 */
+	private void require(FieldGroup group) {
+		if (!fields.contains(group)) {
+			throw new IllegalStateException("Field group " + group
+					+ " was not decoded for this record");
+		}
+	}
+
 	/**
 	 * Indicates whether or not the other_record is from the same "night" as
 	 * this record. This is accomplished by examining the two nights sleep_date
@@ -1763,8 +1949,7 @@ public class ZeoData implements Comparable<ZeoData> {
 	 *         sleep_date (ie. are from the same day of sleep).
 	 */
 	public boolean same_night(ZeoData other_record) {
-		if (sleep_date != null
-				&& sleep_date.equals(other_record.get_sleep_date())) {
+		if (sleep_date != 0 && sleep_date == other_record.sleep_date) {
 			return true;
 		}
 		return false;
@@ -1776,8 +1961,8 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * @return true if this night and other_record night have same start time.
 	 */
 	public boolean same_start_time(ZeoData other_record) {
-		if (start_of_night != null
-				&& start_of_night.equals(other_record.get_start_of_night())) {
+		if (start_of_night != 0
+				&& start_of_night == other_record.start_of_night) {
 			return true;
 		} else {
 			return false;
@@ -1788,28 +1973,58 @@ public class ZeoData implements Comparable<ZeoData> {
 	 * Set the sleep_date for the current record. This determines the "day of
 	 * sleep" for the record. Days of sleep start at 6am and run till the
 	 * following day at 6am. Subtracting 6 hours off the start of night value,
-	 * converting that to a calendar value and then forcing the time to 6am
+	 * truncating that to the start of its (UTC) day and then adding 6 hours
 	 * completes the conversion.
 	 */
 	public void set_sleep_date() {
-		if (start_of_night == null) {
-			sleep_date = null;
+		if (start_of_night == 0) {
+			sleep_date = 0;
 		} else {
-			sleep_date = (Calendar) start_of_night.clone();
-
 			/*
 			 * Adjust time back 6 hours to align sleep days with normal days.
 			 * This will set the proper date for the sleep day.
 			 */
-			sleep_date.add(Calendar.HOUR_OF_DAY, -6);
+			sleep_date = start_of_night - 6 * SECONDS_PER_HOUR;
 
-			/* Force the calendar hour to 6am. */
-			sleep_date.set(Calendar.HOUR_OF_DAY, 6);
-			sleep_date.set(Calendar.MINUTE, 0);
-			sleep_date.set(Calendar.SECOND, 0);
+			/* Force the time to 6am. */
+			sleep_date = sleep_date - floor_mod(sleep_date, SECONDS_PER_DAY)
+					+ 6 * SECONDS_PER_HOUR;
 		}
 	}
 
+	/**
+	 * Skip over bytes of the input stream that hold fields that are not being
+	 * decoded.
+	 * 
+	 * @param in
+	 *            The input stream to skip bytes of.
+	 * @param count
+	 *            How many bytes to skip.
+	 */
+	private static void skip(ByteBuffer in, int count) {
+		in.position(in.position() + count);
+	}
+
+	/**
+	 * Build the TimeChange values for a list of time changes.
+	 * 
+	 * @param change_time
+	 *            UNIX timestamps of when each change occurred.
+	 * @param change_value
+	 *            UNIX timestamps of the value each change set.
+	 * 
+	 * @return the time changes.
+	 */
+	private static TimeChange[] time_changes(long[] change_time,
+			long[] change_value) {
+		TimeChange[] changes = new TimeChange[change_time.length];
+
+		for (int i = 0; i < changes.length; i++) {
+			changes[i] = new TimeChange(change_time[i], change_value[i]);
+		}
+		return changes;
+	}
+
 	/**
 	 * Given a unix_timestamp, return a Calendar object that corresponds to that
 	 * timestamp.
@@ -1831,6 +2046,24 @@ public class ZeoData implements Comparable<ZeoData> {
 		}
 	}
 
+	/**
+	 * Given a list of UNIX timestamps, return the matching Calendar objects.
+	 * 
+	 * @param unix_timestamps
+	 *            UNIX timestamps, 0 for those not set.
+	 * 
+	 * @return Calendar values equivalent to the timestamps, null for those not
+	 *         set.
+	 */
+	static Calendar[] timestamps_to_calendars(long[] unix_timestamps) {
+		Calendar[] calendars = new Calendar[unix_timestamps.length];
+
+		for (int i = 0; i < calendars.length; i++) {
+			calendars[i] = timestamp_to_calendar(unix_timestamps[i]);
+		}
+		return calendars;
+	}
+
 	/**
 	 * Generate a human readable representation of the Zeo record.
 	 * 
@@ -1838,243 +2071,286 @@ public class ZeoData implements Comparable<ZeoData> {
 	 *         pair form.
 	 */
 	public String toHuman() {
-		SleepRating sleep_rating_enum;
-
 		StringWriter txt = new StringWriter();
-		PrintWriter out = new PrintWriter(txt);
 
-		/*
-		 * Define an array used to convert sleep stage values to displayed sleep
-		 * stages. We want to show a single letter for each of the sleep stages
-		 * instead of just the numeric values.
-		 */
-		char[] hypnogram_chars = { '.', 'w', 'r', 'l', 'd', '?', 'L' };
-
-		/* Convert numeric sleep rating to enumerated value */
-		sleep_rating_enum = SleepRating.convert(sleep_rating);
-
-		out.printf("record version= %d", format_version);
-		out.println();
-		out.printf("current_time  = %s", calendar_to_human_string(current_time));
-		out.println();
-		out.printf("crc           = %s", crc);
-		out.println();
-		out.printf("is_nap        = %s", is_nap);
-		out.println();
-		out.printf("sleep_date    = %s", calendar_to_human_string(sleep_date));
-		out.println();
-		out.printf("airplane_mode = %s", airplane_mode);
-		out.println();
-		out.printf("alarm_reason  = %s", alarm_reason);
-		out.println();
-		out.printf("backlight     = %s", backlight);
-		out.println();
-		out.printf("clock_mode    = %s", clock_mode);
-		out.println();
-		out.printf("sleep_valid   = %s", sleep_valid);
-		out.println();
-		out.printf("snooze_time   = %s", snooze_time);
-		out.println();
-		out.printf("wake_tone     = %s", wake_tone.ordinal());
-		out.println();
-		out.printf("wake_window   = %s", wake_window);
-		out.println();
-		out.printf("write_reason  = %s", write_reason);
-		out.println();
-		out.printf("zeo_wake_on   = %s", zeo_wake_on);
-		out.println();
-		out.printf("wdt_reset     = %s", wdt_reset);
-		out.println();
-
-		out.printf("airplane_off  = %s", calendar_to_human_string(airplane_off));
-		out.println();
-		out.printf("airplane_on   = %s", calendar_to_human_string(airplane_on));
-		out.println();
+		try {
+			write_human(new ZeoReportWriter(txt));
+		} catch (IOException e) {
+			/* A StringWriter never throws. */
+			throw new IllegalStateException(e);
+		}
+		return txt.toString();
+	}
+
+	/**
+	 * Write the record in human readable key-value pair form, the same as
+	 * toHuman() returns it.
+	 * 
+	 * @param out
+	 *            The report writer to write the record to.
+	 * 
+	 * @throws IOException
+	 *             if the record cannot be written.
+	 */
+	public void write_human(ZeoReportWriter out) throws IOException {
+		/* Every field is written so every field group must be decoded. */
+		for (FieldGroup group : FieldGroup.values()) {
+			require(group);
+		}
+
+		out.text("record version= ");
+		out.number(format_version);
+		out.newline();
+		out.text("current_time  = ");
+		out.timestamp(current_time);
+		out.newline();
+		out.text("crc           = ");
+		out.number(crc);
+		out.newline();
+		out.text("is_nap        = ");
+		out.text(String.valueOf(is_nap));
+		out.newline();
+		out.text("sleep_date    = ");
+		out.timestamp(sleep_date);
+		out.newline();
+		out.text("airplane_mode = ");
+		out.text(String.valueOf(airplane_mode));
+		out.newline();
+		out.text("alarm_reason  = ");
+		out.text(String.valueOf(alarm_reason));
+		out.newline();
+		out.text("backlight     = ");
+		out.number(backlight);
+		out.newline();
+		out.text("clock_mode    = ");
+		out.text(String.valueOf(clock_mode));
+		out.newline();
+		out.text("sleep_valid   = ");
+		out.text(String.valueOf(sleep_valid));
+		out.newline();
+		out.text("snooze_time   = ");
+		out.number(snooze_time);
+		out.newline();
+		out.text("wake_tone     = ");
+		out.number(wake_tone.ordinal());
+		out.newline();
+		out.text("wake_window   = ");
+		out.number(wake_window);
+		out.newline();
+		out.text("write_reason  = ");
+		out.text(String.valueOf(write_reason));
+		out.newline();
+		out.text("zeo_wake_on   = ");
+		out.text(String.valueOf(zeo_wake_on));
+		out.newline();
+		out.text("wdt_reset     = ");
+		out.text(String.valueOf(wdt_reset));
+		out.newline();
+
+		out.text("airplane_off  = ");
+		out.timestamp(airplane_off);
+		out.newline();
+		out.text("airplane_on   = ");
+		out.timestamp(airplane_on);
+		out.newline();
 		for (int i = 0; i < EVENTS_SAVED; i++) {
-			out.printf("alarm_change  = %s", alarm_change[i]);
-			out.println();
+			out.text("alarm_change  = ");
+			out.time_change(alarm_change_time[i], alarm_change_value[i]);
+			out.newline();
 		}
-		out.printf("assert_function_name = ");
+		out.text("assert_function_name = ");
 		for (int i = 0; i < ASSERT_NAME_MAX; i++) {
 			if (assert_function_name[i] == 0) {
 				break;
 			}
-			out.printf("%c", assert_function_name[i]);
+			out.character(assert_function_name[i]);
 		}
-		out.println();
-		out.printf("assert_line_number   = %d", assert_line_number);
-		out.println();
-		out.printf("factory_reset = %s",
-				calendar_to_human_string(factory_reset));
-		out.println();
-		out.printf("headband_id   = %s", headband_id);
-		out.println();
-		out.printf("headband_impedance = ");
+		out.newline();
+		out.text("assert_line_number   = ");
+		out.number(assert_line_number);
+		out.newline();
+		out.text("factory_reset = ");
+		out.timestamp(factory_reset);
+		out.newline();
+		out.text("headband_id   = ");
+		out.number(headband_id);
+		out.newline();
+		out.text("headband_impedance = ");
 		for (int i = 0; i < HEADBAND_IMPEDANCE_SIZE; i++) {
-			out.printf("%3d ", headband_impedance[i]);
+			out.value(headband_impedance[i]);
 		}
-		out.println();
-		out.printf("headband_packets   = ");
+		out.newline();
+		out.text("headband_packets   = ");
 		for (int i = 0; i < HEADBAND_PACKETS_SIZE; i++) {
-			out.printf("%3d ", headband_packets[i]);
+			out.value(headband_packets[i]);
 		}
-		out.println();
-		out.printf("headband_rssi      = ");
+		out.newline();
+		out.text("headband_rssi      = ");
 		for (int i = 0; i < HEADBAND_RSSI_SIZE; i++) {
-			out.printf("%3d ", headband_rssi[i]);
+			out.value(headband_rssi[i]);
 		}
-		out.println();
-		out.printf("headband_status    = ");
+		out.newline();
+		out.text("headband_status    = ");
 		for (int i = 0; i < HEADBAND_STATUS_SIZE; i++) {
 			/*
-			 * Print the four values packed into each byte of status data. The
+			 * Write the four values packed into each byte of status data. The
 			 * packing order is defined in the fs_save_scalar function in the
 			 * fs_save_data.c base source file.
 			 */
-			out.printf("%3d ", (headband_status[i] >> 0) & 0x3);
-			out.printf("%3d ", (headband_status[i] >> 2) & 0x3);
-			out.printf("%3d ", (headband_status[i] >> 4) & 0x3);
-			out.printf("%3d ", (headband_status[i] >> 6) & 0x3);
+			out.value((headband_status[i] >> 0) & 0x3);
+			out.value((headband_status[i] >> 2) & 0x3);
+			out.value((headband_status[i] >> 4) & 0x3);
+			out.value((headband_status[i] >> 6) & 0x3);
 		}
-		out.println();
-
-		out.printf("id_hw                 = %s", id_hw);
-		out.println();
-		out.printf("id_sw                 = %s", id_sw);
-		out.println();
+		out.newline();
+
+		out.text("id_hw                 = ");
+		out.number(id_hw);
+		out.newline();
+		out.text("id_sw                 = ");
+		out.number(id_sw);
+		out.newline();
 		for (int i = 0; i < EVENTS_SAVED; i++) {
-			out.printf("rtc_change            = %s", rtc_change[i]);
-			out.println();
+			out.text("rtc_change            = ");
+			out.time_change(rtc_change_time[i], rtc_change_value[i]);
+			out.newline();
 		}
-		out.printf("sensor_life_reset     = %s",
-				calendar_to_human_string(sensor_life_reset));
-		out.println();
-		out.printf("sleep_stat_reset      = %s",
-				calendar_to_human_string(sleep_stat_reset));
-		out.println();
+		out.text("sensor_life_reset     = ");
+		out.timestamp(sensor_life_reset);
+		out.newline();
+		out.text("sleep_stat_reset      = ");
+		out.timestamp(sleep_stat_reset);
+		out.newline();
 
 		/* Sleep Information */
 		for (int i = 0; i < ALARM_EVENTS_SAVED; i++) {
-			out.printf("alarm_ring            = %s",
-					calendar_to_human_string(alarm_ring[i]));
-			out.println();
+			out.text("alarm_ring            = ");
+			out.timestamp(alarm_ring[i]);
+			out.newline();
 		}
 		for (int i = 0; i < SNOOZE_EVENTS_SAVED; i++) {
-			out.printf("alarm_snooze          = %s",
-					calendar_to_human_string(alarm_snooze[i]));
-			out.println();
+			out.text("alarm_snooze          = ");
+			out.timestamp(alarm_snooze[i]);
+			out.newline();
 		}
-		out.printf("alarm_off             = %s",
-				calendar_to_human_string(alarm_off));
-		out.println();
-		out.printf("alarm_set_time        = %s",
-				calendar_to_human_string(alarm_set_time));
-		out.println();
-		out.printf("awakenings            = %s", awakenings);
-		out.println();
-		out.printf("awakenings_average    = %s", awakenings_average);
-		out.println();
-		out.printf("start_of_night        = %s",
-				calendar_to_human_string(start_of_night));
-		out.println();
-		out.printf("end_of_night          = %s",
-				calendar_to_human_string(end_of_night));
-		out.println();
-		out.printf("rise_time             = %s",
-				calendar_to_human_string(rise_time));
-		out.println();
-		out.printf("sleep_rating          = %s (%s)", sleep_rating,
-				sleep_rating_enum);
-		out.println();
-		out.printf("time_in_deep          = %s",
-				epochs_to_human_string(time_in_deep));
-		out.println();
-		out.printf("time_in_deep_average  = %s",
-				epochs_to_human_string(time_in_deep_average));
-		out.println();
-		out.printf("time_in_deep_best     = %s",
-				epochs_to_human_string(time_in_deep_best));
-		out.println();
-		out.printf("time_in_light         = %s",
-				epochs_to_human_string(time_in_light));
-		out.println();
-		out.printf("time_in_light_average = %s",
-				epochs_to_human_string(time_in_light_average));
-		out.println();
-		out.printf("time_in_rem           = %s",
-				epochs_to_human_string(time_in_rem));
-		out.println();
-		out.printf("time_in_rem_average   = %s",
-				epochs_to_human_string(time_in_rem_average));
-		out.println();
-		out.printf("time_in_rem_best      = %s",
-				epochs_to_human_string(time_in_rem_best));
-		out.println();
-		out.printf("time_in_wake          = %s",
-				epochs_to_human_string(time_in_wake));
-		out.println();
-		out.printf("time_in_wake_average  = %s",
-				epochs_to_human_string(time_in_wake_average));
-		out.println();
-		out.printf("time_to_z             = %s",
-				epochs_to_human_string(time_to_z));
-		out.println();
-		out.printf("time_to_z_average     = %s",
-				epochs_to_human_string(time_to_z_average));
-		out.println();
-		out.printf("total_z               = %s",
-				epochs_to_human_string(total_z));
-		out.println();
-		out.printf("total_z_average       = %s",
-				epochs_to_human_string(total_z_average));
-		out.println();
-		out.printf("total_z_best          = %s",
-				epochs_to_human_string(total_z_best));
-		out.println();
-		out.printf("zq_score              = %s", zq_score);
-		out.println();
-		out.printf("zq_score_average      = %s", zq_score_average);
-		out.println();
-		out.printf("zq_score_best         = %s", zq_score_best);
-		out.println();
+		out.text("alarm_off             = ");
+		out.timestamp(alarm_off);
+		out.newline();
+		out.text("alarm_set_time        = ");
+		out.timestamp(alarm_set_time);
+		out.newline();
+		out.text("awakenings            = ");
+		out.number(awakenings);
+		out.newline();
+		out.text("awakenings_average    = ");
+		out.number(awakenings_average);
+		out.newline();
+		out.text("start_of_night        = ");
+		out.timestamp(start_of_night);
+		out.newline();
+		out.text("end_of_night          = ");
+		out.timestamp(end_of_night);
+		out.newline();
+		out.text("rise_time             = ");
+		out.timestamp(rise_time);
+		out.newline();
+		out.text("sleep_rating          = ");
+		out.number(sleep_rating);
+		out.text(" (");
+		out.text(String.valueOf(SleepRating.convert(sleep_rating)));
+		out.character(')');
+		out.newline();
+		out.text("time_in_deep          = ");
+		out.epochs(time_in_deep);
+		out.newline();
+		out.text("time_in_deep_average  = ");
+		out.epochs(time_in_deep_average);
+		out.newline();
+		out.text("time_in_deep_best     = ");
+		out.epochs(time_in_deep_best);
+		out.newline();
+		out.text("time_in_light         = ");
+		out.epochs(time_in_light);
+		out.newline();
+		out.text("time_in_light_average = ");
+		out.epochs(time_in_light_average);
+		out.newline();
+		out.text("time_in_rem           = ");
+		out.epochs(time_in_rem);
+		out.newline();
+		out.text("time_in_rem_average   = ");
+		out.epochs(time_in_rem_average);
+		out.newline();
+		out.text("time_in_rem_best      = ");
+		out.epochs(time_in_rem_best);
+		out.newline();
+		out.text("time_in_wake          = ");
+		out.epochs(time_in_wake);
+		out.newline();
+		out.text("time_in_wake_average  = ");
+		out.epochs(time_in_wake_average);
+		out.newline();
+		out.text("time_to_z             = ");
+		out.epochs(time_to_z);
+		out.newline();
+		out.text("time_to_z_average     = ");
+		out.epochs(time_to_z_average);
+		out.newline();
+		out.text("total_z               = ");
+		out.epochs(total_z);
+		out.newline();
+		out.text("total_z_average       = ");
+		out.epochs(total_z_average);
+		out.newline();
+		out.text("total_z_best          = ");
+		out.epochs(total_z_best);
+		out.newline();
+		out.text("zq_score              = ");
+		out.number(zq_score);
+		out.newline();
+		out.text("zq_score_average      = ");
+		out.number(zq_score_average);
+		out.newline();
+		out.text("zq_score_best         = ");
+		out.number(zq_score_best);
+		out.newline();
 
 		/*
-		 * Print display hypnogram forced stage and the index in the hypnogram
+		 * Write display hypnogram forced stage and the index in the hypnogram
 		 * where the stage is forced.
 		 */
-		out.printf("display_hypnogram_forced_index = %s",
-				display_hypnogram_forced_index);
-		out.println();
-		out.printf("display_hypnogram_forced_stage = %s",
-				display_hypnogram_forced_stage);
-		out.println();
-
-		/* Print the starting timestamp for the hypnograms. */
-		out.printf("hypnogram_start_time  = %s",
-				calendar_to_human_string(hypnogram_start_time));
-		out.println();
-
-		out.printf("base_hypnogram_count  = %s", base_hypnogram_count);
-		out.println();
-		out.write("base_hypnogram = ");
+		out.text("display_hypnogram_forced_index = ");
+		out.number(display_hypnogram_forced_index);
+		out.newline();
+		out.text("display_hypnogram_forced_stage = ");
+		out.number(display_hypnogram_forced_stage);
+		out.newline();
+
+		/* Write the starting timestamp for the hypnograms. */
+		out.text("hypnogram_start_time  = ");
+		out.timestamp(hypnogram_start_time);
+		out.newline();
+
+		out.text("base_hypnogram_count  = ");
+		out.number(base_hypnogram_count);
+		out.newline();
+		out.text("base_hypnogram = ");
 		for (int i = 0; i < base_hypnogram_count; i++) {
-			out.printf("%c", hypnogram_chars[base_hypnogram[i]]);
+			out.character(HYPNOGRAM_CHARS[base_hypnogram.get(i)]);
 		}
-		out.println();
+		out.newline();
 
-		out.printf("display_hypnogram_count = %s", display_hypnogram_count);
-		out.println();
-		out.write("display hypnogram = ");
+		out.text("display_hypnogram_count = ");
+		out.number(display_hypnogram_count);
+		out.newline();
+		out.text("display hypnogram = ");
 		for (int i = 0; i < display_hypnogram_count; i++) {
-			out.printf("%c", hypnogram_chars[display_hypnogram[i]]);
+			out.character(HYPNOGRAM_CHARS[display_hypnogram[i]]);
 		}
-		out.println();
+		out.newline();
 
 		/* Add an extra blank line between records */
-		out.println();
-		out.flush();
-
-		return txt.toString();
+		out.newline();
 	}
 
 	/**
@@ -2084,246 +2360,184 @@ public class ZeoData implements Comparable<ZeoData> {
 	 */
 	public String toXML() {
 		StringWriter txt = new StringWriter();
-		PrintWriter out = new PrintWriter(txt);
-
-		out.printf("<sleep_record version=\"%d\">", format_version);
-		out.println();
-		out.println("<current_time>");
-		out.write(calendar_to_xml(current_time));
-		out.println("</current_time>");
-		out.printf("<crc>%s</crc>", crc);
-		out.println();
-		out.printf("<is_nap>%s</is_nap>", is_nap ? 1 : 0);
-		out.println();
-		out.println("<sleep_date>");
-		out.write(calendar_to_xml(sleep_date));
-		out.println("</sleep_date>");
+
+		try {
+			write_xml(new ZeoXmlWriter(txt));
+		} catch (IOException e) {
+			/* A StringWriter never throws. */
+			throw new IllegalStateException(e);
+		}
+		return txt.toString();
+	}
+
+	/**
+	 * Write the record as XML, the same as toXML() returns it.
+	 * 
+	 * @param out
+	 *            The XML writer to write the record to.
+	 * 
+	 * @throws IOException
+	 *             if the record cannot be written.
+	 */
+	public void write_xml(ZeoXmlWriter out) throws IOException {
+		/* Every field is written so every field group must be decoded. */
+		for (FieldGroup group : FieldGroup.values()) {
+			require(group);
+		}
+
+		out.text("<sleep_record version=\"");
+		out.number(format_version);
+		out.text("\">");
+		out.newline();
+		out.timestamp("current_time", current_time);
+		out.element("crc", crc);
+		out.element("is_nap", is_nap ? 1 : 0);
+		out.timestamp("sleep_date", sleep_date);
 
 		/* Device History */
-		out.println("<device_history>");
+		out.start("device_history");
 		/* Packed values. */
-		out.printf("<airplane_mode>%s</airplane_mode>", airplane_mode ? 1 : 0);
-		out.println();
-		out.printf("<alarm_reason>%s</alarm_reason>", alarm_reason.ordinal());
-		out.println();
-		out.printf("<backlight>%s</backlight>", backlight);
-		out.println();
-		out.printf("<clock_mode>%s</clock_mode>", clock_mode.ordinal());
-		out.println();
-		out.printf("<sleep_valid>%s</sleep_valid>", sleep_valid);
-		out.println();
-		out.printf("<snooze_time>%s</snooze_time>", snooze_time);
-		out.println();
-		out.printf("<wake_tone>%s</wake_tone>", wake_tone.ordinal());
-		out.println();
-		out.printf("<wake_window>%s</wake_window>", wake_window);
-		out.println();
-		out.printf("<write_reason>%s</write_reason>", write_reason.ordinal());
-		out.println();
-		out.printf("<zeo_wake_on>%s</zeo_wake_on>", zeo_wake_on ? 1 : 0);
-		out.println();
-		out.printf("<wdt_reset>%s</wdt_reset>", wdt_reset ? 1 : 0);
-		out.println();
-
-		out.println("<airplane_off>");
-		out.write(calendar_to_xml(airplane_off));
-		out.println("</airplane_off>");
-		out.println("<airplane_on>");
-		out.write(calendar_to_xml(airplane_on));
-		out.println("</airplane_on>");
-		out.println("<alarm_change>");
+		out.element("airplane_mode", airplane_mode ? 1 : 0);
+		out.element("alarm_reason", alarm_reason.ordinal());
+		out.element("backlight", backlight);
+		out.element("clock_mode", clock_mode.ordinal());
+		out.element("sleep_valid", String.valueOf(sleep_valid));
+		out.element("snooze_time", snooze_time);
+		out.element("wake_tone", wake_tone.ordinal());
+		out.element("wake_window", wake_window);
+		out.element("write_reason", write_reason.ordinal());
+		out.element("zeo_wake_on", zeo_wake_on ? 1 : 0);
+		out.element("wdt_reset", wdt_reset ? 1 : 0);
+
+		out.timestamp("airplane_off", airplane_off);
+		out.timestamp("airplane_on", airplane_on);
+		out.start("alarm_change");
 		for (int i = 0; i < EVENTS_SAVED; i++) {
-			out.write(alarm_change[i].toXML());
+			out.time_change(alarm_change_time[i], alarm_change_value[i]);
 		}
-		out.println("</alarm_change>");
-		out.println("<assert_function_name>");
+		out.end("alarm_change");
+		out.start("assert_function_name");
 		for (int i = 0; i < ASSERT_NAME_MAX; i++) {
 			if (assert_function_name[i] == 0) {
 				break;
 			}
-			out.printf("%c", assert_function_name[i]);
+			out.character(assert_function_name[i]);
 		}
-		out.println("</assert_function_name>");
-		out.printf("<assert_line_number>%d</assert_line_number>",
-				assert_line_number);
-		out.println();
-		out.println("<factory_reset>");
-		out.write(calendar_to_xml(factory_reset));
-		out.println("</factory_reset>");
-		out.printf("<headband_id>%d</headband_id>", headband_id);
-		out.println();
-		out.println("<headband_impedance>");
+		out.end("assert_function_name");
+		out.element("assert_line_number", assert_line_number);
+		out.timestamp("factory_reset", factory_reset);
+		out.element("headband_id", headband_id);
+		out.start("headband_impedance");
 		for (int i = 0; i < HEADBAND_IMPEDANCE_SIZE; i++) {
-			out.printf("%d ", headband_impedance[i]);
+			out.value(headband_impedance[i]);
 		}
-		out.println();
-		out.println("</headband_impedance>");
-		out.println("<headband_packets>");
+		out.newline();
+		out.end("headband_impedance");
+		out.start("headband_packets");
 		for (int i = 0; i < HEADBAND_PACKETS_SIZE; i++) {
-			out.printf("%d ", headband_packets[i]);
+			out.value(headband_packets[i]);
 		}
-		out.println();
-		out.println("</headband_packets>");
-		out.println("<headband_rssi>");
+		out.newline();
+		out.end("headband_packets");
+		out.start("headband_rssi");
 		for (int i = 0; i < HEADBAND_RSSI_SIZE; i++) {
-			out.printf("%d ", headband_rssi[i]);
+			out.value(headband_rssi[i]);
 		}
-		out.println();
-		out.println("</headband_rssi>");
-		out.println("<headband_status>");
+		out.newline();
+		out.end("headband_rssi");
+		out.start("headband_status");
 		for (int i = 0; i < HEADBAND_STATUS_SIZE; i++) {
 			/*
 			 * Print the four values packed into each byte of status data. The
 			 * packing order is defined in the fs_save_scalar function in the
 			 * fs_save_data.c base source file.
 			 */
-			out.printf("%d ", (headband_status[i] >> 0) & 0x3);
-			out.printf("%d ", (headband_status[i] >> 2) & 0x3);
-			out.printf("%d ", (headband_status[i] >> 4) & 0x3);
-			out.printf("%d ", (headband_status[i] >> 6) & 0x3);
+			out.value((headband_status[i] >> 0) & 0x3);
+			out.value((headband_status[i] >> 2) & 0x3);
+			out.value((headband_status[i] >> 4) & 0x3);
+			out.value((headband_status[i] >> 6) & 0x3);
 		}
-		out.println();
-		out.println("</headband_status>");
-		out.printf("<id_hw>%s</id_hw>", id_hw);
-		out.println();
-		out.printf("<id_sw>%s</id_sw>", id_sw);
-		out.println();
-		out.println("<rtc_change>");
+		out.newline();
+		out.end("headband_status");
+		out.element("id_hw", id_hw);
+		out.element("id_sw", id_sw);
+		out.start("rtc_change");
 		for (int i = 0; i < EVENTS_SAVED; i++) {
-			out.write(rtc_change[i].toXML());
+			out.time_change(rtc_change_time[i], rtc_change_value[i]);
 		}
-		out.println("</rtc_change>");
-		out.println("<sensor_life_reset>");
-		out.write(calendar_to_xml(sensor_life_reset));
-		out.println("</sensor_life_reset>");
-		out.println("<sleep_stat_reset>");
-		out.write(calendar_to_xml(sleep_stat_reset));
-		out.println("</sleep_stat_reset>");
+		out.end("rtc_change");
+		out.timestamp("sensor_life_reset", sensor_life_reset);
+		out.timestamp("sleep_stat_reset", sleep_stat_reset);
 
-		out.println("</device_history>");
+		out.end("device_history");
 
 		/* Sleep Information */
-		out.println("<sleep_information>");
-		out.println("<alarm_ring>");
+		out.start("sleep_information");
+		out.start("alarm_ring");
 		for (int i = 0; i < ALARM_EVENTS_SAVED; i++) {
-			out.println("<ring>");
-			out.write(calendar_to_xml(alarm_ring[i]));
-			out.println("</ring>");
+			out.timestamp("ring", alarm_ring[i]);
 		}
-		out.println("</alarm_ring>");
-		out.println("<alarm_snooze>");
+		out.end("alarm_ring");
+		out.start("alarm_snooze");
 		for (int i = 0; i < SNOOZE_EVENTS_SAVED; i++) {
-			out.println("<snooze>");
-			out.write(calendar_to_xml(alarm_snooze[i]));
-			out.println("</snooze>");
+			out.timestamp("snooze", alarm_snooze[i]);
 		}
-		out.println("</alarm_snooze>");
-		out.println("<alarm_off>");
-		out.write(calendar_to_xml(alarm_off));
-		out.println("</alarm_off>");
-		out.println("<alarm_set_time>");
-		out.write(calendar_to_xml(alarm_set_time));
-		out.println("</alarm_set_time>");
-		out.printf("<awakenings>%s</awakenings>", awakenings);
-		out.println();
-		out.printf("<awakenings_average>%s</awakenings_average>",
-				awakenings_average);
-		out.println();
-		out.println("<end_of_night>");
-		out.write(calendar_to_xml(end_of_night));
-		out.println("</end_of_night>");
-		out.println("<rise_time>");
-		out.write(calendar_to_xml(rise_time));
-		out.println("</rise_time>");
-		out.println("<start_of_night>");
-		out.write(calendar_to_xml(start_of_night));
-		out.println("</start_of_night>");
-		out.printf("<sleep_rating>%s</sleep_rating>", sleep_rating);
-		out.println();
-		out.printf("<time_in_deep>%s</time_in_deep>", time_in_deep);
-		out.println();
-		out.printf("<time_in_deep_average>%s</time_in_deep_average>",
-				time_in_deep_average);
-		out.println();
-		out.printf("<time_in_deep_best>%s</time_in_deep_best>",
-				time_in_deep_best);
-		out.println();
-		out.printf("<time_in_light>%s</time_in_light>", time_in_light);
-		out.println();
-		out.printf("<time_in_light_average>%s</time_in_light_average>",
-				time_in_light_average);
-		out.println();
-		out.printf("<time_in_rem>%s</time_in_rem>", time_in_rem);
-		out.println();
-		out.printf("<time_in_rem_average>%s</time_in_rem_average>",
-				time_in_rem_average);
-		out.println();
-		out.printf("<time_in_rem_best>%s</time_in_rem_best>", time_in_rem_best);
-		out.println();
-		out.printf("<time_in_wake>%s</time_in_wake>", time_in_wake);
-		out.println();
-		out.printf("<time_in_wake_average>%s</time_in_wake_average>",
-				time_in_wake_average);
-		out.println();
-		out.printf("<time_to_z>%s</time_to_z>", time_to_z);
-		out.println();
-		out.printf("<time_to_z_average>%s</time_to_z_average>",
-				time_to_z_average);
-		out.println();
-		out.printf("<total_z>%s</total_z>", total_z);
-		out.println();
-		out.printf("<total_z_average>%s</total_z_average>", total_z_average);
-		out.println();
-		out.printf("<total_z_best>%s</total_z_best>", total_z_best);
-		out.println();
-		out.printf("<zq_score>%s</zq_score>", zq_score);
-		out.println();
-		out.printf("<zq_score_average>%s</zq_score_average>", zq_score_average);
-		out.println();
-		out.printf("<zq_score_best>%s</zq_score_best>", zq_score_best);
-		out.println();
+		out.end("alarm_snooze");
+		out.timestamp("alarm_off", alarm_off);
+		out.timestamp("alarm_set_time", alarm_set_time);
+		out.element("awakenings", awakenings);
+		out.element("awakenings_average", awakenings_average);
+		out.timestamp("end_of_night", end_of_night);
+		out.timestamp("rise_time", rise_time);
+		out.timestamp("start_of_night", start_of_night);
+		out.element("sleep_rating", sleep_rating);
+		out.element("time_in_deep", time_in_deep);
+		out.element("time_in_deep_average", time_in_deep_average);
+		out.element("time_in_deep_best", time_in_deep_best);
+		out.element("time_in_light", time_in_light);
+		out.element("time_in_light_average", time_in_light_average);
+		out.element("time_in_rem", time_in_rem);
+		out.element("time_in_rem_average", time_in_rem_average);
+		out.element("time_in_rem_best", time_in_rem_best);
+		out.element("time_in_wake", time_in_wake);
+		out.element("time_in_wake_average", time_in_wake_average);
+		out.element("time_to_z", time_to_z);
+		out.element("time_to_z_average", time_to_z_average);
+		out.element("total_z", total_z);
+		out.element("total_z_average", total_z_average);
+		out.element("total_z_best", total_z_best);
+		out.element("zq_score", zq_score);
+		out.element("zq_score_average", zq_score_average);
+		out.element("zq_score_best", zq_score_best);
 
 		/*
-		 * Print XMLized version of the forced index and stage for the display
-		 * hypnogram.
+		 * Write the XMLized version of the forced index and stage for the
+		 * display hypnogram.
 		 */
-		out.printf("<display_hypnogram_forced_index>" + "%s"
-				+ "</display_hypnogram_forced_index>",
+		out.element("display_hypnogram_forced_index",
 				display_hypnogram_forced_index);
-		out.println();
-		out.printf("<display_hypnogram_forced_stage>" + "%s"
-				+ "</display_hypnogram_forced_stage>",
+		out.element("display_hypnogram_forced_stage",
 				display_hypnogram_forced_stage);
-		out.println();
 
-		/* Print the XMLized version of the hypnogram starting time. */
-		out.println("<hypnogram_start_time>");
-		out.write(calendar_to_xml(hypnogram_start_time));
-		out.println("</hypnogram_start_time>");
+		/* Write the XMLized version of the hypnogram starting time. */
+		out.timestamp("hypnogram_start_time", hypnogram_start_time);
 
-		out.printf("<display_hypnogram_count>%s</display_hypnogram_count>",
-				display_hypnogram_count);
-		out.println();
-		out.println("<display_hypnogram>");
+		out.element("display_hypnogram_count", display_hypnogram_count);
+		out.start("display_hypnogram");
 		for (int i = 0; i < display_hypnogram_count; i++) {
-			out.printf("%d ", display_hypnogram[i]);
+			out.value(display_hypnogram[i]);
 		}
-		out.println();
-		out.println("</display_hypnogram>");
-		out.printf("<base_hypnogram_count>%s</base_hypnogram_count>",
-				base_hypnogram_count);
-		out.println();
-		out.println("<base_hypnogram>");
+		out.newline();
+		out.end("display_hypnogram");
+		out.element("base_hypnogram_count", base_hypnogram_count);
+		out.start("base_hypnogram");
 		for (int i = 0; i < base_hypnogram_count; i++) {
-			out.printf("%d ", base_hypnogram[i]);
+			out.value(base_hypnogram.get(i));
 		}
-		out.println();
-		out.println("</base_hypnogram>");
+		out.newline();
+		out.end("base_hypnogram");
 
-		out.println("</sleep_information>");
-		out.println("</sleep_record>");
-		out.flush();
-
-		return txt.toString();
+		out.end("sleep_information");
+		out.end("sleep_record");
 	}
 }
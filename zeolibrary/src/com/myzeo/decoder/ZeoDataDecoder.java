@@ -31,22 +31,31 @@ THE POSSIBILITY OF SUCH DAMAGE.
 ------------------------------------------------------------------------------*/
 package src.com.myzeo.decoder;
 
+import java.io.BufferedWriter;
 import java.io.EOFException;
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Driver application that reads Zeo data records and prints them in XML or
@@ -123,10 +132,15 @@ public class ZeoDataDecoder {
 			+ "the intended XML file zeosleep.xml (please include .xml extension).\n"
 			+ "\n";
 
+	/* Number of times each output is written when benchmarking. */
+	private static final int BENCHMARK_RUNS = 10;
+
 	static final String OPTIONS = "Options:\n"
-			+ "-e or --expand  : Don't remove related records for each night.\n"
-			+ "-r or --resets  : Output just watchdog reset records.\n"
-			+ "-V or --version : Display decoder version and exit";
+			+ "-b or --benchmark: Report decoding and writing throughput.\n"
+			+ "-e or --expand   : Don't remove related records for each night.\n"
+			+ "-p or --parallel : Decode records on all available processors.\n"
+			+ "-r or --resets   : Output just watchdog reset records.\n"
+			+ "-V or --version  : Display decoder version and exit";
 
 	static final String USAGE = "Usage:\n"
 			+ "java -jar OpenDecoder.jar [options] directory/zeosleep.dat\n"
@@ -151,9 +165,42 @@ public class ZeoDataDecoder {
 	 * the version's changes
 	 * 
 	 * Rev# Change ---- ------- 10 Updated for public release and use with the
-	 * OpenZeo firmware
+	 * OpenZeo firmware 11 Decode memory mapped and read-only buffers in
+	 * place 12 Decode records in parallel on an executor 13 Search for
+	 * records with a Horspool identifier scan 14 Slice-by-8 CRC16 and lazy
+	 * CRC verification 15 Flyweight record view 16 Keep record times as UNIX
+	 * timestamps 17 Hash based record reduction 18 Field projection decoding
+	 * 19 Resume decoding from a checkpoint 20 Streaming XML writer 21
+	 * Streaming human readable report 22 Decode statistics and listeners 23
+	 * Packed base hypnogram 24 Allocation free display hypnogram 25 Columnar
+	 * headband telemetry 26 Synthetic data generator
+	 */
+	public final static int ZEO_DATA_DECODER_VERSION = 26;
+
+	/**
+	 * Number of bytes of a zeosleep.dat file that are memory mapped at a time
+	 * when decoding straight from a file.
 	 */
-	public final static int ZEO_DATA_DECODER_VERSION = 10;
+	static final int MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * Number of bytes left undecoded at the end of a mapped window that is not
+	 * the last one. This leaves room both for the search for a record (which
+	 * covers up to ZeoData.MAX_RECORD_BYTES) and for the record itself, so
+	 * records are decoded the same as if the whole file was in one buffer.
+	 */
+	static final int MAP_WINDOW_OVERLAP = 2 * ZeoData.MAX_RECORD_BYTES;
+
+	/**
+	 * Number of sleep episodes held back by reduce_records(Iterator) so that
+	 * records written out of order are still merged and sorted.
+	 */
+	public static final int REDUCE_WINDOW = 32;
+
+	/**
+	 * Minimum number of records verified by one task of verify_records().
+	 */
+	static final int VERIFY_BATCH = 64;
 
 	/*************************************************************************
 	 * variables
@@ -162,6 +209,12 @@ public class ZeoDataDecoder {
 	/* The collection of zeo data records. */
 	private Vector<ZeoData> records = new Vector<ZeoData>(10, 10);
 
+	/* Where decoding of the file got to, or null when decoding a buffer. */
+	private DecodeCheckpoint checkpoint;
+
+	/* Counts and times of decoding, reducing and labeling the records. */
+	private DecodeStats stats;
+
 	/*************************************************************************
 	 * methods
 	 */
@@ -169,173 +222,269 @@ public class ZeoDataDecoder {
 	/**
 	 * Populate the records inside the Zeo decoder based upon the data given in
 	 * the input byte array. If we find no records throw an EOF exception.
+	 * <p>
+	 * The buffer does not need to be backed by an array. Direct, read-only and
+	 * memory mapped buffers are decoded in place without being modified.
 	 * 
 	 * @param in
 	 *            A byte buffer that is the source of data for populating the
 	 *            Zeo records from.
 	 */
 	public ZeoDataDecoder(ByteBuffer in) throws EOFException {
-		/* A blank byte array. */
-		byte[] blank = new byte[ZeoData.IDENTIFIER_SIZE];
-		byte[] identifier = new byte[ZeoData.IDENTIFIER_SIZE];
-		int record_count;
-		int record_offset;
-		int record_size;
-		int version;
-		byte[] version_str = new byte[ZeoData.VERSION_SIZE];
+		this(in, null);
+	}
 
-		/*
-		 * This code assumes the array used by "in" buffer can be indexed using
-		 * same index values as the buffer itself.
-		 */
-		assert (in.arrayOffset() == 0);
+	/**
+	 * Populate the records inside the Zeo decoder based upon the data given in
+	 * the input byte buffer, decoding the records as the options say (see
+	 * DecodeOptions). Warnings, counts and times are reported to the options'
+	 * listener as well as to get_stats().
+	 * 
+	 * @param in
+	 *            A byte buffer that is the source of data for populating the
+	 *            Zeo records from.
+	 * @param options
+	 *            How to decode the records, or null for the defaults.
+	 */
+	public ZeoDataDecoder(ByteBuffer in, DecodeOptions options)
+			throws EOFException {
+		stats = new DecodeStats(options == null ? DecodeListener.STANDARD_ERROR
+				: options.get_listener());
+		add_records(new ZeoRecordIterator(in, reporting_to_stats(options)));
+	}
 
-		/* Set the byte order to little endian. */
-		in.order(ByteOrder.LITTLE_ENDIAN);
-		in.rewind();
+	/**
+	 * Populate the records inside the Zeo decoder by decoding the given
+	 * zeosleep.dat file straight from the page cache. The file is memory
+	 * mapped read-only in windows of MAP_WINDOW_SIZE bytes, so no copy of the
+	 * whole file is ever made on the heap regardless of how large it is.
+	 * 
+	 * @param file
+	 *            The zeosleep.dat file to decode.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be opened or mapped.
+	 */
+	public ZeoDataDecoder(File file) throws IOException {
+		this(file, null, null, null);
+	}
 
-		/*
-		 * First check if the file is encrypted. We do this by looking for a
-		 * valid record identifier. If we don't find one then we assume it's
-		 * because the file is encrypted.
-		 */
-		if (find_next_record(in) == -1) {
-			System.err
-					.println("ERROR: File may be encrypted."
-							+ "Please update to firmware version 2.6.3O to disable SD card encryption.");
-		}
-		in.rewind();
-
-		/* Process all the data in the file */
-		record_count = 0;
-		while (in.hasRemaining()) {
-			/* Remember where this record starts */
-			in.mark();
-			record_offset = in.position();
-
-			record_size = 0;
-			version = 0;
-
-			/* Stop parsing if there isn't enough data left */
-			if (in.remaining() < ZeoData.HEADER_SIZE) {
-				System.err
-						.println("WARNING: File ended with incomplete record.");
-				break;
-			}
+	/**
+	 * Populate the records inside the Zeo decoder by decoding the given
+	 * zeosleep.dat file straight from the page cache, decoding the records as
+	 * the options say (see DecodeOptions). Warnings, counts and times are
+	 * reported to the options' listener as well as to get_stats(). Records
+	 * decoded with CrcCheck.LAZY keep their window of the file mapped until
+	 * they have been verified.
+	 * 
+	 * @param file
+	 *            The zeosleep.dat file to decode.
+	 * @param options
+	 *            How to decode the records, or null for the defaults.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be opened or mapped.
+	 */
+	public ZeoDataDecoder(File file, DecodeOptions options) throws IOException {
+		this(file, options, null, null);
+	}
 
-			/*
-			 * Read in the header data for this record. If the header's
-			 * identifier value is valid, decode the version value.
-			 */
-			in.get(identifier);
-			in.get(version_str);
-			if (!Arrays.equals(identifier, ZeoData.IDENTIFIER)) {
-				System.err.println("WARNING: Invalid record identifier "
-						+ "skipped after record " + record_count + ".");
-			} else {
-				/* Check the version of the record. */
-				if (Arrays.equals(version_str, ZeoData.V22)) {
-					record_size = ZeoData.V22_SIZE;
-					version = 22;
-				} else {
-					/*
-					 * We don't have code to handle this record version so
-					 * report an error.
-					 */
-					System.err
-							.println("WARNING: Unable to handle Zeo record version "
-									+ (version_str[1] * 256 + version_str[0])
-									+ " after record " + record_count + ".");
-				}
-			}
+	/**
+	 * Populate the records inside the Zeo decoder by decoding only the part of
+	 * the given zeosleep.dat file that was appended since the checkpoint was
+	 * taken (see resume()).
+	 * 
+	 * @param file
+	 *            The zeosleep.dat file to decode.
+	 * @param options
+	 *            How to decode the records, or null for the defaults.
+	 * @param checkpoint
+	 *            Where decoding of the file got to last time, or null.
+	 * @param records
+	 *            The records decoded (and possibly reduced and labeled) up
+	 *            to the checkpoint, or null to decode the whole file.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be opened or mapped.
+	 */
+	private ZeoDataDecoder(File file, DecodeOptions options,
+			DecodeCheckpoint checkpoint, List<ZeoData> records)
+			throws IOException {
+		ZeoRecordIterator iterator;
+		long start = 0;
+		int previous;
+
+		stats = new DecodeStats(options == null ? DecodeListener.STANDARD_ERROR
+				: options.get_listener());
+		if (checkpoint != null && records == null) {
+			/* Nothing to resume with, so decode all of the file. */
+			checkpoint = null;
+		}
+		if (checkpoint != null && checkpoint.matches(file)) {
+			start = checkpoint.get_offset();
+		} else if (checkpoint != null) {
+			stats.warning("WARNING: File changed since the checkpoint "
+					+ "was taken, decoding all of it.");
+		}
 
-			/* Stop parsing if there isn't enough data left */
-			if (in.remaining() < record_size - ZeoData.HEADER_SIZE) {
-				System.err
-						.println("WARNING: File ended with incomplete record.");
-				break;
-			}
+		/* Records from before the checkpoint come first, as in the file. */
+		if (start > 0) {
+			this.records.addAll(records);
+		}
+		previous = this.records.size();
 
-			/* If we recognized the version then decode the record */
-			if (version != 0) {
-				try {
-					/*
-					 * Set up a byte buffer that provides access to just the
-					 * record's contents minus the header. Note, this buffer
-					 * shares access to the same data array as "in" so that the
-					 * parsing code can make changes to the data if required
-					 * (e.g. to clear a CRC value).
-					 */
-					ByteBuffer bstream = ByteBuffer.wrap(in.array(),
-							record_offset + ZeoData.HEADER_SIZE, record_size
-									- ZeoData.HEADER_SIZE);
-
-					/* Decode the record and store it */
-					ZeoData record = new ZeoData(bstream, version);
-
-					/* Verify checksum for those records that have one */
-					if (version >= 20) {
-						int crc = crc16(in.array(), record_offset, record_size);
-
-						if (crc != record.get_crc()) {
-							System.err
-									.println("WARNING: Skipping the record after record "
-											+ record_count + " due to bad CRC.");
-							version = 0;
-						}
-					}
+		iterator = new ZeoRecordIterator(file, reporting_to_stats(options),
+				start);
+		try {
+			add_records(iterator);
+		} catch (IllegalStateException e) {
+			/* A later window of the file could not be mapped. */
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw e;
+		} finally {
+			iterator.close();
+		}
 
-					/* Store records that we successfully parsed. */
-					if (version != 0) {
-						records.addElement(record);
+		/* Move the checkpoint past the last record decoded, if any. */
+		if (this.records.size() > previous) {
+			this.checkpoint = new DecodeCheckpoint(iterator.get_offset(),
+					this.records.lastElement());
+		} else if (start > 0) {
+			this.checkpoint = checkpoint;
+		} else {
+			this.checkpoint = new DecodeCheckpoint();
+		}
+	}
 
-						/* Advance to start of next record */
-						in.position(record_offset + record_size);
-					}
-				} catch (Throwable e) {
-					/*
-					 * We had some type of error during parsing so report the
-					 * problem and then set record version to 0 so this record
-					 * will be discarded.
-					 */
-					System.err
-							.println("WARNING: Exception parsing the record after record "
-									+ record_count + ": " + e.toString());
-					version = 0;
-				}
-			}
+	/**
+	 * Store all the records returned by the given iterator.
+	 * 
+	 * @param iterator
+	 *            The source of records.
+	 */
+	private void add_records(Iterator<ZeoData> iterator) {
+		while (iterator.hasNext()) {
+			records.addElement(iterator.next());
+		}
+	}
 
-			/*
-			 * Try to find new record to parse when there are parsing problems.
-			 */
-			if (version == 0) {
-				/*
-				 * We were unable to process a record for some reason so try to
-				 * find a new record to process starting one byte past the
-				 * previous starting record position.
-				 */
-				in.reset();
-				in.get();
+	/**
+	 * Return a copy of the given options that reports to the decoder's
+	 * statistics, which pass everything on to the options' own listener.
+	 * 
+	 * @param options
+	 *            How to decode the records, or null for the defaults.
+	 * 
+	 * @return the options to decode the records with.
+	 */
+	private DecodeOptions reporting_to_stats(DecodeOptions options) {
+		if (options == null) {
+			options = new DecodeOptions();
+		}
+		return new DecodeOptions(options).set_listener(stats);
+	}
 
-				if (find_next_record(in) == -1) {
-					System.err
-							.println("WARNING: Valid records stopped before file ended.");
-					break;
-				}
-			} else {
-				/* Good record found so advance record number */
-				record_count++;
-			}
+	/**
+	 * Report decoding and writing throughput on standard error, for the
+	 * --benchmark option. The human readable report is written both streamed
+	 * through write_human() and built in memory by toHuman(), and the XML
+	 * through write_xml(), each BENCHMARK_RUNS times into a writer that
+	 * discards it, and the best time of each is reported.
+	 * 
+	 * @param file_size
+	 *            Size of the zeosleep.dat file in bytes.
+	 * @param records_decoded
+	 *            Number of records decoded from the file.
+	 * @param decode_nanos
+	 *            Time taken to decode the file.
+	 * @param reduce_nanos
+	 *            Time taken to reduce the records and label naps.
+	 */
+	private void benchmark(long file_size, int records_decoded,
+			long decode_nanos, long reduce_nanos) throws IOException {
+		long human_nanos = Long.MAX_VALUE;
+		long string_nanos = Long.MAX_VALUE;
+		long xml_nanos = Long.MAX_VALUE;
+		long string_chars = 0;
+		CountingWriter human = new CountingWriter();
+		CountingWriter xml = new CountingWriter();
+
+		for (int run = 0; run < BENCHMARK_RUNS; run++) {
+			long start = System.nanoTime();
+
+			human.reset();
+			write_human(human);
+			human_nanos = Math.min(human_nanos, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			string_chars = toHuman().length();
+			string_nanos = Math.min(string_nanos, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			xml.reset();
+			write_xml(xml);
+			xml_nanos = Math.min(xml_nanos, System.nanoTime() - start);
+		}
 
-			/* Reset the identifier and version to get ready for next pass. */
-			System.arraycopy(blank, 0, identifier, 0, ZeoData.IDENTIFIER_SIZE);
-			System.arraycopy(blank, 0, version_str, 0, ZeoData.VERSION_SIZE);
+		System.err.printf("Benchmark (best of %d runs for output):%n",
+				BENCHMARK_RUNS);
+		benchmark_line("decode", decode_nanos, records_decoded, file_size);
+		benchmark_line("reduce", reduce_nanos, records_decoded, file_size);
+		benchmark_line("write_human", human_nanos, size(), human.count);
+		benchmark_line("toHuman", string_nanos, size(), string_chars);
+		benchmark_line("write_xml", xml_nanos, size(), xml.count);
+
+		/* Break decoding down into its phases (see DecodeStats). */
+		for (DecodePhase phase : DecodePhase.values()) {
+			benchmark_line("  " + phase.name().toLowerCase(),
+					stats.get_nanos(phase), records_decoded, file_size);
 		}
 	}
 
+	/**
+	 * Print one line of the --benchmark report on standard error.
+	 * 
+	 * @param phase
+	 *            Name of the timed phase.
+	 * @param nanos
+	 *            Time the phase took.
+	 * @param records
+	 *            Number of records the phase handled.
+	 * @param bytes
+	 *            Number of bytes (or characters) the phase read or wrote.
+	 */
+	private static void benchmark_line(String phase, long nanos, int records,
+			long bytes) {
+		double seconds = Math.max(nanos, 1) / 1e9;
+
+		System.err.printf("%-12s: %9.2f ms %11.0f records/s %9.2f MB/s%n",
+				phase, seconds * 1e3, records / seconds, bytes / seconds
+						/ (1024 * 1024));
+	}
+
+	/**
+	 * Compute the CRC16 value for the input byte buffer. The CRC starts with an
+	 * initial CRC value of 0. See Crc16.
+	 * 
+	 * @param buffer
+	 *            Byte buffer with data to calculate CRC for. The buffer's
+	 *            position and limit are ignored and left unchanged.
+	 * @param offset
+	 *            Starting offset for chunk of data to calculate CRC for.
+	 * @param length
+	 *            Number of bytes in buffer to use in CRC calculation.
+	 * 
+	 * @return CRC value.
+	 */
+	public static int crc16(ByteBuffer buffer, int offset, int length) {
+		return Crc16.crc16(buffer, offset, length);
+	}
+
 	/**
 	 * Compute the CRC16 value for the input byte buffer. The CRC starts with an
-	 * initial CRC value of 0.
+	 * initial CRC value of 0. See Crc16.
 	 * 
 	 * @param buffer
 	 *            Byte array with data to calculate CRC for.
@@ -347,16 +496,7 @@ public class ZeoDataDecoder {
 	 * @return CRC value.
 	 */
 	public static int crc16(byte[] buffer, int offset, int length) {
-		int crc = 0; // the CRC
-		int t;
-		int value;
-
-		for (int i = 0; i < length; ++i, ++offset) {
-			value = buffer[offset] & 0xff;
-			t = (crc >> 8) ^ value;
-			crc = ((crc << 8) & 0xffff) ^ CRC16_TABLE[t];
-		}
-		return crc;
+		return Crc16.crc16(buffer, offset, length);
 	}
 
 	/*
@@ -381,52 +521,14 @@ public class ZeoDataDecoder {
 	}
 
 	/**
-	 * Given a byte buffer, attempt to find the start of the next record given
-	 * the current position in the buffer. This function searches for the
-	 * identifier string ZeoData.IDENTIFIER that marks the start of all records.
-	 * It halts the search after ZeoData.MAX_RECORD_BYTES since no valid record
-	 * would start further along than that. This function leaves the buffer
-	 * positioned at the start of the record it finds.
-	 * 
-	 * @param in
-	 *            A ByteBuffer that will be used to search for the next record.
+	 * Return where decoding of the file got to, for resuming decoding once
+	 * more records have been appended to it.
 	 * 
-	 * @return position of the start of the next Zeo record or -1 if no new
-	 *         record found.
+	 * @return the checkpoint just past the last record decoded, or null if
+	 *         the records were not decoded from a file.
 	 */
-	private int find_next_record(ByteBuffer in) {
-		int bytes_to_search;
-		byte[] identifier = new byte[ZeoData.IDENTIFIER_SIZE];
-
-		/*
-		 * Determine how many bytes to search to find an identifier. We search
-		 * at most ZeoData.MAX_RECORD_BYTES or until we get so close to the end
-		 * of the buffer that it couldn't store an identifier value.
-		 */
-		bytes_to_search = in.remaining() - identifier.length;
-		if (bytes_to_search > ZeoData.MAX_RECORD_BYTES) {
-			bytes_to_search = ZeoData.MAX_RECORD_BYTES;
-		}
-
-		while (bytes_to_search > 0) {
-			in.mark();
-			in.get(identifier);
-			if (Arrays.equals(identifier, ZeoData.IDENTIFIER)) {
-				/*
-				 * Reset the buffer back to the start of the identifier and
-				 * return its position in the buffer.
-				 */
-				in.reset();
-				return in.position();
-			}
-			/* Reset the buffer to the previous mark. */
-			in.reset();
-			/* Advance the buffer by a single byte and try again. */
-			in.get();
-			--bytes_to_search;
-		}
-		/* Didn't find any record so indicate error */
-		return -1;
+	public DecodeCheckpoint get_checkpoint() {
+		return checkpoint;
 	}
 
 	/**
@@ -438,6 +540,47 @@ public class ZeoDataDecoder {
 		return Collections.unmodifiableList(records);
 	}
 
+	/**
+	 * Return the counts and times of decoding the records and of any
+	 * reduce_records(), label_naps() and verify_records() calls since,
+	 * including those of merged decoders.
+	 * 
+	 * @return the decoder's statistics.
+	 */
+	public DecodeStats get_stats() {
+		return stats;
+	}
+
+	/**
+	 * Returns true if the record can take part in reducing records, which
+	 * requires both a start and an end of night and a valid CRC (see
+	 * CrcCheck.LAZY).
+	 * 
+	 * @param record
+	 *            The record to check.
+	 * @param listener
+	 *            The listener to report a bad CRC to.
+	 * 
+	 * @return true if the record is complete and valid.
+	 */
+	private static boolean is_reducible(ZeoData record,
+			DecodeListener listener) {
+		if (record.get_start_of_night_timestamp() == 0
+				|| record.get_end_of_night_timestamp() == 0) {
+			/* Incomplete record so ignore it so it is discarded */
+			return false;
+		}
+
+		if (!record.is_crc_valid()) {
+			/* Record decoded with CrcCheck.LAZY that is corrupt */
+			listener.count(DecodeCounter.BAD_CRCS, 1);
+			listener.warning("WARNING: Skipping a record written at "
+					+ record.get_current_time().getTime() + " due to bad CRC.");
+			return false;
+		}
+		return true;
+	}
+
 	/**
 	 * Reduce the decoder's records down to just the first reset record
 	 * following any/each watchdog reset.
@@ -465,72 +608,50 @@ public class ZeoDataDecoder {
 	 * set_sleep_date method.
 	 */
 	public void label_naps() {
-		Iterator<ZeoData> iterator = records.iterator();
-		ZeoData largest_record = null;
+		Iterator<ZeoData> iterator = label_naps(records.iterator());
+		long start = System.nanoTime();
+		int naps = 0;
 
-		/*
-		 * Initialize the largest record to the first record and set the
-		 * sleep_date for the record.
-		 */
-		if (iterator.hasNext()) {
-			largest_record = iterator.next();
-			largest_record.set_sleep_date();
-		}
-
-		/* Process the rest of the records */
+		/* The records are labeled as they are pulled through the iterator. */
 		while (iterator.hasNext()) {
-			ZeoData record = (ZeoData) iterator.next();
-
-			/* Fill in the sleep_date for the record */
-			record.set_sleep_date();
-
-			/*
-			 * Determine if record is a nap or not. The last longest sleep
-			 * episode for a given day is not a nap.
-			 */
-			if (largest_record.same_night(record)) {
-				/*
-				 * These records fall within the same 6am to 6am day so we want
-				 * to see if the length of sleep is the same or longer than the
-				 * current largest record. If it is then it's the new largest.
-				 * This way we keep the last largest record for a day.
-				 */
-				if (largest_record.compareLength(record) == 1) {
-					/*
-					 * The largest_record has a longer length than the new
-					 * record so we do not have a new largest record. This means
-					 * the new record is considered to be a nap and we set its
-					 * is_nap field to true.
-					 */
-					record.is_nap = true;
-				} else {
-					/*
-					 * There is a new largest or equal record. The previous
-					 * largest record is therefor a nap.
-					 */
-					largest_record.is_nap = true;
-					largest_record = record;
-				}
-			} else {
-				/*
-				 * The record being processed represents a new night of sleep.
-				 * Therefore, the largest record represents the real night of
-				 * sleep for its day so we set the largest_record's is_nap value
-				 * to false. Establish the current record as the initial
-				 * largest_record for this new day.
-				 */
-				largest_record.is_nap = false;
-				largest_record = record;
+			if (iterator.next().is_nap) {
+				naps++;
 			}
 		}
+		stats.time(DecodePhase.LABEL, System.nanoTime() - start);
+		stats.count(DecodeCounter.NAPS_LABELED, naps);
+	}
 
-		/*
-		 * If we haven't handled the largest record from the last day of sleep,
-		 * handle it now (it's not a nap).
-		 */
-		if (largest_record != null) {
-			largest_record.is_nap = false;
-		}
+	/**
+	 * Streaming equivalent of label_naps(). Returns an iterator that sets the
+	 * sleep_date and is_nap values of the given records, using the same rules
+	 * as label_naps(), as they are pulled through it. The records must already
+	 * be ordered so that all records for a day are contiguous (as
+	 * reduce_records() leaves them). Only the records for a single day of
+	 * sleep are held at any time.
+	 * 
+	 * @param records
+	 *            The source of records to label.
+	 * 
+	 * @return an iterator over the labeled records.
+	 */
+	public static Iterator<ZeoData> label_naps(Iterator<ZeoData> records) {
+		return new NapLabelingIterator(records);
+	}
+
+	/**
+	 * Append the records of another decoder, such as one that decoded an
+	 * earlier or later copy of the same zeosleep.dat file, after this
+	 * decoder's records. reduce_records() then keeps each night once across
+	 * both sets of records. Reducing each decoder before merging them keeps
+	 * the same records as only reducing the merged records.
+	 * 
+	 * @param other
+	 *            The decoder whose records are appended.
+	 */
+	public void merge(ZeoDataDecoder other) {
+		records.addAll(other.records);
+		stats.add(other.stats);
 	}
 
 	/**
@@ -544,142 +665,173 @@ public class ZeoDataDecoder {
 	 * the ZeoData compareLength method. Records reflecting incomplete nights
 	 * (i.e. records without both a start and end time) are discarded.
 	 * 
-	 * Because all the records for a sleep episode might not be sequential, we
-	 * need to sort the sleep records to order them based on start_of_night
-	 * values. We do an initial reduction pass before sorting the records to
-	 * decrease the sorting overhead.
+	 * Because all the records for a sleep episode might not be sequential, the
+	 * records are grouped by their start_of_night values in a hash table in a
+	 * single pass over the records in file order. Only the records kept are
+	 * then sorted by their start_of_night values.
 	 */
 	public void reduce_records() {
-		ZeoData largest_record = null; /* largest record for a night */
-
-		Vector<ZeoData> reduced_records = new Vector<ZeoData>(10, 10);
+		RecordTable largest_records = new RecordTable(records.size());
+		long[] starts;
+		long start_nanos = System.nanoTime();
+		int decoded = records.size();
 
 		/*
 		 * Process all the records. Find each set of valid records with matching
-		 * start_of_night values and keep only the "largest" one. If a record of
-		 * the same size as the current largest record and a write reason of
-		 * FS_REASON_SLEEP_RATED is encountered, it replaces the current largest
-		 * record. In this context, "valid" means there is both a start and an
-		 * end of night value and largest means the first one with the latest
-		 * record end time and longest hypnogram length. During this process we
-		 * transfer the records we are keeping to the reduced_records vector.
+		 * start_of_night values and keep only the "largest" one.
 		 */
-		Iterator<ZeoData> iterator = records.iterator();
-		while (iterator.hasNext()) {
-			ZeoData record = iterator.next();
+		for (ZeoData record : records) {
+			if (!is_reducible(record, stats)) {
+				continue;
+			}
 
-			if (record.get_start_of_night() == null
-					|| record.get_end_of_night() == null) {
-				/* Incomplete record so ignore it so it is discarded */
-			} else if (largest_record == null) {
-				/* First good record */
-				largest_record = record;
-			} else if (!largest_record.same_start_time(record)) {
-				/*
-				 * We have a record with a different starting time so we store
-				 * the largest record found for the previous start_of_night
-				 * value and use the current record as the starting point for
-				 * finding the largest record for the new sleep episode.
-				 */
-				reduced_records.addElement(largest_record);
-				largest_record = record;
-			} else if (largest_record.compareLength(record) == -1) {
-				/*
-				 * We have a night that is larger than the current largest night
-				 * so we update our largest record (discarding the old largest
-				 * record). This, implementation keeps the first instance of the
-				 * largest record.
-				 */
-				largest_record = record;
-			} else if (largest_record.compareLength(record) == 0
-					&& record.is_sleep_rating_record()) {
-				/*
-				 * We have a record of the same length as the current largest
-				 * night and a write reason of FS_REASON_SLEEP_RATED. Replace
-				 * the current largest record with it. We assume that any
-				 * records for a given night that were written out as a result
-				 * of a sleep rating occur in chronological order in the file,
-				 * so we will retain only the most recent one.
-				 */
-				largest_record = record;
+			long start = record.get_start_of_night_timestamp();
+			ZeoData largest_record = largest_records.get(start);
+
+			if (largest_record == null
+					|| replaces_largest(largest_record, record)) {
+				largest_records.put(start, record);
 			}
 		}
-		/* Save the last sleep episode if there is a record that isn't saved */
-		if (largest_record != null) {
-			reduced_records.addElement(largest_record);
-			largest_record = null;
-		}
-
-		/*
-		 * Sort the reduced list of records so that nights are sequential and
-		 * all records for a given night are contiguous. The "sort" function
-		 * uses the compareTo method implemented in the ZeoData class to
-		 * determine how to order records. That method bases the decision solely
-		 * on the start_night values. Records with the same start_night values
-		 * equivalent and are output in the same order they originally occur due
-		 * to the fact that this sort is "stable".
-		 */
-		Collections.sort(reduced_records);
 
 		/*
-		 * Get rid of the original set of records so we can fill the vector back
-		 * in with the reduced records.
+		 * Get rid of the original set of records and fill the vector back in
+		 * with the records kept, ordered by their start_of_night values.
 		 */
 		records.clear();
+		starts = largest_records.keys();
+		Arrays.sort(starts);
+		for (long start : starts) {
+			records.addElement(largest_records.get(start));
+		}
+		stats.time(DecodePhase.REDUCE, System.nanoTime() - start_nanos);
+		stats.count(DecodeCounter.RECORDS_DROPPED, decoded - records.size());
+	}
 
-		/*
-		 * Now that the records are sorted and all records from the same night
-		 * are contiguous, scan the records again to handle duplicates. This
-		 * uses almost the same algorithm as above except that we don't have to
-		 * worry about incomplete records. As such, we perform a scan on the
-		 * sorted records keeping only the largest record from each sleep
-		 * episode. We keep the most recent largest record with a write reason
-		 * of FS_REASON_SLEEP_RATED, or the first largest record in the absence
-		 * of any records with a write reason of FS_REASON_SLEEP_RATED. During
-		 * this process we transfer the records we are keeping back to the
-		 * records vector.
-		 */
-		Iterator<ZeoData> iterator2 = reduced_records.iterator();
-		while (iterator2.hasNext()) {
-			ZeoData record = iterator2.next();
+	/**
+	 * Streaming equivalent of reduce_records(). Returns an iterator that
+	 * discards incomplete records and reduces the records with the same
+	 * start_of_night value down to the record reduce_records() would keep, as
+	 * the records are pulled through it.
+	 * <p>
+	 * Instead of sorting all the records, at most REDUCE_WINDOW sleep
+	 * episodes are held and returned in start_of_night order once newer
+	 * episodes push them out of the window. This gives the same result as
+	 * reduce_records() as long as no record turns up more than REDUCE_WINDOW
+	 * sleep episodes out of order, which covers the occasional out of order
+	 * record the base station writes.
+	 * <p>
+	 * Records skipped due to a bad CRC are reported on standard error, see
+	 * reduce_records(Iterator, DecodeListener).
+	 * 
+	 * @param records
+	 *            The source of records to reduce.
+	 * 
+	 * @return an iterator over the reduced records.
+	 */
+	public static Iterator<ZeoData> reduce_records(Iterator<ZeoData> records) {
+		return reduce_records(records, DecodeListener.STANDARD_ERROR);
+	}
 
-			if (largest_record == null) {
-				/* First good record */
-				largest_record = record;
-			} else if (!largest_record.same_start_time(record)) {
-				/*
-				 * We have a record with a different starting time so we store
-				 * the largest record found for the previous start_of_night
-				 * value and use the current record as the starting point for
-				 * finding the largest record for the new sleep episode.
-				 */
-				records.addElement(largest_record);
-				largest_record = record;
-			} else if (largest_record.compareLength(record) == -1) {
-				/*
-				 * We have a night that is larger than the current largest night
-				 * so we update our largest record (discarding the old largest
-				 * record). This, implementation keeps the first instance of the
-				 * largest record.
-				 */
-				largest_record = record;
-			} else if (largest_record.compareLength(record) == 0
-					&& record.is_sleep_rating_record()) {
-				/*
-				 * We have a record of the same length as the current largest
-				 * night and a write reason of FS_REASON_SLEEP_RATED. Replace
-				 * the current largest record with it. We assume that any
-				 * records for a given night that were written out as a result
-				 * of a sleep rating occur in chronological order in the file,
-				 * so we will retain only the most recent one.
-				 */
-				largest_record = record;
-			}
-		}
-		/* Save the last sleep episode if there is a record that isn't saved */
-		if (largest_record != null) {
-			records.addElement(largest_record);
+	/**
+	 * Streaming equivalent of reduce_records(), as above, reporting records
+	 * skipped due to a bad CRC (BAD_CRCS) and records discarded as incomplete
+	 * or duplicates (RECORDS_DROPPED) to the given listener as they are
+	 * pulled through.
+	 * 
+	 * @param records
+	 *            The source of records to reduce.
+	 * @param listener
+	 *            The listener to report to, or null to report nothing.
+	 * 
+	 * @return an iterator over the reduced records.
+	 */
+	public static Iterator<ZeoData> reduce_records(Iterator<ZeoData> records,
+			DecodeListener listener) {
+		if (listener == null) {
+			listener = new DecodeStats(null);
 		}
+		return new ReducingIterator(records, listener);
+	}
+
+	/**
+	 * Returns true if a record replaces the largest record found so far for
+	 * its sleep episode. It does if it is larger (see ZeoData compareLength)
+	 * or if it is the same size and was written out with a write reason of
+	 * FS_REASON_SLEEP_RATED. We assume that any records for a given night that
+	 * were written out as a result of a sleep rating occur in chronological
+	 * order in the file, so we retain only the most recent one. Otherwise the
+	 * first instance of the largest record is kept.
+	 * 
+	 * @param largest_record
+	 *            The largest record found so far for the sleep episode.
+	 * @param record
+	 *            A later record for the same sleep episode.
+	 * 
+	 * @return true if record replaces largest_record.
+	 */
+	private static boolean replaces_largest(ZeoData largest_record,
+			ZeoData record) {
+		int comparison = largest_record.compareLength(record);
+
+		return comparison == -1
+				|| (comparison == 0 && record.is_sleep_rating_record());
+	}
+
+	/**
+	 * Create a decoder that decodes only the part of the given zeosleep.dat
+	 * file that was appended since the checkpoint was taken. The records
+	 * decoded up to the checkpoint are given and are merged with the new
+	 * records; reduce_records() and label_naps() then work on the merged
+	 * records as if the whole file had been decoded. If the file no longer
+	 * matches the checkpoint (see DecodeCheckpoint.matches()) the given
+	 * records are dropped and the whole file is decoded, as it is when no
+	 * records are given.
+	 * <p>
+	 * Use get_checkpoint() for the checkpoint to resume from next time.
+	 * 
+	 * @param file
+	 *            The zeosleep.dat file to decode.
+	 * @param checkpoint
+	 *            Where decoding of the file got to last time, or null.
+	 * @param records
+	 *            The records decoded (and possibly reduced and labeled) up
+	 *            to the checkpoint, or null to decode the whole file.
+	 * 
+	 * @return the decoder holding the records of the whole file.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be opened or mapped.
+	 */
+	public static ZeoDataDecoder resume(File file, DecodeCheckpoint checkpoint,
+			List<ZeoData> records) throws IOException {
+		return new ZeoDataDecoder(file, null, checkpoint, records);
+	}
+
+	/**
+	 * Decode the given zeosleep.dat file from where it was decoded to last
+	 * time, as above, decoding the new records as the options say (see
+	 * DecodeOptions).
+	 * 
+	 * @param file
+	 *            The zeosleep.dat file to decode.
+	 * @param options
+	 *            How to decode the records, or null for the defaults.
+	 * @param checkpoint
+	 *            Where decoding of the file got to last time, or null.
+	 * @param records
+	 *            The records decoded (and possibly reduced and labeled) up
+	 *            to the checkpoint, or null to decode the whole file.
+	 * 
+	 * @return the decoder holding the records of the whole file.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be opened or mapped.
+	 */
+	public static ZeoDataDecoder resume(File file, DecodeOptions options,
+			DecodeCheckpoint checkpoint, List<ZeoData> records)
+			throws IOException {
+		return new ZeoDataDecoder(file, options, checkpoint, records);
 	}
 
 	/**
@@ -699,14 +851,13 @@ public class ZeoDataDecoder {
 	 */
 	public String toHuman() {
 		StringWriter txt = new StringWriter();
-		PrintWriter out = new PrintWriter(txt);
-		Iterator<ZeoData> iterator = records.iterator();
 
-		while (iterator.hasNext()) {
-			ZeoData record = iterator.next();
-			out.println(record.toHuman());
+		try {
+			write_human(txt);
+		} catch (IOException e) {
+			/* A StringWriter never throws. */
+			throw new IllegalStateException(e);
 		}
-		out.flush();
 		return txt.toString();
 	}
 
@@ -717,29 +868,182 @@ public class ZeoDataDecoder {
 	 */
 	public String toXML() {
 		StringWriter txt = new StringWriter();
-		PrintWriter out = new PrintWriter(txt);
-		Iterator<ZeoData> iterator = records.iterator();
 
-		out.println("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>");
-		out.println("<sleep_records>");
-
-		while (iterator.hasNext()) {
-			ZeoData record = iterator.next();
-			out.println(record.toXML());
+		try {
+			write_xml(txt);
+		} catch (IOException e) {
+			/* A StringWriter never throws. */
+			throw new IllegalStateException(e);
 		}
-		out.println("</sleep_records>");
-		out.flush();
 		return txt.toString();
 	}
 
+	/**
+	 * Verify the CRC of every record not verified yet and discard those that
+	 * are corrupt. Records decoded with CrcCheck.LAZY are verified in batches
+	 * on the executor, if one is given.
+	 * 
+	 * @param executor
+	 *            The executor to verify records on, or null to verify them
+	 *            here. The executor is not shut down.
+	 */
+	public void verify_records(ExecutorService executor) {
+		final ZeoData[] batch = records.toArray(new ZeoData[records.size()]);
+		boolean[] valid = new boolean[batch.length];
+		long start = System.nanoTime();
+
+		if (executor == null) {
+			for (int i = 0; i < batch.length; i++) {
+				valid[i] = batch[i].is_crc_valid();
+			}
+		} else {
+			List<Future<boolean[]>> results = new ArrayList<Future<boolean[]>>();
+			int per_task = Math.max(VERIFY_BATCH, batch.length
+					/ (4 * Runtime.getRuntime().availableProcessors()));
+
+			for (int i = 0; i < batch.length; i += per_task) {
+				final int first = i;
+				final int count = Math.min(per_task, batch.length - i);
+
+				results.add(executor.submit(new Callable<boolean[]>() {
+					public boolean[] call() {
+						boolean[] checked = new boolean[count];
+
+						for (int j = 0; j < count; j++) {
+							checked[j] = batch[first + j].is_crc_valid();
+						}
+						return checked;
+					}
+				}));
+			}
+			try {
+				for (int i = 0; i < results.size(); i++) {
+					boolean[] checked = results.get(i).get();
+
+					System.arraycopy(checked, 0, valid, i * per_task,
+							checked.length);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted verifying records");
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+
+		stats.time(DecodePhase.CRC, System.nanoTime() - start);
+
+		records.clear();
+		for (int i = 0; i < batch.length; i++) {
+			if (valid[i]) {
+				records.addElement(batch[i]);
+			} else {
+				stats.count(DecodeCounter.BAD_CRCS, 1);
+				stats.warning("WARNING: Skipping a record written at "
+						+ batch[i].get_current_time().getTime()
+						+ " due to bad CRC.");
+			}
+		}
+	}
+
+	/**
+	 * Write a human readable representation of this decoder, the same as
+	 * toHuman() returns it, without building it in memory first.
+	 * 
+	 * @param out
+	 *            The writer to write the report to. It is flushed but not
+	 *            closed.
+	 * 
+	 * @throws IOException
+	 *             if the report cannot be written.
+	 */
+	public void write_human(Writer out) throws IOException {
+		write_human(records.iterator(), out);
+	}
+
+	/**
+	 * Write a human readable representation of the given records, the same as
+	 * toHuman() returns it for a decoder holding them. Each record is written
+	 * as it is pulled from the iterator, see write_xml(Iterator, Writer).
+	 * 
+	 * @param records
+	 *            The records to write.
+	 * @param out
+	 *            The writer to write the report to. It is flushed but not
+	 *            closed.
+	 * 
+	 * @throws IOException
+	 *             if the report cannot be written.
+	 */
+	public static void write_human(Iterator<ZeoData> records, Writer out)
+			throws IOException {
+		ZeoReportWriter report = new ZeoReportWriter(out);
+
+		while (records.hasNext()) {
+			records.next().write_human(report);
+
+			/* Each record is followed by an empty line. */
+			report.newline();
+		}
+		report.flush();
+	}
+
+	/**
+	 * Write an XML representation of this decoder, the same as toXML()
+	 * returns it, without building it in memory first.
+	 * 
+	 * @param out
+	 *            The writer to write the XML to. It is flushed but not closed.
+	 * 
+	 * @throws IOException
+	 *             if the XML cannot be written.
+	 */
+	public void write_xml(Writer out) throws IOException {
+		write_xml(records.iterator(), out);
+	}
+
+	/**
+	 * Write an XML representation of the given records, the same as toXML()
+	 * returns it for a decoder holding them. Each record is written as it is
+	 * pulled from the iterator, so records streamed from a ZeoRecordIterator
+	 * (through reduce_records(Iterator) and label_naps(Iterator)) are written
+	 * as they are decoded.
+	 * 
+	 * @param records
+	 *            The records to write.
+	 * @param out
+	 *            The writer to write the XML to. It is flushed but not closed.
+	 * 
+	 * @throws IOException
+	 *             if the XML cannot be written.
+	 */
+	public static void write_xml(Iterator<ZeoData> records, Writer out)
+			throws IOException {
+		ZeoXmlWriter xml = new ZeoXmlWriter(out);
+
+		xml.text("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>");
+		xml.newline();
+		xml.start("sleep_records");
+
+		while (records.hasNext()) {
+			records.next().write_xml(xml);
+
+			/* Each record is followed by an empty line. */
+			xml.newline();
+		}
+		xml.end("sleep_records");
+		xml.flush();
+	}
+
 	/**
 	 * The main method. Processes command line arguments and invokes decoder
 	 * methods on the input data file.
 	 */
 	public static void main(String[] args) {
 		ArrayList<String> arguments = new ArrayList<String>();
-		FileChannel ichannel = null;
+		boolean benchmark = false;
 		boolean reduce = true;
+		boolean parallel = false;
 		int size;
 
 		/* Process command line arguments. */
@@ -747,12 +1051,22 @@ public class ZeoDataDecoder {
 			/*
 			 * Check for the special options
 			 */
-			if (arg.equals("-e") || arg.equals("--expand")) {
+			if (arg.equals("-b") || arg.equals("--benchmark")) {
+				/*
+				 * We got benchmark option so report how long each step takes.
+				 */
+				benchmark = true;
+			} else if (arg.equals("-e") || arg.equals("--expand")) {
 				/*
 				 * We got expand option (which is the opposite of normal record
 				 * reduction).
 				 */
 				reduce = false;
+			} else if (arg.equals("-p") || arg.equals("--parallel")) {
+				/*
+				 * We got parallel option so decode on all processors.
+				 */
+				parallel = true;
 			} else if (arg.equals("-V") || arg.equals("--version")) {
 				System.out.println("ZeoDataDecoder version "
 						+ ZeoDataDecoder.ZEO_DATA_DECODER_VERSION + ".\n"
@@ -777,34 +1091,37 @@ public class ZeoDataDecoder {
 			System.exit(1);
 		}
 
-		/* Try opening the zeo sleep input file. */
-		try {
-			ichannel = new FileInputStream(arguments.get(0)).getChannel();
-		} catch (FileNotFoundException e) {
-			System.err.println("ERROR: Zeosleep file " + arguments.get(0)
-					+ " not found.");
-			System.exit(1);
-		}
-
 		/* Attempt to process the zeo sleep file. */
 		try {
 			/*
-			 * Setup byte array to hold the full input file and wrap it in a
-			 * byte buffer.
+			 * Setup the decoder (which maps the input file and parses the data
+			 * records).
 			 */
-			byte[] data = new byte[(int) ichannel.size()];
-			ByteBuffer in = ByteBuffer.wrap(data);
+			ZeoDataDecoder decoder;
+			long start = System.nanoTime();
 
-			/* Read the file data into the byte array. */
-			ichannel.read(in);
-			in.rewind();
+			if (parallel) {
+				ExecutorService executor = Executors.newFixedThreadPool(Runtime
+						.getRuntime().availableProcessors());
 
-			/* Setup the decoder (which parses the data records). */
-			ZeoDataDecoder decoder = new ZeoDataDecoder(in);
+				try {
+					decoder = new ZeoDataDecoder(new File(arguments.get(0)),
+							new DecodeOptions().set_executor(executor));
+				} finally {
+					executor.shutdown();
+				}
+			} else {
+				decoder = new ZeoDataDecoder(new File(arguments.get(0)));
+			}
 
 			/* Figure out how many records we parsed. */
 			size = decoder.size();
 
+			long decode_nanos = System.nanoTime() - start;
+			int records_decoded = size;
+
+			start = System.nanoTime();
+
 			/*
 			 * Filter the set of records based on program options. Keeping only
 			 * reset records takes precedence over reducing records to remove
@@ -840,6 +1157,8 @@ public class ZeoDataDecoder {
 			/* Fill in is_nap and sleep_date information */
 			decoder.label_naps();
 
+			long reduce_nanos = System.nanoTime() - start;
+
 			/*
 			 * Based upon what arguments were given we decide what form of
 			 * output the decoder should produce.
@@ -849,7 +1168,12 @@ public class ZeoDataDecoder {
 				 * No output file was specified so the human readable form is
 				 * written to standard output.
 				 */
-				System.out.println(decoder.toHuman());
+				PrintWriter out = new PrintWriter(new BufferedWriter(
+						new OutputStreamWriter(System.out)));
+
+				decoder.write_human(out);
+				out.println();
+				out.flush();
 			} else {
 				/* User specified an output file. Open that file. */
 				String filename = arguments.get(1);
@@ -862,7 +1186,8 @@ public class ZeoDataDecoder {
 							+ filename);
 					System.exit(1);
 				}
-				PrintWriter out = new PrintWriter(ostream);
+				PrintWriter out = new PrintWriter(new BufferedWriter(
+						new OutputStreamWriter(ostream)));
 
 				/*
 				 * Check the extension of the output file to determine what form
@@ -873,15 +1198,353 @@ public class ZeoDataDecoder {
 						: filename.substring(filename.lastIndexOf(".") + 1,
 								filename.length());
 				if (extension.toLowerCase().equals("xml")) {
-					out.println(decoder.toXML());
+					/* Stream the records rather than build the document. */
+					decoder.write_xml(out);
+					out.println();
 				} else {
-					out.println(decoder.toHuman());
+					/* Likewise stream the human readable form. */
+					decoder.write_human(out);
+					out.println();
 				}
 				out.flush();
 				out.close();
 			}
+
+			if (benchmark) {
+				decoder.benchmark(new File(arguments.get(0)).length(),
+						records_decoded, decode_nanos, reduce_nanos);
+			}
+		} catch (FileNotFoundException e) {
+			System.err.println("ERROR: Zeosleep file " + arguments.get(0)
+					+ " not found.");
+			System.exit(1);
 		} catch (IOException e) {
 			System.err.println("ERROR: Received an IOException.");
 		}
 	}
+
+	/*************************************************************************
+	 * classes
+	 */
+
+	/**
+	 * Writer that discards what is written to it, counting the characters, so
+	 * --benchmark can time output without the cost of a file or terminal.
+	 */
+	private static class CountingWriter extends Writer {
+
+		/* Number of characters written since the last reset. */
+		long count;
+
+		public void close() {
+		}
+
+		public void flush() {
+		}
+
+		void reset() {
+			count = 0;
+		}
+
+		public void write(char[] buffer, int offset, int length) {
+			count += length;
+		}
+
+		public void write(int c) {
+			count++;
+		}
+
+		public void write(String text, int offset, int length) {
+			count += length;
+		}
+	}
+
+	/**
+	 * Iterator that labels naps for each day of sleep as the records are
+	 * pulled through it. See label_naps(Iterator).
+	 */
+	private static class NapLabelingIterator implements Iterator<ZeoData> {
+		/* The source of records. */
+		private Iterator<ZeoData> source;
+
+		/* The labeled records of the current day that are still to return. */
+		private LinkedList<ZeoData> day = new LinkedList<ZeoData>();
+
+		/* The first record of the following day, if already read. */
+		private ZeoData following;
+
+		NapLabelingIterator(Iterator<ZeoData> source) {
+			this.source = source;
+		}
+
+		/**
+		 * Read all the records for the next day of sleep and label them.
+		 */
+		private void label_day() {
+			ZeoData largest_record = following;
+
+			following = null;
+
+			/*
+			 * Initialize the largest record to the first record of the day and
+			 * set the sleep_date for the record.
+			 */
+			if (largest_record == null) {
+				if (!source.hasNext()) {
+					return;
+				}
+				largest_record = source.next();
+				largest_record.set_sleep_date();
+			}
+			day.add(largest_record);
+
+			/* Process the rest of the records for the day */
+			while (source.hasNext()) {
+				ZeoData record = source.next();
+
+				/* Fill in the sleep_date for the record */
+				record.set_sleep_date();
+
+				if (!largest_record.same_night(record)) {
+					/*
+					 * The record being processed represents a new night of
+					 * sleep. Keep it as the start of the following day.
+					 */
+					following = record;
+					break;
+				}
+
+				/*
+				 * These records fall within the same 6am to 6am day so we want
+				 * to see if the length of sleep is the same or longer than the
+				 * current largest record. If it is then it's the new largest.
+				 * This way we keep the last largest record for a day.
+				 */
+				if (largest_record.compareLength(record) == 1) {
+					/*
+					 * The largest_record has a longer length than the new
+					 * record so the new record is considered to be a nap.
+					 */
+					record.is_nap = true;
+				} else {
+					/*
+					 * There is a new largest or equal record. The previous
+					 * largest record is therefore a nap.
+					 */
+					largest_record.is_nap = true;
+					largest_record = record;
+				}
+				day.add(record);
+			}
+
+			/*
+			 * The largest record represents the real night of sleep for its
+			 * day so it is not a nap.
+			 */
+			largest_record.is_nap = false;
+		}
+
+		public boolean hasNext() {
+			if (day.isEmpty()) {
+				label_day();
+			}
+			return !day.isEmpty();
+		}
+
+		public ZeoData next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return day.removeFirst();
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Hash table of records keyed by a UNIX timestamp, using open addressing
+	 * on primitive long keys so no key objects are created. Null records
+	 * cannot be stored.
+	 */
+	private static class RecordTable {
+		/* Keys and records; a null record marks an empty slot. */
+		private long[] keys;
+		private ZeoData[] values;
+
+		/* Number of records stored. */
+		private int size;
+
+		RecordTable(int expected_size) {
+			int capacity = 16;
+
+			while (capacity < 2 * expected_size) {
+				capacity <<= 1;
+			}
+			keys = new long[capacity];
+			values = new ZeoData[capacity];
+		}
+
+		/**
+		 * Returns the record stored for the key, or null if there is none.
+		 */
+		ZeoData get(long key) {
+			return values[slot(keys, values, key)];
+		}
+
+		/**
+		 * Returns the keys of all the records stored, in no particular order.
+		 */
+		long[] keys() {
+			long[] stored = new long[size];
+			int n = 0;
+
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] != null) {
+					stored[n++] = keys[i];
+				}
+			}
+			return stored;
+		}
+
+		/**
+		 * Store the record for the key, replacing any record stored for it.
+		 */
+		void put(long key, ZeoData value) {
+			int i = slot(keys, values, key);
+
+			if (values[i] == null) {
+				if (2 * (size + 1) > values.length) {
+					resize();
+					i = slot(keys, values, key);
+				}
+				size++;
+			}
+			keys[i] = key;
+			values[i] = value;
+		}
+
+		private void resize() {
+			long[] old_keys = keys;
+			ZeoData[] old_values = values;
+
+			keys = new long[2 * old_keys.length];
+			values = new ZeoData[2 * old_values.length];
+			for (int i = 0; i < old_values.length; i++) {
+				if (old_values[i] != null) {
+					int j = slot(keys, values, old_keys[i]);
+
+					keys[j] = old_keys[i];
+					values[j] = old_values[i];
+				}
+			}
+		}
+
+		/**
+		 * Returns the slot holding the key or the empty slot it belongs in.
+		 */
+		private static int slot(long[] keys, ZeoData[] values, long key) {
+			int mask = values.length - 1;
+			int i = ((int) (key ^ (key >>> 32)) * 0x9e3779b9) & mask;
+
+			while (values[i] != null && keys[i] != key) {
+				i = (i + 1) & mask;
+			}
+			return i;
+		}
+	}
+
+	/**
+	 * Iterator that reduces the records for each sleep episode down to a
+	 * single record as the records are pulled through it. See
+	 * reduce_records(Iterator).
+	 */
+	private static class ReducingIterator implements Iterator<ZeoData> {
+		/* The source of records. */
+		private Iterator<ZeoData> source;
+
+		/* The listener bad CRCs and dropped records are reported to. */
+		private DecodeListener listener;
+
+		/*
+		 * Largest record found so far for each sleep episode that has not been
+		 * returned yet, keyed and ordered by start_of_night.
+		 */
+		private TreeMap<Long, ZeoData> pending = new TreeMap<Long, ZeoData>();
+
+		/* The next reduced record to return, if already determined. */
+		private ZeoData next_record;
+
+		ReducingIterator(Iterator<ZeoData> source, DecodeListener listener) {
+			this.source = source;
+			this.listener = listener;
+		}
+
+		/**
+		 * Find each set of valid records with matching start_of_night values
+		 * and keep only the "largest" one. If a record of the same size as the
+		 * current largest record and a write reason of FS_REASON_SLEEP_RATED
+		 * is encountered, it replaces the current largest record. In this
+		 * context, "valid" means there is both a start and an end of night
+		 * value and largest means the first one with the latest record end
+		 * time and longest hypnogram length.
+		 * 
+		 * @return the largest record of the earliest pending sleep episode or
+		 *         null if there are no more records.
+		 */
+		private ZeoData reduce_next() {
+			while (pending.size() <= REDUCE_WINDOW && source.hasNext()) {
+				ZeoData record = source.next();
+
+				if (!is_reducible(record, listener)) {
+					listener.count(DecodeCounter.RECORDS_DROPPED, 1);
+					continue;
+				}
+
+				Long start = Long.valueOf(record
+						.get_start_of_night_timestamp());
+				ZeoData largest_record = pending.get(start);
+
+				if (largest_record == null
+						|| replaces_largest(largest_record, record)) {
+					/*
+					 * First good record for this sleep episode or one that
+					 * replaces the largest record so far.
+					 */
+					pending.put(start, record);
+				}
+				if (largest_record != null) {
+					/* One of the two records of the episode is dropped. */
+					listener.count(DecodeCounter.RECORDS_DROPPED, 1);
+				}
+			}
+
+			/* Return the earliest sleep episode that hasn't been returned */
+			if (pending.isEmpty()) {
+				return null;
+			}
+			return pending.pollFirstEntry().getValue();
+		}
+
+		public boolean hasNext() {
+			if (next_record == null) {
+				next_record = reduce_next();
+			}
+			return next_record != null;
+		}
+
+		public ZeoData next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			ZeoData record = next_record;
+			next_record = null;
+			return record;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
 }
@@ -0,0 +1,947 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Driver application that writes a synthetic zeosleep.dat file, and
+ * optionally the matching zeodata.csv export, for testing and benchmarking
+ * the decoder and ZeoReader on inputs of any size.
+ * <p>
+ * Every night is a plausible sleep episode: a few minutes to fall asleep,
+ * then 90 minute cycles of light, deep and REM sleep, with deep sleep
+ * shortening and REM lengthening through the night and the odd awakening.
+ * Each night is written as several V22 records the way the base station
+ * writes them: records for the night so far, then the complete night and
+ * the same night again once it is rated. Naps, corrupt spans (random bytes,
+ * records with a bad CRC and records cut short) and encrypted looking files
+ * can be mixed in. The CSV has one row for each night, as exported by the
+ * myZeo web site.
+ * <p>
+ * The output depends only on the seed and the options, so the same
+ * arguments always write the same files.
+ */
+public class ZeoDataGenerator {
+
+	/*************************************************************************
+	 * constants
+	 */
+
+	/*
+	 * Strings with program documentation.
+	 */
+	static final String DOCUMENTATION = "Write a synthetic Zeo save data file (zeosleep.dat).\n\n"
+			+ "This program writes a zeosleep.dat file of made up but valid\n"
+			+ "records, and if a second file is given the zeodata.csv export of\n"
+			+ "the same nights, for testing the decoder on large inputs. The same\n"
+			+ "seed and options always write the same files.\n"
+			+ "\n";
+
+	static final String OPTIONS = "Options:\n"
+			+ "-n or --nights N     : Number of nights to write (default 1000).\n"
+			+ "-m or --megabytes N  : Write about N MB of records instead.\n"
+			+ "-s or --seed N       : Seed of the random data (default 0).\n"
+			+ "-r or --records N    : Records written for each night (default 3).\n"
+			+ "-a or --naps P       : Chance of a nap after each night (default 0.1).\n"
+			+ "-c or --corrupt P    : Chance of a corrupt span (default 0.01).\n"
+			+ "-x or --encrypted    : Scramble the file as if it was encrypted.";
+
+	static final String USAGE = "Usage:\n"
+			+ "java -cp OpenDecoder.jar src.com.myzeo.decoder.ZeoDataGenerator\n"
+			+ "          [options] directory/zeosleep.dat [directory/zeodata.csv]\n";
+
+	/** The header row of the CSV export. */
+	public static final String CSV_HEADER = "Sleep Date,ZQ,Total Z,Time to Z,"
+			+ "Time in Wake,Time in REM,Time in Light,Time in Deep,Awakenings,"
+			+ "Start of Night,End of Night,Rise Time,Alarm Reason,Snooze Time,"
+			+ "Wake Tone,Wake Window,Alarm Type,First Alarm Ring,"
+			+ "Last Alarm Ring,First Snooze Time,Last Snooze Time,"
+			+ "Set Alarm Time,Morning Feel,Day Feel 1,Day Feel 2,Day Feel 3,"
+			+ "Notes,SS Fall Asleep,SS Anticipation,SS Tension,SS Comfort,"
+			+ "SS Noise,SS Light,SS Temperature,SS Familiar,SS Bedroom,"
+			+ "SS Disruption,SS Hot Flashes,SS Dreams,SS Fullness,SS Hunger,"
+			+ "SS Heartburn,SS Caffeine,SS Alcohol,SS Thirst,SS Restroom,"
+			+ "SS Wind Down,SS Sleepiness,SS Exercise,SS Time Before Bed,"
+			+ "SS Conversations,SS Activity Level,SS Late Work,SSCF 1,SSCF 2,"
+			+ "SSCF 3,SSCF 4,SSCF 5,SSCF 6,SSCF 7,SSCF 8,SSCF 9,SSCF 10,"
+			+ "SSCF 11,SSCF 12,SSCF 13,SSCF 14,SSCF 15,SSCF 16,SSCF 17,"
+			+ "SSCF 18,SSCF 19,SSCF 20,SSCF 21,Sleep Graph,"
+			+ "Detailed Sleep Graph,Firmware Version,MyZeo Version";
+
+	/* Number of empty sleep survey columns between Notes and the graphs. */
+	private static final int CSV_SURVEY_COLUMNS = 26 + 21;
+
+	/* Notes written for some of the nights, quoted as they hold commas. */
+	private static final String[] NOTES = { "slept well, woke up once",
+			"late dinner, restless", "noisy street, then quiet" };
+
+	/* 1st January 2010 22:00 UTC, the start of the first night. */
+	private static final long FIRST_NIGHT = 1262383200L;
+
+	/* Identifiers of the hardware, software and headband of the records. */
+	private static final int ID_HW = 3;
+	private static final int ID_SW = 263;
+	private static final long HEADBAND_ID = 0x2a51L;
+
+	/* Approximate number of bytes taken by a corrupt span. */
+	private static final int CORRUPT_BYTES = ZeoData.V22_SIZE / 2;
+
+	/*************************************************************************
+	 * variables
+	 */
+
+	/* The source of all random values, and the seed it started from. */
+	private final Random random;
+	private final long seed;
+
+	/* The options. */
+	private int records_per_night = 3;
+	private double nap_rate = 0.1;
+	private double corrupt_rate = 0.01;
+	private boolean encrypted = false;
+
+	/* Buffers reused for every record and row. */
+	private final byte[] record = new byte[ZeoData.V22_SIZE];
+	private final ByteBuffer out = ByteBuffer.wrap(record).order(
+			ByteOrder.LITTLE_ENDIAN);
+	private final byte[] base = new byte[ZeoData.HYP_BASE_LENGTH];
+	private final byte[] display = new byte[ZeoData.HYP_DISPLAY_LENGTH];
+	private final long[] fields = new long[UnixTime.FIELDS];
+	private final StringBuilder row = new StringBuilder();
+
+	/* The sleep episode being written. */
+	private long start_of_night;
+	private int base_count;
+	private int alarm_reason;
+	private int wake_tone;
+	private int sleep_rating;
+
+	/* Summary of the episode up to the record being written, in epochs. */
+	private int time_to_z;
+	private int time_in_wake;
+	private int time_in_rem;
+	private int time_in_light;
+	private int time_in_deep;
+	private int awakenings;
+	private int zq_score;
+
+	/* Totals and bests over the nights written, for the averages. */
+	private int nights_written;
+	private long total_deep;
+	private long total_rem;
+	private long total_z;
+	private long total_zq;
+	private long total_awakenings;
+	private long total_wake;
+	private long total_to_z;
+	private long total_light;
+	private int best_deep;
+	private int best_rem;
+	private int best_z;
+	private int best_zq;
+
+	/*************************************************************************
+	 * methods
+	 */
+
+	/**
+	 * Construct a generator of the nights given by the seed.
+	 * 
+	 * @param seed
+	 *            The seed of the random data. The same seed and options
+	 *            always generate the same data.
+	 */
+	public ZeoDataGenerator(long seed) {
+		this.seed = seed;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Set the number of records written for each night: the complete night
+	 * is written once, and again as rated when there are two or more
+	 * records, and the rest are records of the night so far. The default is
+	 * 3.
+	 * 
+	 * @param records
+	 *            Number of records for each night, at least 1.
+	 */
+	public void set_records_per_night(int records) {
+		if (records < 1) {
+			throw new IllegalArgumentException("records must be at least 1");
+		}
+		records_per_night = records;
+	}
+
+	/**
+	 * Set the chance of a nap being written the afternoon after each night.
+	 * Naps are only written to the zeosleep.dat file. The default is 0.1.
+	 * 
+	 * @param rate
+	 *            The chance of a nap, from 0 to 1.
+	 */
+	public void set_nap_rate(double rate) {
+		nap_rate = rate;
+	}
+
+	/**
+	 * Set the chance of a corrupt span being written before each night:
+	 * random bytes, a record with a bad CRC or a record cut short. The
+	 * default is 0.01.
+	 * 
+	 * @param rate
+	 *            The chance of a corrupt span, from 0 to 1.
+	 */
+	public void set_corrupt_rate(double rate) {
+		corrupt_rate = rate;
+	}
+
+	/**
+	 * Set whether the zeosleep.dat file is scrambled, so that it looks like
+	 * a file written with SD card encryption on and holds no records the
+	 * decoder can find. The default is false.
+	 * 
+	 * @param encrypted
+	 *            true to scramble the file.
+	 */
+	public void set_encrypted(boolean encrypted) {
+		this.encrypted = encrypted;
+	}
+
+	/**
+	 * Return the approximate number of bytes of the zeosleep.dat file written
+	 * for each night with the current options.
+	 * 
+	 * @return bytes for each night.
+	 */
+	public double bytes_per_night() {
+		return ZeoData.V22_SIZE * records_per_night * (1 + nap_rate)
+				+ CORRUPT_BYTES * corrupt_rate;
+	}
+
+	/**
+	 * Write the given number of nights, one night a day from the 1st January
+	 * 2010, to a zeosleep.dat file and, if given, to a zeodata.csv file. The
+	 * streams are flushed but not closed.
+	 * 
+	 * @param nights
+	 *            Number of nights to write.
+	 * @param dat
+	 *            The stream to write the zeosleep.dat file to.
+	 * @param csv
+	 *            The writer to write the zeodata.csv file to, or null.
+	 * 
+	 * @throws IOException
+	 *             if writing fails.
+	 */
+	public void write(int nights, OutputStream dat, Writer csv)
+			throws IOException {
+		OutputStream stream = encrypted ? new ScramblingStream(dat, seed)
+				: dat;
+
+		if (csv != null) {
+			csv.write(CSV_HEADER);
+			csv.write("\r\n");
+		}
+
+		for (int night = 0; night < nights; night++) {
+			long day = FIRST_NIGHT + (long) night * ZeoData.SECONDS_PER_DAY;
+
+			if (random.nextDouble() < corrupt_rate) {
+				write_corrupt_span(stream, day);
+			}
+
+			/* Go to bed between 21:00 and 01:00 for 5 to 9 hours. */
+			generate_episode(day + random_minutes(-60, 180) * 60L,
+					random_minutes(300, 540));
+			write_episode(stream);
+			if (csv != null) {
+				write_row(csv);
+			}
+
+			/* Nap for 20 to 90 minutes the next afternoon. */
+			if (random.nextDouble() < nap_rate) {
+				generate_episode(day + 15 * ZeoData.SECONDS_PER_HOUR
+						+ random_minutes(0, 180) * 60L, random_minutes(20, 90));
+				write_episode(stream);
+			}
+		}
+
+		stream.flush();
+		if (csv != null) {
+			csv.flush();
+		}
+	}
+
+	/**
+	 * Generate the base hypnogram and the rest of a sleep episode.
+	 * 
+	 * @param start
+	 *            UNIX timestamp of the start of the episode.
+	 * @param sleep_minutes
+	 *            Roughly how long to sleep for.
+	 */
+	private void generate_episode(long start, int sleep_minutes) {
+		int end = Math.min(ZeoData.HYP_BASE_LENGTH - 20, 2 * sleep_minutes);
+		int n = 0;
+
+		start_of_night = start;
+		alarm_reason = random.nextInt(AlarmReason.values().length);
+		wake_tone = random.nextInt(WakeTone.values().length);
+		sleep_rating = 1 + random.nextInt(SleepRating.values().length - 1);
+
+		/* Fall asleep, then sleep in cycles until it is time to wake up. */
+		n = fill(n, end, SleepStage.WAKE, 4 + random.nextInt(40));
+		for (int cycle = 0; n < end; cycle++) {
+			n = fill(n, end, SleepStage.LIGHT, 20 + random.nextInt(40));
+			n = fill(n, end, SleepStage.DEEP, Math.max(0, 90 - 24 * cycle)
+					+ random.nextInt(20));
+			n = fill(n, end, SleepStage.LIGHT, 20 + random.nextInt(30));
+			n = fill(n, end, SleepStage.REM, 10 + 16 * cycle
+					+ random.nextInt(20));
+			if (random.nextInt(3) == 0) {
+				n = fill(n, end, SleepStage.WAKE, 1 + random.nextInt(12));
+			}
+		}
+		n = fill(n, n + 20, SleepStage.WAKE, 2 + random.nextInt(16));
+
+		base_count = n;
+		while (n < base.length) {
+			base[n++] = (byte) SleepStage.UNDEFINED.ordinal();
+		}
+	}
+
+	/**
+	 * Fill in a run of one stage of the base hypnogram.
+	 * 
+	 * @param n
+	 *            Index of the first value of the run.
+	 * @param end
+	 *            Index past which the run is cut short.
+	 * @param stage
+	 *            The stage of the run.
+	 * @param length
+	 *            Length of the run in epochs.
+	 * 
+	 * @return the index just past the run.
+	 */
+	private int fill(int n, int end, SleepStage stage, int length) {
+		int last = Math.min(end, n + length);
+
+		while (n < last) {
+			base[n++] = (byte) stage.ordinal();
+		}
+		return n;
+	}
+
+	/**
+	 * Work out the sleep summary of the first count values of the base
+	 * hypnogram, the way the base station does for the night so far.
+	 * 
+	 * @param count
+	 *            Number of values of the base hypnogram recorded so far.
+	 */
+	private void summarize(int count) {
+		boolean asleep = false;
+
+		time_to_z = time_in_wake = time_in_rem = 0;
+		time_in_light = time_in_deep = awakenings = 0;
+		for (int i = 0; i < count; i++) {
+			SleepStage stage = SleepStage.convert(base[i]);
+
+			if (stage.is_wake()) {
+				if (!asleep) {
+					time_to_z++;
+				} else {
+					if (i > 0 && !SleepStage.convert(base[i - 1]).is_wake()) {
+						awakenings++;
+					}
+					time_in_wake++;
+				}
+			} else if (stage == SleepStage.REM) {
+				time_in_rem++;
+			} else if (stage == SleepStage.LIGHT) {
+				time_in_light++;
+			} else if (stage == SleepStage.DEEP) {
+				time_in_deep++;
+			}
+			asleep |= stage.is_sleep();
+		}
+
+		/* The published ZQ formula, with the times in hours. */
+		zq_score = (int) Math.max(0, Math.round((time_in_rem + time_in_light
+				+ time_in_deep) / 12.0 + time_in_rem / 24.0 + time_in_deep
+				/ 12.0 - time_in_wake / 48.0 - awakenings / 3.0));
+	}
+
+	/**
+	 * Write the records of the sleep episode just generated, the partial
+	 * ones first, then the complete night and the complete night rated.
+	 * 
+	 * @param stream
+	 *            The stream to write the records to.
+	 */
+	private void write_episode(OutputStream stream) throws IOException {
+		int partial = Math.max(0, records_per_night - 2);
+		long end_of_night = start_of_night + base_count
+				* ZeoData.SECONDS_PER_EPOCH;
+
+		for (int i = 1; i <= partial; i++) {
+			/* Keep to whole display bins, as the base station does. */
+			int count = base_count * i / (partial + 1)
+					/ ZeoData.HYP_BASE_PER_DISPLAY
+					* ZeoData.HYP_BASE_PER_DISPLAY;
+
+			summarize(count);
+			write_record(stream, count, start_of_night + count
+					* ZeoData.SECONDS_PER_EPOCH,
+					WriteReason.FS_REASON_TENTATIVE_NIGHT_END);
+		}
+
+		summarize(base_count);
+		add_to_averages();
+		write_record(stream, base_count, end_of_night + 60,
+				WriteReason.FS_REASON_NIGHT_END);
+		if (records_per_night > 1) {
+			write_record(stream, base_count, end_of_night + 600,
+					WriteReason.FS_REASON_SLEEP_RATED);
+		}
+	}
+
+	/**
+	 * Add the summary of the complete episode to the totals the averages and
+	 * bests written in records are worked out from.
+	 */
+	private void add_to_averages() {
+		int z = time_in_rem + time_in_light + time_in_deep;
+
+		nights_written++;
+		total_deep += time_in_deep;
+		total_rem += time_in_rem;
+		total_light += time_in_light;
+		total_wake += time_in_wake;
+		total_to_z += time_to_z;
+		total_z += z;
+		total_zq += zq_score;
+		total_awakenings += awakenings;
+		best_deep = Math.max(best_deep, time_in_deep);
+		best_rem = Math.max(best_rem, time_in_rem);
+		best_z = Math.max(best_z, z);
+		best_zq = Math.max(best_zq, zq_score);
+	}
+
+	/**
+	 * Fill in the record buffer with a V22 record of the episode as
+	 * summarized, in the order the ZeoData constructor reads the fields, and
+	 * set its CRC.
+	 * 
+	 * @param count
+	 *            Number of values of the base hypnogram recorded.
+	 * @param end_of_night
+	 *            UNIX timestamp of the end of the night so far.
+	 * @param reason
+	 *            Why the record was written.
+	 * @param current_time
+	 *            UNIX timestamp of when the record was written.
+	 */
+	private void fill_record(int count, long end_of_night,
+			WriteReason reason, long current_time) {
+		boolean rated = reason == WriteReason.FS_REASON_SLEEP_RATED;
+		long alarm = end_of_night - 5 * 60;
+		int bits;
+
+		out.clear();
+		out.put(ZeoData.IDENTIFIER);
+		out.put(ZeoData.V22);
+		out.putInt((int) current_time);
+		out.putInt(0); // CRC, set below
+
+		/* Device History packed values (bit fields). */
+		bits = (alarm_reason << 1) | (8 << 4) | (1 << 9) | (9 << 10)
+				| (wake_tone << 15) | (30 << 18) | (reason.ordinal() << 24);
+		out.putInt(bits);
+		out.putInt(0); // airplane_off
+		out.putInt(0); // airplane_on
+		for (int i = 0; i < 2 * 4; i++) {
+			out.putInt(0); // alarm_change_time and alarm_change_value
+		}
+		for (int i = 0; i < 20; i++) {
+			out.put((byte) 0); // assert_function_name
+		}
+		out.putInt(0); // assert_line_number
+		out.putInt(0); // factory_reset
+		out.putInt((int) HEADBAND_ID);
+
+		/* Headband readings, every ten minutes of the last day. */
+		for (int i = 0; i < 144; i++) {
+			out.put((byte) (40 + random.nextInt(60))); // impedance
+		}
+		for (int i = 0; i < 144; i++) {
+			out.put((byte) random.nextInt(4)); // packets lost
+		}
+		for (int i = 0; i < 144; i++) {
+			out.put((byte) (-40 - random.nextInt(40))); // rssi
+		}
+		for (int i = 0; i < 36; i++) {
+			out.put((byte) 0x55); // status, docked
+		}
+
+		out.putShort((short) ID_HW);
+		out.putShort((short) ID_SW);
+		for (int i = 0; i < 2 * 4; i++) {
+			out.putInt(0); // rtc_change_time and rtc_change_value
+		}
+		out.putInt(0); // sensor_life_reset
+		out.putInt(0); // sleep_stat_reset
+
+		/* Alarm rings, snoozes and the alarm off time. */
+		out.putInt((int) alarm);
+		out.putInt((int) alarm);
+		for (int i = 0; i < 9; i++) {
+			out.putInt(0);
+		}
+		out.putInt((int) (alarm + 60));
+
+		out.putShort((short) awakenings);
+		out.putShort((short) average(total_awakenings));
+		out.putInt((int) end_of_night);
+		out.putInt((int) start_of_night);
+		out.putShort((short) time_in_deep);
+		out.putShort((short) average(total_deep));
+		out.putShort((short) best_deep);
+		out.putShort((short) time_in_light);
+		out.putShort((short) average(total_light));
+		out.putShort((short) time_in_rem);
+		out.putShort((short) average(total_rem));
+		out.putShort((short) best_rem);
+		out.putShort((short) time_in_wake);
+		out.putShort((short) average(total_wake));
+		out.putShort((short) time_to_z);
+		out.putShort((short) average(total_to_z));
+		out.putShort((short) (time_in_rem + time_in_light + time_in_deep));
+		out.putShort((short) average(total_z));
+		out.putShort((short) best_z);
+		out.putShort((short) zq_score);
+		out.putShort((short) average(total_zq));
+		out.putShort((short) best_zq);
+
+		out.putShort((short) 0); // display_hypnogram_forced_index
+		out.putShort((short) 0); // display_hypnogram_forced_stage
+		out.putInt((int) start_of_night); // hypnogram_start_time
+
+		out.put((byte) (rated ? sleep_rating : 0));
+		for (int i = 0; i < 7; i++) {
+			out.put((byte) 0);
+		}
+
+		/* The base hypnogram, two values to a byte, the first low. */
+		out.putInt(count);
+		for (int i = 0; i < ZeoData.HYP_BASE_LENGTH; i += 2) {
+			int low = i < count ? base[i] : 0;
+			int high = i + 1 < count ? base[i + 1] : 0;
+
+			out.put((byte) (low | (high << 4)));
+		}
+
+		out.putInt(ZeoData.CRC_OFFSET, Crc16.record_crc16(out, 0,
+				ZeoData.V22_SIZE));
+	}
+
+	/**
+	 * Write a record of the episode as summarized.
+	 * 
+	 * @param stream
+	 *            The stream to write the record to.
+	 * @param count
+	 *            Number of values of the base hypnogram recorded.
+	 * @param current_time
+	 *            UNIX timestamp of when the record was written.
+	 * @param reason
+	 *            Why the record was written.
+	 */
+	private void write_record(OutputStream stream, int count,
+			long current_time, WriteReason reason) throws IOException {
+		long end_of_night = start_of_night + count * ZeoData.SECONDS_PER_EPOCH;
+
+		fill_record(count, end_of_night, reason, current_time);
+		stream.write(record);
+	}
+
+	/**
+	 * Write something the decoder has to skip: random bytes, a record with a
+	 * bad CRC or the start of a record cut short.
+	 * 
+	 * @param stream
+	 *            The stream to write to.
+	 * @param day
+	 *            UNIX timestamp of the evening the span is written on.
+	 */
+	private void write_corrupt_span(OutputStream stream, long day)
+			throws IOException {
+		switch (random.nextInt(3)) {
+		case 0:
+			/* Random bytes, which are very unlikely to hold an identifier. */
+			byte[] noise = new byte[1 + random.nextInt(2 * CORRUPT_BYTES)];
+
+			random.nextBytes(noise);
+			stream.write(noise);
+			break;
+
+		case 1:
+			/* A record with one byte changed after its CRC was set. */
+			generate_episode(day - 6 * ZeoData.SECONDS_PER_HOUR, 60);
+			summarize(base_count);
+			fill_record(base_count, start_of_night + base_count
+					* ZeoData.SECONDS_PER_EPOCH,
+					WriteReason.FS_REASON_NIGHT_END, start_of_night);
+			record[ZeoData.CRC_OFFSET + ZeoData.CRC_SIZE
+					+ random.nextInt(ZeoData.V22_SIZE - ZeoData.CRC_OFFSET
+							- ZeoData.CRC_SIZE)] ^= 1 + random.nextInt(255);
+			stream.write(record);
+			break;
+
+		default:
+			/* The start of a record, as left by a write cut short. */
+			generate_episode(day - 6 * ZeoData.SECONDS_PER_HOUR, 60);
+			summarize(base_count);
+			fill_record(base_count, start_of_night + base_count
+					* ZeoData.SECONDS_PER_EPOCH,
+					WriteReason.FS_REASON_NIGHT_END, start_of_night);
+			stream.write(record, 0, ZeoData.HEADER_SIZE
+					+ random.nextInt(ZeoData.V22_SIZE - ZeoData.HEADER_SIZE));
+			break;
+		}
+	}
+
+	/**
+	 * Write the CSV row of the complete night just written, as the myZeo web
+	 * site exports it.
+	 * 
+	 * @param csv
+	 *            The writer to write the row to.
+	 */
+	private void write_row(Writer csv) throws IOException {
+		long end_of_night = start_of_night + base_count
+				* ZeoData.SECONDS_PER_EPOCH;
+		long sleep_date = start_of_night - 6 * ZeoData.SECONDS_PER_HOUR;
+		int n_display = DisplayHypnogram.downsample(base, base_count,
+				display);
+		int last_sleep = DisplayHypnogram.last_sleep_index(display,
+				n_display);
+		long rise_time = start_of_night + ZeoData.HYP_DISPLAY_STEP
+				* (last_sleep + 1);
+		long alarm = end_of_night - 5 * 60;
+
+		row.setLength(0);
+		append_date(sleep_date, false);
+		row.append(',').append(zq_score);
+		row.append(',').append(minutes(time_in_rem + time_in_light
+				+ time_in_deep));
+		row.append(',').append(minutes(time_to_z));
+		row.append(',').append(minutes(time_in_wake));
+		row.append(',').append(minutes(time_in_rem));
+		row.append(',').append(minutes(time_in_light));
+		row.append(',').append(minutes(time_in_deep));
+		row.append(',').append(awakenings);
+		row.append(',');
+		append_date(start_of_night, true);
+		row.append(',');
+		append_date(end_of_night, true);
+		row.append(',');
+		append_date(rise_time, true);
+		row.append(',').append(alarm_reason);
+		row.append(",9,").append(wake_tone).append(",30,0");
+		/* First and last ring, no snoozes, and the set alarm time. */
+		row.append(',');
+		append_date(alarm, true);
+		row.append(',');
+		append_date(alarm, true);
+		row.append(",,,");
+		append_date(alarm, true);
+		row.append(',').append(sleep_rating);
+		row.append(",,,,");
+		if (random.nextInt(10) == 0) {
+			row.append('"').append(NOTES[random.nextInt(NOTES.length)])
+					.append('"');
+		}
+		for (int i = 0; i < CSV_SURVEY_COLUMNS; i++) {
+			row.append(',');
+		}
+
+		/* The graphs, with DEEP_2 shown as DEEP as the web site does. */
+		row.append(',');
+		append_graph(display, n_display);
+		row.append(',');
+		append_graph(base, base_count);
+		row.append(",2.6.3,V1.2.9535\r\n");
+
+		csv.append(row);
+	}
+
+	/**
+	 * Append a UTC date, as MM/dd/yyyy or MM/dd/yyyy HH:mm, to the row.
+	 * 
+	 * @param unix_timestamp
+	 *            The date as a UNIX timestamp.
+	 * @param time
+	 *            true to append the time of day as well.
+	 */
+	private void append_date(long unix_timestamp, boolean time) {
+		UnixTime.fields(unix_timestamp, fields);
+		append_two(fields[UnixTime.MONTH]);
+		row.append('/');
+		append_two(fields[UnixTime.DAY]);
+		row.append('/').append(fields[UnixTime.YEAR]);
+		if (time) {
+			row.append(' ');
+			append_two(fields[UnixTime.HOUR]);
+			row.append(':');
+			append_two(fields[UnixTime.MINUTE]);
+		}
+	}
+
+	/**
+	 * Append a value as two digits to the row.
+	 * 
+	 * @param value
+	 *            The value, from 0 to 99.
+	 */
+	private void append_two(long value) {
+		row.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+	}
+
+	/**
+	 * Append hypnogram values separated by spaces to the row.
+	 * 
+	 * @param values
+	 *            The hypnogram, one SleepStage ordinal per byte.
+	 * @param count
+	 *            Number of values to append.
+	 */
+	private void append_graph(byte[] values, int count) {
+		for (int i = 0; i < count; i++) {
+			int value = values[i] == SleepStage.DEEP_2.ordinal() ? SleepStage.DEEP
+					.ordinal() : values[i];
+
+			if (i > 0) {
+				row.append(' ');
+			}
+			row.append((char) ('0' + value));
+		}
+	}
+
+	/**
+	 * Return the average of a total over the nights written so far.
+	 * 
+	 * @param total
+	 *            The total.
+	 * 
+	 * @return the average, or 0 if no night was written yet.
+	 */
+	private int average(long total) {
+		return nights_written == 0 ? 0 : (int) (total / nights_written);
+	}
+
+	/**
+	 * Return a number of epochs as whole minutes, rounded the way ZeoReader
+	 * rounds the times it reads from a zeosleep.dat file.
+	 * 
+	 * @param epochs
+	 *            Number of 30 second epochs.
+	 * 
+	 * @return the minutes.
+	 */
+	private static int minutes(int epochs) {
+		return (epochs + 1) / 2;
+	}
+
+	/**
+	 * Return a random number of minutes between the given bounds.
+	 * 
+	 * @param from
+	 *            The least number of minutes.
+	 * @param to
+	 *            The most number of minutes.
+	 * 
+	 * @return the minutes.
+	 */
+	private int random_minutes(int from, int to) {
+		return from + random.nextInt(to - from + 1);
+	}
+
+	/**
+	 * Stream that scrambles everything written through it with a random
+	 * key stream, so the file looks encrypted.
+	 */
+	private static class ScramblingStream extends FilterOutputStream {
+
+		/* The key stream, and the bytes of it not used yet. */
+		private final Random key;
+		private final byte[] keys = new byte[4096];
+		private int used = keys.length;
+
+		/* Buffer the scrambled bytes are written from. */
+		private final byte[] scrambled = new byte[4096];
+
+		ScramblingStream(OutputStream out, long seed) {
+			super(out);
+			key = new Random(~seed);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b ^ next_key());
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				int chunk = Math.min(len, scrambled.length);
+
+				for (int i = 0; i < chunk; i++) {
+					scrambled[i] = (byte) (b[off + i] ^ next_key());
+				}
+				out.write(scrambled, 0, chunk);
+				off += chunk;
+				len -= chunk;
+			}
+		}
+
+		private int next_key() {
+			if (used == keys.length) {
+				key.nextBytes(keys);
+				used = 0;
+			}
+			return keys[used++];
+		}
+	}
+
+	/**
+	 * Main routine. See DOCUMENTATION and USAGE.
+	 * 
+	 * @param args
+	 *            The options, the zeosleep.dat file and optionally the
+	 *            zeodata.csv file to write.
+	 */
+	public static void main(String[] args) {
+		ArrayList<String> arguments = new ArrayList<String>();
+		ZeoDataGenerator generator;
+		long seed = 0;
+		int nights = 1000;
+		double megabytes = 0;
+		int records = 3;
+		double naps = 0.1;
+		double corrupt = 0.01;
+		boolean encrypted = false;
+
+		/* Process command line arguments. */
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+
+				if (arg.equals("-n") || arg.equals("--nights")) {
+					nights = Integer.parseInt(args[++i]);
+				} else if (arg.equals("-m") || arg.equals("--megabytes")) {
+					megabytes = Double.parseDouble(args[++i]);
+				} else if (arg.equals("-s") || arg.equals("--seed")) {
+					seed = Long.parseLong(args[++i]);
+				} else if (arg.equals("-r") || arg.equals("--records")) {
+					records = Integer.parseInt(args[++i]);
+				} else if (arg.equals("-a") || arg.equals("--naps")) {
+					naps = Double.parseDouble(args[++i]);
+				} else if (arg.equals("-c") || arg.equals("--corrupt")) {
+					corrupt = Double.parseDouble(args[++i]);
+				} else if (arg.equals("-x") || arg.equals("--encrypted")) {
+					encrypted = true;
+				} else {
+					arguments.add(arg);
+				}
+			}
+		} catch (RuntimeException e) {
+			/* A missing or malformed option value. */
+			arguments.clear();
+		}
+
+		if (arguments.size() < 1 || arguments.size() > 2 || records < 1) {
+			System.out.println(DOCUMENTATION);
+			System.out.println(USAGE);
+			System.out.println(OPTIONS);
+			System.err.println("Invalid program arguments. ");
+			System.exit(1);
+		}
+
+		generator = new ZeoDataGenerator(seed);
+		generator.set_records_per_night(records);
+		generator.set_nap_rate(naps);
+		generator.set_corrupt_rate(corrupt);
+		generator.set_encrypted(encrypted);
+		if (megabytes > 0) {
+			nights = (int) Math.ceil(megabytes * 1024 * 1024
+					/ generator.bytes_per_night());
+		}
+
+		try {
+			OutputStream dat = new BufferedOutputStream(new FileOutputStream(
+					arguments.get(0)), 1 << 16);
+			Writer csv = null;
+
+			try {
+				if (arguments.size() == 2) {
+					csv = new BufferedWriter(new OutputStreamWriter(
+							new FileOutputStream(arguments.get(1)), "UTF-8"),
+							1 << 16);
+				}
+				generator.write(nights, dat, csv);
+			} finally {
+				dat.close();
+				if (csv != null) {
+					csv.close();
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("ERROR: Could not write " + arguments + ": "
+					+ e.getMessage());
+			System.exit(1);
+		}
+	}
+}
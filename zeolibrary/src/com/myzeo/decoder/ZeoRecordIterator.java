@@ -0,0 +1,769 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Lazy source of Zeo data records. Records are decoded one at a time as they
+ * are requested, so a caller that stops early never pays for decoding (or
+ * holding) the rest of the data.
+ * <p>
+ * Records are located, validated and decoded exactly as the ZeoDataDecoder
+ * constructor does it, including the warnings printed for data that has to be
+ * skipped. When reading from a file, the file is memory mapped in windows of
+ * ZeoDataDecoder.MAP_WINDOW_SIZE bytes and the underlying file is closed once
+ * the last record has been returned or close() is called.
+ * <p>
+ * When given an ExecutorService, the iterator decodes and CRC checks the next
+ * PREFETCH_RECORDS candidate records (found by their identifier) concurrently
+ * on the executor. The records are still returned in file order, and which
+ * records are kept and which warnings are printed is the same as for
+ * sequential decoding.
+ * <p>
+ * Warnings, counts of the records decoded and skipped, and the time spent
+ * scanning, decoding and verifying CRCs are reported to a DecodeListener,
+ * which prints the warnings on standard error unless another is given.
+ * <p>
+ * The executor, CRC check, field groups and listener are all given by a
+ * DecodeOptions; the constructors without one use the defaults.
+ */
+public class ZeoRecordIterator implements Iterator<ZeoData>, Closeable {
+
+	/*************************************************************************
+	 * constants
+	 */
+
+	/**
+	 * Number of candidate records decoded ahead of time when decoding in
+	 * parallel. This bounds the number of decoded records held in memory.
+	 */
+	public static final int PREFETCH_RECORDS = 1024;
+
+	/**
+	 * Number of candidate records handed to the executor as one task.
+	 */
+	private static final int PREFETCH_TASK_RECORDS = 16;
+
+	/*************************************************************************
+	 * variables
+	 */
+
+	/* The file being decoded, or null when decoding a single buffer. */
+	private FileInputStream istream;
+	private FileChannel ichannel;
+	private long file_size;
+
+	/* The current window of data, or null when decoding is complete. */
+	private ByteBuffer in;
+	private long window_start;
+	private boolean last_window;
+
+	/* The next record to return, if already decoded. */
+	private ZeoData next_record;
+
+	/*
+	 * Offsets (from the start of the data) just past the next record and the
+	 * last record returned.
+	 */
+	private long next_record_end;
+	private long record_end;
+
+	/* Number of records returned so far (used in warnings). */
+	private int record_count;
+
+	/* Executor used to decode records in parallel, or null. */
+	private ExecutorService executor;
+
+	/* When record CRCs are verified. */
+	private CrcCheck check;
+
+	/* Field groups decoded for each record. */
+	private EnumSet<FieldGroup> fields;
+
+	/* Receives warnings, counts and times. */
+	private DecodeListener listener;
+
+	/* Scanner used to find the next record after one had to be skipped. */
+	private ZeoRecordScanner scanner = new ZeoRecordScanner();
+
+	/* Records decoded ahead of time, keyed by their offset in the window. */
+	private HashMap<Integer, Decoded> prefetched = new HashMap<Integer, Decoded>();
+
+	/*************************************************************************
+	 * methods
+	 */
+
+	/**
+	 * Construct an iterator over the records in the given buffer, starting at
+	 * the beginning of the buffer. The buffer does not need to be backed by
+	 * an array and is never modified.
+	 * 
+	 * @param in
+	 *            A byte buffer that is the source of data for the records.
+	 */
+	public ZeoRecordIterator(ByteBuffer in) {
+		this(in, null);
+	}
+
+	/**
+	 * Construct an iterator over the records in the given buffer that decodes
+	 * records as the options say (see DecodeOptions).
+	 * 
+	 * @param in
+	 *            A byte buffer that is the source of data for the records.
+	 * @param options
+	 *            How to decode the records, or null for the defaults.
+	 */
+	public ZeoRecordIterator(ByteBuffer in, DecodeOptions options) {
+		this.in = in;
+		set_options(options);
+		last_window = true;
+
+		/* Set the byte order to little endian. */
+		in.order(ByteOrder.LITTLE_ENDIAN);
+		in.rewind();
+
+		check_encryption();
+	}
+
+	/**
+	 * Construct an iterator over the records in the given zeosleep.dat file.
+	 * The file is memory mapped read-only a window at a time.
+	 * 
+	 * @param file
+	 *            The zeosleep.dat file to decode.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be opened or mapped.
+	 */
+	public ZeoRecordIterator(File file) throws IOException {
+		this(file, null, 0);
+	}
+
+	/**
+	 * Construct an iterator over the records in the given zeosleep.dat file
+	 * that decodes records as the options say (see DecodeOptions).
+	 * 
+	 * @param file
+	 *            The zeosleep.dat file to decode.
+	 * @param options
+	 *            How to decode the records, or null for the defaults.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be opened or mapped.
+	 */
+	public ZeoRecordIterator(File file, DecodeOptions options)
+			throws IOException {
+		this(file, options, 0);
+	}
+
+	/**
+	 * Construct an iterator over the records in the given zeosleep.dat file
+	 * starting at the given file offset, which should be the start of a
+	 * record (see DecodeCheckpoint). The check for an encrypted file is only
+	 * made when starting at the beginning of the file.
+	 * 
+	 * @param file
+	 *            The zeosleep.dat file to decode.
+	 * @param options
+	 *            How to decode the records, or null for the defaults.
+	 * @param start
+	 *            File offset to start decoding at.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be opened or mapped.
+	 */
+	public ZeoRecordIterator(File file, DecodeOptions options, long start)
+			throws IOException {
+		set_options(options);
+		istream = new FileInputStream(file);
+		ichannel = istream.getChannel();
+
+		try {
+			file_size = ichannel.size();
+			map_window(Math.min(start, file_size));
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+
+		next_record_end = window_start;
+		record_end = window_start;
+		if (start == 0) {
+			check_encryption();
+		}
+	}
+
+	/**
+	 * Take the executor, CRC check, field groups and listener to decode with
+	 * from the options.
+	 * 
+	 * @param options
+	 *            How to decode the records, or null for the defaults.
+	 */
+	private void set_options(DecodeOptions options) {
+		if (options == null) {
+			options = new DecodeOptions();
+		}
+		executor = options.get_executor();
+		check = options.get_check();
+		fields = options.get_fields();
+		listener = options.get_listener();
+		if (listener == null) {
+			/* Report to a listener nobody reads. */
+			listener = new DecodeStats(null);
+		}
+	}
+
+	/**
+	 * Check if the data is encrypted. We do this by looking for a valid record
+	 * identifier. If we don't find one then we assume it's because the file is
+	 * encrypted. The buffer is left positioned at its start.
+	 */
+	private void check_encryption() {
+		int bytes_to_search = Math.min(in.remaining()
+				- ZeoData.IDENTIFIER_SIZE, ZeoData.MAX_RECORD_BYTES);
+
+		/* Use a scanner of its own so this isn't counted as a resync. */
+		if (new ZeoRecordScanner().find(in, in.position(), in.position()
+				+ bytes_to_search) == -1) {
+			listener.warning("ERROR: File may be encrypted."
+					+ "Please update to firmware version 2.6.3O to disable SD card encryption.");
+		}
+		in.rewind();
+	}
+
+	/**
+	 * Release the file being decoded, if any. No further records are returned
+	 * after the iterator is closed.
+	 */
+	public void close() throws IOException {
+		in = null;
+		next_record = null;
+		if (istream != null) {
+			istream.close();
+			istream = null;
+			ichannel = null;
+		}
+	}
+
+	/**
+	 * Decode records until one is successfully decoded or the data runs out.
+	 * 
+	 * @return the next record or null if there are no more records.
+	 */
+	private ZeoData decode_next() {
+		ZeoData record = null;
+
+		while (record == null && in != null) {
+			if (!last_window
+					&& in.remaining() < ZeoDataDecoder.MAP_WINDOW_OVERLAP) {
+				/*
+				 * Leave the tail of the window for the next window so that a
+				 * record (or the search for one) never straddles the end of
+				 * the window.
+				 */
+				try {
+					map_window(window_start + in.position());
+				} catch (IOException e) {
+					finish();
+					throw new IllegalStateException(
+							"Unable to map zeosleep file", e);
+				}
+			} else if (!in.hasRemaining()) {
+				finish();
+			} else {
+				record = decode_record();
+			}
+		}
+		return record;
+	}
+
+	/**
+	 * Attempt to decode the record at the current position. If no valid record
+	 * is found there, the buffer is advanced to the next candidate record.
+	 * 
+	 * @return the decoded record or null if there was no valid record at the
+	 *         current position.
+	 */
+	private ZeoData decode_record() {
+		byte[] identifier = new byte[ZeoData.IDENTIFIER_SIZE];
+		ZeoData record = null;
+		int record_offset;
+		int record_size;
+		int version;
+		byte[] version_str = new byte[ZeoData.VERSION_SIZE];
+		long scan_start = System.nanoTime();
+
+		/* Remember where this record starts */
+		in.mark();
+		record_offset = in.position();
+
+		record_size = 0;
+		version = 0;
+
+		/* Stop parsing if there isn't enough data left */
+		if (in.remaining() < ZeoData.HEADER_SIZE) {
+			listener.count(DecodeCounter.TRUNCATED_RECORDS, 1);
+			listener.warning("WARNING: File ended with incomplete record.");
+			finish();
+			return null;
+		}
+
+		/*
+		 * Read in the header data for this record. If the header's identifier
+		 * value is valid, decode the version value.
+		 */
+		in.get(identifier);
+		in.get(version_str);
+		if (!Arrays.equals(identifier, ZeoData.IDENTIFIER)) {
+			listener.count(DecodeCounter.INVALID_IDENTIFIERS, 1);
+			listener.warning("WARNING: Invalid record identifier "
+					+ "skipped after record " + record_count + ".");
+		} else {
+			/* Check the version of the record. */
+			if (Arrays.equals(version_str, ZeoData.V22)) {
+				record_size = ZeoData.V22_SIZE;
+				version = 22;
+			} else {
+				/*
+				 * We don't have code to handle this record version so report
+				 * an error.
+				 */
+				listener.count(DecodeCounter.UNSUPPORTED_VERSIONS, 1);
+				listener.warning("WARNING: Unable to handle Zeo record version "
+						+ (version_str[1] * 256 + version_str[0])
+						+ " after record " + record_count + ".");
+			}
+		}
+
+		/* Stop parsing if there isn't enough data left */
+		if (in.remaining() < record_size - ZeoData.HEADER_SIZE) {
+			listener.count(DecodeCounter.TRUNCATED_RECORDS, 1);
+			listener.warning("WARNING: File ended with incomplete record.");
+			listener.time(DecodePhase.SCAN, System.nanoTime() - scan_start);
+			finish();
+			return null;
+		}
+
+		listener.time(DecodePhase.SCAN, System.nanoTime() - scan_start);
+
+		/* If we recognized the version then decode the record */
+		if (version != 0) {
+			Decoded decoded = decoded_record(record_offset, record_size,
+					version);
+
+			listener.time(DecodePhase.DECODE, decoded.decode_nanos);
+			listener.time(DecodePhase.CRC, decoded.crc_nanos);
+			if (decoded.error != null) {
+				/*
+				 * We had some type of error during parsing so report the
+				 * problem and discard this record.
+				 */
+				listener.count(DecodeCounter.DECODE_ERRORS, 1);
+				listener.warning("WARNING: Exception parsing the record after record "
+						+ record_count + ": " + decoded.error.toString());
+			} else if (decoded.bad_crc) {
+				listener.count(DecodeCounter.BAD_CRCS, 1);
+				listener.warning("WARNING: Skipping the record after record "
+						+ record_count + " due to bad CRC.");
+			} else {
+				record = decoded.record;
+			}
+		}
+
+		if (record != null) {
+			/* Advance to start of next record */
+			in.position(record_offset + record_size);
+			next_record_end = window_start + in.position();
+			record_count++;
+			listener.count(DecodeCounter.RECORDS_DECODED, 1);
+		} else {
+			/*
+			 * We were unable to process a record for some reason so try to
+			 * find a new record to process starting one byte past the previous
+			 * starting record position.
+			 */
+			in.reset();
+			in.get();
+
+			if (find_next_record() == -1) {
+				listener.warning("WARNING: Valid records stopped before file ended.");
+				finish();
+			}
+		}
+		return record;
+	}
+
+	/**
+	 * Decode the record at the given offset of a buffer and verify its
+	 * checksum. Any error is captured in the result rather than thrown. The
+	 * buffer itself is not modified (not even its position) so this may run
+	 * concurrently on the same buffer.
+	 * 
+	 * @param in
+	 *            Byte buffer holding the record.
+	 * @param record_offset
+	 *            Offset of the start of the record in the buffer.
+	 * @param record_size
+	 *            Size of the record in bytes.
+	 * @param version
+	 *            The version number of the record to decode.
+	 * @param check
+	 *            When to verify the CRC of the record.
+	 * @param fields
+	 *            The field groups to decode.
+	 * 
+	 * @return the outcome of decoding the record.
+	 */
+	private static Decoded decode(ByteBuffer in, int record_offset,
+			int record_size, int version, CrcCheck check,
+			EnumSet<FieldGroup> fields) {
+		Decoded decoded = new Decoded();
+
+		try {
+			/*
+			 * Set up a byte buffer that provides access to just the record's
+			 * contents minus the header. Note, this buffer shares the same
+			 * data as "in" without copying it.
+			 */
+			ByteBuffer bstream = in.duplicate();
+			bstream.limit(record_offset + record_size);
+			bstream.position(record_offset + ZeoData.HEADER_SIZE);
+			bstream = bstream.slice();
+
+			/* Decode the record */
+			long start = System.nanoTime();
+			decoded.record = new ZeoData(bstream, version, fields);
+			decoded.decode_nanos = System.nanoTime() - start;
+
+			/* Verify checksum for those records that have one */
+			if (version >= 20 && check == CrcCheck.LAZY) {
+				ByteBuffer record = in.duplicate();
+				record.limit(record_offset + record_size);
+				record.position(record_offset);
+				decoded.record.defer_crc_check(record.slice());
+			} else if (version >= 20) {
+				long start_crc = System.nanoTime();
+				int crc = Crc16.record_crc16(in, record_offset, record_size);
+
+				decoded.crc_nanos = System.nanoTime() - start_crc;
+				if (crc != decoded.record.get_crc()) {
+					decoded.bad_crc = true;
+				}
+			}
+		} catch (Throwable e) {
+			decoded.error = e;
+		}
+		return decoded;
+	}
+
+	/**
+	 * Return the outcome of decoding the record at the given offset of the
+	 * current window, using the records decoded ahead of time when decoding
+	 * in parallel.
+	 * 
+	 * @param record_offset
+	 *            Offset of the start of the record in the window.
+	 * @param record_size
+	 *            Size of the record in bytes.
+	 * @param version
+	 *            The version number of the record to decode.
+	 * 
+	 * @return the outcome of decoding the record.
+	 */
+	private Decoded decoded_record(int record_offset, int record_size,
+			int version) {
+		Decoded decoded = null;
+
+		if (executor != null) {
+			Integer key = Integer.valueOf(record_offset);
+
+			decoded = prefetched.remove(key);
+			if (decoded == null) {
+				prefetch(record_offset);
+				decoded = prefetched.remove(key);
+			}
+		}
+
+		/* Fall back to decoding the record here. */
+		if (decoded == null) {
+			decoded = decode(in, record_offset, record_size, version, check,
+					fields);
+		}
+		return decoded;
+	}
+
+	/**
+	 * Attempt to find the start of the next record given the current position
+	 * in the buffer. This function searches for the identifier string
+	 * ZeoData.IDENTIFIER that marks the start of all records. It halts the
+	 * search after ZeoData.MAX_RECORD_BYTES since no valid record would start
+	 * further along than that. This function leaves the buffer positioned at
+	 * the start of the record it finds.
+	 * 
+	 * @return position of the start of the next Zeo record or -1 if no new
+	 *         record found.
+	 */
+	private int find_next_record() {
+		int bytes_to_search;
+		int offset;
+
+		/*
+		 * Determine how many bytes to search to find an identifier. We search
+		 * at most ZeoData.MAX_RECORD_BYTES or until we get so close to the end
+		 * of the buffer that it couldn't store an identifier value.
+		 */
+		bytes_to_search = in.remaining() - ZeoData.IDENTIFIER_SIZE;
+		if (bytes_to_search > ZeoData.MAX_RECORD_BYTES) {
+			bytes_to_search = ZeoData.MAX_RECORD_BYTES;
+		}
+
+		long skipped = scanner.get_bytes_skipped();
+		long start = System.nanoTime();
+
+		offset = scanner.find(in, in.position(), in.position()
+				+ bytes_to_search);
+		listener.time(DecodePhase.SCAN, System.nanoTime() - start);
+		listener.count(DecodeCounter.RESYNCS, 1);
+		listener.count(DecodeCounter.BYTES_SKIPPED,
+				scanner.get_bytes_skipped() - skipped);
+		if (offset != -1) {
+			in.position(offset);
+		}
+		return offset;
+	}
+
+	/**
+	 * Stop decoding and release the file being decoded, if any.
+	 */
+	private void finish() {
+		in = null;
+		if (istream != null) {
+			try {
+				istream.close();
+			} catch (IOException e) {
+				/* Nothing more will be read so the error does not matter. */
+			}
+			istream = null;
+			ichannel = null;
+		}
+	}
+
+	/**
+	 * @return the number of bytes skipped over while searching for the next
+	 *         record after one that could not be decoded.
+	 */
+	public long get_bytes_skipped() {
+		return scanner.get_bytes_skipped();
+	}
+
+	/**
+	 * @return the offset (from the start of the file or buffer) just past the
+	 *         last record returned, or the offset decoding started at if no
+	 *         record has been returned yet.
+	 */
+	public long get_offset() {
+		return record_end;
+	}
+
+	/**
+	 * @return the number of times a search for the next record had to be
+	 *         made after one that could not be decoded.
+	 */
+	public long get_resyncs() {
+		return scanner.get_searches();
+	}
+
+	/**
+	 * Returns true if there are more records.
+	 * 
+	 * @return true if there are more records.
+	 */
+	public boolean hasNext() {
+		if (next_record == null) {
+			next_record = decode_next();
+		}
+		return next_record != null;
+	}
+
+	/**
+	 * Map the window of the file starting at the given file offset.
+	 * 
+	 * @param start
+	 *            File offset of the start of the window.
+	 */
+	private void map_window(long start) throws IOException {
+		long window_size = file_size - start;
+
+		last_window = window_size <= ZeoDataDecoder.MAP_WINDOW_SIZE;
+		if (!last_window) {
+			window_size = ZeoDataDecoder.MAP_WINDOW_SIZE;
+		}
+		window_start = start;
+		prefetched.clear();
+		in = ichannel.map(FileChannel.MapMode.READ_ONLY, window_start,
+				window_size);
+		in.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Returns the next record, decoding it if necessary.
+	 * 
+	 * @return the next record.
+	 */
+	public ZeoData next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		ZeoData record = next_record;
+		next_record = null;
+		record_end = next_record_end;
+		return record;
+	}
+
+	/**
+	 * Decode the next PREFETCH_RECORDS candidate V22 records of the current
+	 * window, starting at the given offset, in parallel on the executor. A
+	 * candidate is any complete record with a valid identifier and version.
+	 * The outcomes replace any previously prefetched records.
+	 * 
+	 * @param start
+	 *            Offset in the window to start searching for candidates.
+	 */
+	private void prefetch(int start) {
+		final ByteBuffer window = in;
+		final List<Integer> offsets = new ArrayList<Integer>();
+		List<Future<Decoded[]>> results = new ArrayList<Future<Decoded[]>>();
+		int[] candidates;
+
+		prefetched.clear();
+
+		/* Find the candidate records that fit in the window in one pass. */
+		long scan_start = System.nanoTime();
+		candidates = new ZeoRecordScanner().find_all(window, start,
+				window.limit() - ZeoData.V22_SIZE + 1, PREFETCH_RECORDS);
+		listener.time(DecodePhase.SCAN, System.nanoTime() - scan_start);
+		for (int offset : candidates) {
+			if (window.get(offset + ZeoData.IDENTIFIER_SIZE) == ZeoData.V22[0]
+					&& window.get(offset + ZeoData.IDENTIFIER_SIZE + 1) == ZeoData.V22[1]) {
+				offsets.add(Integer.valueOf(offset));
+			}
+		}
+
+		/* Decode them in groups of PREFETCH_TASK_RECORDS. */
+		for (int i = 0; i < offsets.size(); i += PREFETCH_TASK_RECORDS) {
+			final int first = i;
+			final int count = Math.min(PREFETCH_TASK_RECORDS, offsets.size()
+					- i);
+
+			results.add(executor.submit(new Callable<Decoded[]>() {
+				public Decoded[] call() {
+					Decoded[] decoded = new Decoded[count];
+
+					for (int j = 0; j < count; j++) {
+						decoded[j] = decode(window, offsets.get(first + j)
+								.intValue(), ZeoData.V22_SIZE, 22, check,
+								fields);
+					}
+					return decoded;
+				}
+			}));
+		}
+
+		/* Collect the outcomes in file order. */
+		try {
+			for (int i = 0; i < results.size(); i++) {
+				Decoded[] decoded = results.get(i).get();
+
+				for (int j = 0; j < decoded.length; j++) {
+					prefetched.put(offsets.get(i * PREFETCH_TASK_RECORDS + j),
+							decoded[j]);
+				}
+			}
+		} catch (InterruptedException e) {
+			/* Leave the remaining records to be decoded sequentially. */
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			/* Decoding captures its own errors so this is not expected. */
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 * Records cannot be removed from the underlying data.
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/*************************************************************************
+	 * classes
+	 */
+
+	/**
+	 * The outcome of decoding a single record: either the record, or the
+	 * reason it has to be skipped.
+	 */
+	private static class Decoded {
+		/* The decoded record. */
+		ZeoData record;
+
+		/* True if the record's CRC does not match its contents. */
+		boolean bad_crc;
+
+		/* Error thrown while decoding the record, or null. */
+		Throwable error;
+
+		/* Time spent decoding the record and verifying its CRC. */
+		long decode_nanos;
+		long crc_nanos;
+	}
+}
@@ -0,0 +1,244 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Searches Zeo data for the identifier that starts every record. The search
+ * is a Boyer-Moore-Horspool scan: only the last byte of each possible
+ * identifier position is looked at first, and since the identifier's last
+ * byte ('\0') does not occur anywhere else in it, most positions are skipped
+ * IDENTIFIER_SIZE bytes at a time. Heap buffers are scanned through their
+ * backing array, other buffers (such as memory mapped ones) with absolute
+ * gets. Neither changes the buffer's position.
+ * <p>
+ * The scanner counts the searches made, the candidate records found and the
+ * bytes passed over without finding an identifier. A scanner is not safe for
+ * use by several threads at once.
+ */
+public class ZeoRecordScanner {
+
+	/*************************************************************************
+	 * constants
+	 */
+
+	/*
+	 * Horspool shift table: how far the search may advance given the byte at
+	 * the last position of the identifier.
+	 */
+	private static final int[] SHIFT = new int[256];
+
+	static {
+		int last = ZeoData.IDENTIFIER_SIZE - 1;
+
+		Arrays.fill(SHIFT, ZeoData.IDENTIFIER_SIZE);
+		for (int i = 0; i < last; i++) {
+			SHIFT[ZeoData.IDENTIFIER[i] & 0xff] = last - i;
+		}
+	}
+
+	/*************************************************************************
+	 * variables
+	 */
+
+	private long bytes_skipped;
+	private long candidates;
+	private long searches;
+
+	/*************************************************************************
+	 * methods
+	 */
+
+	/**
+	 * Find the first identifier that starts in the given range of a buffer.
+	 * 
+	 * @param in
+	 *            Byte buffer to search.
+	 * @param from
+	 *            Offset in the buffer to start searching at.
+	 * @param to
+	 *            Offset in the buffer that the identifier has to start before.
+	 *            The identifier also has to end within the buffer's limit.
+	 * 
+	 * @return offset of the identifier found or -1 if there is none.
+	 */
+	public int find(ByteBuffer in, int from, int to) {
+		int offset = index_of(in, from, to);
+
+		searches++;
+		if (offset == -1) {
+			bytes_skipped += Math.max(to - from, 0);
+		} else {
+			bytes_skipped += offset - from;
+			candidates++;
+		}
+		return offset;
+	}
+
+	/**
+	 * Find all the identifiers that start in the given range of a buffer in a
+	 * single pass.
+	 * 
+	 * @param in
+	 *            Byte buffer to search.
+	 * @param from
+	 *            Offset in the buffer to start searching at.
+	 * @param to
+	 *            Offset in the buffer that identifiers have to start before.
+	 *            Identifiers also have to end within the buffer's limit.
+	 * @param max
+	 *            Maximum number of identifiers to find.
+	 * 
+	 * @return offsets of the identifiers found in ascending order.
+	 */
+	public int[] find_all(ByteBuffer in, int from, int to, int max) {
+		int[] offsets = new int[Math.min(max, 64)];
+		int count = 0;
+		int offset = from;
+
+		searches++;
+		while (count < max) {
+			int found = index_of(in, offset, to);
+
+			if (found == -1) {
+				bytes_skipped += Math.max(to - offset, 0);
+				break;
+			}
+			if (count == offsets.length) {
+				offsets = Arrays.copyOf(offsets, Math.min(2 * count, max));
+			}
+			offsets[count++] = found;
+			bytes_skipped += found - offset;
+			offset = found + ZeoData.IDENTIFIER_SIZE;
+		}
+		candidates += count;
+		return Arrays.copyOf(offsets, count);
+	}
+
+	/**
+	 * @return the number of bytes passed over without finding an identifier.
+	 */
+	public long get_bytes_skipped() {
+		return bytes_skipped;
+	}
+
+	/**
+	 * @return the number of identifiers found.
+	 */
+	public long get_candidates() {
+		return candidates;
+	}
+
+	/**
+	 * @return the number of searches made.
+	 */
+	public long get_searches() {
+		return searches;
+	}
+
+	/**
+	 * Horspool search of a byte array.
+	 * 
+	 * @param in
+	 *            Array to search.
+	 * @param from
+	 *            Index to start searching at.
+	 * @param to
+	 *            Index the identifier has to start before.
+	 * @param end
+	 *            Index the identifier has to end at or before.
+	 * 
+	 * @return index of the identifier or -1 if there is none.
+	 */
+	private static int index_of(byte[] in, int from, int to, int end) {
+		int last = ZeoData.IDENTIFIER_SIZE - 1;
+		byte[] identifier = ZeoData.IDENTIFIER;
+
+		to = Math.min(to, end - last);
+		for (int i = from; i < to; i += SHIFT[in[i + last] & 0xff]) {
+			if (in[i + last] == identifier[last]) {
+				int j = 0;
+
+				while (j < last && in[i + j] == identifier[j]) {
+					j++;
+				}
+				if (j == last) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Horspool search of a byte buffer, through its backing array if it has
+	 * one.
+	 * 
+	 * @param in
+	 *            Buffer to search.
+	 * @param from
+	 *            Offset to start searching at.
+	 * @param to
+	 *            Offset the identifier has to start before.
+	 * 
+	 * @return offset of the identifier or -1 if there is none.
+	 */
+	private static int index_of(ByteBuffer in, int from, int to) {
+		int last = ZeoData.IDENTIFIER_SIZE - 1;
+		byte[] identifier = ZeoData.IDENTIFIER;
+
+		if (in.hasArray()) {
+			int base = in.arrayOffset();
+			int found = index_of(in.array(), base + from, base + to, base
+					+ in.limit());
+
+			return (found == -1) ? -1 : found - base;
+		}
+
+		to = Math.min(to, in.limit() - last);
+		for (int i = from; i < to; i += SHIFT[in.get(i + last) & 0xff]) {
+			if (in.get(i + last) == identifier[last]) {
+				int j = 0;
+
+				while (j < last && in.get(i + j) == identifier[j]) {
+					j++;
+				}
+				if (j == last) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,871 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Flyweight view of a V22 Zeo data record in place in a byte buffer. Fields
+ * are decoded on demand from their fixed offsets in the record each time a
+ * getter is called, and the view is moved from record to record with
+ * move_to(), so scanning records through a view allocates nothing per record.
+ * <p>
+ * The getters have the same names and return the same values as those of
+ * ZeoData, except that times are returned as UNIX timestamps (in seconds)
+ * from get_..._timestamp() methods, and arrays are copied into arrays given
+ * by the caller. Values ZeoData derives from several fields (the display
+ * hypnogram, rise time, alarm set time and sleep date) are not provided; use
+ * to_zeo_data() for those.
+ * <p>
+ * The view does not check the record's identifier, version or CRC; that is
+ * up to the caller (see ZeoRecordScanner and Crc16.record_crc16()). The
+ * buffer's position, limit and byte order are never changed.
+ */
+public class ZeoRecordView {
+
+	/*************************************************************************
+	 * constants
+	 */
+
+	/*
+	 * Offsets of the fields from the start of the record, in the order the
+	 * ZeoData constructor reads them.
+	 */
+	private static final int CURRENT_TIME = ZeoData.HEADER_SIZE;
+	private static final int CRC = CURRENT_TIME + 4;
+	private static final int DEVICE_HISTORY = CRC + 4;
+	private static final int AIRPLANE_OFF = DEVICE_HISTORY + 4;
+	private static final int AIRPLANE_ON = AIRPLANE_OFF + 4;
+	private static final int ALARM_CHANGE_TIME = AIRPLANE_ON + 4;
+	private static final int ALARM_CHANGE_VALUE = ALARM_CHANGE_TIME + 4 * 4;
+	private static final int ASSERT_FUNCTION_NAME = ALARM_CHANGE_VALUE + 4 * 4;
+	private static final int ASSERT_LINE_NUMBER = ASSERT_FUNCTION_NAME + 20;
+	private static final int FACTORY_RESET = ASSERT_LINE_NUMBER + 4;
+	private static final int HEADBAND_ID = FACTORY_RESET + 4;
+	private static final int HEADBAND_IMPEDANCE = HEADBAND_ID + 4;
+	private static final int HEADBAND_PACKETS = HEADBAND_IMPEDANCE + 144;
+	private static final int HEADBAND_RSSI = HEADBAND_PACKETS + 144;
+	private static final int HEADBAND_STATUS = HEADBAND_RSSI + 144;
+	private static final int ID_HW = HEADBAND_STATUS + 36;
+	private static final int ID_SW = ID_HW + 2;
+	private static final int RTC_CHANGE_TIME = ID_SW + 2;
+	private static final int RTC_CHANGE_VALUE = RTC_CHANGE_TIME + 4 * 4;
+	private static final int SENSOR_LIFE_RESET = RTC_CHANGE_VALUE + 4 * 4;
+	private static final int SLEEP_STAT_RESET = SENSOR_LIFE_RESET + 4;
+	private static final int ALARM_RING = SLEEP_STAT_RESET + 4;
+	private static final int ALARM_SNOOZE = ALARM_RING + 2 * 4;
+	private static final int ALARM_OFF = ALARM_SNOOZE + 9 * 4;
+	private static final int AWAKENINGS = ALARM_OFF + 4;
+	private static final int AWAKENINGS_AVERAGE = AWAKENINGS + 2;
+	private static final int END_OF_NIGHT = AWAKENINGS_AVERAGE + 2;
+	private static final int START_OF_NIGHT = END_OF_NIGHT + 4;
+	private static final int TIME_IN_DEEP = START_OF_NIGHT + 4;
+	private static final int TIME_IN_DEEP_AVERAGE = TIME_IN_DEEP + 2;
+	private static final int TIME_IN_DEEP_BEST = TIME_IN_DEEP_AVERAGE + 2;
+	private static final int TIME_IN_LIGHT = TIME_IN_DEEP_BEST + 2;
+	private static final int TIME_IN_LIGHT_AVERAGE = TIME_IN_LIGHT + 2;
+	private static final int TIME_IN_REM = TIME_IN_LIGHT_AVERAGE + 2;
+	private static final int TIME_IN_REM_AVERAGE = TIME_IN_REM + 2;
+	private static final int TIME_IN_REM_BEST = TIME_IN_REM_AVERAGE + 2;
+	private static final int TIME_IN_WAKE = TIME_IN_REM_BEST + 2;
+	private static final int TIME_IN_WAKE_AVERAGE = TIME_IN_WAKE + 2;
+	private static final int TIME_TO_Z = TIME_IN_WAKE_AVERAGE + 2;
+	private static final int TIME_TO_Z_AVERAGE = TIME_TO_Z + 2;
+	private static final int TOTAL_Z = TIME_TO_Z_AVERAGE + 2;
+	private static final int TOTAL_Z_AVERAGE = TOTAL_Z + 2;
+	private static final int TOTAL_Z_BEST = TOTAL_Z_AVERAGE + 2;
+	private static final int ZQ_SCORE = TOTAL_Z_BEST + 2;
+	private static final int ZQ_SCORE_AVERAGE = ZQ_SCORE + 2;
+	private static final int ZQ_SCORE_BEST = ZQ_SCORE_AVERAGE + 2;
+	private static final int DISPLAY_HYPNOGRAM_FORCED_INDEX = ZQ_SCORE_BEST + 2;
+	private static final int DISPLAY_HYPNOGRAM_FORCED_STAGE = ZQ_SCORE_BEST + 4;
+	private static final int HYPNOGRAM_START_TIME = ZQ_SCORE_BEST + 6;
+	private static final int SLEEP_RATING = HYPNOGRAM_START_TIME + 4;
+	private static final int BASE_HYPNOGRAM_COUNT = SLEEP_RATING + 8;
+	private static final int BASE_HYPNOGRAM = BASE_HYPNOGRAM_COUNT + 4;
+
+	/* Enum values, cached since values() returns a new array each call. */
+	private static final AlarmReason[] ALARM_REASONS = AlarmReason.values();
+	private static final WakeTone[] WAKE_TONES = WakeTone.values();
+	private static final WriteReason[] WRITE_REASONS = WriteReason.values();
+
+	/*************************************************************************
+	 * variables
+	 */
+
+	private ByteBuffer in; // Buffer holding the record
+	private int offset; // Offset of the start of the record (its header)
+
+	/*************************************************************************
+	 * methods
+	 */
+
+	/**
+	 * Construct a view that is not over any record yet. Call move_to() before
+	 * using it.
+	 */
+	public ZeoRecordView() {
+	}
+
+	/**
+	 * Construct a view over the record at the given offset of a buffer.
+	 * 
+	 * @param in
+	 *            Buffer holding the record.
+	 * @param record_offset
+	 *            Offset of the start of the record (its header) in the buffer.
+	 */
+	public ZeoRecordView(ByteBuffer in, int record_offset) {
+		move_to(in, record_offset);
+	}
+
+	/**
+	 * Returns airplane mode flag.
+	 * 
+	 * @return the airplane mode flag
+	 */
+	public boolean get_airplane_mode() {
+		return (read_uint32(DEVICE_HISTORY) & 1) == 1;
+	}
+
+	/**
+	 * Returns the last time airplane mode was disengaged, or 0 if  it has not
+	 * been disengaged.
+	 * 
+	 * @return the last time airplane mode was disengaged (as a UNIX timestamp).
+	 */
+	public long get_airplane_off_timestamp() {
+		return read_uint32(AIRPLANE_OFF);
+	}
+
+	/**
+	 * Returns the last time airplane mode was engaged, or 0 if  it has not
+	 * been engaged.
+	 * 
+	 * @return the last time airplane mode was engaged (as a UNIX timestamp).
+	 */
+	public long get_airplane_on_timestamp() {
+		return read_uint32(AIRPLANE_ON);
+	}
+
+	/**
+	 * Returns the time of one of the alarm time changes.
+	 * 
+	 * @param i
+	 *            Index of the change, 0 to 3.
+	 * 
+	 * @return the timestamp for when the alarm time was changed.
+	 */
+	public long get_alarm_change_timestamp(int i) {
+		return read_uint32(ALARM_CHANGE_TIME + 4 * i);
+	}
+
+	/**
+	 * Returns the value of one of the alarm time changes.
+	 * 
+	 * @param i
+	 *            Index of the change, 0 to 3.
+	 * 
+	 * @return the timestamp the alarm time was set to.
+	 */
+	public long get_alarm_change_value_timestamp(int i) {
+		return read_uint32(ALARM_CHANGE_VALUE + 4 * i);
+	}
+
+	/**
+	 * Returns the time the alarm was turned off, or 0 if  it was not turned
+	 * off.
+	 * 
+	 * @return the time the alarm was turned off (as a UNIX timestamp).
+	 */
+	public long get_alarm_off_timestamp() {
+		return read_uint32(ALARM_OFF);
+	}
+
+	/**
+	 * Returns reason alarm was triggered.
+	 * 
+	 * @return the reason alarm was triggered
+	 */
+	public AlarmReason get_alarm_reason() {
+		return ALARM_REASONS[(int) (read_uint32(DEVICE_HISTORY) >> 1) & 0x7];
+	}
+
+	/**
+	 * Copy the first and last (if more than one) times the alarm rang into
+	 * the given array, the same as ZeoData.get_alarm_ring().
+	 * 
+	 * @param ring
+	 *            Array of at least two entries to store the timestamps in.
+	 * 
+	 * @return the given array.
+	 */
+	public long[] get_alarm_ring_timestamps(long[] ring) {
+		ring[0] = read_uint32(ALARM_RING);
+		ring[1] = read_uint32(ALARM_RING + 4);
+		return ring;
+	}
+
+	/**
+	 * Copy the times the snooze button was pressed into the given array.
+	 * 
+	 * @param snooze
+	 *            Array of at least nine entries to store the timestamps in.
+	 * 
+	 * @return the given array.
+	 */
+	public long[] get_alarm_snooze_timestamps(long[] snooze) {
+		for (int i = 0; i < 9; i++) {
+			snooze[i] = read_uint32(ALARM_SNOOZE + 4 * i);
+		}
+		return snooze;
+	}
+
+	/**
+	 * Copy the name of the function where an assert occurred into the given
+	 * array.
+	 * 
+	 * @param name
+	 *            Array of at least twenty entries to store the name in.
+	 * 
+	 * @return the given array.
+	 */
+	public char[] get_assert_function_name(char[] name) {
+		for (int i = 0; i < 20; i++) {
+			name[i] = (char) read_uint8(ASSERT_FUNCTION_NAME + i);
+		}
+		return name;
+	}
+
+	/**
+	 * Returns the line number on which an assert occurred, if an assert
+	 * occurred and triggered a watchdog reset.
+	 * 
+	 * @return the line number on which an assert occurred
+	 */
+	public int get_assert_line_number() {
+		return read_int32(ASSERT_LINE_NUMBER);
+	}
+
+	/**
+	 * Returns the number of awakenings for the current record.
+	 * 
+	 * @return the number of awakenings for the current record
+	 */
+	public int get_awakenings() {
+		return read_uint16(AWAKENINGS);
+	}
+
+	/**
+	 * Returns the average number of awakenings from sleep history.
+	 * 
+	 * @return the average number of awakenings from sleep history.
+	 */
+	public int get_awakenings_average() {
+		return read_uint16(AWAKENINGS_AVERAGE);
+	}
+
+	/**
+	 * Returns the backlight brightness setting.
+	 * 
+	 * @return the backlight brightness setting
+	 */
+	public byte get_backlight() {
+		return (byte) ((read_uint32(DEVICE_HISTORY) >> 4) & 0xf);
+	}
+
+	/**
+	 * Unpack the base hypnogram (two stages per byte) into the given array.
+	 * 
+	 * @param hypnogram
+	 *            Array of at least ZeoData.HYP_BASE_LENGTH entries to store
+	 *            the sleep stage values in.
+	 * 
+	 * @return the given array.
+	 */
+	public byte[] get_base_hypnogram(byte[] hypnogram) {
+		for (int i = 0; i < ZeoData.HYP_BASE_LENGTH; i += 2) {
+			int hypnogram_data = read_uint8(BASE_HYPNOGRAM + i / 2);
+
+			hypnogram[i] = (byte) (hypnogram_data & 0xf);
+			hypnogram[i + 1] = (byte) (hypnogram_data >> 4);
+		}
+		return hypnogram;
+	}
+
+	/**
+	 * Returns the base_hypnogram_count value for the record.
+	 * 
+	 * @return the count value.
+	 */
+	public int get_base_hypnogram_count() {
+		return (int) read_uint32(BASE_HYPNOGRAM_COUNT);
+	}
+
+	/**
+	 * Returns the 12/24 hour clock selection.
+	 * 
+	 * @return the 12/24 hour clock selection
+	 */
+	public ClockMode get_clock_mode() {
+		boolean hour_12 = ((read_uint32(DEVICE_HISTORY) >> 8) & 1) == 1;
+
+		return hour_12 ? ClockMode.HOUR_12 : ClockMode.MILITARY;
+	}
+
+	/**
+	 * Returns the CRC16 value that was in the record.
+	 * 
+	 * @return the crc value read from the most recent record.
+	 */
+	public long get_crc() {
+		return read_uint32(CRC);
+	}
+
+	/**
+	 * Returns the time that the record was output.
+	 * 
+	 * @return the time the record was output (as a UNIX timestamp).
+	 */
+	public long get_current_timestamp() {
+		return read_uint32(CURRENT_TIME);
+	}
+
+	/**
+	 * Returns the index of the display hypnogram bin that was forced to a
+	 * specific stage, or 0 if there is no such bin.
+	 * 
+	 * @return the index of the forced display hypnogram bin
+	 */
+	public int get_display_hypnogram_forced_index() {
+		return read_uint16(DISPLAY_HYPNOGRAM_FORCED_INDEX);
+	}
+
+	/**
+	 * Returns the index of the display hypnogram bin that was forced to a
+	 * specific stage.
+	 * 
+	 * @return the stage of the forced display hypnogram bin
+	 */
+	public int get_display_hypnogram_forced_stage() {
+		return read_uint16(DISPLAY_HYPNOGRAM_FORCED_STAGE);
+	}
+
+	/**
+	 * Returns the Zeo record's end of night which can be used for comparison
+	 * purposes.
+	 * 
+	 * @return the end of the record's night (as a UNIX timestamp).
+	 */
+	public long get_end_of_night_timestamp() {
+		return read_uint32(END_OF_NIGHT);
+	}
+
+	/**
+	 * Returns the last time a factory reset was performed, or 0 if  it has
+	 * not been performed.
+	 * 
+	 * @return the last time a factory reset was performed (as a UNIX
+	 *         timestamp).
+	 */
+	public long get_factory_reset_timestamp() {
+		return read_uint32(FACTORY_RESET);
+	}
+
+	/**
+	 * Returns the format version stored in the record's header.
+	 * 
+	 * @return the format version of the record.
+	 */
+	public int get_format_version() {
+		return read_uint16(ZeoData.IDENTIFIER_SIZE);
+	}
+
+	/**
+	 * Returns the serial number of the most recently docked headband.
+	 * 
+	 * @return the serial number of the most recently docked headband
+	 */
+	public long get_headband_id() {
+		return read_uint32(HEADBAND_ID);
+	}
+
+	/**
+	 * Copy the headband impedance values into the given array.
+	 * 
+	 * @param impedance
+	 *            Array of at least 144 entries to store the values in.
+	 * 
+	 * @return the given array.
+	 */
+	public short[] get_headband_impedance(short[] impedance) {
+		for (int i = 0; i < 144; i++) {
+			impedance[i] = read_uint8(HEADBAND_IMPEDANCE + i);
+		}
+		return impedance;
+	}
+
+	/**
+	 * Copy the headband packet counts into the given array.
+	 * 
+	 * @param packets
+	 *            Array of at least 144 entries to store the values in.
+	 * 
+	 * @return the given array.
+	 */
+	public short[] get_headband_packets(short[] packets) {
+		for (int i = 0; i < 144; i++) {
+			packets[i] = read_uint8(HEADBAND_PACKETS + i);
+		}
+		return packets;
+	}
+
+	/**
+	 * Copy the headband RSSI values into the given array.
+	 * 
+	 * @param rssi
+	 *            Array of at least 144 entries to store the values in.
+	 * 
+	 * @return the given array.
+	 */
+	public byte[] get_headband_rssi(byte[] rssi) {
+		for (int i = 0; i < 144; i++) {
+			rssi[i] = in.get(offset + HEADBAND_RSSI + i);
+		}
+		return rssi;
+	}
+
+	/**
+	 * Copy the headband status values into the given array.
+	 * 
+	 * @param status
+	 *            Array of at least 36 entries to store the values in.
+	 * 
+	 * @return the given array.
+	 */
+	public short[] get_headband_status(short[] status) {
+		for (int i = 0; i < 36; i++) {
+			status[i] = read_uint8(HEADBAND_STATUS + i);
+		}
+		return status;
+	}
+
+	/**
+	 * Returns the hypnogram start time.
+	 * 
+	 * @return the hypnogram start time (as a UNIX timestamp).
+	 */
+	public long get_hypnogram_start_timestamp() {
+		return read_uint32(HYPNOGRAM_START_TIME);
+	}
+
+	/**
+	 * Returns the Zeo hardware version.
+	 * 
+	 * @return the Zeo hardware version
+	 */
+	public int get_id_hw() {
+		return read_uint16(ID_HW);
+	}
+
+	/**
+	 * Returns the Zeo software version.
+	 * 
+	 * @return the Zeo software version
+	 */
+	public int get_id_sw() {
+		return read_uint16(ID_SW);
+	}
+
+	/**
+	 * Returns the offset of the record the view is over.
+	 * 
+	 * @return the offset of the start of the record in the buffer.
+	 */
+	public int get_offset() {
+		return offset;
+	}
+
+	/**
+	 * Returns the time of one of the clock changes.
+	 * 
+	 * @param i
+	 *            Index of the change, 0 to 3.
+	 * 
+	 * @return the timestamp for when the clock was changed.
+	 */
+	public long get_rtc_change_timestamp(int i) {
+		return read_uint32(RTC_CHANGE_TIME + 4 * i);
+	}
+
+	/**
+	 * Returns the value of one of the clock changes.
+	 * 
+	 * @param i
+	 *            Index of the change, 0 to 3.
+	 * 
+	 * @return the timestamp the clock was set to.
+	 */
+	public long get_rtc_change_value_timestamp(int i) {
+		return read_uint32(RTC_CHANGE_VALUE + 4 * i);
+	}
+
+	/**
+	 * Returns the last time the sensor life counter was reset, or 0 if  it
+	 * has not been reset.
+	 * 
+	 * @return the last time the sensor life counter was reset (as a UNIX
+	 *         timestamp).
+	 */
+	public long get_sensor_life_reset_timestamp() {
+		return read_uint32(SENSOR_LIFE_RESET);
+	}
+
+	/**
+	 * Returns the sleep rating for the current record.
+	 * 
+	 * @return the sleep rating for the current record
+	 */
+	public int get_sleep_rating() {
+		return read_uint8(SLEEP_RATING);
+	}
+
+	/**
+	 * Returns the last time the sleep history was reset, or 0 if  it has not
+	 * been reset.
+	 * 
+	 * @return the last time the sleep history was reset (as a UNIX timestamp).
+	 */
+	public long get_sleep_stat_reset_timestamp() {
+		return read_uint32(SLEEP_STAT_RESET);
+	}
+
+	/**
+	 * Returns the sleep valid flag.
+	 * 
+	 * @return the sleep valid flag
+	 */
+	public boolean get_sleep_valid() {
+		return ((read_uint32(DEVICE_HISTORY) >> 9) & 1) == 1;
+	}
+
+	/**
+	 * Returns the snooze time setting in minutes.
+	 * 
+	 * @return the snooze time setting in minutes
+	 */
+	public int get_snooze_time() {
+		return (int) (read_uint32(DEVICE_HISTORY) >> 10) & 0x1f;
+	}
+
+	/**
+	 * Returns the Zeo record's start of night which can be used for comparison
+	 * purposes.
+	 * 
+	 * @return the start of the record's night (as a UNIX timestamp).
+	 */
+	public long get_start_of_night_timestamp() {
+		return read_uint32(START_OF_NIGHT);
+	}
+
+	/**
+	 * Returns the time in deep for the current record.
+	 * 
+	 * @return the time in deep for the current record
+	 */
+	public int get_time_in_deep() {
+		return read_uint16(TIME_IN_DEEP);
+	}
+
+	/**
+	 * Returns the average time in deep from sleep history.
+	 * 
+	 * @return the average time in deep
+	 */
+	public int get_time_in_deep_average() {
+		return read_uint16(TIME_IN_DEEP_AVERAGE);
+	}
+
+	/**
+	 * Returns the best time in deep from sleep history.
+	 * 
+	 * @return the best time in deep
+	 */
+	public int get_time_in_deep_best() {
+		return read_uint16(TIME_IN_DEEP_BEST);
+	}
+
+	/**
+	 * Returns the time in light for the current record.
+	 * 
+	 * @return the time in light for the current record
+	 */
+	public int get_time_in_light() {
+		return read_uint16(TIME_IN_LIGHT);
+	}
+
+	/**
+	 * Returns the average time in light from sleep history.
+	 * 
+	 * @return the average time in light
+	 */
+	public int get_time_in_light_average() {
+		return read_uint16(TIME_IN_LIGHT_AVERAGE);
+	}
+
+	/**
+	 * Returns the time in rem for the current record.
+	 * 
+	 * @return the time in rem for the current record
+	 */
+	public int get_time_in_rem() {
+		return read_uint16(TIME_IN_REM);
+	}
+
+	/**
+	 * Returns the average time in rem from sleep history.
+	 * 
+	 * @return the average time in rem
+	 */
+	public int get_time_in_rem_average() {
+		return read_uint16(TIME_IN_REM_AVERAGE);
+	}
+
+	/**
+	 * Returns the best time in rem from sleep history.
+	 * 
+	 * @return the best time in rem
+	 */
+	public int get_time_in_rem_best() {
+		return read_uint16(TIME_IN_REM_BEST);
+	}
+
+	/**
+	 * Returns the time in wake for the current record.
+	 * 
+	 * @return the time in wake for the current record
+	 */
+	public int get_time_in_wake() {
+		return read_uint16(TIME_IN_WAKE);
+	}
+
+	/**
+	 * Returns the average time in wake from sleep history.
+	 * 
+	 * @return the average time in wake
+	 */
+	public int get_time_in_wake_average() {
+		return read_uint16(TIME_IN_WAKE_AVERAGE);
+	}
+
+	/**
+	 * Returns the time to sleep for the current record.
+	 * 
+	 * @return the time to sleep for the current record
+	 */
+	public int get_time_to_z() {
+		return read_uint16(TIME_TO_Z);
+	}
+
+	/**
+	 * Returns the average time to sleep from sleep history.
+	 * 
+	 * @return the average time to sleep
+	 */
+	public int get_time_to_z_average() {
+		return read_uint16(TIME_TO_Z_AVERAGE);
+	}
+
+	/**
+	 * Returns the total sleep time for the current record.
+	 * 
+	 * @return the total sleep time for the current record
+	 */
+	public int get_total_z() {
+		return read_uint16(TOTAL_Z);
+	}
+
+	/**
+	 * Returns the average total sleep time from sleep history.
+	 * 
+	 * @return the average total sleep time
+	 */
+	public int get_total_z_average() {
+		return read_uint16(TOTAL_Z_AVERAGE);
+	}
+
+	/**
+	 * Returns the best total sleep time from sleep history.
+	 * 
+	 * @return the best total sleep time
+	 */
+	public int get_total_z_best() {
+		return read_uint16(TOTAL_Z_BEST);
+	}
+
+	/**
+	 * Returns the selected wake tone.
+	 * 
+	 * @return the selected wake tone
+	 */
+	public WakeTone get_wake_tone() {
+		return WAKE_TONES[(int) (read_uint32(DEVICE_HISTORY) >> 15) & 0x7];
+	}
+
+	/**
+	 * Returns the selected wake window in minutes.
+	 * 
+	 * @return the selected wake window in minutes
+	 */
+	public int get_wake_window() {
+		return (int) (read_uint32(DEVICE_HISTORY) >> 18) & 0x3f;
+	}
+
+	/**
+	 * Returns whether a watchdog reset occurred.
+	 * 
+	 * @return whether a watchdog reset occurred
+	 */
+	public boolean get_wdt_reset() {
+		return ((read_uint32(DEVICE_HISTORY) >> 28) & 1) == 1;
+	}
+
+	/**
+	 * Returns the reason this record was written to the card.
+	 * 
+	 * @return the reason this record was written to the card
+	 */
+	public WriteReason get_write_reason() {
+		return WRITE_REASONS[(int) (read_uint32(DEVICE_HISTORY) >> 24) & 0x7];
+	}
+
+	/**
+	 * Returns whether SmartWake was enabled.
+	 * 
+	 * @return whether SmartWake was enabled
+	 */
+	public boolean get_zeo_wake_on() {
+		return ((read_uint32(DEVICE_HISTORY) >> 27) & 1) == 1;
+	}
+
+	/**
+	 * Returns the ZQ score for the current record.
+	 * 
+	 * @return the ZQ score for the current record
+	 */
+	public int get_zq_score() {
+		return read_uint16(ZQ_SCORE);
+	}
+
+	/**
+	 * Returns the average ZQ score from sleep history.
+	 * 
+	 * @return the average ZQ score
+	 */
+	public int get_zq_score_average() {
+		return read_uint16(ZQ_SCORE_AVERAGE);
+	}
+
+	/**
+	 * Returns the best ZQ score from sleep history.
+	 * 
+	 * @return the best ZQ score
+	 */
+	public int get_zq_score_best() {
+		return read_uint16(ZQ_SCORE_BEST);
+	}
+
+	/**
+	 * Returns true if this record was written as the result of a sleep rating
+	 * being entered, the same as ZeoData.is_sleep_rating_record().
+	 * 
+	 * @return true if the record was written due to a sleep rating.
+	 */
+	public boolean is_sleep_rating_record() {
+		return get_write_reason() == WriteReason.FS_REASON_SLEEP_RATED;
+	}
+
+	/**
+	 * Move the view to the record at the given offset of a buffer.
+	 * 
+	 * @param in
+	 *            Buffer holding the record.
+	 * @param record_offset
+	 *            Offset of the start of the record (its header) in the buffer.
+	 * 
+	 * @return this view.
+	 */
+	public ZeoRecordView move_to(ByteBuffer in, int record_offset) {
+		this.in = in;
+		this.offset = record_offset;
+		return this;
+	}
+
+	private int read_int32(int field) {
+		return (int) read_uint32(field);
+	}
+
+	private short read_uint8(int field) {
+		return (short) (in.get(offset + field) & 0xff);
+	}
+
+	private int read_uint16(int field) {
+		int value;
+
+		value = in.get(offset + field) & 0xff;
+		value |= (in.get(offset + field + 1) & 0xff) << 8;
+		return value;
+	}
+
+	private long read_uint32(int field) {
+		long value;
+
+		value = in.get(offset + field) & 0xff;
+		value |= (in.get(offset + field + 1) & 0xff) << 8;
+		value |= (in.get(offset + field + 2) & 0xff) << 16;
+		value |= (long) (in.get(offset + field + 3) & 0xff) << 24;
+		return value;
+	}
+
+	/**
+	 * Decode the complete record the view is over into a ZeoData object.
+	 * 
+	 * @return the decoded record.
+	 */
+	public ZeoData to_zeo_data() {
+		ByteBuffer record = in.duplicate();
+
+		record.limit(offset + ZeoData.V22_SIZE);
+		record.position(offset + ZeoData.HEADER_SIZE);
+		return new ZeoData(record.slice(), get_format_version());
+	}
+}
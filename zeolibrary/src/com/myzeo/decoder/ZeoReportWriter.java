@@ -0,0 +1,255 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the human readable report of Zeo data records straight to a Writer.
+ * The output is the same as that of the toHuman() methods, which are built on
+ * this class, but numbers and times are written digit by digit instead of
+ * through format strings and Calendar objects, and nothing is held in memory
+ * beyond the record being written. Wrap unbuffered writers in a
+ * BufferedWriter.
+ */
+public class ZeoReportWriter {
+
+	/*************************************************************************
+	 * constants
+	 */
+
+	/* Line separator written by PrintWriter.println(), which toHuman() used. */
+	private static final String LINE_SEPARATOR = System
+			.getProperty("line.separator");
+
+	/*************************************************************************
+	 * variables
+	 */
+
+	private Writer out;
+
+	/* Space for the digits of a number, written from the end. */
+	private char[] digits = new char[20];
+
+	/* Space for the date and time values of a timestamp. */
+	private long[] fields = new long[UnixTime.FIELDS];
+
+	/*************************************************************************
+	 * methods
+	 */
+
+	/**
+	 * Construct a report writer.
+	 * 
+	 * @param out
+	 *            The writer the report is written to.
+	 */
+	public ZeoReportWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Write a single character.
+	 * 
+	 * @param c
+	 *            The character to write.
+	 */
+	public void character(char c) throws IOException {
+		out.write(c);
+	}
+
+	/**
+	 * Write a duration in epochs as hours and minutes followed by the raw
+	 * epochs, eg. " 7:05 ( 850 epochs)". Epochs are rounded to minutes the way
+	 * the Zeo code does.
+	 * 
+	 * @param epochs
+	 *            The duration in 30 second epochs.
+	 */
+	public void epochs(int epochs) throws IOException {
+		int minutes = (epochs + 1) / 2;
+
+		number(minutes / 60, 2, ' ');
+		out.write(':');
+		number(minutes % 60, 2, '0');
+		out.write(" (");
+		number(epochs, 4, ' ');
+		out.write(" epochs)");
+	}
+
+	/**
+	 * Flush the underlying writer.
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Write a line separator.
+	 */
+	public void newline() throws IOException {
+		out.write(LINE_SEPARATOR);
+	}
+
+	/**
+	 * Write a number in decimal.
+	 * 
+	 * @param value
+	 *            The number to write.
+	 */
+	public void number(long value) throws IOException {
+		number(value, 0, ' ');
+	}
+
+	/**
+	 * Write a number in decimal padded to a minimum width, the same as the
+	 * "%3d" and "%03d" format conversions.
+	 * 
+	 * @param value
+	 *            The number to write.
+	 * @param width
+	 *            The minimum number of characters to write.
+	 * @param pad
+	 *            Either ' ' to pad before the sign or '0' to pad between the
+	 *            sign and the digits.
+	 */
+	public void number(long value, int width, char pad) throws IOException {
+		int start = digits.length;
+		boolean negative = value < 0;
+
+		/* Work with the negative value so Long.MIN_VALUE is handled too. */
+		if (!negative) {
+			value = -value;
+		}
+		do {
+			digits[--start] = (char) ('0' - (value % 10));
+			value /= 10;
+		} while (value != 0);
+
+		int padding = width - (digits.length - start) - (negative ? 1 : 0);
+
+		if (pad == '0') {
+			if (negative) {
+				out.write('-');
+			}
+			for (; padding > 0; padding--) {
+				out.write('0');
+			}
+		} else {
+			for (; padding > 0; padding--) {
+				out.write(pad);
+			}
+			if (negative) {
+				out.write('-');
+			}
+		}
+		out.write(digits, start, digits.length - start);
+	}
+
+	/**
+	 * Write some text as is.
+	 * 
+	 * @param text
+	 *            The text to write, "null" is written if it is null.
+	 */
+	public void text(String text) throws IOException {
+		out.write(text == null ? "null" : text);
+	}
+
+	/**
+	 * Write a time change as its value followed by when it changed.
+	 * 
+	 * @param change_timestamp
+	 *            UNIX timestamp of when the change occurred (or 0).
+	 * @param value_timestamp
+	 *            UNIX timestamp of the value the change set (or 0).
+	 */
+	public void time_change(long change_timestamp, long value_timestamp)
+			throws IOException {
+		out.write("value: ");
+		timestamp(value_timestamp);
+		out.write(" changed: ");
+		timestamp(change_timestamp);
+	}
+
+	/**
+	 * Write the UTC date and time of a UNIX timestamp followed by the
+	 * timestamp itself, eg. "2011-02-14 T 06:30:00 (1297665000)". The date is
+	 * left out if it is January 1st 1970, and "null" is written if the
+	 * timestamp is 0 (not set).
+	 * 
+	 * @param unix_timestamp
+	 *            A UNIX timestamp which is seconds since the epoch (ie.
+	 *            January 1st 1970 UTC).
+	 */
+	public void timestamp(long unix_timestamp) throws IOException {
+		if (unix_timestamp == 0) {
+			out.write("null");
+			return;
+		}
+		UnixTime.fields(unix_timestamp, fields);
+
+		/* If the date isn't the start of the epoch then write it */
+		if (fields[UnixTime.YEAR] != 1970 || fields[UnixTime.MONTH] != 1
+				|| fields[UnixTime.DAY] != 1) {
+			number(fields[UnixTime.YEAR], 4, '0');
+			out.write('-');
+			number(fields[UnixTime.MONTH], 2, '0');
+			out.write('-');
+			number(fields[UnixTime.DAY], 2, '0');
+			out.write(" T ");
+		}
+		number(fields[UnixTime.HOUR], 2, '0');
+		out.write(':');
+		number(fields[UnixTime.MINUTE], 2, '0');
+		out.write(':');
+		number(fields[UnixTime.SECOND], 2, '0');
+
+		/* Write the UNIX timestamp value. */
+		out.write(" (");
+		number(unix_timestamp);
+		out.write(')');
+	}
+
+	/**
+	 * Write a number padded to three characters followed by a space, as the
+	 * values of the headband arrays are written.
+	 * 
+	 * @param value
+	 *            The number to write.
+	 */
+	public void value(long value) throws IOException {
+		number(value, 3, ' ');
+		out.write(' ');
+	}
+}
@@ -0,0 +1,254 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the XML form of Zeo data records straight to a Writer. The output is
+ * the same as that of the toXML() methods, which are built on this class, but
+ * numbers and times are written digit by digit instead of through format
+ * strings and Calendar objects, and nothing is held in memory beyond the
+ * record being written. Wrap unbuffered writers in a BufferedWriter.
+ */
+public class ZeoXmlWriter {
+
+	/*************************************************************************
+	 * constants
+	 */
+
+	/* Line separator written by PrintWriter.println(), which toXML() used. */
+	private static final String LINE_SEPARATOR = System
+			.getProperty("line.separator");
+
+	/*************************************************************************
+	 * variables
+	 */
+
+	private Writer out;
+
+	/* Space for the digits of a number, written from the end. */
+	private char[] digits = new char[20];
+
+	/* Space for the date and time values of a timestamp. */
+	private long[] fields = new long[UnixTime.FIELDS];
+
+	/*************************************************************************
+	 * methods
+	 */
+
+	/**
+	 * Construct an XML writer.
+	 * 
+	 * @param out
+	 *            The writer the XML is written to.
+	 */
+	public ZeoXmlWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Write a single character.
+	 * 
+	 * @param c
+	 *            The character to write.
+	 */
+	public void character(char c) throws IOException {
+		out.write(c);
+	}
+
+	/**
+	 * Write an element holding a number on a line of its own.
+	 * 
+	 * @param name
+	 *            The element's name.
+	 * @param value
+	 *            The number the element holds.
+	 */
+	public void element(String name, long value) throws IOException {
+		out.write('<');
+		out.write(name);
+		out.write('>');
+		number(value);
+		out.write("</");
+		out.write(name);
+		out.write('>');
+		newline();
+	}
+
+	/**
+	 * Write an element holding some text on a line of its own.
+	 * 
+	 * @param name
+	 *            The element's name.
+	 * @param text
+	 *            The text the element holds, which is written as is.
+	 */
+	public void element(String name, String text) throws IOException {
+		out.write('<');
+		out.write(name);
+		out.write('>');
+		out.write(text);
+		out.write("</");
+		out.write(name);
+		out.write('>');
+		newline();
+	}
+
+	/**
+	 * Write an end tag on a line of its own.
+	 * 
+	 * @param name
+	 *            The element's name.
+	 */
+	public void end(String name) throws IOException {
+		out.write("</");
+		out.write(name);
+		out.write('>');
+		newline();
+	}
+
+	/**
+	 * Flush the underlying writer.
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Write a line separator.
+	 */
+	public void newline() throws IOException {
+		out.write(LINE_SEPARATOR);
+	}
+
+	/**
+	 * Write a number in decimal.
+	 * 
+	 * @param value
+	 *            The number to write.
+	 */
+	public void number(long value) throws IOException {
+		int start = digits.length;
+		boolean negative = value < 0;
+
+		/* Work with the negative value so Long.MIN_VALUE is handled too. */
+		if (!negative) {
+			value = -value;
+		}
+		do {
+			digits[--start] = (char) ('0' - (value % 10));
+			value /= 10;
+		} while (value != 0);
+		if (negative) {
+			digits[--start] = '-';
+		}
+		out.write(digits, start, digits.length - start);
+	}
+
+	/**
+	 * Write a start tag on a line of its own.
+	 * 
+	 * @param name
+	 *            The element's name.
+	 */
+	public void start(String name) throws IOException {
+		out.write('<');
+		out.write(name);
+		out.write('>');
+		newline();
+	}
+
+	/**
+	 * Write some text as is.
+	 * 
+	 * @param text
+	 *            The text to write.
+	 */
+	public void text(String text) throws IOException {
+		out.write(text);
+	}
+
+	/**
+	 * Write a time change as a change_time element.
+	 * 
+	 * @param change_timestamp
+	 *            UNIX timestamp of when the change occurred (or 0).
+	 * @param value_timestamp
+	 *            UNIX timestamp of the value the change set (or 0).
+	 */
+	public void time_change(long change_timestamp, long value_timestamp)
+			throws IOException {
+		start("change_time");
+		timestamp("new_value", value_timestamp);
+		timestamp("time_changed", change_timestamp);
+		end("change_time");
+	}
+
+	/**
+	 * Write an element holding the UTC date and time of a UNIX timestamp as
+	 * year, month, day, hour, minute and second elements. The element is empty
+	 * if the timestamp is 0 (not set).
+	 * 
+	 * @param name
+	 *            The element's name.
+	 * @param unix_timestamp
+	 *            A UNIX timestamp which is seconds since the epoch (ie.
+	 *            January 1st 1970 UTC).
+	 */
+	public void timestamp(String name, long unix_timestamp)
+			throws IOException {
+		start(name);
+		if (unix_timestamp != 0) {
+			UnixTime.fields(unix_timestamp, fields);
+			element("year", fields[UnixTime.YEAR]);
+			element("month", fields[UnixTime.MONTH]);
+			element("day", fields[UnixTime.DAY]);
+			element("hour", fields[UnixTime.HOUR]);
+			element("minute", fields[UnixTime.MINUTE]);
+			element("second", fields[UnixTime.SECOND]);
+		}
+		end(name);
+	}
+
+	/**
+	 * Write a number followed by a space, as the values of arrays are written.
+	 * 
+	 * @param value
+	 *            The number to write.
+	 */
+	public void value(long value) throws IOException {
+		number(value);
+		out.write(' ');
+	}
+}
@@ -0,0 +1,370 @@
+package src.zeo.library;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * ZeoCsvParser class,
+ * reads a comma separated file one record at a time
+ *
+ * Fields may be quoted, and quoted fields may hold commas,
+ * line breaks and doubled quotes, as described in RFC 4180.
+ * Records end with CRLF or LF. The characters of a record are
+ * unquoted into a buffer that is reused for the next record, and
+ * the fields are kept as start and end offsets into it, so a
+ * field only becomes a String when it is asked for as one.
+ *
+ * A file can also be split into parts of whole records,
+ * to be parsed by a parser each.
+ *
+ * @author evsc
+ *
+ */
+
+class ZeoCsvParser {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Reader in;
+
+	// characters read ahead, buf[pos] up to buf[limit]
+	private final char buf[] = new char[BUFFER_SIZE];
+	private int pos;
+	private int limit;
+
+	// the unquoted characters of the current record
+	private char record[] = new char[1024];
+	private int length;
+
+	// the fields of the current record, as offsets into record
+	private int start[] = new int[16];
+	private int end[] = new int[16];
+	private int fields;
+
+	private boolean first = true;
+
+	/**
+	 * @param in
+	 * 				the file to parse, buffering is done by the parser
+	 */
+	ZeoCsvParser(Reader in) {
+		this.in = in;
+	}
+
+	/**
+	 * Read the next record
+	 *
+	 * @return false if there are no more records
+	 * @throws IOException
+	 */
+	boolean next() throws IOException {
+		length = 0;
+		fields = 0;
+
+		int c = read();
+		if (c < 0) return false;
+		// byte order mark at the start of the file
+		if (first) {
+			first = false;
+			if (c == '\uFEFF') c = read();
+			if (c < 0) return false;
+		}
+
+		while (true) {
+			int from = length;
+			if (c == '"') {
+				while ((c = read()) >= 0) {
+					if (c == '"') {
+						c = read();
+						if (c != '"') break;
+					}
+					append((char) c);
+				}
+			}
+			while (c >= 0 && c != ',' && c != '\r' && c != '\n') {
+				append((char) c);
+				c = read();
+			}
+			addField(from, length);
+
+			if (c == ',') {
+				c = read();
+				continue;
+			}
+			if (c == '\r' && peek() == '\n') read();
+			return true;
+		}
+	}
+
+	/**
+	 * @return the number of fields of the current record
+	 */
+	int fields() {
+		return fields;
+	}
+
+	/**
+	 * @return true if a field is empty
+	 */
+	boolean isEmpty(int field) {
+		return start[field] == end[field];
+	}
+
+	/**
+	 * @return the field as a String
+	 */
+	String getString(int field) {
+		return new String(record, start[field], end[field] - start[field]);
+	}
+
+	/**
+	 * Parse a field as a sleep graph, without making a String of it
+	 *
+	 * @param field
+	 * @param cutOffWake
+	 * 				leave out undefined and wake stages at the beginning
+	 * @return the stages
+	 */
+	int[] getSleepGraph(int field, boolean cutOffWake) {
+		return ZeoNight.parseSleepGraph(record, start[field], end[field], cutOffWake);
+	}
+
+	/**
+	 * Parse a field as an int, without making a String of it
+	 *
+	 * @param field
+	 * @param empty
+	 * 				the value of an empty field
+	 * @return the value of the field
+	 * @throws NumberFormatException
+	 * 				if the field is not a number
+	 */
+	int getInt(int field, int empty) {
+		int i = start[field];
+		int to = end[field];
+		if (i == to) return empty;
+
+		boolean negative = record[i] == '-';
+		if (negative || record[i] == '+') i++;
+		if (i == to) throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+
+		long value = 0;
+		for (; i < to; i++) {
+			int digit = record[i] - '0';
+			if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE) {
+				throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+			}
+			value = value * 10 + digit;
+		}
+		if (negative) value = -value;
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+		}
+		return (int) value;
+	}
+
+	void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * @param channel
+	 * @param from
+	 * 				the offset of the first record
+	 * @param to
+	 * 				the offset the last record ends at
+	 * @return a parser of the records in a part of a file
+	 * @throws IOException
+	 */
+	static ZeoCsvParser open(FileChannel channel, long from, long to) throws IOException {
+		return new ZeoCsvParser(new InputStreamReader(new RangeInputStream(channel, from, to), "UTF-8"));
+	}
+
+	/**
+	 * Split a file into parts of whole records. The quotes in each
+	 * part are counted first, which tells whether a part begins inside
+	 * a quoted field, then the start of each part is moved to just after
+	 * the first line break outside quotes. Both scans run on the executor.
+	 *
+	 * @param channel
+	 * @param parts
+	 * 				the number of parts to split the file into
+	 * @param executor
+	 * @return the offsets the parts start at, followed by the size of the file
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	static long[] split(final FileChannel channel, int parts, ExecutorService executor)
+			throws IOException, InterruptedException {
+		long size = channel.size();
+		final long bounds[] = new long[parts + 1];
+		for (int i = 0; i <= parts; i++) bounds[i] = size * i / parts;
+
+		List<Callable<Integer>> counts = new ArrayList<Callable<Integer>>();
+		for (int i = 0; i < parts; i++) {
+			final int part = i;
+			counts.add(new Callable<Integer>() {
+				public Integer call() throws IOException {
+					return countQuotes(channel, bounds[part], bounds[part + 1]);
+				}
+			});
+		}
+		List<Integer> quotes = getAll(executor.invokeAll(counts));
+
+		List<Callable<Long>> starts = new ArrayList<Callable<Long>>();
+		int quoted = 0;
+		for (int i = 1; i < parts; i++) {
+			final int part = i;
+			final boolean inside = ((quoted += quotes.get(i - 1)) & 1) == 1;
+			starts.add(new Callable<Long>() {
+				public Long call() throws IOException {
+					return recordStart(channel, bounds[part], inside);
+				}
+			});
+		}
+		List<Long> start = getAll(executor.invokeAll(starts));
+		for (int i = 1; i < parts; i++) bounds[i] = start.get(i - 1);
+		return bounds;
+	}
+
+	/**
+	 * Wait for the results of tasks, throwing what the first
+	 * failed task threw
+	 */
+	static <T> List<T> getAll(List<Future<T>> futures) throws IOException, InterruptedException {
+		List<T> results = new ArrayList<T>(futures.size());
+		for (Future<T> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (ExecutionException ex) {
+				Throwable cause = ex.getCause();
+				if (cause instanceof IOException) throw (IOException) cause;
+				if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+				if (cause instanceof Error) throw (Error) cause;
+				throw new RuntimeException(cause);
+			}
+		}
+		return results;
+	}
+
+	private static int countQuotes(FileChannel channel, long from, long to) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		int quotes = 0;
+		long pos = from;
+		while (pos < to) {
+			buffer.clear();
+			if (to - pos < buffer.capacity()) buffer.limit((int) (to - pos));
+			int n = channel.read(buffer, pos);
+			if (n < 0) break;
+			for (int i = 0; i < n; i++) {
+				if (buffer.get(i) == '"') quotes++;
+			}
+			pos += n;
+		}
+		return quotes;
+	}
+
+	/**
+	 * @return the offset just after the first line break outside quotes
+	 * 				at or after from, or the size of the file
+	 */
+	private static long recordStart(FileChannel channel, long from, boolean quoted) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		long pos = from;
+		while (true) {
+			buffer.clear();
+			int n = channel.read(buffer, pos);
+			if (n < 0) return channel.size();
+			for (int i = 0; i < n; i++) {
+				byte c = buffer.get(i);
+				if (c == '"') quoted = !quoted;
+				else if (c == '\n' && !quoted) return pos + i + 1;
+			}
+			pos += n;
+		}
+	}
+
+	private int read() throws IOException {
+		if (pos == limit && !fill()) return -1;
+		return buf[pos++];
+	}
+
+	private int peek() throws IOException {
+		if (pos == limit && !fill()) return -1;
+		return buf[pos];
+	}
+
+	private boolean fill() throws IOException {
+		int n;
+		do {
+			n = in.read(buf, 0, buf.length);
+		} while (n == 0);
+		if (n < 0) return false;
+		pos = 0;
+		limit = n;
+		return true;
+	}
+
+	private void append(char c) {
+		if (length == record.length) {
+			char grown[] = new char[record.length * 2];
+			System.arraycopy(record, 0, grown, 0, length);
+			record = grown;
+		}
+		record[length++] = c;
+	}
+
+	private void addField(int from, int to) {
+		if (fields == start.length) {
+			int grown[] = new int[start.length * 2];
+			System.arraycopy(start, 0, grown, 0, fields);
+			start = grown;
+			grown = new int[end.length * 2];
+			System.arraycopy(end, 0, grown, 0, fields);
+			end = grown;
+		}
+		start[fields] = from;
+		end[fields] = to;
+		fields++;
+	}
+
+	/**
+	 * Reads a part of a file, with positioned reads, 
+	 * so that several parts can be read at the same time
+	 */
+	private static class RangeInputStream extends InputStream {
+		private final FileChannel channel;
+		private long pos;
+		private final long end;
+
+		RangeInputStream(FileChannel channel, long from, long to) {
+			this.channel = channel;
+			this.pos = from;
+			this.end = to;
+		}
+
+		public int read() throws IOException {
+			byte b[] = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+		}
+
+		public int read(byte b[], int off, int len) throws IOException {
+			if (pos >= end) return -1;
+			len = (int) Math.min(len, end - pos);
+			int n = channel.read(ByteBuffer.wrap(b, off, len), pos);
+			if (n < 0) return -1;
+			pos += n;
+			return n;
+		}
+	}
+}
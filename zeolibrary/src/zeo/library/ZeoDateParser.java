@@ -0,0 +1,191 @@
+package src.zeo.library;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * ZeoDateParser class,
+ * parses the dates of Zeo export files, "MM/dd/yyyy"
+ * and "MM/dd/yyyy HH:mm", to minutes since 1970
+ *
+ * Dates laid out exactly that way are converted from their digits,
+ * using the time of local midnight of their day, which is kept for
+ * a few days at a time. Dates around a change of the offset of the
+ * time zone are found by a Calendar, and dates laid out any other
+ * way are parsed by a (lenient) SimpleDateFormat, so the result is
+ * always the same as the one of SimpleDateFormat. The parser can
+ * be used by several threads at the same time.
+ *
+ * @author evsc
+ *
+ */
+
+class ZeoDateParser {
+
+	/** The result of parsing a date that could not be parsed. */
+	static final long NO_DATE = Long.MIN_VALUE;
+
+	private static final long MINUTE = 60 * 1000;
+	private static final long DAY = 24 * 60 * MINUTE;
+
+	// days kept, a power of two
+	private static final int DAYS = 8;
+
+	private final TimeZone zone;
+	private final Day days[] = new Day[DAYS];
+
+	/**
+	 * Local midnight of a day, days are immutable
+	 * so they can be shared between threads
+	 */
+	private static class Day {
+		final int epoch_day;
+		final long midnight;
+		// the offset of the time zone is the same all day
+		final boolean regular;
+
+		Day(int epoch_day, long midnight, boolean regular) {
+			this.epoch_day = epoch_day;
+			this.midnight = midnight;
+			this.regular = regular;
+		}
+	}
+
+	/**
+	 * @param zone
+	 * 				the time zone the dates are in
+	 */
+	ZeoDateParser(TimeZone zone) {
+		this.zone = zone;
+	}
+
+	/**
+	 * @param input
+	 * 				the date
+	 * @param simple
+	 * 				"MM/dd/yyyy" if true, else "MM/dd/yyyy HH:mm"
+	 * @return the minutes since 1970, or NO_DATE if input is empty
+	 * 				or not a date
+	 */
+	long parse(String input, boolean simple) {
+		if (input == null || input.length() == 0) return NO_DATE;
+
+		int length = simple ? 10 : 16;
+		if (input.length() < length) return parseFormat(input, simple);
+		// the year or minutes would go on
+		if (input.length() > length && isDigit(input.charAt(length))) return parseFormat(input, simple);
+
+		int month = digits(input, 0, 2);
+		int day = digits(input, 3, 2);
+		int year = digits(input, 6, 4);
+		if (input.charAt(2) != '/' || input.charAt(5) != '/') return parseFormat(input, simple);
+		if (month < 1 || month > 12 || day < 1 || day > 31 || year < 1600) return parseFormat(input, simple);
+
+		int hour = 0;
+		int minute = 0;
+		if (!simple) {
+			hour = digits(input, 11, 2);
+			minute = digits(input, 14, 2);
+			if (input.charAt(10) != ' ' || input.charAt(13) != ':') return parseFormat(input, simple);
+			if (hour < 0 || hour > 23 || minute < 0 || minute > 59) return parseFormat(input, simple);
+		}
+
+		return minutes(epochDay(year, month, day), hour, minute);
+	}
+
+	/**
+	 * @param epoch_day
+	 * 				the days since 1970-01-01
+	 * @param hour
+	 * @param minute
+	 * @return the minutes since 1970 of a local time
+	 */
+	long minutes(int epoch_day, int hour, int minute) {
+		Day d = days[epoch_day & (DAYS - 1)];
+		if (d == null || d.epoch_day != epoch_day) {
+			d = day(epoch_day);
+			days[epoch_day & (DAYS - 1)] = d;
+		}
+		if (d.regular) return d.midnight / MINUTE + hour * 60 + minute;
+
+		Calendar c = calendar();
+		c.set(1970, Calendar.JANUARY, 1 + epoch_day, hour, minute);
+		return c.getTimeInMillis() / MINUTE;
+	}
+
+	/**
+	 * @return the time zone the dates are in
+	 */
+	TimeZone zone() {
+		return zone;
+	}
+
+	/**
+	 * Find local midnight of a day, from the offset of the time zone 
+	 * around it. Days on which or next to which the offset changes 
+	 * are not regular, their dates are found by a Calendar.
+	 */
+	private Day day(int epoch_day) {
+		long local = epoch_day * DAY;
+		int offset = zone.getOffset(local - zone.getOffset(local));
+		long midnight = local - offset;
+		boolean regular = zone.getOffset(midnight) == offset
+				&& zone.getOffset(midnight - DAY) == offset
+				&& zone.getOffset(midnight + 2 * DAY) == offset;
+		return new Day(epoch_day, midnight, regular);
+	}
+
+	private Calendar calendar() {
+		Calendar c = new GregorianCalendar(zone);
+		c.clear();
+		return c;
+	}
+
+	/**
+	 * Parse a date laid out other than expected,
+	 * the way SimpleDateFormat does
+	 */
+	private long parseFormat(String input, boolean simple) {
+		DateFormat format = new SimpleDateFormat(simple ? "MM/dd/yyyy" : "MM/dd/yyyy HH:mm");
+		format.setTimeZone(zone);
+		try {
+			return format.parse(input).getTime() / MINUTE;
+		} catch (ParseException e) {
+			System.out.println("Unable to parse date stamp '" + input + "'");
+			return NO_DATE;
+		}
+	}
+
+	/**
+	 * @return the days since 1970-01-01 of a date of the Gregorian calendar
+	 */
+	static int epochDay(int year, int month, int day) {
+		if (month <= 2) year--;
+		int era = year / 400;
+		int year_of_era = year - era * 400;
+		int day_of_year = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int day_of_era = year_of_era * 365 + year_of_era / 4 - year_of_era / 100 + day_of_year;
+		return era * 146097 + day_of_era - 719468;
+	}
+
+	/**
+	 * @return the value of the count digits at from, or -1 if they are not all digits
+	 */
+	private static int digits(String input, int from, int count) {
+		int value = 0;
+		for (int i = from; i < from + count; i++) {
+			char c = input.charAt(i);
+			if (!isDigit(c)) return -1;
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+}
@@ -1,10 +1,8 @@
 package src.zeo.library;
 
-import processing.core.*;
-
-import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.TimeZone;
 
 // http://docs.oracle.com/javase/1.4.2/docs/api/java/util/Date.html
 // http://docs.oracle.com/javase/1.4.2/docs/api/java/text/SimpleDateFormat.html
@@ -276,9 +274,16 @@ indicates they entered no rating.
 	 * @param input 
 	 * 			date in string form
 	 */
-	@SuppressWarnings("deprecation")
 	public void setDate(String input) {
-		date = getDate(input, true);
+		setDate(getDate(input, true));
+	}
+	
+	/**
+	 * set main date of night
+	 */
+	@SuppressWarnings("deprecation")
+	void setDate(Date d) {
+		date = d;
 	    day_of_week = date.getDay();
 	    month = date.getMonth();
 	    year = date.getYear();
@@ -289,29 +294,18 @@ indicates they entered no rating.
 	 * convert string to date
 	 */
 	private Date getDate(String input, boolean simple) {
-		if(input == "") {
-			 return null;
-		}
-		DateFormat stampFormat;
-		if(simple) {
-			stampFormat = new SimpleDateFormat("MM/dd/yyyy"); 
-		} else {
-			stampFormat = new SimpleDateFormat("MM/dd/yyyy HH:mm");
-		} 
-	    Date initialDate = null;
-
-	    try {  
-	      initialDate = stampFormat.parse(input);
-	    } catch (Exception e) { 
-	      System.out.println("Unable to parse date stamp '"+input+"'");
-	      return null;
-	    }
-	    long initialDateMillis = initialDate.getTime();
-	    return new Date(initialDateMillis);
+		ZeoDateParser dates = mr != null ? mr.dates : new ZeoDateParser(TimeZone.getDefault());
+		long minutes = dates.parse(input, simple);
+		if(minutes == ZeoDateParser.NO_DATE) return null;
+		return new Date(minutes * 60 * 1000);
 	}
 	
 	public void setStartOfNight(String input, boolean simple) {
-		start_of_night = getDate(input, simple);
+		setStartOfNight(getDate(input, simple));
+	}
+	
+	void setStartOfNight(Date d) {
+		start_of_night = d;
 		if(start_of_night == null) {
 			clean = false;
 		} else {
@@ -320,14 +314,22 @@ indicates they entered no rating.
 	}
 	
 	public void setEndOfNight(String input, boolean simple) {
-		end_of_night = getDate(input, simple);
+		setEndOfNight(getDate(input, simple));
+	}
+	
+	void setEndOfNight(Date d) {
+		end_of_night = d;
 		if(end_of_night == null) {
 			clean = false;
 		}
 	}
 	
 	public void setRiseTime(String input, boolean simple) {
-		rise_time = getDate(input, simple);
+		setRiseTime(getDate(input, simple));
+	}
+	
+	void setRiseTime(Date d) {
+		rise_time = d;
 		if(rise_time == null) {
 			clean = false;
 		} else {
@@ -363,62 +365,102 @@ indicates they entered no rating.
 		return printDate(date, false);
 	}
 	
+	@SuppressWarnings("deprecation")
 	private String printDate(Date d, boolean full) {
-		DateFormat niceFormat;
 		if(full) {
-	    	niceFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm:ss z");
-		} else {
-			niceFormat = new SimpleDateFormat("dd/MM/yyyy");
+			return new SimpleDateFormat("dd/MM/yyyy HH:mm:ss z").format(d);
 		}
-	    return niceFormat.format(d);
+		StringBuilder sb = new StringBuilder(10);
+		pad(sb, d.getDate(), 2).append('/');
+		pad(sb, d.getMonth() + 1, 2).append('/');
+		return pad(sb, d.getYear() + 1900, 4).toString();
+	}
+	
+	/**
+	 * append value, with leading zeros to the given number of digits
+	 */
+	private static StringBuilder pad(StringBuilder sb, int value, int digits) {
+		int limit = 1;
+		for(int i=1; i<digits; i++) limit *= 10;
+		for(; limit > 1 && value < limit; limit /= 10) sb.append('0');
+		return sb.append(value);
 	}
 	
 	public void setSleepGraph5min(String input, boolean cutOffWake) {
 		if(input != null && input.length() > 0) {
-			String[] p = PApplet.split(input, " ");
-			
-			int temp[] = new int[p.length];
-			int j = 0;
-			boolean cut = cutOffWake;
-			int v;
-			for(int i=0; i<p.length; i++) {
-				v = Integer.parseInt(p[i]);
-				if(cut) {
-					if(v>1) {
-						cut = false;
-						temp[j++] = v;
-					}
-				} else {
-					temp[j++] = v;
-				}
-			}
-			sleep_graph_5min = new int[j];
-			for(int i=0; i<j; i++) sleep_graph_5min[i] = temp[i];
+			sleep_graph_5min = parseSleepGraph(input.toCharArray(), 0, input.length(), cutOffWake);
 		}
 	}
 	
 	public void setSleepGraph30sec(String input, boolean cutOffWake) {
 		if(input != null && input.length() > 0) {
-			String[] p = PApplet.split(input, " ");
-			
-			int temp[] = new int[p.length];
-			int j = 0;
-			boolean cut = cutOffWake;
-			int v;
-			for(int i=0; i<p.length; i++) {
-				v = Integer.parseInt(p[i]);
-				if(cut) {
-					if(v>1) {
-						cut = false;
-						temp[j++] = v;
-					}
-				} else {
+			sleep_graph_30sec = parseSleepGraph(input.toCharArray(), 0, input.length(), cutOffWake);
+		}
+	}
+	
+	/**
+	 * parse a sleep graph of stages separated by spaces, 
+	 * e.g. "0 1 1 3 2" 
+	 * 
+	 * Graphs of single digits separated by single spaces, as 
+	 * exported, are parsed in one pass straight into an array 
+	 * of the right size. 
+	 * 
+	 * @param c
+	 * 			characters holding the graph from c[from] up to c[to]
+	 * @param cutOffWake
+	 * 			leave out undefined (0) and wake (1) stages at the beginning
+	 * @return the stages
+	 */
+	static int[] parseSleepGraph(char[] c, int from, int to, boolean cutOffWake) {
+		// a digit at every even, a space at every odd position
+		if((to - from) % 2 == 0) return parseSleepGraph(new String(c, from, to - from), cutOffWake);
+		
+		int start = from;
+		if(cutOffWake) {
+			while(start < to && (c[start] == '0' || c[start] == '1')) {
+				if(start + 1 < to && c[start + 1] != ' ') return parseSleepGraph(new String(c, from, to - from), cutOffWake);
+				start += 2;
+			}
+		}
+		if(start >= to) return new int[0];
+		
+		int graph[] = new int[(to - start + 1) / 2];
+		int j = 0;
+		for(int i=start; i<to; i+=2) {
+			char v = c[i];
+			if(v < '0' || v > '9' || (i + 1 < to && c[i + 1] != ' ')) {
+				return parseSleepGraph(new String(c, from, to - from), cutOffWake);
+			}
+			graph[j++] = v - '0';
+		}
+		return graph;
+	}
+	
+	/**
+	 * parse a sleep graph laid out any other way
+	 */
+	private static int[] parseSleepGraph(String input, boolean cutOffWake) {
+		String[] p = ZeoReader.split(input, ' ');
+		
+		int temp[] = new int[p.length];
+		int j = 0;
+		boolean cut = cutOffWake;
+		int v;
+		for(int i=0; i<p.length; i++) {
+			v = Integer.parseInt(p[i]);
+			if(cut) {
+				if(v>1) {
+					cut = false;
 					temp[j++] = v;
 				}
+			} else {
+				temp[j++] = v;
 			}
-			sleep_graph_30sec = new int[j];
-			for(int i=0; i<j; i++) sleep_graph_30sec[i] = temp[i];
 		}
+		int graph[] = new int[j];
+		System.arraycopy(temp, 0, graph, 0, j);
+		return graph;
 	}
 
 	public void setDayRelative(Date d0) {
@@ -0,0 +1,455 @@
+package src.zeo.library;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.zip.CRC32;
+
+/**
+ * ZeoNightCache class,
+ * writes the ZeoNight array of a ZeoReader to a compact binary file
+ * next to the file it was imported from, and reads it back,
+ * so the file does not have to be parsed again as long as it is unchanged
+ *
+ * The cache is keyed by the size and modification time of the imported
+ * file, the CRC-32 of its first and last 64 KB, the time zone the dates
+ * were parsed in and whether wake was cut off the sleep graphs, so
+ * checking it takes the same time however large the file is.
+ * Dates are stored as minutes,
+ * the date of the night since 1970 and the other dates relative to it,
+ * and sleep graphs two stages to a byte.
+ *
+ * @author evsc
+ *
+ */
+
+class ZeoNightCache {
+
+	// "ZEOC", and the version of the layout below
+	private static final int MAGIC = 0x5a454f43;
+	private static final int FORMAT_VERSION = 2;
+
+	// bytes at the start and at the end of the imported file that are checked
+	private static final int CHECKED_BYTES = 64 * 1024;
+
+	// minutes of a date that is not set
+	private static final int NO_DATE = Integer.MIN_VALUE;
+
+	private static final long MINUTE = 60 * 1000;
+
+	/**
+	 * @param source an imported file
+	 * @return the cache file kept next to it
+	 */
+	static File cacheFile(File source) {
+		return new File(source.getPath() + ".cache");
+	}
+
+	/**
+	 * Fill in the nights of a reader from the cache of a file,
+	 * if the cache was written for the file as it is now
+	 *
+	 * @param reader
+	 * @param source
+	 * 				the imported file
+	 * @param cutOffWake
+	 * 				whether the sleep graphs are to start with sleep
+	 * @return true if the nights were read from the cache
+	 */
+	static boolean read(ZeoReader reader, File source, boolean cutOffWake) {
+		File cache = cacheFile(source);
+		if (!cache.isFile() || !source.isFile()) return false;
+
+		try {
+			// read into the heap, a mapped cache would stay open until 
+			// collected, and could not be replaced on Windows
+			FileInputStream file = new FileInputStream(cache);
+			ByteBuffer in;
+			try {
+				FileChannel channel = file.getChannel();
+				if (channel.size() > Integer.MAX_VALUE) return false;
+				in = ByteBuffer.allocate((int) channel.size());
+				while (in.hasRemaining()) {
+					if (channel.read(in) < 0) break;
+				}
+				in.flip();
+			} finally {
+				file.close();
+			}
+
+			if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION
+					|| in.getLong() != source.length()
+					|| in.getLong() != source.lastModified()
+					|| (in.get() != 0) != cutOffWake
+					|| !readString(in).equals(TimeZone.getDefault().getID())
+					|| in.getLong() != checksum(source)) {
+				return false;
+			}
+
+			int length = in.getInt();
+			int nights = in.getInt();
+			int day_span = in.getInt();
+			// every night takes more than a byte of the file
+			if (nights < 0 || nights > length || length > source.length()) return false;
+
+			ZeoNight night[] = new ZeoNight[length];
+			for (int i = 0; i < nights; i++) {
+				night[i] = readNight(in, reader);
+			}
+
+			reader.night = night;
+			reader.nights = nights;
+			reader.day_span = day_span;
+			return true;
+		} catch (RuntimeException ex) {
+			// a cache cut short or corrupt, parse the file again
+			return false;
+		} catch (IOException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Write the nights of a reader to the cache of the file
+	 * they were imported from
+	 *
+	 * @param reader
+	 * @param source
+	 * 				the imported file
+	 * @param cutOffWake
+	 * 				whether the sleep graphs start with sleep
+	 * @return true if the cache was written
+	 */
+	static boolean write(ZeoReader reader, File source, boolean cutOffWake) {
+		// only dates on whole minutes, and stages that fit in 4 bits, can be kept
+		for (int i = 0; i < reader.nights; i++) {
+			if (!canWrite(reader.night[i])) return false;
+		}
+
+		File cache = cacheFile(source);
+		File temp = new File(cache.getPath() + ".tmp");
+
+		try {
+			long length = source.length();
+			long modified = source.lastModified();
+			long checksum = checksum(source);
+
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeLong(length);
+				out.writeLong(modified);
+				out.writeByte(cutOffWake ? 1 : 0);
+				out.writeUTF(TimeZone.getDefault().getID());
+				out.writeLong(checksum);
+
+				out.writeInt(reader.night.length);
+				out.writeInt(reader.nights);
+				out.writeInt(reader.day_span);
+				for (int i = 0; i < reader.nights; i++) {
+					writeNight(out, reader.night[i]);
+				}
+			} finally {
+				out.close();
+			}
+
+			// replace the old cache only once the new one is complete
+			cache.delete();
+			if (!temp.renameTo(cache)) {
+				temp.delete();
+				return false;
+			}
+			return true;
+		} catch (IOException ex) {
+			temp.delete();
+			return false;
+		}
+	}
+
+	private static ZeoNight readNight(ByteBuffer in, ZeoReader reader) {
+		ZeoNight n = new ZeoNight(reader);
+
+		n.clean = in.get() != 0;
+		n.date = new Date(in.getInt() * MINUTE);
+		n.start_of_night = readDate(in, n.date);
+		n.end_of_night = readDate(in, n.date);
+		n.rise_time = readDate(in, n.date);
+		n.sleep_onset = readDate(in, n.date);
+
+		n.month = in.getInt();
+		n.year = in.getInt();
+		n.day_of_week = in.getInt();
+		n.day_relative = in.getInt();
+
+		n.zq = in.getInt();
+		n.total_z = in.getInt();
+		n.time_to_z = in.getInt();
+		n.time_in_wake = in.getInt();
+		n.time_in_rem = in.getInt();
+		n.time_in_light = in.getInt();
+		n.time_in_deep = in.getInt();
+		n.awakenings = in.getInt();
+
+		n.sleep_duration = in.getInt();
+		n.sleep_onset_min = in.getInt();
+		n.sleep_rise_min = in.getInt();
+		n.start_night_min = in.getInt();
+		n.end_night_min = in.getInt();
+
+		n.alarm_reason = in.getInt();
+		n.alarm_type = in.getInt();
+		n.morning_feel = in.getInt();
+
+		n.ss_fall_asleep = in.getInt();
+		n.ss_aniticipation = in.getInt();
+		n.ss_tension = in.getInt();
+		n.ss_comfort = in.getInt();
+		n.ss_noise = in.getInt();
+		n.ss_light = in.getInt();
+		n.ss_temperature = in.getInt();
+		n.ss_familiar = in.getInt();
+		n.ss_bedroom = in.getInt();
+		n.ss_disruption = in.getInt();
+		n.ss_hot_flashes = in.getInt();
+		n.ss_dreams = in.getInt();
+		n.ss_fullness = in.getInt();
+		n.ss_hunger = in.getInt();
+		n.ss_heartburn = in.getInt();
+		n.ss_caffeine = in.getInt();
+		n.ss_alcohol = in.getInt();
+		n.ss_thirst = in.getInt();
+		n.ss_restroom = in.getInt();
+		n.ss_wind_down = in.getInt();
+		n.ss_sleepiness = in.getInt();
+		n.ss_exercise = in.getInt();
+		n.ss_time_before_bed = in.getInt();
+		n.ss_conversations = in.getInt();
+		n.ss_activity_level = in.getInt();
+		n.ss_late_work = in.getInt();
+
+		n.sscf_1 = in.getInt();
+		n.sscf_2 = in.getInt();
+		n.sscf_3 = in.getInt();
+		n.sscf_4 = in.getInt();
+		n.sscf_5 = in.getInt();
+		n.sscf_6 = in.getInt();
+		n.sscf_7 = in.getInt();
+		n.sscf_8 = in.getInt();
+		n.sscf_9 = in.getInt();
+		n.sscf_10 = in.getInt();
+		n.sscf_11 = in.getInt();
+		n.sscf_12 = in.getInt();
+		n.sscf_13 = in.getInt();
+		n.sscf_14 = in.getInt();
+		n.sscf_15 = in.getInt();
+		n.sscf_16 = in.getInt();
+		n.sscf_17 = in.getInt();
+		n.sscf_18 = in.getInt();
+		n.sscf_19 = in.getInt();
+		n.sscf_20 = in.getInt();
+		n.sscf_21 = in.getInt();
+
+		n.sleep_graph_5min = readGraph(in);
+		n.sleep_graph_30sec = readGraph(in);
+		return n;
+	}
+
+	private static void writeNight(DataOutputStream out, ZeoNight n) throws IOException {
+		out.writeByte(n.clean ? 1 : 0);
+		out.writeInt((int) (n.date.getTime() / MINUTE));
+		writeDate(out, n.start_of_night, n.date);
+		writeDate(out, n.end_of_night, n.date);
+		writeDate(out, n.rise_time, n.date);
+		writeDate(out, n.sleep_onset, n.date);
+
+		out.writeInt(n.month);
+		out.writeInt(n.year);
+		out.writeInt(n.day_of_week);
+		out.writeInt(n.day_relative);
+
+		out.writeInt(n.zq);
+		out.writeInt(n.total_z);
+		out.writeInt(n.time_to_z);
+		out.writeInt(n.time_in_wake);
+		out.writeInt(n.time_in_rem);
+		out.writeInt(n.time_in_light);
+		out.writeInt(n.time_in_deep);
+		out.writeInt(n.awakenings);
+
+		out.writeInt(n.sleep_duration);
+		out.writeInt(n.sleep_onset_min);
+		out.writeInt(n.sleep_rise_min);
+		out.writeInt(n.start_night_min);
+		out.writeInt(n.end_night_min);
+
+		out.writeInt(n.alarm_reason);
+		out.writeInt(n.alarm_type);
+		out.writeInt(n.morning_feel);
+
+		out.writeInt(n.ss_fall_asleep);
+		out.writeInt(n.ss_aniticipation);
+		out.writeInt(n.ss_tension);
+		out.writeInt(n.ss_comfort);
+		out.writeInt(n.ss_noise);
+		out.writeInt(n.ss_light);
+		out.writeInt(n.ss_temperature);
+		out.writeInt(n.ss_familiar);
+		out.writeInt(n.ss_bedroom);
+		out.writeInt(n.ss_disruption);
+		out.writeInt(n.ss_hot_flashes);
+		out.writeInt(n.ss_dreams);
+		out.writeInt(n.ss_fullness);
+		out.writeInt(n.ss_hunger);
+		out.writeInt(n.ss_heartburn);
+		out.writeInt(n.ss_caffeine);
+		out.writeInt(n.ss_alcohol);
+		out.writeInt(n.ss_thirst);
+		out.writeInt(n.ss_restroom);
+		out.writeInt(n.ss_wind_down);
+		out.writeInt(n.ss_sleepiness);
+		out.writeInt(n.ss_exercise);
+		out.writeInt(n.ss_time_before_bed);
+		out.writeInt(n.ss_conversations);
+		out.writeInt(n.ss_activity_level);
+		out.writeInt(n.ss_late_work);
+
+		out.writeInt(n.sscf_1);
+		out.writeInt(n.sscf_2);
+		out.writeInt(n.sscf_3);
+		out.writeInt(n.sscf_4);
+		out.writeInt(n.sscf_5);
+		out.writeInt(n.sscf_6);
+		out.writeInt(n.sscf_7);
+		out.writeInt(n.sscf_8);
+		out.writeInt(n.sscf_9);
+		out.writeInt(n.sscf_10);
+		out.writeInt(n.sscf_11);
+		out.writeInt(n.sscf_12);
+		out.writeInt(n.sscf_13);
+		out.writeInt(n.sscf_14);
+		out.writeInt(n.sscf_15);
+		out.writeInt(n.sscf_16);
+		out.writeInt(n.sscf_17);
+		out.writeInt(n.sscf_18);
+		out.writeInt(n.sscf_19);
+		out.writeInt(n.sscf_20);
+		out.writeInt(n.sscf_21);
+
+		writeGraph(out, n.sleep_graph_5min);
+		writeGraph(out, n.sleep_graph_30sec);
+	}
+
+	/**
+	 * check that a night can be stored without losing anything
+	 */
+	private static boolean canWrite(ZeoNight n) {
+		long date = n.date.getTime();
+		if (date % MINUTE != 0 || date / MINUTE != (int) (date / MINUTE)) return false;
+
+		Date[] dates = { n.start_of_night, n.end_of_night, n.rise_time, n.sleep_onset };
+		for (Date d : dates) {
+			if (d == null) continue;
+			long offset = d.getTime() - date;
+			if (offset % MINUTE != 0 || offset / MINUTE != (int) (offset / MINUTE)
+					|| offset / MINUTE == NO_DATE) return false;
+		}
+
+		int[][] graphs = { n.sleep_graph_5min, n.sleep_graph_30sec };
+		for (int[] g : graphs) {
+			if (g == null) continue;
+			for (int v : g) {
+				if (v < 0 || v > 15) return false;
+			}
+		}
+		return true;
+	}
+
+	private static Date readDate(ByteBuffer in, Date date) {
+		int minutes = in.getInt();
+		if (minutes == NO_DATE) return null;
+		return new Date(date.getTime() + minutes * MINUTE);
+	}
+
+	private static void writeDate(DataOutputStream out, Date d, Date date) throws IOException {
+		if (d == null) out.writeInt(NO_DATE);
+		else out.writeInt((int) ((d.getTime() - date.getTime()) / MINUTE));
+	}
+
+	/**
+	 * sleep graphs are stored as their length, or -1 if not set,
+	 * followed by two stages to a byte, the first in the high 4 bits
+	 */
+	private static int[] readGraph(ByteBuffer in) {
+		int length = in.getInt();
+		if (length < 0) return null;
+		if (length > 2 * in.remaining()) throw new BufferUnderflowException();
+
+		int graph[] = new int[length];
+		for (int i = 0; i < length; i += 2) {
+			int b = in.get() & 0xff;
+			graph[i] = b >> 4;
+			if (i + 1 < length) graph[i + 1] = b & 0x0f;
+		}
+		return graph;
+	}
+
+	private static void writeGraph(DataOutputStream out, int graph[]) throws IOException {
+		if (graph == null) {
+			out.writeInt(-1);
+			return;
+		}
+
+		out.writeInt(graph.length);
+		for (int i = 0; i < graph.length; i += 2) {
+			int b = graph[i] << 4;
+			if (i + 1 < graph.length) b |= graph[i + 1];
+			out.writeByte(b);
+		}
+	}
+
+	/**
+	 * read a String written by DataOutputStream.writeUTF
+	 * (only ASCII is expected, time zone ids)
+	 */
+	private static String readString(ByteBuffer in) {
+		int length = in.getShort() & 0xffff;
+		char chars[] = new char[length];
+		for (int i = 0; i < length; i++) chars[i] = (char) (in.get() & 0xff);
+		return new String(chars);
+	}
+
+	/**
+	 * @return the CRC-32 of the first and last CHECKED_BYTES of a file,
+	 * 				or of all of it if it is not larger than that
+	 */
+	private static long checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			long length = in.length();
+			byte buffer[] = new byte[(int) Math.min(length, 2 * CHECKED_BYTES)];
+			if (length <= buffer.length) {
+				in.readFully(buffer);
+			} else {
+				in.readFully(buffer, 0, CHECKED_BYTES);
+				in.seek(length - CHECKED_BYTES);
+				in.readFully(buffer, CHECKED_BYTES, CHECKED_BYTES);
+			}
+			crc.update(buffer);
+		} finally {
+			in.close();
+		}
+		return crc.getValue();
+	}
+}
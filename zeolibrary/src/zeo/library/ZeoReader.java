@@ -66,6 +66,8 @@ THE POSSIBILITY OF SUCH DAMAGE.
 package src.zeo.library;
 
 import processing.core.*;
+import src.com.myzeo.decoder.DecodeCheckpoint;
+import src.com.myzeo.decoder.PackedHypnogram;
 import src.com.myzeo.decoder.ZeoData;
 import src.com.myzeo.decoder.ZeoDataDecoder;
 import src.com.myzeo.decoder.SleepStage;
@@ -80,13 +82,18 @@ import java.io.*;
 //import java.io.FileInputStream;
 import java.io.IOException;
 //import java.io.PrintStream;
-import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * The ZeoReader class imports and parses Zeo Sleep Data export files (.csv)
@@ -116,13 +123,33 @@ public class ZeoReader {
 	public int day_span = 0;		// number of days between first and last night
 	
 	private boolean cutOffWake = true;
+	
+	// records and checkpoint of the last .dat file read, to resume from
+	private String datFileName = null;
+	private List<ZeoData> datRecords = null;
+	private DecodeCheckpoint datCheckpoint = null;
+	// the night each of those records was converted to, null if not a proper night
+	private Map<ZeoData, ZeoNight> datNights = null;
 	private boolean useRegularOnly = false;
 	
-    /** Date formatter used to output date/time objects. */ 
-    private static final DateFormat DATE_TIME_FORMAT = new SimpleDateFormat("MM/dd/yyyy hh:mm");
+	// keep a binary cache of the imported nights next to each file read
+	private boolean useCache = false;
+	
+	// parses the dates of the nights, in the time zone of the current import
+	ZeoDateParser dates = new ZeoDateParser(TimeZone.getDefault());
+	
+	/** Number of columns of a zeodata.csv record, up to the 30 sec sleep graph. */
+	private static final int CSV_COLUMNS = 76;
 	
-	/** Date formatter used to output date objects. */
-    private static final DateFormat DATE_FORMAT = new SimpleDateFormat("MM/dd/yyyy");
+	private static final long MINUTE = 60 * 1000;
+	private static final int DAY_MINUTES = 24 * 60;
+	
+	private static final int WAKE = SleepStage.WAKE.ordinal();
+	private static final int UNUSED = SleepStage.UNUSED.ordinal();
+	private static final int DEEP_2 = SleepStage.DEEP_2.ordinal();
+	
+	/** Smallest part of a zeodata.csv file to parse on its own, in bytes. */
+	private static final long CSV_PART_SIZE = 1 << 20;
 	
 	/**
 	 * minimum sleep onset time for selection filter, 
@@ -153,6 +180,8 @@ public class ZeoReader {
 	 * initialize library.
 	 * 
 	 * @param theParent
+	 * 			the sketch, or null to use the library outside a sketch 
+	 * 			(files are then read relative to the working directory)
 	 */
 	public ZeoReader(PApplet theParent) {
 		myParent = theParent;
@@ -182,105 +211,56 @@ public class ZeoReader {
 	 * 				filename, should have .csv ending 
 	 */
 	public void readFile(String file_name) {
+		readFile(file_name, false);
+	}
+	
+	/**
+	 * Imports and parses Zeo Sleep data from .csv file. 
+	 * In parallel, the file is split into parts of whole records, 
+	 * which are parsed concurrently, one per processor, 
+	 * and the nights of the parts joined in the order of the file
+	 * 
+	 * @param file_name
+	 * 				filename, should have .csv ending 
+	 * @param parallel
+	 * 				parse parts of the file concurrently, 
+	 * 				for large files
+	 */
+	public void readFile(String file_name, boolean parallel) {
 		FileName = file_name;
 		System.out.println("|| \t Read in file '"+FileName+"'");
 		
-		String lines[] = myParent.loadStrings(FileName);
-		nights = lines.length-1;
-		System.out.println("|| \t Loading " + nights + " recorded nights ...");
-		
-		night = new ZeoNight[lines.length-1];
+		File file = sourceFile(file_name);
+		File source = useCache ? file : null;
+		if (source != null && readCache(source)) return;
 		
-		int n = 0;
-		for (int i=1; i < lines.length; i++) {
-			
-			String[] p = PApplet.split(lines[i], '"');
-			
-			String pp;
-			if(p.length>1) {
-				pp = p[0] + p[2];
+		dates = new ZeoDateParser(TimeZone.getDefault());
+		CsvNights csv;
+		try {
+			if (parallel && file != null) {
+				csv = parseCsv(file);
 			} else {
-				pp = p[0];
-			}
-			
-			String[] q = PApplet.split(pp, ",");
-			
-			if(q[1].length() > 0) {
-				night[n] = new ZeoNight(this);
-				night[n].setDate(q[0]);
-				
-				night[n].zq = getInt(q[1]);
-				night[n].total_z = getInt(q[2]);
-				night[n].time_to_z = getInt(q[3]);
-				night[n].time_in_wake = getInt(q[4]);
-				night[n].time_in_rem = getInt(q[5]);
-				night[n].time_in_light = getInt(q[6]);
-				night[n].time_in_deep = getInt(q[7]);
-				night[n].awakenings = getInt(q[8]);
-				
-				night[n].setStartOfNight(q[9], false);
-				night[n].setEndOfNight(q[10], false);
-				night[n].setRiseTime(q[11], false);
-				
-				night[n].alarm_reason = getInt(q[12]);
-				night[n].alarm_type = getInt(q[16]);
-				night[n].morning_feel = getInt(q[22]);
-				
-				night[n].ss_fall_asleep = getInt(q[27]);
-				night[n].ss_aniticipation = getInt(q[28]);
-				night[n].ss_tension = getInt(q[29]);
-				night[n].ss_comfort = getInt(q[30]);
-				night[n].ss_noise = getInt(q[31]);
-				night[n].ss_light = getInt(q[32]);
-				night[n].ss_temperature = getInt(q[33]);
-				night[n].ss_familiar = getInt(q[34]);
-				night[n].ss_bedroom = getInt(q[35]);
-				night[n].ss_disruption = getInt(q[36]);
-				night[n].ss_hot_flashes = getInt(q[37]);
-				night[n].ss_dreams = getInt(q[38]);
-				night[n].ss_fullness = getInt(q[39]);
-				night[n].ss_hunger = getInt(q[40]);
-				night[n].ss_heartburn = getInt(q[41]);
-				night[n].ss_caffeine = getInt(q[42]);
-				night[n].ss_alcohol = getInt(q[43]);
-				night[n].ss_thirst = getInt(q[44]);
-				night[n].ss_restroom = getInt(q[45]);
-				night[n].ss_wind_down = getInt(q[46]);
-				night[n].ss_sleepiness = getInt(q[47]);
-				night[n].ss_exercise = getInt(q[48]);
-				night[n].ss_time_before_bed = getInt(q[49]);
-				night[n].ss_conversations = getInt(q[50]);
-				night[n].ss_activity_level = getInt(q[51]);
-				night[n].ss_late_work = getInt(q[52]);
-
-				night[n].sscf_1 = getInt(q[53]);
-				night[n].sscf_2 = getInt(q[54]);
-				night[n].sscf_3 = getInt(q[55]);
-				night[n].sscf_4 = getInt(q[56]);
-				night[n].sscf_5 = getInt(q[57]);
-				night[n].sscf_6 = getInt(q[58]);
-				night[n].sscf_7 = getInt(q[59]);
-				night[n].sscf_8 = getInt(q[60]);
-				night[n].sscf_9 = getInt(q[61]);
-				night[n].sscf_10 = getInt(q[62]);
-				night[n].sscf_11 = getInt(q[63]);
-				night[n].sscf_12 = getInt(q[64]);
-				night[n].sscf_13 = getInt(q[65]);
-				night[n].sscf_14 = getInt(q[66]);
-				night[n].sscf_15 = getInt(q[67]);
-				night[n].sscf_16 = getInt(q[68]);
-				night[n].sscf_17 = getInt(q[69]);
-				night[n].sscf_18 = getInt(q[70]);
-				night[n].sscf_19 = getInt(q[71]);
-				night[n].sscf_20 = getInt(q[72]);
-				night[n].sscf_21 = getInt(q[73]);
-				
-				night[n].setSleepGraph5min(q[74], cutOffWake);
-				night[n].setSleepGraph30sec(q[75], cutOffWake);
-				n++;
+				ZeoCsvParser parser = openCsv(FileName);
+				if (parser == null) return;
+				try {
+					csv = parseCsv(parser, true);
+				} finally {
+					parser.close();
+				}
 			}
+		} catch (IOException ex) {
+			System.err.println("|| \t Could not read '" + file_name + "'");
+			return;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return;
 		}
-		nights = n;
+		List<ZeoNight> list = csv.nights;
+		int rows = csv.rows;
+		System.out.println("|| \t Loaded " + rows + " recorded nights ...");
+		
+		night = list.toArray(new ZeoNight[list.size()]);
+		nights = night.length;
 		System.out.println("|| \t Imported " + nights + " proper nights");
 	
 		Date day0 = new Date(night[0].date.getTime());
@@ -289,33 +269,254 @@ public class ZeoReader {
 		}
 		day_span = night[nights-1].day_relative;
 		System.out.println("|| \t from a total span of " + day_span +" days \n");
+		
+		if (source != null) writeCache(source);
+	}
+	
+	/**
+	 * The nights parsed from (a part of) a zeodata.csv file
+	 */
+	private static class CsvNights {
+		List<ZeoNight> nights = new ArrayList<ZeoNight>();
+		int rows;			// records read, proper nights or not
+	}
+	
+	/**
+	 * Parse the records of a zeodata.csv file, 
+	 * keeping the proper nights
+	 * 
+	 * @param header
+	 * 				the first record is the header
+	 */
+	private CsvNights parseCsv(ZeoCsvParser csv, boolean header) throws IOException {
+		CsvNights parsed = new CsvNights();
+		if (header) csv.next();
+		while (csv.next()) {
+			parsed.rows++;
+			if (csv.fields() < CSV_COLUMNS || csv.isEmpty(1)) continue;
+			parsed.nights.add(parseNight(csv));
+		}
+		return parsed;
+	}
+	
+	/**
+	 * Parse a zeodata.csv file in parts, concurrently
+	 */
+	private CsvNights parseCsv(File file) throws IOException, InterruptedException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		long start = System.nanoTime();
+		
+		try {
+			final FileChannel channel = raf.getChannel();
+			// a few parts per thread, so that threads finishing early can take another
+			int parts = (int) Math.max(1, Math.min(threads * 4, channel.size() / CSV_PART_SIZE));
+			final long bounds[] = ZeoCsvParser.split(channel, parts, executor);
+			
+			List<Callable<CsvNights>> tasks = new ArrayList<Callable<CsvNights>>();
+			for (int i = 0; i < parts; i++) {
+				final int part = i;
+				tasks.add(new Callable<CsvNights>() {
+					public CsvNights call() throws IOException {
+						ZeoCsvParser csv = ZeoCsvParser.open(channel, bounds[part], bounds[part + 1]);
+						try {
+							return parseCsv(csv, part == 0);
+						} finally {
+							csv.close();
+						}
+					}
+				});
+			}
+			
+			CsvNights all = new CsvNights();
+			for (CsvNights parsed : ZeoCsvParser.getAll(executor.invokeAll(tasks))) {
+				all.nights.addAll(parsed.nights);
+				all.rows += parsed.rows;
+			}
+			System.out.println("|| \t Parsed " + parts + " parts on " + threads + " threads in " 
+					+ ((System.nanoTime() - start) / 1000000) + " ms");
+			return all;
+		} finally {
+			executor.shutdown();
+			raf.close();
+		}
+	}
+	
+	/**
+	 * Make a night of the current record of a zeodata.csv file
+	 */
+	private ZeoNight parseNight(ZeoCsvParser q) {
+		ZeoNight n = new ZeoNight(this);
+		n.setDate(q.getString(0));
+		
+		n.zq = q.getInt(1, -1);
+		n.total_z = q.getInt(2, -1);
+		n.time_to_z = q.getInt(3, -1);
+		n.time_in_wake = q.getInt(4, -1);
+		n.time_in_rem = q.getInt(5, -1);
+		n.time_in_light = q.getInt(6, -1);
+		n.time_in_deep = q.getInt(7, -1);
+		n.awakenings = q.getInt(8, -1);
+		
+		n.setStartOfNight(q.getString(9), false);
+		n.setEndOfNight(q.getString(10), false);
+		n.setRiseTime(q.getString(11), false);
+		
+		n.alarm_reason = q.getInt(12, -1);
+		n.alarm_type = q.getInt(16, -1);
+		n.morning_feel = q.getInt(22, -1);
+		
+		n.ss_fall_asleep = q.getInt(27, -1);
+		n.ss_aniticipation = q.getInt(28, -1);
+		n.ss_tension = q.getInt(29, -1);
+		n.ss_comfort = q.getInt(30, -1);
+		n.ss_noise = q.getInt(31, -1);
+		n.ss_light = q.getInt(32, -1);
+		n.ss_temperature = q.getInt(33, -1);
+		n.ss_familiar = q.getInt(34, -1);
+		n.ss_bedroom = q.getInt(35, -1);
+		n.ss_disruption = q.getInt(36, -1);
+		n.ss_hot_flashes = q.getInt(37, -1);
+		n.ss_dreams = q.getInt(38, -1);
+		n.ss_fullness = q.getInt(39, -1);
+		n.ss_hunger = q.getInt(40, -1);
+		n.ss_heartburn = q.getInt(41, -1);
+		n.ss_caffeine = q.getInt(42, -1);
+		n.ss_alcohol = q.getInt(43, -1);
+		n.ss_thirst = q.getInt(44, -1);
+		n.ss_restroom = q.getInt(45, -1);
+		n.ss_wind_down = q.getInt(46, -1);
+		n.ss_sleepiness = q.getInt(47, -1);
+		n.ss_exercise = q.getInt(48, -1);
+		n.ss_time_before_bed = q.getInt(49, -1);
+		n.ss_conversations = q.getInt(50, -1);
+		n.ss_activity_level = q.getInt(51, -1);
+		n.ss_late_work = q.getInt(52, -1);
+		
+		n.sscf_1 = q.getInt(53, -1);
+		n.sscf_2 = q.getInt(54, -1);
+		n.sscf_3 = q.getInt(55, -1);
+		n.sscf_4 = q.getInt(56, -1);
+		n.sscf_5 = q.getInt(57, -1);
+		n.sscf_6 = q.getInt(58, -1);
+		n.sscf_7 = q.getInt(59, -1);
+		n.sscf_8 = q.getInt(60, -1);
+		n.sscf_9 = q.getInt(61, -1);
+		n.sscf_10 = q.getInt(62, -1);
+		n.sscf_11 = q.getInt(63, -1);
+		n.sscf_12 = q.getInt(64, -1);
+		n.sscf_13 = q.getInt(65, -1);
+		n.sscf_14 = q.getInt(66, -1);
+		n.sscf_15 = q.getInt(67, -1);
+		n.sscf_16 = q.getInt(68, -1);
+		n.sscf_17 = q.getInt(69, -1);
+		n.sscf_18 = q.getInt(70, -1);
+		n.sscf_19 = q.getInt(71, -1);
+		n.sscf_20 = q.getInt(72, -1);
+		n.sscf_21 = q.getInt(73, -1);
+		
+		if (!q.isEmpty(74)) n.sleep_graph_5min = q.getSleepGraph(74, cutOffWake);
+		if (!q.isEmpty(75)) n.sleep_graph_30sec = q.getSleepGraph(75, cutOffWake);
+		return n;
+	}
+	
+	/**
+	 * Find a file the way loadStrings does, 
+	 * in the sketch's data folder first
+	 */
+	private File sourceFile(String file_name) {
+		File file = new File(file_name);
+		if (myParent != null) {
+			File data = new File(myParent.dataPath(file_name));
+			if (data.isFile()) file = data;
+		}
+		return file.isFile() ? file : null;
+	}
+	
+	/**
+	 * Open a file the way loadStrings does, through the sketch 
+	 * if there is a sketch
+	 * 
+	 * @return a parser over the file, or null if it could not be opened
+	 */
+	private ZeoCsvParser openCsv(String file_name) throws IOException {
+		InputStream input;
+		if (myParent != null) {
+			input = myParent.createInput(file_name);
+			if (input == null) return null;
+		} else {
+			input = new FileInputStream(file_name);
+		}
+		return new ZeoCsvParser(new InputStreamReader(input, "UTF-8"));
+	}
+	
+	/**
+	 * Split a String at every delim, keeping empty pieces, 
+	 * the same as PApplet.split(). PApplet itself can't be 
+	 * used without a display, as loading the class asks the 
+	 * AWT toolkit for its menu shortcut key.
+	 * 
+	 * @param value
+	 * @param delim
+	 * @return the pieces of value
+	 */
+	static String[] split(String value, char delim) {
+		int count = 1;
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) == delim) count++;
+		}
+		
+		String pieces[] = new String[count];
+		int start = 0;
+		int n = 0;
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) == delim) {
+				pieces[n++] = value.substring(start, i);
+				start = i + 1;
+			}
+		}
+		pieces[n] = value.substring(start);
+		return pieces;
+	}
+	
+	/**
+	 * Read the nights from the cache of a file, 
+	 * if it was written for the file as it is now
+	 * 
+	 * @return true if the nights were read from the cache
+	 */
+	private boolean readCache(File source) {
+		if (!ZeoNightCache.read(this, source, cutOffWake)) return false;
+		
+		System.out.println("|| \t Imported " + nights + " proper nights from '" 
+				+ ZeoNightCache.cacheFile(source) + "'");
+		System.out.println("|| \t from a total span of " + day_span +" days \n");
+		return true;
+	}
+	
+	private void writeCache(File source) {
+		if (!ZeoNightCache.write(this, source, cutOffWake)) {
+			System.out.println("|| \t Unable to write cache '" + ZeoNightCache.cacheFile(source) + "'");
+		}
 	}
 	
 	
     /**
      * Reads the specified data file and parses it into a list of ZeoData 
-     * objects.
+     * objects. Given a checkpoint, only the part of the file appended since 
+     * is read and merged with the records read up to the checkpoint.
      *     
      * @param file a Zeo data file
-     * @return a list of ZeoData objects
+     * @param checkpoint where reading the file got to last time, or null
+     * @param records the records read up to the checkpoint, or null
+     * @return a decoder holding the reduced and labeled records
      * 
      * @throws IOException if an error occurs opening or reading the data file
      */
-    private static List<ZeoData> readList(File file) throws IOException {
-        // open the input file as a file channel
-        FileChannel fc = new FileInputStream(file).getChannel();
-        
-        // allocate a byte array to hold the entire input file
-        byte data[] = new byte[(int) fc.size()];
-        // wrap it in a byte buffer
-        ByteBuffer in = ByteBuffer.wrap(data);
-        
-        // read the file data into the byte array
-        fc.read(in);
-        in.rewind();
-        
-        // set up the decoder
-        ZeoDataDecoder decoder = new ZeoDataDecoder(in);
+    private static ZeoDataDecoder readList(File file, DecodeCheckpoint checkpoint, 
+            List<ZeoData> records) throws IOException {
+        ZeoDataDecoder decoder = ZeoDataDecoder.resume(file, checkpoint, records);
         
         // reduce records down to only records that comprise distinct nights
         decoder.reduce_records();
@@ -323,7 +524,7 @@ public class ZeoReader {
         // fill in is_nap and sleep_date information
         decoder.label_naps();
         
-        return decoder.get_records();
+        return decoder;
     }
 	
 	/**
@@ -333,94 +534,236 @@ public class ZeoReader {
 	 * 				filename, should have .dat ending 
 	 */
 	public void readDatFile(String file_name) {
+		readDatFile(file_name, false);
+   }
+	
+	/**
+	 * Imports and parses Zeo Sleep data from .dat file. 
+	 * When resuming, and the same file was read before, only the records 
+	 * appended to the file since then are decoded and merged with 
+	 * the nights read before
+	 * 
+	 * @param file_name
+	 * 				filename, should have .dat ending 
+	 * @param resume
+	 * 				decode only what was appended since the last read
+	 */
+	public void readDatFile(String file_name, boolean resume) {
 		FileName = file_name;
 		System.out.println("|| \t Read in file '"+FileName+"'");
 		
+		if (!resume || !file_name.equals(datFileName)) {
+			datRecords = null;
+			datCheckpoint = null;
+			datNights = null;
+		}
+		
+		// resuming needs the records, which are not cached
+		File source = new File(file_name);
+		boolean cache = useCache && datRecords == null && source.isFile();
+		if (cache && readCache(source)) {
+			datFileName = null;
+			return;
+		}
+		
 		try {
-			List<ZeoData> nights_list = readList(new File(file_name));
-			convertDatFile(nights_list);
+			ZeoDataDecoder decoder = readList(source, datCheckpoint, datRecords);
+			datFileName = file_name;
+			datRecords = decoder.get_records();
+			datCheckpoint = decoder.get_checkpoint();
+			// only the records decoded since the checkpoint are converted
+			datNights = convertDatFile(datRecords, datNights);
+			if (cache) writeCache(source);
 		} catch (IOException ex) {
             ex.printStackTrace(System.err);
         }
 		
    }
+	
+	/**
+	 * Imports and parses Zeo Sleep data from several .dat files, 
+	 * e.g. copies of the same device's file taken at different times. 
+	 * The files are decoded concurrently, one per processor, 
+	 * and their records merged so that every night is imported once
+	 * 
+	 * @param file_names
+	 * 				filenames, should have .dat ending 
+	 */
+	public void readDatFiles(Collection<String> file_names) {
+		int threads = Math.max(1, Math.min(file_names.size(), 
+				Runtime.getRuntime().availableProcessors()));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<DatFile>> results = new ArrayList<Future<DatFile>>();
+		ZeoDataDecoder merged = null;
+		long start = System.nanoTime();
+		long bytes = 0;
+		
+		System.out.println("|| \t Read in " + file_names.size() + " files on " + threads + " threads");
+		
+		try {
+			for (final String file_name : file_names) {
+				results.add(executor.submit(new Callable<DatFile>() {
+					public DatFile call() throws IOException {
+						return new DatFile(file_name);
+					}
+				}));
+			}
+			
+			// merge the files in the order they were given
+			for (Future<DatFile> result : results) {
+				try {
+					DatFile dat = result.get();
+					System.out.println("|| \t Read in file '" + dat.file_name + "': " 
+							+ dat.record_count + " records in " + (dat.nanos / 1000000) + " ms, "
+							+ dat.throughput() + " MB/s");
+					bytes += dat.bytes;
+					if (merged == null) merged = dat.decoder;
+					else merged.merge(dat.decoder);
+				} catch (ExecutionException ex) {
+					ex.getCause().printStackTrace(System.err);
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return;
+		} finally {
+			executor.shutdown();
+		}
+		
+		if (merged == null) return;
+		
+		// keep each night once across all the files
+		merged.reduce_records();
+		merged.label_naps();
+		System.out.println("|| \t Read in " + bytes + " bytes in " 
+				+ ((System.nanoTime() - start) / 1000000) + " ms");
+		
+		FileName = file_names.toString();
+		datFileName = null;
+		datRecords = null;
+		datCheckpoint = null;
+		datNights = null;
+		convertDatFile(merged.get_records());
+	}
+	
+	/**
+	 * A .dat file decoded and reduced by readDatFiles
+	 */
+	private static class DatFile {
+		String file_name;
+		ZeoDataDecoder decoder;
+		int record_count;		// records decoded, before reducing
+		long bytes;
+		long nanos;				// time taken to decode and reduce
+		
+		DatFile(String file_name) throws IOException {
+			long start = System.nanoTime();
+			File file = new File(file_name);
+			
+			this.file_name = file_name;
+			bytes = file.length();
+			decoder = new ZeoDataDecoder(file);
+			record_count = decoder.get_records().size();
+			
+			// reducing each file first leaves less to merge
+			decoder.reduce_records();
+			nanos = System.nanoTime() - start;
+		}
+		
+		/**
+		 * @return decoding throughput in megabytes per second
+		 */
+		long throughput() {
+			return nanos == 0 ? 0 : Math.round(bytes * 1000.0 / nanos);
+		}
+	}
 
 	
 	
     /**
-     * Formats a calendar's date as a String.
+     * Converts a record's timestamp to a Date, of the day or of the 
+     * day and time.
+     * 
+     * The nights are the same as when the timestamp's calendar was 
+     * formatted as "MM/dd/yyyy" or "MM/dd/yyyy hh:mm" and parsed back 
+     * by ZeoNight: the time as shown in the local time zone, and the 
+     * hour on a 12-hour clock (12, 1, ... 11), which is read as the hour 
+     * of the day. Nothing is shared but the date parser, so records can 
+     * be converted by several threads.
      * 
-     * @param c a calendar
-     * @return a String representing the calendar's date object
+     * @param unix_timestamp seconds since 1970, 0 if not set
+     * @param time keep the time of day, not only the date
+     * @return the date, or null if the timestamp is not set
      */
-    private static String formatDate(Calendar c) {
-        if (c == null) {
-            return "";
-        } else {
-            // NOTE: The time returned by the calendar is intended to be 
-            // displayed in GMT.  By default, Java converts it to the local
-            // time zone.  We must manually set the calendar's time zone in 
-            // order for the time to display correctly.
-            c.setTimeZone(TimeZone.getTimeZone("GMT"));
-            return DATE_FORMAT.format(c.getTime());
+    private Date convertDate(long unix_timestamp, boolean time) {
+        if (unix_timestamp == 0) return null;
+        
+        long millis = unix_timestamp * 1000;
+        long minutes = floorDiv(millis + dates.zone().getOffset(millis), MINUTE);
+        int epoch_day = (int) floorDiv(minutes, DAY_MINUTES);
+        int minute_of_day = (int) (minutes - epoch_day * (long) DAY_MINUTES);
+        
+        int hour = 0;
+        int minute = 0;
+        if (time) {
+            hour = minute_of_day / 60 % 12;
+            if (hour == 0) hour = 12;
+            minute = minute_of_day % 60;
         }
+        return new Date(dates.minutes(epoch_day, hour, minute) * MINUTE);
     }
-
+    
     /**
-     * Formats a calendar's date and time as a String.
-     * 
-     * @param c a calendar
-     * @return a String representing the calendar's date object
+     * Divides rounding down, also for negative numbers
      */
-    private static String formatDateTime(Calendar c) {
-        if (c == null) {
-            return "";
-        } else {
-            // NOTE: The time returned by the calendar is intended to be 
-            // displayed in GMT.  By default, Java converts it to the local
-            // time zone.  We must manually set the calendar's time zone in 
-            // order for the time to display correctly.
-            c.setTimeZone(TimeZone.getTimeZone("GMT"));
-            return DATE_TIME_FORMAT.format(c.getTime());
-        }
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
     }
     
-    
-    
     /**
-     * Formats a byte array as a String.
+     * Converts a hypnogram to the sleep stages exported to the website CSV, 
+     * without wake at the beginning if cutOffWake.
      * 
-     * @param b a byte array
-     * @return a String representing the values in the byte array 
+     * @param b a hypnogram
+     * @param length the number of stages in b
+     * @param cutOffWake leave out undefined and wake stages at the beginning
+     * @return the sleep stages, or null if there are none
      */
-    private static String formatHypnogram(byte b[]) {
-        StringBuffer s = new StringBuffer();
-
-        // strip off trailing zeroes
-        int lastNonzeroIndex = 0;
-        for (int i = 0; i < b.length; i++) {
-            if (b[i] != 0) lastNonzeroIndex = i;
+    private static int[] convertHypnogram(byte b[], int length, boolean cutOffWake) {
+        // strip off trailing zeroes, and with them the last stage
+        int lastNonzeroIndex = length - 1;
+        while (lastNonzeroIndex > 0 && b[lastNonzeroIndex] == 0) lastNonzeroIndex--;
+        
+        // find the first stage, then count the stages from there, 
+        // to fill an array of the right size
+        int first = 0;
+        while (first < lastNonzeroIndex && !isExported(b[first])) first++;
+        if (first >= lastNonzeroIndex) return null;
+        if (cutOffWake) {
+            while (first < lastNonzeroIndex && (b[first] <= WAKE || !isExported(b[first]))) first++;
         }
         
-        for (int i = 0; i < lastNonzeroIndex; i++) {
-            switch (SleepStage.convert(b[i])) {
-            case UNUSED:
-                // skip the unused sleep stage label to match website CSV output 
-                break;
-                
-            case DEEP_2:
-                // show DEEP_2 as DEEP to match website CSV output
-                b[i] = (byte) SleepStage.DEEP.ordinal();
-                break;
-                
-            default:
-                if (i > 0) s.append(' '); 
-                s.append((char) (b[i] + '0'));
-                break;
-            }
+        int count = 0;
+        for (int i = first; i < lastNonzeroIndex; i++) {
+            if (isExported(b[i])) count++;
         }
         
-        return s.toString();
+        int graph[] = new int[count];
+        int j = 0;
+        for (int i = first; j < count; i++) {
+            if (isExported(b[i])) graph[j++] = b[i];
+        }
+        return graph;
+    }
+    
+    /**
+     * @return true if a hypnogram value is shown in the website CSV output
+     */
+    private static boolean isExported(byte b) {
+        // skip the unused sleep stage label to match website CSV output, 
+        // and DEEP_2, which was never written out by the CSV formatting
+        return b != UNUSED && b != DEEP_2;
     }
     
     
@@ -455,45 +798,89 @@ public class ZeoReader {
 	 * 				filename, should have .dat ending 
 	 */
 	public void convertDatFile(List<ZeoData> nights_list) {
+		datNights = null;
+		convertDatFile(nights_list, null);
+	}
+	
+	/**
+	 * Convert ZeoData list to zeoNight objects, taking the nights 
+	 * of the records converted before from converted, 
+	 * as long as the time zone is the same
+	 * 
+	 * @param nights_list
+	 * @param converted
+	 * 				the nights records were converted to before, or null
+	 * @return the night each record was converted to, 
+	 * 				null if it is not a proper night
+	 */
+	private Map<ZeoData, ZeoNight> convertDatFile(List<ZeoData> nights_list, Map<ZeoData, ZeoNight> converted) {
 
+		if (converted == null || !dates.zone().equals(TimeZone.getDefault())) {
+			dates = new ZeoDateParser(TimeZone.getDefault());
+			converted = new IdentityHashMap<ZeoData, ZeoNight>();
+		}
+		Map<ZeoData, ZeoNight> nights_by_record = new IdentityHashMap<ZeoData, ZeoNight>();
 		night = new ZeoNight[nights_list.size()];
+		// the base hypnograms are unpacked into the same array, one by one
+		byte hypnogram[] = new byte[ZeoData.HYP_BASE_LENGTH];
 		
 		int n = 0;
 		for (ZeoData r : nights_list) {
-
-			night[n] = new ZeoNight(this);
-			night[n].setDate(formatDate(r.get_sleep_date()));			
-			night[n].zq = r.get_zq_score();
-			night[n].total_z = formatEpoch(r.get_total_z());
-			night[n].time_to_z = formatEpoch(r.get_time_to_z());
-			night[n].time_in_wake = formatEpoch(r.get_time_in_wake());
-			night[n].time_in_rem = formatEpoch(r.get_time_in_rem());
-			night[n].time_in_light = formatEpoch(r.get_time_in_light());
-			night[n].time_in_deep = formatEpoch(r.get_time_in_deep());
-			night[n].awakenings = r.get_awakenings();
+			ZeoNight z;
+			if (converted.containsKey(r)) z = converted.get(r);
+			else z = convertRecord(r, hypnogram);
 			
-			night[n].setStartOfNight(formatDateTime(r.get_hypnogram_start_time()), false);
-			night[n].setEndOfNight(formatDateTime(r.get_end_of_night()), false);
-			night[n].setRiseTime(formatDateTime(r.get_rise_time()), false);
-				
-			night[n].alarm_reason = r.get_alarm_reason().ordinal();
-			night[n].alarm_type = format(r.get_zeo_wake_on());
-			night[n].morning_feel = r.get_sleep_rating();
-				
-			night[n].setSleepGraph5min(formatHypnogram(r.get_display_hypnogram()), cutOffWake);
-			night[n].setSleepGraph30sec(formatHypnogram(r.get_base_hypnogram()), cutOffWake);
-				
-			if(night[n].clean == true) n++;
+			nights_by_record.put(r, z);
+			if (z != null) night[n++] = z;
 		}
 		nights = n;
 		System.out.println("|| \t Imported " + nights + " proper nights");
 	
 		Date day0 = new Date(night[0].date.getTime());
-		for(int i=1; i<nights; i++) {
+		for(int i=0; i<nights; i++) {
 		    night[i].setDayRelative(day0);
 		}
 		day_span = night[nights-1].day_relative;
 		System.out.println("|| \t from a total span of " + day_span +" days \n");
+		return nights_by_record;
+	}
+	
+	/**
+	 * Convert a ZeoData record to a zeoNight object
+	 * 
+	 * @param r
+	 * @param hypnogram
+	 * 				array to unpack the base hypnogram into
+	 * @return the night, or null if it is not a proper night
+	 */
+	private ZeoNight convertRecord(ZeoData r, byte hypnogram[]) {
+		ZeoNight z = new ZeoNight(this);
+		z.setDate(convertDate(r.get_sleep_date_timestamp(), false));
+		z.zq = r.get_zq_score();
+		z.total_z = formatEpoch(r.get_total_z());
+		z.time_to_z = formatEpoch(r.get_time_to_z());
+		z.time_in_wake = formatEpoch(r.get_time_in_wake());
+		z.time_in_rem = formatEpoch(r.get_time_in_rem());
+		z.time_in_light = formatEpoch(r.get_time_in_light());
+		z.time_in_deep = formatEpoch(r.get_time_in_deep());
+		z.awakenings = r.get_awakenings();
+		
+		z.setStartOfNight(convertDate(r.get_hypnogram_start_timestamp(), true));
+		z.setEndOfNight(convertDate(r.get_end_of_night_timestamp(), true));
+		z.setRiseTime(convertDate(r.get_rise_timestamp(), true));
+			
+		z.alarm_reason = r.get_alarm_reason().ordinal();
+		z.alarm_type = format(r.get_zeo_wake_on());
+		z.morning_feel = r.get_sleep_rating();
+			
+		byte display[] = r.get_display_hypnogram();
+		z.sleep_graph_5min = convertHypnogram(display, display.length, cutOffWake);
+		PackedHypnogram base = r.get_packed_base_hypnogram();
+		if (hypnogram.length < base.length()) hypnogram = new byte[base.length()];
+		base.unpack(hypnogram, 0, base.length());
+		z.sleep_graph_30sec = convertHypnogram(hypnogram, base.length(), cutOffWake);
+		
+		return z.clean ? z : null;
 	}
 	
 	
@@ -516,6 +903,22 @@ public class ZeoReader {
 	 */
 	public void setCutOff(boolean cut) {
 		cutOffWake = cut;
+		// nights converted before are cut the other way
+		datNights = null;
+	}
+	
+	/**
+	 * Toggle the cache on or off. With the cache on, the nights imported 
+	 * by readFile() or readDatFile() are also written to a compact binary 
+	 * file next to the file read (file_name + ".cache"). The next time 
+	 * the same file is read, unchanged, the nights are read back from 
+	 * the cache instead of parsing the file again.
+	 * 
+	 * @param v
+	 * TRUE: use the cache - FALSE: always parse the file (=default)
+	 */
+	public void setCache(boolean v) {
+		useCache = v;
 	}
 	
 	/**
@@ -840,10 +1243,5 @@ public class ZeoReader {
 		System.out.println("##library.name## ##library.prettyVersion## by ##author##");
 		System.out.println("--------------------------------------------------------\n");
 	}
-	
-	private int getInt(String input) {
-		if(input != null && input.length() > 0) return Integer.parseInt(input);
-		else return -1;
-	}
 
 }
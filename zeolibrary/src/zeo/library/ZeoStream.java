@@ -30,6 +30,7 @@ package src.zeo.library;
 import processing.core.*;
 import processing.serial.*;
 import java.lang.reflect.*;
+import java.util.Arrays;
 import java.util.Date;
 
 import src.zeo.library.ZeoSlice;
@@ -118,9 +119,19 @@ public class ZeoStream implements Runnable {
 	 * @param theParent
 	 */
 	public ZeoStream(PApplet theParent, String portName) {
-		myParent = theParent;
-		myParent.registerDispose(this);
+		this(theParent);
 		startSerial(portName);
+	}
+	
+	/**
+	 * ZeoStream Constructor without a Serial Port, 
+	 * for parsing data recorded earlier, passed on with readBytes().
+	 * 
+	 * @param theParent
+	 * the sketch, or null to use the library outside a sketch
+	 */
+	public ZeoStream(PApplet theParent) {
+		myParent = theParent;
 		welcome();
 		
 		inBuffer = new byte[0];
@@ -128,6 +139,9 @@ public class ZeoStream implements Runnable {
 		_slice = new ZeoSlice();
 		slice = new ZeoSlice();
 		
+		if (myParent == null) return;
+		myParent.registerDispose(this);
+		
 		// check to see if host applet implements
 		// public void zeoSliceEvent(ZeoStream z)
 		try {
@@ -229,18 +243,31 @@ public class ZeoStream implements Runnable {
 	 * checks serial port for new data, default: every 100ms
 	 */
 	private void readSerial() {
+		byte[] newBuffer = new byte[512];
 		while(myPort.available() > 0) {
-			byte[] newBuffer = new byte[512];
 			int n = myPort.readBytes(newBuffer);
-			newBuffer = PApplet.subset(newBuffer,0,n);
 			if(debug) System.out.println("readSerial() reads in "+n+" bytes");
-			if(newBuffer != null) {
-				inBuffer = PApplet.concat(inBuffer, newBuffer);
-				if(inBuffer.length > 0) checkBuffer();
-			}
+			readBytes(newBuffer, n);
 		}
 	}
 	
+	/**
+	 * Parse data as if it had just been read from the serial port, 
+	 * for example data recorded from the port earlier. 
+	 * Events are triggered as the packets are parsed.
+	 * 
+	 * @param data
+	 * @param length
+	 * number of bytes of data to parse
+	 */
+	public void readBytes(byte[] data, int length) {
+		if(length <= 0) return;
+		byte[] joined = Arrays.copyOf(inBuffer, inBuffer.length + length);
+		System.arraycopy(data, 0, joined, inBuffer.length, length);
+		inBuffer = joined;
+		checkBuffer();
+	}
+	
 	/**
 	 * checkInput, searches input buffer for start characters
 	 * and passes on packets to parsing,
@@ -251,15 +278,15 @@ public class ZeoStream implements Runnable {
 		int startpacket = 0;
 		for(int i=1; i<inBuffer.length-1; i++) {
 		  if(inBuffer[i] == (byte) 'A' && inBuffer[i+1] == (byte) '4') {
-		      byte[] onePart = PApplet.subset(inBuffer, startpacket, i-startpacket);
+		      byte[] onePart = Arrays.copyOfRange(inBuffer, startpacket, i);
 		      parseInput(onePart);
 		      startpacket = i;
 		   }
 		}
-		byte[] lastPart = PApplet.subset(inBuffer, startpacket, inBuffer.length-startpacket);
+		byte[] lastPart = Arrays.copyOfRange(inBuffer, startpacket, inBuffer.length);
 		boolean deletelastbuffer = parseInput(lastPart);
 		if(deletelastbuffer) inBuffer = new byte[0];
-		else inBuffer = PApplet.subset(lastPart,0);
+		else inBuffer = lastPart;
 	}
 	
 	
@@ -295,18 +322,16 @@ public class ZeoStream implements Runnable {
 		    int timestampLow = getByte(input[p+5]);
 		    int timestampSubseconds = getByte(input[p+6]) + ( getByte(input[p+7]) << 8 );
 		    float subseconds = timestampSubseconds / 65535.0f;
-		    if(debug) System.out.println("timestamp:\t\t"+timestampLow+ " + "+ PApplet.nf(subseconds,1,2));
+		    if(debug) System.out.println("timestamp:\t\t"+timestampLow+ " + "+ String.format("%.2f", subseconds));
 		    
 		    int sequenceNo = getByte(input[p+8]);
 		    if(debug) System.out.println("sequenceNo:\t"+sequenceNo);
 		
-		    byte[] data; 
-		    try {
-		      data = PApplet.subset(input, p+9, dataLength);
-		    } catch (Exception e) {
+		    if(p+9+dataLength > input.length) {
 		      if(debug) System.out.println("ERROR: array not long enough for dataLength variable");
 		      return false;
 		    }
+		    byte[] data = Arrays.copyOfRange(input, p+9, p+9+dataLength);
 		    
 		    int dataType = getByte(data[0]);
 		    String dataTypeStr = getDataType(dataType);
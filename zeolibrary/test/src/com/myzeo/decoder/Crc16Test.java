@@ -0,0 +1,180 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Test that the slice-by-8 CRC16 of Crc16 is bit for bit the same as the
+ * byte at a time CRC16 (see Crc16.crc16_bytewise), for random lengths and
+ * offsets into arrays and into heap, direct and read-only buffers of both
+ * byte orders.
+ * <p>
+ * Usage: Crc16Test
+ */
+public class Crc16Test {
+
+	/* Size of the random data the CRCs are taken of. */
+	private static final int DATA_SIZE = 2 * ZeoData.V22_SIZE + 64;
+
+	/* Number of random spans checked for each kind of buffer. */
+	private static final int SPANS = 20000;
+
+	/**
+	 * Check the CRC of a span of a buffer against the byte at a time CRC.
+	 * 
+	 * @param name
+	 *            Name of the kind of buffer, for the report.
+	 * @param buffer
+	 *            A buffer holding data, from index 0.
+	 * @param data
+	 *            The data.
+	 * @param offset
+	 *            Offset of the span.
+	 * @param length
+	 *            Length of the span.
+	 */
+	private static void check(String name, ByteBuffer buffer, byte[] data,
+			int offset, int length) {
+		int expected = Crc16.crc16_bytewise(data, offset, length);
+		int split = offset + length / 3;
+		int crc;
+
+		crc = Crc16.crc16(buffer, offset, length);
+		if (crc != expected) {
+			fail(name, offset, length, crc, expected);
+		}
+
+		/* The same CRC taken in two parts. */
+		crc = Crc16.update(0, buffer, offset, split - offset);
+		crc = Crc16.update(crc, buffer, split, offset + length - split);
+		if (crc != expected) {
+			fail(name + " in two parts", offset, length, crc, expected);
+		}
+	}
+
+	private static void fail(String name, int offset, int length, int crc,
+			int expected) {
+		throw new AssertionError(name + ": CRC of " + length + " bytes at "
+				+ offset + " is " + Integer.toHexString(crc) + ", expected "
+				+ Integer.toHexString(expected));
+	}
+
+	/**
+	 * Check every length up to 64 at the first offsets, to cover each
+	 * alignment and the bytes left over after the slices, then random spans.
+	 */
+	private static void check(String name, ByteBuffer buffer, byte[] data,
+			Random random) {
+		for (int offset = 0; offset < 16; offset++) {
+			for (int length = 0; length <= 64; length++) {
+				check(name, buffer, data, offset, length);
+			}
+		}
+		for (int i = 0; i < SPANS; i++) {
+			int offset = random.nextInt(data.length);
+			int length = random.nextInt(data.length - offset + 1);
+
+			check(name, buffer, data, offset, length);
+		}
+		System.out.println(name + ": same as crc16_bytewise");
+	}
+
+	/**
+	 * Main routine.
+	 * 
+	 * @param args
+	 *            Not used.
+	 */
+	public static void main(String[] args) {
+		Random random = new Random(5);
+		byte[] data = new byte[DATA_SIZE];
+		byte[] record;
+		int expected;
+
+		random.nextBytes(data);
+
+		/* Arrays, then buffers, the heap slice at an offset into its array. */
+		for (int i = 0; i < SPANS; i++) {
+			int offset = random.nextInt(data.length);
+			int length = random.nextInt(data.length - offset + 1);
+			int crc = Crc16.crc16(data, offset, length);
+			int bytewise = Crc16.crc16_bytewise(data, offset, length);
+
+			if (crc != bytewise) {
+				fail("byte[]", offset, length, crc, bytewise);
+			}
+		}
+		System.out.println("byte[]: same as crc16_bytewise");
+
+		for (ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN,
+				ByteOrder.LITTLE_ENDIAN }) {
+			ByteBuffer heap = ByteBuffer.wrap(data).order(order);
+			ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+			ByteBuffer sliced = ByteBuffer.allocate(data.length + 7);
+
+			direct.put(data).clear();
+			direct.order(order);
+			sliced.position(7);
+			sliced = sliced.slice();
+			sliced.put(data).clear();
+			sliced.order(order);
+
+			check("heap " + order, heap, data, random);
+			check("heap slice " + order, sliced, data, random);
+			check("direct " + order, direct, data, random);
+			check("read-only heap " + order, heap.asReadOnlyBuffer()
+					.order(order), data, random);
+			check("read-only direct " + order, direct.asReadOnlyBuffer()
+					.order(order), data, random);
+		}
+
+		/* A record's CRC is taken with its CRC field as zeros. */
+		record = new byte[ZeoData.V22_SIZE];
+		System.arraycopy(data, 3, record, 0, record.length);
+		for (int i = 0; i < ZeoData.CRC_SIZE; i++) {
+			record[ZeoData.CRC_OFFSET + i] = 0;
+		}
+		expected = Crc16.crc16_bytewise(record, 0, record.length);
+		for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.wrap(data),
+				ByteBuffer.wrap(data).asReadOnlyBuffer() }) {
+			int crc = Crc16.record_crc16(buffer, 3, ZeoData.V22_SIZE);
+
+			if (crc != expected) {
+				fail("record_crc16", 3, ZeoData.V22_SIZE, crc, expected);
+			}
+		}
+		System.out.println("record_crc16: same as crc16_bytewise");
+	}
+}
@@ -0,0 +1,182 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.Vector;
+
+/**
+ * The sort based reduce_records() of decoder version 16, kept to check the
+ * hash based reduction against. The records are reduced in file order by a
+ * ReducingIterator, sorted by their start_of_night values and reduced again.
+ */
+class ReduceRecordsReference {
+
+	/**
+	 * Reduce the records down to one record for each sleep episode, as
+	 * ZeoDataDecoder.reduce_records() did up to version 16.
+	 * 
+	 * @param records
+	 *            The records in file order.
+	 * 
+	 * @return the records kept, ordered by their start_of_night values.
+	 */
+	static List<ZeoData> reduce_records(List<ZeoData> records) {
+		Vector<ZeoData> reduced_records = new Vector<ZeoData>(10, 10);
+		Vector<ZeoData> kept_records = new Vector<ZeoData>(10, 10);
+
+		/*
+		 * Process all the records. Find each set of valid records with matching
+		 * start_of_night values and keep only the "largest" one (see
+		 * ReducingIterator). Only records that are far out of order are left
+		 * for the sort and the second pass to handle.
+		 */
+		Iterator<ZeoData> iterator = new ReducingIterator(records.iterator());
+		while (iterator.hasNext()) {
+			reduced_records.addElement(iterator.next());
+		}
+
+		/*
+		 * Sort the reduced list of records so that nights are sequential and
+		 * all records for a given night are contiguous. The sort is stable, so
+		 * records with the same start_night values keep their order.
+		 */
+		Collections.sort(reduced_records);
+
+		/*
+		 * Now that all records from the same night are contiguous, scan the
+		 * records again to handle duplicates.
+		 */
+		Iterator<ZeoData> iterator2 = new ReducingIterator(reduced_records
+				.iterator());
+		while (iterator2.hasNext()) {
+			kept_records.addElement(iterator2.next());
+		}
+		return kept_records;
+	}
+
+	/**
+	 * Iterator that reduces the records for each sleep episode down to a
+	 * single record as the records are pulled through it, holding at most
+	 * REDUCE_WINDOW sleep episodes.
+	 */
+	private static class ReducingIterator implements Iterator<ZeoData> {
+		/* The source of records. */
+		private Iterator<ZeoData> source;
+
+		/*
+		 * Largest record found so far for each sleep episode that has not been
+		 * returned yet, keyed and ordered by start_of_night.
+		 */
+		private TreeMap<Long, ZeoData> pending = new TreeMap<Long, ZeoData>();
+
+		/* The next reduced record to return, if already determined. */
+		private ZeoData next_record;
+
+		ReducingIterator(Iterator<ZeoData> source) {
+			this.source = source;
+		}
+
+		/**
+		 * Find each set of valid records with matching start_of_night values
+		 * and keep only the "largest" one. If a record of the same size as the
+		 * current largest record and a write reason of FS_REASON_SLEEP_RATED
+		 * is encountered, it replaces the current largest record.
+		 * 
+		 * @return the largest record of the earliest pending sleep episode or
+		 *         null if there are no more records.
+		 */
+		private ZeoData reduce_next() {
+			while (pending.size() <= ZeoDataDecoder.REDUCE_WINDOW
+					&& source.hasNext()) {
+				ZeoData record = source.next();
+
+				if (record.get_start_of_night_timestamp() == 0
+						|| record.get_end_of_night_timestamp() == 0) {
+					/* Incomplete record so ignore it so it is discarded */
+					continue;
+				}
+
+				if (!record.is_crc_valid()) {
+					/* Record decoded with CrcCheck.LAZY that is corrupt */
+					continue;
+				}
+
+				Long start = Long.valueOf(record
+						.get_start_of_night_timestamp());
+				ZeoData largest_record = pending.get(start);
+
+				if (largest_record == null) {
+					/* First good record for this sleep episode */
+					pending.put(start, record);
+				} else if (largest_record.compareLength(record) == -1) {
+					/* Larger, the first instance of the largest is kept */
+					pending.put(start, record);
+				} else if (largest_record.compareLength(record) == 0
+						&& record.is_sleep_rating_record()) {
+					/* Same length and rated, the most recent rating wins */
+					pending.put(start, record);
+				}
+			}
+
+			/* Return the earliest sleep episode that hasn't been returned */
+			if (pending.isEmpty()) {
+				return null;
+			}
+			return pending.pollFirstEntry().getValue();
+		}
+
+		public boolean hasNext() {
+			if (next_record == null) {
+				next_record = reduce_next();
+			}
+			return next_record != null;
+		}
+
+		public ZeoData next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			ZeoData record = next_record;
+			next_record = null;
+			return record;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,232 @@
+/*-----------------------------------------------------------------------------
+Copyright (c) 2010, Zeo, Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are
+met:
+
+ * Redistributions of source code must retain the above copyright 
+      notice, this list of conditions and the following disclaimer.
+
+ * Redistributions in binary form must reproduce the above 
+      copyright notice, this list of conditions and the following 
+      disclaimer in the documentation and/or other materials provided 
+      with the distribution.
+
+ * Neither the name of Zeo, Inc. nor the names of its contributors 
+      may be used to endorse or promote products derived from this 
+      software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL ZEO, INC. BE LIABLE
+FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF
+THE POSSIBILITY OF SUCH DAMAGE.
+------------------------------------------------------------------------------*/
+package src.com.myzeo.decoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Test that reduce_records() keeps the same records in the same order as the
+ * sort based reduction it replaced (see ReduceRecordsReference), on the
+ * sample zeosleep.dat file and on synthetic files with many records for each
+ * night, shuffled and duplicated so that the records of a night are far
+ * apart. The streaming reduce_records(Iterator, DecodeListener) must report
+ * its bad CRCs and dropped records to the listener, not on standard error.
+ * <p>
+ * Usage: ReduceRecordsTest directory/of/sample-files
+ */
+public class ReduceRecordsTest {
+
+	/* Nights written to each synthetic file. */
+	private static final int NIGHTS = 400;
+
+	/**
+	 * Reduce the records of the decoder both ways and compare the records
+	 * kept, which must be the same objects in the same order.
+	 * 
+	 * @param name
+	 *            Name of the input, for the report.
+	 * @param decoder
+	 *            A decoder that has not reduced its records.
+	 */
+	private static void check(String name, ZeoDataDecoder decoder) {
+		List<ZeoData> records = new ArrayList<ZeoData>(decoder.get_records());
+		List<ZeoData> expected = ReduceRecordsReference.reduce_records(records);
+		List<ZeoData> actual;
+
+		decoder.reduce_records();
+		actual = decoder.get_records();
+		for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+			if (actual.get(i) != expected.get(i)) {
+				throw new AssertionError(name + ": record " + i
+						+ " starts at "
+						+ actual.get(i).get_start_of_night_timestamp()
+						+ ", expected the record starting at "
+						+ expected.get(i).get_start_of_night_timestamp()
+						+ " written at "
+						+ expected.get(i).get_current_time().getTime());
+			}
+		}
+		if (actual.size() != expected.size()) {
+			throw new AssertionError(name + ": " + actual.size()
+					+ " records kept, expected " + expected.size());
+		}
+		System.out.println(name + ": " + records.size() + " records reduced to "
+				+ actual.size() + ", same as the reference");
+	}
+
+	/**
+	 * Reduce records with the streaming reducer and compare what it reports
+	 * to a listener with the records it skips and keeps.
+	 * 
+	 * @param name
+	 *            Name of the input, for the report.
+	 * @param records
+	 *            Records as decoded, ordered closely enough for the reducer.
+	 */
+	private static void check_listener(String name, List<ZeoData> records) {
+		DecodeStats stats = new DecodeStats(null);
+		PrintStream err = System.err;
+		ByteArrayOutputStream printed = new ByteArrayOutputStream();
+		Iterator<ZeoData> iterator;
+		int bad_crcs = 0;
+		int kept = 0;
+
+		for (ZeoData record : records) {
+			if (record.get_start_of_night_timestamp() != 0
+					&& record.get_end_of_night_timestamp() != 0
+					&& !record.is_crc_valid()) {
+				bad_crcs++;
+			}
+		}
+
+		System.setErr(new PrintStream(printed));
+		try {
+			iterator = ZeoDataDecoder.reduce_records(records.iterator(), stats);
+			while (iterator.hasNext()) {
+				iterator.next();
+				kept++;
+			}
+		} finally {
+			System.setErr(err);
+		}
+
+		if (printed.size() != 0) {
+			throw new AssertionError(name + ": printed on standard error: "
+					+ printed);
+		}
+		if (stats.get_count(DecodeCounter.BAD_CRCS) != bad_crcs) {
+			throw new AssertionError(name + ": "
+					+ stats.get_count(DecodeCounter.BAD_CRCS)
+					+ " bad CRCs reported, expected " + bad_crcs);
+		}
+		if (stats.get_count(DecodeCounter.RECORDS_DROPPED) != records.size()
+				- kept) {
+			throw new AssertionError(name + ": "
+					+ stats.get_count(DecodeCounter.RECORDS_DROPPED)
+					+ " records dropped reported, expected "
+					+ (records.size() - kept));
+		}
+		System.out.println(name + ": " + bad_crcs + " bad CRCs and "
+				+ (records.size() - kept)
+				+ " dropped records reported to the listener");
+	}
+
+	/**
+	 * Write a synthetic zeosleep.dat file without corrupt spans.
+	 * 
+	 * @return the records of the file, back to back.
+	 */
+	private static byte[] generate(long seed, int records_per_night)
+			throws IOException {
+		ZeoDataGenerator generator = new ZeoDataGenerator(seed);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		generator.set_records_per_night(records_per_night);
+		generator.set_nap_rate(0.3);
+		generator.set_corrupt_rate(0);
+		generator.write(NIGHTS, out, null);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Shuffle the records of a file, writing each record one to three times.
+	 * 
+	 * @param data
+	 *            Records back to back.
+	 * @param seed
+	 *            Seed of the shuffle.
+	 * 
+	 * @return the shuffled records.
+	 */
+	private static ByteBuffer shuffle(byte[] data, long seed) {
+		Random random = new Random(seed);
+		List<Integer> order = new ArrayList<Integer>();
+		ByteBuffer shuffled;
+
+		if (data.length % ZeoData.V22_SIZE != 0) {
+			throw new AssertionError("Synthetic file is not whole records");
+		}
+		for (int i = 0; i < data.length / ZeoData.V22_SIZE; i++) {
+			for (int copies = 1 + random.nextInt(3); copies > 0; copies--) {
+				order.add(i);
+			}
+		}
+		Collections.shuffle(order, random);
+
+		shuffled = ByteBuffer.allocate(order.size() * ZeoData.V22_SIZE);
+		for (int i : order) {
+			shuffled.put(data, i * ZeoData.V22_SIZE, ZeoData.V22_SIZE);
+		}
+		shuffled.flip();
+		return shuffled;
+	}
+
+	/**
+	 * Main routine.
+	 * 
+	 * @param args
+	 *            The folder holding the sample ZEOSLEEP_1.DAT file.
+	 */
+	public static void main(String[] args) throws IOException {
+		File sample = new File(args[0], "ZEOSLEEP_1.DAT");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DecodeOptions lazy;
+
+		check(sample.getName(), new ZeoDataDecoder(sample));
+
+		/* A synthetic file as written, with corrupt spans. */
+		new ZeoDataGenerator(1).write(NIGHTS, out, null);
+		check("synthetic", new ZeoDataDecoder(ByteBuffer.wrap(out
+				.toByteArray())));
+
+		for (int records : new int[] { 8, 20 }) {
+			check("synthetic -r " + records + " shuffled", new ZeoDataDecoder(
+					shuffle(generate(records, records), records)));
+		}
+
+		/* Records with bad CRCs only reach the reducer when checked late. */
+		lazy = new DecodeOptions().set_check(CrcCheck.LAZY);
+		check_listener(sample.getName() + " lazy", new ZeoDataDecoder(sample,
+				lazy).get_records());
+		check_listener("synthetic lazy", new ZeoDataDecoder(ByteBuffer
+				.wrap(out.toByteArray()), lazy).get_records());
+	}
+}
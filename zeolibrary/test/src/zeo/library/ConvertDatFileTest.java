@@ -0,0 +1,136 @@
+package src.zeo.library;
+
+import src.com.myzeo.decoder.ZeoData;
+import src.com.myzeo.decoder.ZeoDataDecoder;
+import src.com.myzeo.decoder.ZeoDataGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * ConvertDatFileTest class,
+ * checks that ZeoReader.convertDatFile makes the same nights, 
+ * field by field, as formatting the records as text and parsing 
+ * them back did (see DatConversionReference)
+ * 
+ * The records of the sample ZEOSLEEP_1.DAT file and of a synthetic 
+ * file are converted with cutOffWake on and off, in several time zones, 
+ * including ones that change their offset at midnight or by half an hour.
+ * 
+ * Usage: ConvertDatFileTest directory/of/sample-files
+ *
+ * @author evsc
+ *
+ */
+
+public class ConvertDatFileTest {
+
+	private static final String ZONES[] = { "UTC", "Europe/Berlin", 
+		"America/New_York", "America/Sao_Paulo", "Australia/Lord_Howe", "Asia/Kolkata" };
+
+	private static final PrintStream out = System.out;
+
+	public static void main(String[] args) throws IOException {
+		File sample = new File(args[0], "ZEOSLEEP_1.DAT");
+		ByteArrayOutputStream generated = new ByteArrayOutputStream();
+		new ZeoDataGenerator(1).write(1000, generated, null);
+
+		List<ZeoData> sampleRecords = decode(new ZeoDataDecoder(sample));
+		List<ZeoData> syntheticRecords = decode(new ZeoDataDecoder(ByteBuffer.wrap(generated.toByteArray())));
+
+		TimeZone zone = TimeZone.getDefault();
+		try {
+			for (String id : ZONES) {
+				TimeZone.setDefault(TimeZone.getTimeZone(id));
+				for (boolean cut : new boolean[] { true, false }) {
+					check(sample.getName(), sampleRecords, id, cut);
+					check("synthetic", syntheticRecords, id, cut);
+				}
+			}
+		} finally {
+			TimeZone.setDefault(zone);
+		}
+	}
+
+	/**
+	 * @return the reduced and labeled records, as ZeoReader reads them
+	 */
+	private static List<ZeoData> decode(ZeoDataDecoder decoder) {
+		decoder.reduce_records();
+		decoder.label_naps();
+		return decoder.get_records();
+	}
+
+	/**
+	 * Convert the records both ways, and compare the nights
+	 */
+	private static void check(String name, List<ZeoData> records, String zone, boolean cut) {
+		String test = name + " in " + zone + (cut ? ", cutOffWake" : "");
+
+		// the readers report what they import
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {}
+		}));
+		ZeoReader expected = new ZeoReader(null);
+		ZeoReader actual = new ZeoReader(null);
+		try {
+			DatConversionReference.convertDatFile(expected, records, cut);
+			actual.setCutOff(cut);
+			actual.convertDatFile(records);
+		} finally {
+			System.setOut(out);
+		}
+
+		if (actual.nights != expected.nights) {
+			throw new AssertionError(test + ": " + actual.nights + " nights, expected " + expected.nights);
+		}
+		if (actual.day_span != expected.day_span) {
+			throw new AssertionError(test + ": a span of " + actual.day_span + " days, expected " + expected.day_span);
+		}
+		for (int i = 0; i < expected.nights; i++) {
+			compare(test + ", night " + i, actual.night[i], expected.night[i]);
+		}
+		out.println(test + ": " + actual.nights + " nights, same as the reference");
+	}
+
+	/**
+	 * Compare the public fields of two nights
+	 */
+	static void compare(String test, ZeoNight actual, ZeoNight expected) {
+		for (Field f : ZeoNight.class.getFields()) {
+			if (Modifier.isStatic(f.getModifiers())) continue;
+			Object a;
+			Object e;
+			try {
+				a = f.get(actual);
+				e = f.get(expected);
+			} catch (IllegalAccessException ex) {
+				throw new AssertionError(ex);
+			}
+
+			boolean equal;
+			if (e instanceof int[] && a instanceof int[]) equal = Arrays.equals((int[]) a, (int[]) e);
+			else if (e instanceof float[] && a instanceof float[]) equal = Arrays.equals((float[]) a, (float[]) e);
+			else equal = e == null ? a == null : e.equals(a);
+
+			if (!equal) {
+				throw new AssertionError(test + ": " + f.getName() + " is " + text(a) + ", expected " + text(e));
+			}
+		}
+	}
+
+	private static String text(Object value) {
+		if (value instanceof int[]) return Arrays.toString((int[]) value);
+		if (value instanceof float[]) return Arrays.toString((float[]) value);
+		return String.valueOf(value);
+	}
+}
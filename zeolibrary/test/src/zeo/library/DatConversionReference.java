@@ -0,0 +1,130 @@
+package src.zeo.library;
+
+import src.com.myzeo.decoder.SleepStage;
+import src.com.myzeo.decoder.ZeoData;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * DatConversionReference class,
+ * the conversion of ZeoData records to ZeoNight objects 
+ * of library version 0.3.0, kept to check ZeoReader.convertDatFile against
+ * 
+ * Each record is formatted as the text of a zeodata.csv row, 
+ * dates as "MM/dd/yyyy" and "MM/dd/yyyy hh:mm" in the default 
+ * time zone and hypnograms as digits separated by spaces, 
+ * and parsed back by ZeoNight.
+ *
+ * @author evsc
+ *
+ */
+
+class DatConversionReference {
+
+	/**
+	 * Convert records the way ZeoReader.convertDatFile used to, 
+	 * filling in the nights of the reader
+	 * 
+	 * @param reader
+	 * @param nights_list
+	 * @param cutOffWake
+	 * 				leave out undefined and wake stages at the beginning
+	 */
+	static void convertDatFile(ZeoReader reader, List<ZeoData> nights_list, boolean cutOffWake) {
+		// ZeoReader kept the formats in static fields, made in the default time zone
+		DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+		DateFormat dateTimeFormat = new SimpleDateFormat("MM/dd/yyyy hh:mm");
+
+		reader.dates = new ZeoDateParser(TimeZone.getDefault());
+		reader.night = new ZeoNight[nights_list.size()];
+
+		int n = 0;
+		for (ZeoData r : nights_list) {
+			ZeoNight night = new ZeoNight(reader);
+			reader.night[n] = night;
+			night.setDate(formatDate(dateFormat, r.get_sleep_date()));
+			night.zq = r.get_zq_score();
+			night.total_z = formatEpoch(r.get_total_z());
+			night.time_to_z = formatEpoch(r.get_time_to_z());
+			night.time_in_wake = formatEpoch(r.get_time_in_wake());
+			night.time_in_rem = formatEpoch(r.get_time_in_rem());
+			night.time_in_light = formatEpoch(r.get_time_in_light());
+			night.time_in_deep = formatEpoch(r.get_time_in_deep());
+			night.awakenings = r.get_awakenings();
+
+			night.setStartOfNight(formatDate(dateTimeFormat, r.get_hypnogram_start_time()), false);
+			night.setEndOfNight(formatDate(dateTimeFormat, r.get_end_of_night()), false);
+			night.setRiseTime(formatDate(dateTimeFormat, r.get_rise_time()), false);
+
+			night.alarm_reason = r.get_alarm_reason().ordinal();
+			night.alarm_type = r.get_zeo_wake_on() ? 1 : 0;
+			night.morning_feel = r.get_sleep_rating();
+
+			// formatHypnogram changes the array it is given
+			night.setSleepGraph5min(formatHypnogram(r.get_display_hypnogram().clone()), cutOffWake);
+			night.setSleepGraph30sec(formatHypnogram(r.get_base_hypnogram()), cutOffWake);
+
+			if (night.clean == true) n++;
+		}
+		reader.nights = n;
+
+		Date day0 = new Date(reader.night[0].date.getTime());
+		for (int i = 1; i < reader.nights; i++) {
+			reader.night[i].setDayRelative(day0);
+		}
+		reader.day_span = reader.night[reader.nights - 1].day_relative;
+	}
+
+	/**
+	 * Formats a calendar as a String, the calendar's time 
+	 * is shown in the time zone of the format
+	 */
+	private static String formatDate(DateFormat format, Calendar c) {
+		if (c == null) return "";
+		c.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return format.format(c.getTime());
+	}
+
+	/**
+	 * Formats a hypnogram as digits separated by spaces, 
+	 * leaving out the last stage
+	 */
+	private static String formatHypnogram(byte b[]) {
+		StringBuffer s = new StringBuffer();
+
+		// strip off trailing zeroes
+		int lastNonzeroIndex = 0;
+		for (int i = 0; i < b.length; i++) {
+			if (b[i] != 0) lastNonzeroIndex = i;
+		}
+
+		for (int i = 0; i < lastNonzeroIndex; i++) {
+			switch (SleepStage.convert(b[i])) {
+			case UNUSED:
+				// skip the unused sleep stage label to match website CSV output 
+				break;
+
+			case DEEP_2:
+				// show DEEP_2 as DEEP to match website CSV output
+				b[i] = (byte) SleepStage.DEEP.ordinal();
+				break;
+
+			default:
+				if (i > 0) s.append(' ');
+				s.append((char) (b[i] + '0'));
+				break;
+			}
+		}
+
+		return s.toString();
+	}
+
+	private static int formatEpoch(int i) {
+		return (i + 1) / 2;
+	}
+}
@@ -0,0 +1,104 @@
+package src.zeo.library;
+
+import src.com.myzeo.decoder.ZeoDataGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * ResumeDatFileTest class,
+ * checks that resuming ZeoReader.readDatFile on a growing file 
+ * makes the same nights as reading the whole file again, 
+ * and that the nights of the records read before are kept 
+ * rather than converted again
+ * 
+ * A synthetic file is written a part at a time, cut anywhere, 
+ * also inside records and between the records of a night. 
+ * Changing cutOffWake or the time zone converts all records again.
+ * 
+ * Usage: ResumeDatFileTest directory/of/sample-files
+ *
+ * @author evsc
+ *
+ */
+
+public class ResumeDatFileTest {
+
+	private static final int STEPS = 7;
+
+	private static final PrintStream out = System.out;
+
+	public static void main(String[] args) throws IOException {
+		ByteArrayOutputStream generated = new ByteArrayOutputStream();
+		new ZeoDataGenerator(3).write(700, generated, null);
+		byte data[] = generated.toByteArray();
+
+		File file = File.createTempFile("zeosleep", ".dat");
+		file.deleteOnExit();
+		OutputStream dat = new FileOutputStream(file);
+		ZeoReader resumed = new ZeoReader(null);
+		TimeZone zone = TimeZone.getDefault();
+		try {
+			int written = 0;
+			for (int i = 1; i <= STEPS; i++) {
+				int end = (int) ((long) data.length * i * i / (STEPS * STEPS));
+				dat.write(data, written, end - written);
+				dat.flush();
+				written = end;
+				check("resumed at " + end + " bytes", resumed, file, true);
+			}
+
+			// the nights read before do not apply any more
+			resumed.setCutOff(false);
+			check("resumed without cutOffWake", resumed, file, false);
+			TimeZone.setDefault(TimeZone.getTimeZone("America/Sao_Paulo"));
+			check("resumed in America/Sao_Paulo", resumed, file, false);
+		} finally {
+			dat.close();
+			TimeZone.setDefault(zone);
+		}
+	}
+
+	/**
+	 * Resume reading the file, read the whole file with a new reader, 
+	 * and compare the nights
+	 */
+	private static void check(String test, ZeoReader resumed, File file, boolean cut) {
+		Map<ZeoNight, ZeoNight> before = new IdentityHashMap<ZeoNight, ZeoNight>();
+		for (int i = 0; i < resumed.nights; i++) before.put(resumed.night[i], resumed.night[i]);
+
+		// the readers report what they import
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {}
+		}));
+		ZeoReader expected = new ZeoReader(null);
+		try {
+			resumed.readDatFile(file.getPath(), true);
+			expected.setCutOff(cut);
+			expected.readDatFile(file.getPath());
+		} finally {
+			System.setOut(out);
+		}
+
+		if (resumed.nights != expected.nights) {
+			throw new AssertionError(test + ": " + resumed.nights + " nights, expected " + expected.nights);
+		}
+		if (resumed.day_span != expected.day_span) {
+			throw new AssertionError(test + ": a span of " + resumed.day_span + " days, expected " + expected.day_span);
+		}
+		int kept = 0;
+		for (int i = 0; i < expected.nights; i++) {
+			ConvertDatFileTest.compare(test + ", night " + i, resumed.night[i], expected.night[i]);
+			if (before.containsKey(resumed.night[i])) kept++;
+		}
+		out.println(test + ": " + resumed.nights + " nights, " + kept 
+				+ " kept from before, same as reading the whole file");
+	}
+}